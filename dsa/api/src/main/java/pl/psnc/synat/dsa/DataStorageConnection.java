@@ -17,6 +17,7 @@ package pl.psnc.synat.dsa;
 
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 
 import pl.psnc.synat.dsa.exception.DataStorageConnectionException;
 import pl.psnc.synat.dsa.exception.NameAlreadyExistsException;
@@ -214,6 +215,27 @@ public interface DataStorageConnection {
             throws DataStorageConnectionException;
 
 
+    /**
+     * Calculates digests of every copy of a file at the specified name. Each data storage holding a copy reads it in
+     * place, so the file is not transferred to the caller. A copy which cannot be read does not stop the calculation
+     * for the other copies - it is reported in its digest.
+     *
+     * @param path
+     *            absolute path to the file
+     * @param algorithms
+     *            names of the digest algorithms (as accepted by {@link java.security.MessageDigest})
+     * @return digests of the copies, one for each copy which exists or should exist
+     * @throws NoSuchFileException
+     *             if no copy of the file exists
+     * @throws NotFileException
+     *             if the specified name points to a directory
+     * @throws DataStorageConnectionException
+     *             if some unexpected error occurs
+     */
+    List<FileDigest> digestFile(String path, Collection<String> algorithms)
+            throws NoSuchFileException, NotFileException, DataStorageConnectionException;
+
+
     /**
      * Release connection to the pool.
      */
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Digests of one copy of a file, calculated by the data storage which holds the copy.
+ *
+ */
+public class FileDigest {
+
+    /**
+     * States of a copy.
+     */
+    public enum State {
+        /** The copy was read and its digests were calculated. */
+        PRESENT,
+        /** The copy does not exist. */
+        MISSING,
+        /** The copy exists but it could not be read. */
+        UNREADABLE
+    };
+
+
+    /**
+     * Description of the data storage holding the copy (null if the data storage of a missing copy is not known).
+     */
+    private final String replica;
+
+    /**
+     * State of the copy.
+     */
+    private final State state;
+
+    /**
+     * Digests by the names of the algorithms (empty unless the copy is present).
+     */
+    private final Map<String, byte[]> digests;
+
+
+    /**
+     * Constructor.
+     *
+     * @param replica
+     *            description of the data storage holding the copy
+     * @param state
+     *            state of the copy
+     * @param digests
+     *            digests by the names of the algorithms, null unless the copy is present
+     */
+    public FileDigest(String replica, State state, Map<String, byte[]> digests) {
+        this.replica = replica;
+        this.state = state;
+        if (digests != null) {
+            this.digests = Collections.unmodifiableMap(digests);
+        } else {
+            this.digests = Collections.emptyMap();
+        }
+    }
+
+
+    public String getReplica() {
+        return replica;
+    }
+
+
+    public State getState() {
+        return state;
+    }
+
+
+    /**
+     * Returns the digest calculated with the given algorithm.
+     *
+     * @param algorithm
+     *            name of the algorithm (as accepted by {@link java.security.MessageDigest})
+     * @return digest or null if the copy is not present or the digest was not requested
+     */
+    public byte[] getDigest(String algorithm) {
+        return digests.get(algorithm);
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("FileDigest ");
+        sb.append("[replica = ").append(replica);
+        sb.append(", state = ").append(state);
+        sb.append(", algorithms = ").append(digests.keySet());
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
@@ -17,6 +17,7 @@ package pl.psnc.synat.dsa;
 
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -193,6 +194,18 @@ public abstract class AbstractDataStorageConnection implements DataStorageConnec
     }
 
 
+    @Override
+    public List<FileDigest> digestFile(String path, Collection<String> algorithms)
+            throws NoSuchFileException, NotFileException, DataStorageConnectionException {
+        logger.debug("digesting file: " + path);
+        if (path.startsWith("/")) {
+            return managedConnection.digestFile(path.substring(1), algorithms);
+        } else {
+            return managedConnection.digestFile(path, algorithms);
+        }
+    }
+
+
     @Override
     public void close() {
         managedConnection.release();
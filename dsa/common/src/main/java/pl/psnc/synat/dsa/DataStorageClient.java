@@ -19,6 +19,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.Map;
 
 /**
  * Interface of client to data storage services.
@@ -226,4 +227,34 @@ public interface DataStorageClient {
      */
     boolean exists(String path);
 
+
+    /**
+     * Checks types of many paths at once. Implementations should need as few round trips to the data storage as
+     * possible.
+     * 
+     * @param paths
+     *            paths to check
+     * @return type of each path
+     * @throws IOException
+     *             when some error occurs
+     */
+    Map<String, DataStoragePathType> statAll(Collection<String> paths)
+            throws IOException;
+
+
+    /**
+     * Calculates digests of a file in the data storage. Implementations should read the file where it is stored,
+     * without copying it to a local file.
+     * 
+     * @param path
+     *            path to the file
+     * @param algorithms
+     *            names of the digest algorithms (as accepted by {@link java.security.MessageDigest})
+     * @return digests by the names of the algorithms
+     * @throws IOException
+     *             when some error occurs
+     */
+    Map<String, byte[]> digestFile(String path, Collection<String> algorithms)
+            throws IOException;
+
 }
@@ -18,8 +18,11 @@ package pl.psnc.synat.dsa;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ConnectionEvent;
@@ -31,6 +34,7 @@ import javax.transaction.xa.XAResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.dsa.concurrent.DataStorageDigestThrottle;
 import pl.psnc.synat.dsa.exception.DataStorageConnectionException;
 import pl.psnc.synat.dsa.exception.NameAlreadyExistsException;
 import pl.psnc.synat.dsa.exception.NameSyntaxException;
@@ -67,6 +71,11 @@ public abstract class DataStorageManagedConnection implements ManagedConnection
      */
     protected DataStorageXAResource xares;
 
+    /**
+     * Throttle of digesting files shared by the connections of the same factory (null if digesting is not limited).
+     */
+    private DataStorageDigestThrottle digestThrottle;
+
 
     /**
      * Constructor.
@@ -76,6 +85,17 @@ public abstract class DataStorageManagedConnection implements ManagedConnection
     }
 
 
+    /**
+     * Sets the throttle limiting the number of files digested at the same time by each data storage.
+     * 
+     * @param digestThrottle
+     *            throttle, or null if digesting should not be limited
+     */
+    public void setDigestThrottle(DataStorageDigestThrottle digestThrottle) {
+        this.digestThrottle = digestThrottle;
+    }
+
+
     @Override
     public void associateConnection(Object connection)
             throws ResourceException {
@@ -182,28 +202,42 @@ public abstract class DataStorageManagedConnection implements ManagedConnection
     protected void reflectFoldersStructure(DataStorageClient client, String path,
             List<DataStorageWOOperation> operations)
             throws NameSyntaxException, DataStorageConnectionException {
+        DataStorageStatCache statCache = xares.getStatCache();
+        String txfolder = xares.getTransactionFolderName();
+        List<String> subfolders = FilenameUtils.splitPath(path);
         try {
-            if (!client.directoryExists(xares.getTransactionFolderName())) {
-                client.createDirectory(xares.getTransactionFolderName());
+            List<String> paths = new ArrayList<String>();
+            paths.add(txfolder);
+            StringBuffer prefix = new StringBuffer();
+            for (String folder : subfolders) {
+                prefix.append(folder);
+                paths.add(prefix.toString());
+                paths.add(txfolder + "/" + prefix.toString());
+                prefix.append("/");
+            }
+            statCache.prefetch(client, paths);
+            if (!isDirectory(client, txfolder)) {
+                client.createDirectory(txfolder);
+                statCache.put(client, txfolder, DataStoragePathType.DIRECTORY);
             }
         } catch (IOException e) {
-            logger.error("There was a problem while creating a directory: " + xares.getTransactionFolderName(), e);
+            logger.error("There was a problem while creating a directory: " + txfolder, e);
             throw new DataStorageConnectionException(e);
         }
         StringBuffer crtpath = new StringBuffer();
-        StringBuffer ctxpath = new StringBuffer(xares.getTransactionFolderName()).append("/");
-        List<String> subfolders = FilenameUtils.splitPath(path);
+        StringBuffer ctxpath = new StringBuffer(txfolder).append("/");
         for (String folder : subfolders) {
             crtpath.append(folder);
             ctxpath.append(folder);
             try {
-                if (client.directoryExists(crtpath.toString())) {
+                if (isDirectory(client, crtpath.toString())) {
                     logger.debug("directory " + crtpath.toString() + " exists");
-                    if (client.directoryExists(ctxpath.toString())) {
+                    if (isDirectory(client, ctxpath.toString())) {
                         logger.debug("directory " + ctxpath.toString() + " exists");
                     } else {
                         logger.debug("directory " + ctxpath.toString() + " does not exist");
                         client.createDirectory(ctxpath.toString());
+                        statCache.put(client, ctxpath.toString(), DataStoragePathType.DIRECTORY);
                         if (wasDirectoryRemoved(crtpath.toString(), operations)) {
                             logger.info("directory " + ctxpath.toString() + " was created as a new directory "
                                     + crtpath.toString());
@@ -219,11 +253,12 @@ public abstract class DataStorageManagedConnection implements ManagedConnection
                     }
                 } else {
                     logger.debug("directory " + crtpath.toString() + " does not exist");
-                    if (client.directoryExists(ctxpath.toString())) {
+                    if (isDirectory(client, ctxpath.toString())) {
                         logger.debug("directory " + ctxpath.toString() + " exists");
                     } else {
                         logger.debug("directory " + ctxpath.toString() + " does not exist");
                         client.createDirectory(ctxpath.toString());
+                        statCache.put(client, ctxpath.toString(), DataStoragePathType.DIRECTORY);
                         logger.info("directory " + ctxpath.toString() + " was created as a new directory "
                                 + crtpath.toString());
                         DataStorageWOOperation o = new DataStorageWOOperation(
@@ -422,6 +457,118 @@ public abstract class DataStorageManagedConnection implements ManagedConnection
             throws DataStorageConnectionException;
 
 
+    /**
+     * Calculates digests of every copy of a file (in the scope of the transaction).
+     * 
+     * @param path
+     *            path to the file
+     * @param algorithms
+     *            names of the digest algorithms
+     * @return digests of the copies
+     * @throws NoSuchFileException
+     *             if no copy of the file exists
+     * @throws NotFileException
+     *             if the specified name points to a directory
+     * @throws DataStorageConnectionException
+     *             if some unexpected error occurs
+     */
+    abstract List<FileDigest> digestFile(String path, Collection<String> algorithms)
+            throws NoSuchFileException, NotFileException, DataStorageConnectionException;
+
+
+    /**
+     * Calculates digests of the copy of a file held by the client (in the scope of the transaction). The copy is read
+     * by the client in place. A read error is reported in the returned digest, so it does not stop the calculation for
+     * the other copies. The copy waits for its turn if the data storage already digests as many files as the throttle
+     * allows.
+     * 
+     * @param client
+     *            client connected to the data storage holding the copy
+     * @param path
+     *            path to the file
+     * @param algorithms
+     *            names of the digest algorithms
+     * @return digests of the copy
+     */
+    protected FileDigest digestCopy(DataStorageClient client, String path, Collection<String> algorithms) {
+        String txpath = xares.getTransactionFolderName() + "/" + path;
+        try {
+            if (digestThrottle != null) {
+                digestThrottle.acquire(client);
+            }
+            Map<String, byte[]> digests;
+            try {
+                if (isFile(client, txpath)) {
+                    digests = client.digestFile(txpath, algorithms);
+                } else {
+                    digests = client.digestFile(path, algorithms);
+                }
+            } finally {
+                if (digestThrottle != null) {
+                    digestThrottle.release(client);
+                }
+            }
+            return new FileDigest(client.toString(), FileDigest.State.PRESENT, digests);
+        } catch (IOException e) {
+            logger.error("There was a problem while calculating digests of the file " + path + " for the client "
+                    + client, e);
+            return new FileDigest(client.toString(), FileDigest.State.UNREADABLE, null);
+        }
+    }
+
+
+    /**
+     * Checks whether the path points to a directory. The answer comes from the stat cache of the transaction.
+     * 
+     * @param client
+     *            client connected to a data storage
+     * @param path
+     *            path
+     * @return whether it is a directory
+     * @throws IOException
+     *             if the path could not be checked
+     */
+    protected boolean isDirectory(DataStorageClient client, String path)
+            throws IOException {
+        return xares.getStatCache().stat(client, path) == DataStoragePathType.DIRECTORY;
+    }
+
+
+    /**
+     * Checks whether the path points to a file. The answer comes from the stat cache of the transaction.
+     * 
+     * @param client
+     *            client connected to a data storage
+     * @param path
+     *            path
+     * @return whether it is a file
+     * @throws IOException
+     *             if the path could not be checked
+     */
+    protected boolean isFile(DataStorageClient client, String path)
+            throws IOException {
+        return xares.getStatCache().stat(client, path) == DataStoragePathType.FILE;
+    }
+
+
+    /**
+     * Checks whether the path points to a file or a directory. The answer comes from the stat cache of the
+     * transaction.
+     * 
+     * @param client
+     *            client connected to a data storage
+     * @param path
+     *            path
+     * @return whether it exists
+     * @throws IOException
+     *             if the path could not be checked
+     */
+    protected boolean exists(DataStorageClient client, String path)
+            throws IOException {
+        return xares.getStatCache().stat(client, path) != DataStoragePathType.NONE;
+    }
+
+
     /**
      * Checks whether the directory was removed earlier in the same transaction.
      * 
@@ -484,13 +631,16 @@ public abstract class DataStorageManagedConnection implements ManagedConnection
     protected boolean doesDirectoryExist(DataStorageClient client, String path, List<DataStorageWOOperation> operations)
             throws DataStorageConnectionException {
         boolean removed = wasDirectoryRemoved(path, operations);
+        String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
-            if (!removed && client.directoryExists(path)) {
+            if (!removed) {
+                xares.getStatCache().prefetch(client, Arrays.asList(path, txpath));
+            }
+            if (!removed && isDirectory(client, path)) {
                 logger.debug("directory " + path + " exists in the root folder");
                 return true;
             }
-            String txpath = xares.getTransactionFolderName() + "/" + path;
-            if (client.directoryExists(txpath)) {
+            if (isDirectory(client, txpath)) {
                 logger.debug("directory " + path + " exists in the transaction's folder: "
                         + xares.getTransactionFolderName());
                 return true;
@@ -521,13 +671,16 @@ public abstract class DataStorageManagedConnection implements ManagedConnection
     protected boolean doesFileExist(DataStorageClient client, String path, List<DataStorageWOOperation> operations)
             throws DataStorageConnectionException {
         boolean removed = wasFileOrDirectoryRemoved(path, operations);
+        String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
-            if (!removed && client.fileExists(path)) {
+            if (!removed) {
+                xares.getStatCache().prefetch(client, Arrays.asList(path, txpath));
+            }
+            if (!removed && isFile(client, path)) {
                 logger.debug("file " + path + " exists in the root folder");
                 return true;
             }
-            String txpath = xares.getTransactionFolderName() + "/" + path;
-            if (client.fileExists(txpath)) {
+            if (isFile(client, txpath)) {
                 logger.debug("file " + path + " exists in the transaction's folder: "
                         + xares.getTransactionFolderName());
                 return true;
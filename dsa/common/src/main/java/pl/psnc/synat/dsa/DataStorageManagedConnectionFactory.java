@@ -25,6 +25,9 @@ import javax.resource.spi.ResourceAdapterAssociation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.dsa.concurrent.DataStorageDigestThrottle;
+import pl.psnc.synat.dsa.concurrent.DataStorageReplicator;
+
 /**
  * Factory of both managed connection and factory of connections to data storage.
  * 
@@ -43,6 +46,21 @@ public abstract class DataStorageManagedConnectionFactory implements ManagedConn
      */
     protected DataStorageResourceAdapter ra;
 
+    /**
+     * Number of files that can be digested at the same time by one data storage (unlimited if not set).
+     */
+    private Integer digestsPerDataStorage;
+
+    /**
+     * Throttle shared by all the managed connections created by this factory.
+     */
+    private transient DataStorageDigestThrottle digestThrottle;
+
+    /**
+     * Replicator shared by all the managed connections created by this factory.
+     */
+    private transient DataStorageReplicator replicator;
+
 
     @Override
     public Object createConnectionFactory()
@@ -79,4 +97,45 @@ public abstract class DataStorageManagedConnectionFactory implements ManagedConn
         this.ra = (DataStorageResourceAdapter) ra;
     }
 
+
+    public Integer getDigestsPerDataStorage() {
+        return digestsPerDataStorage;
+    }
+
+
+    public void setDigestsPerDataStorage(Integer digestsPerDataStorage) {
+        this.digestsPerDataStorage = digestsPerDataStorage;
+    }
+
+
+    /**
+     * Returns the throttle of digesting files, the same for all the managed connections of this factory.
+     * 
+     * @return throttle, or null if digesting is not limited
+     */
+    protected synchronized DataStorageDigestThrottle getDigestThrottle() {
+        if (digestThrottle == null && digestsPerDataStorage != null && digestsPerDataStorage > 0) {
+            digestThrottle = new DataStorageDigestThrottle(digestsPerDataStorage);
+        }
+        return digestThrottle;
+    }
+
+
+    /**
+     * Returns the replicator writing copies of a file in parallel, the same for all the managed connections of this
+     * factory. Its writes are run by the work manager of the resource adapter.
+     * 
+     * @return replicator, or null if the work manager is not available
+     */
+    protected synchronized DataStorageReplicator getReplicator() {
+        if (replicator == null) {
+            if (ra == null || ra.getWorkManager() == null) {
+                logger.warn("No work manager available, copies of a file will be written one after another.");
+                return null;
+            }
+            replicator = new DataStorageReplicator(ra.getWorkManager());
+        }
+        return replicator;
+    }
+
 }
@@ -66,6 +66,11 @@ public class DataStorageManagedConnectionResourceManager {
      */
     protected String folder;
 
+    /**
+     * Types of paths known in the transaction.
+     */
+    protected DataStorageStatCache statCache;
+
 
     /**
      * Constructs new resource manager.
@@ -81,6 +86,7 @@ public class DataStorageManagedConnectionResourceManager {
         this.operations = operations;
         this.success = false;
         this.folder = null;
+        this.statCache = new DataStorageStatCache();
     }
 
 
@@ -97,6 +103,16 @@ public class DataStorageManagedConnectionResourceManager {
     }
 
 
+    /**
+     * Returns the cache of types of paths valid in the scope of the current transaction.
+     * 
+     * @return stat cache
+     */
+    public DataStorageStatCache getStatCache() {
+        return statCache;
+    }
+
+
     /**
      * Starts or resumes a transaction branch specified by the transaction id. If TMJOIN is specified, transaction is
      * joining a transaction previously started.
@@ -114,6 +130,7 @@ public class DataStorageManagedConnectionResourceManager {
             case XAResource.TMNOFLAGS:
                 this.success = false;
                 this.xid = xid;
+                statCache.clear();
                 break;
             case XAResource.TMRESUME:
                 if (!xid.equals(this.xid)) {
@@ -320,6 +337,7 @@ public class DataStorageManagedConnectionResourceManager {
      * Cleans up the temporary directories for this transaction.
      */
     protected void cleanup() {
+        statCache.clear();
         for (DataStorageClient client : clients) {
             try {
                 if (client.directoryExists(getTransactionFolderName())) {
@@ -17,8 +17,11 @@ package pl.psnc.synat.dsa;
 
 import javax.resource.ResourceException;
 import javax.resource.spi.ActivationSpec;
+import javax.resource.spi.BootstrapContext;
 import javax.resource.spi.ResourceAdapter;
+import javax.resource.spi.ResourceAdapterInternalException;
 import javax.resource.spi.endpoint.MessageEndpointFactory;
+import javax.resource.spi.work.WorkManager;
 import javax.transaction.xa.XAResource;
 
 /**
@@ -27,6 +30,33 @@ import javax.transaction.xa.XAResource;
  */
 public abstract class DataStorageResourceAdapter implements ResourceAdapter {
 
+    /** Work manager of the application server - available while the resource adapter is started. */
+    private volatile WorkManager workManager;
+
+
+    @Override
+    public void start(BootstrapContext ctx)
+            throws ResourceAdapterInternalException {
+        workManager = ctx.getWorkManager();
+    }
+
+
+    @Override
+    public void stop() {
+        workManager = null;
+    }
+
+
+    /**
+     * Returns the work manager which runs the work of the resource adapter in threads of the application server.
+     * 
+     * @return work manager, or null if the resource adapter is not started
+     */
+    public WorkManager getWorkManager() {
+        return workManager;
+    }
+
+
     @Override
     public void endpointActivation(MessageEndpointFactory endpointFactory, ActivationSpec spec)
             throws ResourceException {
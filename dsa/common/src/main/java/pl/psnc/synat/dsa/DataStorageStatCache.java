@@ -0,0 +1,161 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of types of paths in data storages valid in the scope of one transaction. Paths which are used by the
+ * transaction are locked, so only the transaction itself can change them - it has to update the cache whenever it does
+ * so. Missing entries are fetched in batches by {@link DataStorageClient#statAll(Collection)}.
+ * 
+ */
+public class DataStorageStatCache {
+
+    /**
+     * Types of paths for each client.
+     */
+    private final Map<DataStorageClient, Map<String, DataStoragePathType>> entries;
+
+
+    /**
+     * Creates an empty cache.
+     */
+    public DataStorageStatCache() {
+        entries = new HashMap<DataStorageClient, Map<String, DataStoragePathType>>();
+    }
+
+
+    /**
+     * Fetches types of all the paths which are not cached yet with one call of the client.
+     * 
+     * @param client
+     *            client
+     * @param paths
+     *            paths
+     * @throws IOException
+     *             when some error occurs
+     */
+    public synchronized void prefetch(DataStorageClient client, Collection<String> paths)
+            throws IOException {
+        Map<String, DataStoragePathType> types = getEntries(client);
+        List<String> missing = new ArrayList<String>();
+        for (String path : paths) {
+            if (!types.containsKey(path) && !missing.contains(path)) {
+                missing.add(path);
+            }
+        }
+        if (!missing.isEmpty()) {
+            types.putAll(client.statAll(missing));
+        }
+    }
+
+
+    /**
+     * Returns the type of the path, fetching it if it is not cached.
+     * 
+     * @param client
+     *            client
+     * @param path
+     *            path
+     * @return type of the path
+     * @throws IOException
+     *             when some error occurs
+     */
+    public synchronized DataStoragePathType stat(DataStorageClient client, String path)
+            throws IOException {
+        Map<String, DataStoragePathType> types = getEntries(client);
+        DataStoragePathType type = types.get(path);
+        if (type == null) {
+            List<String> paths = new ArrayList<String>();
+            paths.add(path);
+            types.putAll(client.statAll(paths));
+            type = types.get(path);
+        }
+        return type;
+    }
+
+
+    /**
+     * Records the type of the path after it was changed by the transaction. Unless the path is a directory, nothing can
+     * exist below it, so the entries of its former content are dropped.
+     * 
+     * @param client
+     *            client
+     * @param path
+     *            path
+     * @param type
+     *            new type of the path
+     */
+    public synchronized void put(DataStorageClient client, String path, DataStoragePathType type) {
+        if (type != DataStoragePathType.DIRECTORY) {
+            invalidate(client, path);
+        }
+        getEntries(client).put(path, type);
+    }
+
+
+    /**
+     * Forgets the path and everything below it, e.g. after the path was removed recursively or its state is unknown.
+     * 
+     * @param client
+     *            client
+     * @param path
+     *            path
+     */
+    public synchronized void invalidate(DataStorageClient client, String path) {
+        String prefix = path + "/";
+        Iterator<String> it = getEntries(client).keySet().iterator();
+        while (it.hasNext()) {
+            String cached = it.next();
+            if (cached.equals(path) || cached.startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Forgets everything.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+
+    /**
+     * Returns types of paths of the client.
+     * 
+     * @param client
+     *            client
+     * @return cached types
+     */
+    private Map<String, DataStoragePathType> getEntries(DataStorageClient client) {
+        Map<String, DataStoragePathType> types = entries.get(client);
+        if (types == null) {
+            types = new HashMap<String, DataStoragePathType>();
+            entries.put(client, types);
+        }
+        return types;
+    }
+
+}
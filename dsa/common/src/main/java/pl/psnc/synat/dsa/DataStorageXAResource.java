@@ -67,6 +67,16 @@ public abstract class DataStorageXAResource implements XAResource {
     }
 
 
+    /**
+     * Returns the cache of types of paths valid in the scope of the current transaction.
+     * 
+     * @return stat cache
+     */
+    public DataStorageStatCache getStatCache() {
+        return resourceManager.getStatCache();
+    }
+
+
     @Override
     public void start(Xid xid, int flags)
             throws XAException {
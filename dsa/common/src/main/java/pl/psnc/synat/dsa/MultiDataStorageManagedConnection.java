@@ -32,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.dsa.concurrent.DataStorageLockManager;
+import pl.psnc.synat.dsa.concurrent.DataStorageReplicator;
 import pl.psnc.synat.dsa.exception.DataStorageConnectionException;
 import pl.psnc.synat.dsa.exception.NameAlreadyExistsException;
 import pl.psnc.synat.dsa.exception.NameSyntaxException;
@@ -65,6 +66,9 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
     /** Number of copies that should be distributed among archives. */
     protected int redundancy;
 
+    /** Replicator writing copies of a file in parallel - null if copies are written one after another. */
+    protected DataStorageReplicator replicator;
+
 
     /**
      * Constructor.
@@ -73,8 +77,25 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
      *            redundancy ratio
      */
     public MultiDataStorageManagedConnection(int redundancy) {
+        this(redundancy, null);
+    }
+
+
+    /**
+     * Constructor.
+     * 
+     * @param redundancy
+     *            redundancy ratio
+     * @param replicator
+     *            replicator writing copies of a file to all archives at the same time, or null if they should be
+     *            written one after another
+     */
+    public MultiDataStorageManagedConnection(int redundancy, DataStorageReplicator replicator) {
         this.redundancy = redundancy;
         operations = new HashMap<DataStorageClient, List<DataStorageWOOperation>>();
+        if (redundancy > 1) {
+            this.replicator = replicator;
+        }
     }
 
 
@@ -148,9 +169,10 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
         for (DataStorageClient client : clients) {
             if (exist.get(client)) {
                 try {
-                    if (client.directoryExists(txpath)) {
+                    if (isDirectory(client, txpath)) {
                         logger.debug("directory " + txpath + " exists for the client " + client);
                         client.deleteDirectory(txpath);
+                        xares.getStatCache().put(client, txpath, DataStoragePathType.NONE);
                     }
                     DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.DELETE_DIRECTORY,
                             path);
@@ -257,17 +279,23 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
                 throw new NameAlreadyExistsException("File '" + path + "' already exists.");
             }
         }
+        if (replicator != null) {
+            putReplicas(path, localPath, null);
+            return;
+        }
         int i = 0;
         for (DataStorageClient client : clients) {
             reflectFoldersStructure(client, FilenameUtils.getParentFolder(path), operations.get(client));
             String txpath = xares.getTransactionFolderName() + "/" + path;
             try {
                 client.putFile(txpath, localPath);
+                xares.getStatCache().put(client, txpath, DataStoragePathType.FILE);
                 DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.PUT_FILE, path);
                 operations.get(client).add(o);
                 DSA_LOGGER.info("operation added " + o + " in the scope of transaction's folder: "
                         + xares.getTransactionFolderName() + ";client: " + client);
             } catch (IOException e) {
+                xares.getStatCache().invalidate(client, txpath);
                 logger.error("There was a problem while putting a file: " + txpath, e);
                 if (e instanceof FileNotFoundException) {
                     throw new NoSuchFileException(e);
@@ -292,17 +320,23 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
                 throw new NameAlreadyExistsException("File '" + path + "' already exists.");
             }
         }
+        if (replicator != null) {
+            putReplicas(path, null, src);
+            return;
+        }
         int i = 0;
         for (DataStorageClient client : clients) {
             reflectFoldersStructure(client, FilenameUtils.getParentFolder(path), operations.get(client));
             String txpath = xares.getTransactionFolderName() + "/" + path;
             try {
                 client.putFile(txpath, src);
+                xares.getStatCache().put(client, txpath, DataStoragePathType.FILE);
                 DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.PUT_FILE, path);
                 operations.get(client).add(o);
                 DSA_LOGGER.info("operation added " + o + " in the scope of transaction's folder: "
                         + xares.getTransactionFolderName() + ";client: " + client);
             } catch (IOException e) {
+                xares.getStatCache().invalidate(client, txpath);
                 logger.error("There was a problem while putting a file: " + txpath, e);
                 if (e instanceof FileNotFoundException) {
                     throw new NoSuchFileException(e);
@@ -317,6 +351,62 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
     }
 
 
+    /**
+     * Puts a file to all the data storages that should hold its copies at the same time. The folders structure is
+     * reflected and write operations are registered in the current thread - only the transfers are done in parallel.
+     * Exactly one of the source parameters should be given.
+     * 
+     * @param path
+     *            path to the file being created
+     * @param localPath
+     *            absolute path of the source file (in a local file system) or null
+     * @param src
+     *            input stream of the source file or null
+     * @throws NameSyntaxException
+     *             if the specified name for a new file is incorrect
+     * @throws NoSuchFileException
+     *             if the source file does not exist
+     * @throws DataStorageConnectionException
+     *             if some unexpected error occurs
+     */
+    private void putReplicas(String path, String localPath, InputStream src)
+            throws NameSyntaxException, NoSuchFileException, DataStorageConnectionException {
+        List<DataStorageClient> targets = clients.subList(0, redundancy);
+        for (DataStorageClient client : targets) {
+            reflectFoldersStructure(client, FilenameUtils.getParentFolder(path), operations.get(client));
+        }
+        String txpath = xares.getTransactionFolderName() + "/" + path;
+        Map<DataStorageClient, IOException> errors;
+        if (localPath != null) {
+            errors = replicator.putFile(targets, txpath, localPath);
+        } else {
+            errors = replicator.putFile(targets, txpath, src);
+        }
+        for (DataStorageClient client : targets) {
+            if (errors.containsKey(client)) {
+                xares.getStatCache().invalidate(client, txpath);
+            } else {
+                xares.getStatCache().put(client, txpath, DataStoragePathType.FILE);
+                DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.PUT_FILE, path);
+                operations.get(client).add(o);
+                DSA_LOGGER.info("operation added " + o + " in the scope of transaction's folder: "
+                        + xares.getTransactionFolderName() + ";client: " + client);
+            }
+        }
+        for (Map.Entry<DataStorageClient, IOException> error : errors.entrySet()) {
+            logger.error("There was a problem while putting a file: " + txpath + " by the client " + error.getKey(),
+                    error.getValue());
+        }
+        if (!errors.isEmpty()) {
+            IOException e = errors.values().iterator().next();
+            if (e instanceof FileNotFoundException) {
+                throw new NoSuchFileException(e);
+            }
+            throw new DataStorageConnectionException(e);
+        }
+    }
+
+
     @Override
     void deleteFile(String path)
             throws NoSuchFileException, NotFileException, DataStorageConnectionException {
@@ -336,9 +426,10 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
         for (DataStorageClient client : clients) {
             if (exist.get(client)) {
                 try {
-                    if (client.fileExists(txpath)) {
+                    if (isFile(client, txpath)) {
                         logger.debug("file " + txpath + " exists for the client " + client);
                         client.deleteFile(txpath);
+                        xares.getStatCache().put(client, txpath, DataStoragePathType.NONE);
                     }
                     DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.DELETE_FILE, path);
                     operations.get(client).add(o);
@@ -372,7 +463,7 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
         for (DataStorageClient client : clients) {
             if (exist.get(client)) {
                 try {
-                    if (client.fileExists(txpath)) {
+                    if (isFile(client, txpath)) {
                         client.getFile(txpath, localPath);
                     } else {
                         client.getFile(path, localPath);
@@ -409,7 +500,7 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
         for (DataStorageClient client : clients) {
             if (exist.get(client)) {
                 try {
-                    if (client.fileExists(txpath)) {
+                    if (isFile(client, txpath)) {
                         return client.getFile(txpath);
                     } else {
                         return client.getFile(path);
@@ -461,7 +552,7 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
             if (exist.get(client)) {
                 String txpath = xares.getTransactionFolderName() + "/" + path;
                 try {
-                    if (client.exists(txpath)) {
+                    if (exists(client, txpath)) {
                         logger.debug("file or directory" + path + " exists in the transaction folder for the client "
                                 + client);
                         file = client.getFileInfo(txpath);
@@ -482,4 +573,35 @@ public abstract class MultiDataStorageManagedConnection extends DataStorageManag
         return null;
     }
 
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Copies are digested by every data storage which holds the file. If there are fewer copies than the redundancy
+     * ratio requires, a missing copy is reported for each of the absent ones - its data storage is not known, since
+     * the copies are placed by the free space left at the time of writing.
+     */
+    @Override
+    List<FileDigest> digestFile(String path, Collection<String> algorithms)
+            throws NoSuchFileException, NotFileException, DataStorageConnectionException {
+        DataStorageLockManager.getInstance().lockToRead(path);
+        List<DataStorageClient> holders = new ArrayList<DataStorageClient>();
+        for (DataStorageClient client : clients) {
+            if (doesFileExist(client, path, operations.get(client))) {
+                holders.add(client);
+            }
+        }
+        if (holders.isEmpty()) {
+            throw new NoSuchFileException("File '" + path + "' does not exist.");
+        }
+        List<FileDigest> digests = new ArrayList<FileDigest>();
+        for (DataStorageClient client : holders) {
+            digests.add(digestCopy(client, path, algorithms));
+        }
+        for (int i = holders.size(); i < Math.min(redundancy, clients.size()); i++) {
+            digests.add(new FileDigest(null, FileDigest.State.MISSING, null));
+        }
+        return digests;
+    }
+
 }
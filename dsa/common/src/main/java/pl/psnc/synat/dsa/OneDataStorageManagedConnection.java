@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.resource.ResourceException;
@@ -110,9 +111,10 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         }
         String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
-            if (client.directoryExists(txpath)) {
+            if (isDirectory(client, txpath)) {
                 logger.debug("directory " + txpath + " exists");
                 client.deleteDirectory(txpath);
+                xares.getStatCache().put(client, txpath, DataStoragePathType.NONE);
             }
             DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.DELETE_DIRECTORY, path);
             operations.add(o);
@@ -194,11 +196,13 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
             client.putFile(txpath, localPath);
+            xares.getStatCache().put(client, txpath, DataStoragePathType.FILE);
             DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.PUT_FILE, path);
             operations.add(o);
             DSA_LOGGER.info("operation added " + o + " in the scope of transaction's folder: "
                     + xares.getTransactionFolderName() + ";client: " + client);
         } catch (IOException e) {
+            xares.getStatCache().invalidate(client, txpath);
             logger.error("There was a problem while putting a file: " + txpath, e);
             if (e instanceof FileNotFoundException) {
                 throw new NoSuchFileException(e);
@@ -219,11 +223,13 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
             client.putFile(txpath, src);
+            xares.getStatCache().put(client, txpath, DataStoragePathType.FILE);
             DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.PUT_FILE, path);
             operations.add(o);
             DSA_LOGGER.info("operation added " + o + " in the scope of transaction's folder: "
                     + xares.getTransactionFolderName() + ";client: " + client);
         } catch (IOException e) {
+            xares.getStatCache().invalidate(client, txpath);
             logger.error("There was a problem while putting a file: " + txpath, e);
             if (e instanceof FileNotFoundException) {
                 throw new NoSuchFileException(e);
@@ -242,9 +248,10 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         }
         String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
-            if (client.fileExists(txpath)) {
+            if (isFile(client, txpath)) {
                 logger.debug("file " + txpath + " exists for the client " + client);
                 client.deleteFile(txpath);
+                xares.getStatCache().put(client, txpath, DataStoragePathType.NONE);
             }
             DataStorageWOOperation o = new DataStorageWOOperation(DataStorageWOOperation.Type.DELETE_FILE, path);
             operations.add(o);
@@ -266,7 +273,7 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         }
         String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
-            if (client.fileExists(txpath)) {
+            if (isFile(client, txpath)) {
                 client.getFile(txpath, localPath);
             } else {
                 client.getFile(path, localPath);
@@ -290,7 +297,7 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         }
         String txpath = xares.getTransactionFolderName() + "/" + path;
         try {
-            if (client.fileExists(txpath)) {
+            if (isFile(client, txpath)) {
                 return client.getFile(txpath);
             } else {
                 return client.getFile(path);
@@ -321,7 +328,7 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         if (doesFileExist(client, path, operations)) {
             String txpath = xares.getTransactionFolderName() + "/" + path;
             try {
-                if (client.exists(txpath)) {
+                if (exists(client, txpath)) {
                     logger.debug("file or directory" + path + " exists in the transaction folder for the client "
                             + client);
                     file = client.getFileInfo(txpath);
@@ -341,4 +348,15 @@ public abstract class OneDataStorageManagedConnection extends DataStorageManaged
         }
     }
 
+
+    @Override
+    List<FileDigest> digestFile(String path, Collection<String> algorithms)
+            throws NoSuchFileException, NotFileException, DataStorageConnectionException {
+        DataStorageLockManager.getInstance().lockToRead(path);
+        if (!doesFileExist(client, path, operations)) {
+            throw new NoSuchFileException("File '" + path + "' does not exist.");
+        }
+        return Collections.singletonList(digestCopy(client, path, algorithms));
+    }
+
 }
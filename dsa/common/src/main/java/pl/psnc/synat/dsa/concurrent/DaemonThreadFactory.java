@@ -0,0 +1,52 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the daemon threads of the pools owned by the resource adapter. The threads are numbered after a common
+ * prefix, so that they can be told apart in thread dumps, and they are daemons, so that a pool which was not shut down
+ * does not keep the JVM from exiting.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    /** Prefix of the thread names. */
+    private final String prefix;
+
+    /** Number of the last created thread. */
+    private final AtomicInteger counter = new AtomicInteger();
+
+
+    /**
+     * Constructor.
+     * 
+     * @param prefix
+     *            prefix of the thread names, followed by a dash and the number of the thread
+     */
+    public DaemonThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import pl.psnc.synat.dsa.DataStorageClient;
+
+/**
+ * Limits the number of files digested at the same time by each data storage. Digesting reads whole files, so many
+ * concurrent integrity checks could saturate the disks of an archive and slow down its regular use. The limit applies
+ * to each data storage separately - a busy archive does not hold back the others.
+ */
+public class DataStorageDigestThrottle {
+
+    /** Number of files that can be digested at the same time by one data storage. */
+    private final int permits;
+
+    /** Semaphores by the descriptions of the data storages. */
+    private final ConcurrentMap<String, Semaphore> semaphores = new ConcurrentHashMap<String, Semaphore>();
+
+
+    /**
+     * Constructor.
+     * 
+     * @param permits
+     *            number of files that can be digested at the same time by one data storage
+     */
+    public DataStorageDigestThrottle(int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("At least one digest must be allowed, got " + permits);
+        }
+        this.permits = permits;
+    }
+
+
+    /**
+     * Waits until the data storage can digest one more file.
+     * 
+     * @param client
+     *            client connected to the data storage
+     * @throws InterruptedIOException
+     *             when the thread is interrupted while waiting
+     */
+    public void acquire(DataStorageClient client)
+            throws InterruptedIOException {
+        try {
+            getSemaphore(client).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to digest a file in " + client);
+        }
+    }
+
+
+    /**
+     * Marks the end of digesting a file acquired with {@link #acquire(DataStorageClient)}.
+     * 
+     * @param client
+     *            client connected to the data storage
+     */
+    public void release(DataStorageClient client) {
+        getSemaphore(client).release();
+    }
+
+
+    /**
+     * Returns the semaphore of the data storage, creating it if necessary.
+     * 
+     * @param client
+     *            client connected to the data storage
+     * @return semaphore
+     */
+    private Semaphore getSemaphore(DataStorageClient client) {
+        String key = client.toString();
+        Semaphore semaphore = semaphores.get(key);
+        if (semaphore == null) {
+            semaphore = new Semaphore(permits, true);
+            Semaphore previous = semaphores.putIfAbsent(key, semaphore);
+            if (previous != null) {
+                semaphore = previous;
+            }
+        }
+        return semaphore;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("DataStorageDigestThrottle ");
+        sb.append("[permits = ").append(permits);
+        sb.append(", dataStorages = ").append(semaphores.keySet());
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
@@ -15,9 +15,11 @@
  */
 package pl.psnc.synat.dsa.concurrent;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -26,45 +28,77 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.dsa.DataStorageClient;
+import pl.psnc.synat.dsa.DataStoragePathType;
 import pl.psnc.synat.dsa.util.FilenameUtils;
 
 /**
  * Manages locks on data storage's resources.
  * 
+ * Locks are kept in a tree of paths. A lock on a path is held in the shared (read) or exclusive (write) mode on the
+ * node of the path and in the intention mode on all its ancestors, so checking for conflicts costs O(path depth).
+ * Trees are striped by the top-level folder (an object's directory) - locks on different objects never contend for the
+ * same monitor. A thread waits only for the node which blocks it and is woken up only when that node is released.
+ * 
+ * Locks are granted in FIFO order within a stripe: a request never overtakes an earlier waiting request it conflicts
+ * with, so a stream of readers cannot starve a writer. As with reentrant acquisitions of a fair read-write lock, a
+ * thread which already holds some lock is exempt, since it could otherwise wait for a request which waits for it.
  */
 public final class DataStorageLockManager {
 
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(DataStorageLockManager.class);
 
+    /**
+     * Number of stripes of the tree of locks.
+     */
+    private static final int STRIPES = 64;
+
     /**
      * The only one instance of data storage lock manager.
      */
-    private static DataStorageLockManager instance;
+    private static final DataStorageLockManager INSTANCE = new DataStorageLockManager();
+
+    /**
+     * Roots of the stripes of the tree of locks. Each one has its own monitor.
+     */
+    private final DataStorageLockNode[] roots;
 
     /**
-     * List of locks hold by transactions.
+     * Waiting requests of each stripe, in the order of their arrival.
      */
-    private List<DataStorageNodeLock> nodeLocks;
+    private final List<List<LockRequest>> queues;
 
     /**
-     * Lock to list of node locks.
+     * Conditions signalled when a request leaves the queue of the stripe.
      */
-    private Lock lock;
+    private final Condition[] dequeued;
 
     /**
-     * Condition which threads are waiting for.
+     * Locks held by the current thread.
      */
-    private Condition freeNodes;
+    private final ThreadLocal<List<DataStorageNodeLock>> nodeLocks;
 
 
     /**
      * Creates data storage lock manager.
      */
     private DataStorageLockManager() {
-        nodeLocks = new LinkedList<DataStorageNodeLock>();
-        lock = new ReentrantLock();
-        freeNodes = lock.newCondition();
+        roots = new DataStorageLockNode[STRIPES];
+        queues = new ArrayList<List<LockRequest>>(STRIPES);
+        dequeued = new Condition[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            Lock stripeLock = new ReentrantLock();
+            roots[i] = new DataStorageLockNode(stripeLock, "", null);
+            queues.add(new LinkedList<LockRequest>());
+            dequeued[i] = stripeLock.newCondition();
+        }
+        nodeLocks = new ThreadLocal<List<DataStorageNodeLock>>() {
+
+            @Override
+            protected List<DataStorageNodeLock> initialValue() {
+                return new ArrayList<DataStorageNodeLock>();
+            }
+        };
     }
 
 
@@ -74,10 +108,7 @@ public final class DataStorageLockManager {
      * @return instance of data storage resource manager
      */
     public static DataStorageLockManager getInstance() {
-        if (instance == null) {
-            instance = new DataStorageLockManager();
-        }
-        return instance;
+        return INSTANCE;
     }
 
 
@@ -88,24 +119,7 @@ public final class DataStorageLockManager {
      *            path of the resource
      */
     public void lockToRead(String path) {
-        lock.lock();
-        try {
-            Thread me = Thread.currentThread();
-            DataStorageNodeLock nodeLock = getExistingNodeLock(me, path);
-            if (nodeLock == null) {
-                nodeLock = new DataStorageNodeLock(me, path, LockMode.TO_READ);
-                nodeLocks.add(nodeLock);
-            }
-            while (!isFreeToRead(nodeLock)) {
-                try {
-                    freeNodes.await();
-                } catch (Exception e) {
-                    logger.info("Exception occurred while waiting for nodes.", e);
-                }
-            }
-        } finally {
-            lock.unlock();
-        }
+        lock(FilenameUtils.splitPath(path), LockMode.TO_READ);
     }
 
 
@@ -116,36 +130,13 @@ public final class DataStorageLockManager {
      *            path of the resource
      */
     public void lockToDelete(String path) {
-        lock.lock();
-        try {
-            Thread me = Thread.currentThread();
-            DataStorageNodeLock nodeLock = getExistingNodeLock(me, path);
-            if (nodeLock == null) {
-                nodeLock = new DataStorageNodeLock(me, path, LockMode.TO_DELETE);
-                nodeLocks.add(nodeLock);
-            } else {
-                if (nodeLock.getMode() == LockMode.TO_READ) {
-                    logger.error("Attempt to lock to delete the " + path + " when there is the read lock on "
-                            + nodeLock.getPath());
-                    throw new IllegalArgumentException("Attempt to lock to delete when there is the read lock");
-                }
-            }
-            while (!isFreeToWrite(nodeLock)) {
-                try {
-                    freeNodes.await();
-                } catch (Exception e) {
-                    logger.info("Exception occurred while waiting for nodes.", e);
-                }
-            }
-        } finally {
-            lock.unlock();
-        }
+        lock(FilenameUtils.splitPath(path), LockMode.TO_DELETE);
     }
 
 
     /**
      * Lock the resource to create a path (file or directory). The method locks the path if at least one of the clients
-     * has to create it.
+     * has to create it. Existence of all the parent folders is checked with one batched call per client.
      * 
      * @param path
      *            path of the resource
@@ -153,84 +144,238 @@ public final class DataStorageLockManager {
      *            clients to data storages.
      */
     public void lockToCreate(String path, List<DataStorageClient> clients) {
-        lock.lock();
+        List<String> parts = FilenameUtils.splitPath(path);
+        List<String> prefixes = new ArrayList<String>();
+        StringBuilder parentPath = new StringBuilder();
+        for (String part : parts) {
+            parentPath.append(part);
+            prefixes.add(parentPath.toString());
+            parentPath.append("/");
+        }
+        int length = parts.size();
+        for (DataStorageClient client : clients) {
+            Map<String, DataStoragePathType> types;
+            try {
+                types = client.statAll(prefixes);
+            } catch (IOException e) {
+                logger.error("checking existence of " + path + " failed for the client " + client, e);
+                length = Math.min(length, 1);
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                if (types.get(prefixes.get(i)) == DataStoragePathType.NONE) {
+                    length = i + 1;
+                    break;
+                }
+            }
+        }
+        lock(parts.subList(0, length), LockMode.TO_CREATE);
+    }
+
+
+    /**
+     * Unlock all resources held by current thread.
+     */
+    public void unlockAll() {
+        List<DataStorageNodeLock> held = nodeLocks.get();
+        for (int i = held.size() - 1; i >= 0; i--) {
+            release(held.get(i));
+        }
+        nodeLocks.remove();
+    }
+
+
+    /**
+     * Locks the path in the specified mode. If the current thread already holds a lock covering the path, no new lock
+     * is taken.
+     * 
+     * @param parts
+     *            subsequent folders of the path
+     * @param mode
+     *            mode of locking
+     */
+    private void lock(List<String> parts, LockMode mode) {
+        Thread me = Thread.currentThread();
+        String path = join(parts);
+        List<DataStorageNodeLock> held = nodeLocks.get();
+        DataStorageNodeLock nodeLock = getExistingNodeLock(held, path);
+        if (nodeLock != null) {
+            if (nodeLock.getMode() == LockMode.TO_READ && mode != LockMode.TO_READ) {
+                logger.error("Attempt to lock " + mode + " the " + path + " when there is the read lock on "
+                        + nodeLock.getPath());
+                throw new IllegalArgumentException("Attempt to lock to write when there is the read lock");
+            }
+            return;
+        }
+        boolean queued = held.isEmpty();
+        if (parts.isEmpty()) {
+            // the whole data storage - stripes are always taken in the same order
+            for (int i = 0; i < STRIPES; i++) {
+                held.add(acquire(i, me, path, parts, mode, queued));
+            }
+        } else {
+            held.add(acquire(getStripe(parts.get(0)), me, path, parts, mode, queued));
+        }
+    }
+
+
+    /**
+     * Acquires a lock in the stripe. Waits until no other thread holds a conflicting lock and no earlier request
+     * conflicting with this one is waiting.
+     * 
+     * @param stripe
+     *            index of the stripe
+     * @param thread
+     *            current thread
+     * @param path
+     *            normalized path
+     * @param parts
+     *            subsequent folders of the path
+     * @param mode
+     *            mode of locking
+     * @param queued
+     *            whether the request waits for its turn or may overtake earlier requests
+     * @return acquired lock
+     */
+    private DataStorageNodeLock acquire(int stripe, Thread thread, String path, List<String> parts, LockMode mode,
+            boolean queued) {
+        DataStorageLockNode root = roots[stripe];
+        Lock stripeLock = root.getStripeLock();
+        stripeLock.lock();
         try {
-            List<String> parts = FilenameUtils.splitPath(path);
-            StringBuilder parentPath = new StringBuilder();
-            search_first_non_existing_path: for (String part : parts) {
-                parentPath.append(part);
-                for (DataStorageClient client : clients) {
-                    if (!client.exists(parentPath.toString())) {
-                        break search_first_non_existing_path;
+            List<LockRequest> queue = queues.get(stripe);
+            LockRequest request = new LockRequest(thread, parts, mode);
+            if (queued) {
+                queue.add(request);
+            }
+            try {
+                while (true) {
+                    DataStorageLockNode blocking = findBlockingNode(root, thread, parts, mode);
+                    if (blocking != null) {
+                        logger.debug("lock " + mode + " on " + path + " is blocked by " + blocking);
+                        blocking.await();
+                    } else if (queued && hasConflictingPredecessor(queue, request)) {
+                        logger.debug("lock " + mode + " on " + path + " is queued");
+                        dequeued[stripe].awaitUninterruptibly();
+                    } else {
+                        break;
                     }
                 }
-                parentPath.append("/");
-            }
-            String pathToLock = parentPath.toString();
-            for (DataStorageNodeLock nodeLock : nodeLocks) {
-                if (nodeLock.getMode() == LockMode.TO_DELETE && nodeLock.contains(pathToLock)) {
-                    pathToLock = nodeLock.getPath();
+            } finally {
+                if (queued) {
+                    queue.remove(request);
+                    dequeued[stripe].signalAll();
                 }
             }
-            Thread me = Thread.currentThread();
-            DataStorageNodeLock nodeLock = getExistingNodeLock(me, pathToLock);
-            if (nodeLock == null) {
-                nodeLock = new DataStorageNodeLock(me, pathToLock, LockMode.TO_CREATE);
-                nodeLocks.add(nodeLock);
-            } else {
-                if (nodeLock.getMode() == LockMode.TO_READ) {
-                    logger.error("Attempt to lock to create " + pathToLock + " when there is the read lock on "
-                            + nodeLock.getPath());
-                    throw new IllegalArgumentException("Attempt to lock to create when there is the read lock");
-                }
+            List<DataStorageLockNode> nodes = new ArrayList<DataStorageLockNode>(parts.size() + 1);
+            DataStorageLockNode node = root;
+            nodes.add(node);
+            for (String part : parts) {
+                node = node.getChild(part, true);
+                nodes.add(node);
             }
-            while (!isFreeToWrite(nodeLock)) {
-                try {
-                    freeNodes.await();
-                } catch (Exception e) {
-                    logger.info("Exception occurred while waiting for nodes.", e);
-                }
+            for (int i = 0; i < nodes.size() - 1; i++) {
+                nodes.get(i).acquire(thread, IntentMode.forAncestors(mode));
             }
+            node.acquire(thread, IntentMode.forTarget(mode));
+            return new DataStorageNodeLock(thread, path, mode, nodes);
         } finally {
-            lock.unlock();
+            stripeLock.unlock();
         }
     }
 
 
     /**
-     * Unlock all resources held by current thread.
+     * Releases the lock and wakes up threads blocked by any of its nodes.
+     * 
+     * @param nodeLock
+     *            lock
      */
-    public void unlockAll() {
-        lock.lock();
+    private void release(DataStorageNodeLock nodeLock) {
+        List<DataStorageLockNode> nodes = nodeLock.getNodes();
+        Lock stripeLock = nodes.get(0).getStripeLock();
+        stripeLock.lock();
         try {
-            Thread me = Thread.currentThread();
-            Iterator<DataStorageNodeLock> it = nodeLocks.iterator();
-            while (it.hasNext()) {
-                DataStorageNodeLock nodeLock = it.next();
-                if (nodeLock.getThread() == me) {
-                    it.remove();
-                }
+            int last = nodes.size() - 1;
+            for (int i = 0; i < last; i++) {
+                nodes.get(i).release(nodeLock.getThread(), IntentMode.forAncestors(nodeLock.getMode()));
             }
-            freeNodes.signalAll();
+            nodes.get(last).release(nodeLock.getThread(), IntentMode.forTarget(nodeLock.getMode()));
+            nodes.get(last).prune();
         } finally {
-            lock.unlock();
+            stripeLock.unlock();
         }
     }
 
 
     /**
-     * Gets existing node lock for thread and path. If there is a node lock above the path, then this node lock covers
-     * this path - it is returned.
+     * Finds the first node on the path which is held by another thread in a mode conflicting with the requested one.
      * 
+     * @param root
+     *            root of the stripe
      * @param thread
-     *            thread
+     *            current thread
+     * @param parts
+     *            subsequent folders of the path
+     * @param mode
+     *            mode of locking
+     * @return blocking node or null if the lock can be granted
+     */
+    private DataStorageLockNode findBlockingNode(DataStorageLockNode root, Thread thread, List<String> parts,
+            LockMode mode) {
+        DataStorageLockNode node = root;
+        for (int i = 0; i <= parts.size(); i++) {
+            IntentMode requested = i == parts.size() ? IntentMode.forTarget(mode) : IntentMode.forAncestors(mode);
+            if (!node.isGrantable(thread, requested)) {
+                return node;
+            }
+            if (i < parts.size()) {
+                node = node.getChild(parts.get(i), false);
+                if (node == null) {
+                    // nobody holds anything below
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Checks whether some request which is earlier in the queue conflicts with the given one.
+     * 
+     * @param queue
+     *            queue of the stripe
+     * @param request
+     *            queued request
+     * @return whether the request has to wait for its turn
+     */
+    private boolean hasConflictingPredecessor(List<LockRequest> queue, LockRequest request) {
+        for (LockRequest predecessor : queue) {
+            if (predecessor == request) {
+                return false;
+            }
+            if (predecessor.conflictsWith(request)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Gets existing node lock of the current thread which covers the path, i.e. the lock of this path or of some folder
+     * above it.
+     * 
+     * @param held
+     *            locks held by the current thread
      * @param path
-     *            path
+     *            normalized path
      * @return node lock or null if it does not exist
      */
-    private DataStorageNodeLock getExistingNodeLock(Thread thread, String path) {
-        for (DataStorageNodeLock nodeLock : nodeLocks) {
-            if (nodeLock.getThread() == thread && nodeLock.contains(path)) {
+    private DataStorageNodeLock getExistingNodeLock(List<DataStorageNodeLock> held, String path) {
+        for (DataStorageNodeLock nodeLock : held) {
+            if (nodeLock.contains(path)) {
                 return nodeLock;
             }
         }
@@ -239,58 +384,103 @@ public final class DataStorageLockManager {
 
 
     /**
-     * Checks if node is free to read. There are no writers above the node.
+     * Returns the index of the stripe for the top-level folder.
      * 
-     * @param node
-     *            node
-     * @return whether is it free to read
+     * @param folder
+     *            top-level folder
+     * @return index of the stripe
      */
-    private boolean isFreeToRead(DataStorageNodeLock node) {
-        for (DataStorageNodeLock nodeLock : nodeLocks) {
-            if (nodeLock == node) {
-                // there was no writer before - node is free to read
-                return true;
-            } else {
-                if (nodeLock.getThread() != node.getThread() && nodeLock.getMode() != LockMode.TO_READ) {
-                    if (node.contains(nodeLock.getPath())) {
-                        return false;
-                    }
-                    if (nodeLock.contains(node.getPath())) {
-                        return false;
-                    }
-                }
+    private static int getStripe(String folder) {
+        return (folder.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+
+    /**
+     * Joins parts of a path into the normalized path.
+     * 
+     * @param parts
+     *            subsequent folders of the path
+     * @return path without leading and trailing slashes
+     */
+    private static String join(List<String> parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (sb.length() > 0) {
+                sb.append('/');
             }
+            sb.append(part);
         }
-        logger.error("Node " + node + " is not on the list of nodes");
-        throw new IllegalArgumentException("Node is not on the list of nodes");
+        return sb.toString();
     }
 
 
     /**
-     * Checks if node is free to write. There is no readers and writes above and under the node.
-     * 
-     * @param node
-     *            node
-     * @return whether is it free to write
+     * Request for a lock waiting in the queue of a stripe.
      */
-    private boolean isFreeToWrite(DataStorageNodeLock node) {
-        for (DataStorageNodeLock nodeLock : nodeLocks) {
-            if (nodeLock == node) {
-                // there was no other locks before - node is free to write
-                return true;
-            } else {
-                if (nodeLock.getThread() != node.getThread()) {
-                    if (node.contains(nodeLock.getPath())) {
-                        return false;
-                    }
-                    if (nodeLock.contains(node.getPath())) {
-                        return false;
-                    }
+    private static final class LockRequest {
+
+        /** Requesting thread. */
+        private final Thread thread;
+
+        /** Subsequent folders of the path. */
+        private final List<String> parts;
+
+        /** Mode of locking. */
+        private final LockMode mode;
+
+
+        /**
+         * Creates a request.
+         * 
+         * @param thread
+         *            requesting thread
+         * @param parts
+         *            subsequent folders of the path
+         * @param mode
+         *            mode of locking
+         */
+        LockRequest(Thread thread, List<String> parts, LockMode mode) {
+            this.thread = thread;
+            this.parts = parts;
+            this.mode = mode;
+        }
+
+
+        /**
+         * Checks whether this request and the other one could not be held at the same time, i.e. on some node of
+         * their common path they need incompatible modes.
+         * 
+         * @param other
+         *            other request
+         * @return whether the requests conflict
+         */
+        boolean conflictsWith(LockRequest other) {
+            if (thread == other.thread) {
+                return false;
+            }
+            int common = Math.min(parts.size(), other.parts.size());
+            for (int i = 0; i <= common; i++) {
+                if (i > 0 && !parts.get(i - 1).equals(other.parts.get(i - 1))) {
+                    return false;
+                }
+                if (!getMode(i).isCompatibleWith(other.getMode(i))) {
+                    return true;
                 }
             }
+            return false;
+        }
+
+
+        /**
+         * Returns the mode needed on the node at the given depth of the path.
+         * 
+         * @param depth
+         *            depth of the node, 0 for the root of the stripe
+         * @return mode needed on the node
+         */
+        private IntentMode getMode(int depth) {
+            return depth == parts.size() ? IntentMode.forTarget(mode) : IntentMode.forAncestors(mode);
         }
-        logger.error("Node " + node + " is not on the list of nodes");
-        throw new IllegalArgumentException("Node is not on the list of nodes");
     }
 
 }
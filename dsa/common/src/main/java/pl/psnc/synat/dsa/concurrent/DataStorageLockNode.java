@@ -0,0 +1,217 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Node of the tree of locks - it corresponds to one folder or file of a data storage. It holds counters of the modes
+ * held by each thread and the queue of threads blocked by this node. All the methods must be called while holding the
+ * lock of the stripe the node belongs to.
+ * 
+ */
+final class DataStorageLockNode {
+
+    /**
+     * Lock of the stripe the node belongs to.
+     */
+    private final Lock stripeLock;
+
+    /**
+     * Name of the node (last part of the path).
+     */
+    private final String name;
+
+    /**
+     * Parent node or null for the root of a stripe.
+     */
+    private final DataStorageLockNode parent;
+
+    /**
+     * Children which are held or waited for.
+     */
+    private final Map<String, DataStorageLockNode> children;
+
+    /**
+     * Number of locks held by each thread in each of the modes (indexed by the ordinal of the mode).
+     */
+    private final Map<Thread, int[]> holders;
+
+    /**
+     * Condition which threads blocked by this node are waiting for.
+     */
+    private final Condition released;
+
+    /**
+     * Number of threads waiting for this node.
+     */
+    private int waiters;
+
+
+    /**
+     * Creates a new node.
+     * 
+     * @param stripeLock
+     *            lock of the stripe
+     * @param name
+     *            name of the node
+     * @param parent
+     *            parent node or null for the root of a stripe
+     */
+    DataStorageLockNode(Lock stripeLock, String name, DataStorageLockNode parent) {
+        this.stripeLock = stripeLock;
+        this.name = name;
+        this.parent = parent;
+        this.children = new HashMap<String, DataStorageLockNode>();
+        this.holders = new HashMap<Thread, int[]>();
+        this.released = stripeLock.newCondition();
+    }
+
+
+    Lock getStripeLock() {
+        return stripeLock;
+    }
+
+
+    /**
+     * Returns the child node with the specified name.
+     * 
+     * @param childName
+     *            name of the child
+     * @param create
+     *            whether to create the child if it does not exist
+     * @return child node or null if it does not exist and should not be created
+     */
+    DataStorageLockNode getChild(String childName, boolean create) {
+        DataStorageLockNode child = children.get(childName);
+        if (child == null && create) {
+            child = new DataStorageLockNode(stripeLock, childName, this);
+            children.put(childName, child);
+        }
+        return child;
+    }
+
+
+    /**
+     * Checks whether the specified thread can hold this node in the specified mode, i.e. all the modes held by other
+     * threads are compatible with it.
+     * 
+     * @param thread
+     *            thread
+     * @param mode
+     *            requested mode
+     * @return whether the mode can be granted
+     */
+    boolean isGrantable(Thread thread, IntentMode mode) {
+        for (Map.Entry<Thread, int[]> holder : holders.entrySet()) {
+            if (holder.getKey() != thread) {
+                int[] counts = holder.getValue();
+                for (IntentMode held : IntentMode.values()) {
+                    if (counts[held.ordinal()] > 0 && !held.isCompatibleWith(mode)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Registers that the specified thread holds this node in the specified mode.
+     * 
+     * @param thread
+     *            thread
+     * @param mode
+     *            mode
+     */
+    void acquire(Thread thread, IntentMode mode) {
+        int[] counts = holders.get(thread);
+        if (counts == null) {
+            counts = new int[IntentMode.values().length];
+            holders.put(thread, counts);
+        }
+        counts[mode.ordinal()]++;
+    }
+
+
+    /**
+     * Unregisters that the specified thread holds this node in the specified mode and wakes up the threads blocked by
+     * this node.
+     * 
+     * @param thread
+     *            thread
+     * @param mode
+     *            mode
+     */
+    void release(Thread thread, IntentMode mode) {
+        int[] counts = holders.get(thread);
+        if (counts == null || counts[mode.ordinal()] == 0) {
+            throw new IllegalStateException("Node " + this + " is not held by " + thread + " in mode " + mode);
+        }
+        counts[mode.ordinal()]--;
+        boolean empty = true;
+        for (int count : counts) {
+            empty &= count == 0;
+        }
+        if (empty) {
+            holders.remove(thread);
+        }
+        if (waiters > 0) {
+            released.signalAll();
+        }
+    }
+
+
+    /**
+     * Waits until some thread releases this node.
+     */
+    void await() {
+        waiters++;
+        try {
+            released.awaitUninterruptibly();
+        } finally {
+            waiters--;
+        }
+    }
+
+
+    /**
+     * Removes this node and its unused ancestors from the tree if nobody holds or waits for them.
+     */
+    void prune() {
+        DataStorageLockNode node = this;
+        while (node.parent != null && node.holders.isEmpty() && node.waiters == 0 && node.children.isEmpty()) {
+            node.parent.children.remove(node.name);
+            node = node.parent;
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("DataStorageLockNode ");
+        sb.append("[name = ").append(name);
+        sb.append(", holders = ").append(holders.size());
+        sb.append(", waiters = ").append(waiters);
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
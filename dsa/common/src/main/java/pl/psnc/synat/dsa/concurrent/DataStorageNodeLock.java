@@ -15,8 +15,10 @@
  */
 package pl.psnc.synat.dsa.concurrent;
 
+import java.util.List;
+
 /**
- * Lock for data storage node (folder).
+ * Lock for data storage node (folder) held by a thread. It remembers the nodes of the tree of locks it occupies.
  * 
  */
 public class DataStorageNodeLock {
@@ -36,6 +38,11 @@ public class DataStorageNodeLock {
      */
     private final LockMode mode;
 
+    /**
+     * Nodes of the tree of locks occupied by this lock - from the root of the stripe to the node of the path.
+     */
+    private final List<DataStorageLockNode> nodes;
+
 
     /**
      * Constructs new lock.
@@ -46,11 +53,14 @@ public class DataStorageNodeLock {
      *            node path
      * @param mode
      *            mode of locking
+     * @param nodes
+     *            nodes of the tree of locks occupied by this lock
      */
-    DataStorageNodeLock(Thread thread, String path, LockMode mode) {
+    DataStorageNodeLock(Thread thread, String path, LockMode mode, List<DataStorageLockNode> nodes) {
         this.thread = thread;
         this.path = path;
         this.mode = mode;
+        this.nodes = nodes;
     }
 
 
@@ -69,18 +79,24 @@ public class DataStorageNodeLock {
     }
 
 
+    List<DataStorageLockNode> getNodes() {
+        return nodes;
+    }
+
+
     /**
-     * Checks if path is contained in subtree determined by node path of this lock.
+     * Checks if path is contained in subtree determined by node path of this lock. Both paths must be normalized, i.e.
+     * without leading and trailing slashes.
      * 
      * @param path
      *            path to the node to check
      * @return if it is contained
      */
     public boolean contains(String path) {
-        if (path.startsWith(this.path)) {
+        if (this.path.length() == 0 || path.equals(this.path)) {
             return true;
         }
-        return false;
+        return path.startsWith(this.path) && path.charAt(this.path.length()) == '/';
     }
 
 
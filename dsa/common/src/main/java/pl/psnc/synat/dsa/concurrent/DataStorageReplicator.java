@@ -0,0 +1,325 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkException;
+import javax.resource.spi.work.WorkManager;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.dsa.DataStorageClient;
+
+/**
+ * Writes the same file to many data storages at the same time. Each client is served by a separate work of the
+ * application server's work manager, so the time of a replicated write is determined by the slowest replica instead of
+ * the sum of all of them. An input stream is read only once and teed into the per-client pipes.
+ * 
+ * The replicator does not touch any transaction bookkeeping - it only reports which clients failed, so the caller can
+ * register write operations in its own thread. It holds no threads of its own, so one replicator can be shared by all
+ * the managed connections of a factory.
+ */
+public class DataStorageReplicator {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(DataStorageReplicator.class);
+
+    /** Size of the buffer used while reading the source stream and of each per-client pipe. */
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    /** Time (in milliseconds) to wait for the work manager to start a replica write. */
+    private static final long START_TIMEOUT = 60000;
+
+    /** Work manager of the resource adapter which runs the replica writes. */
+    private final WorkManager workManager;
+
+
+    /**
+     * Creates a replicator.
+     * 
+     * @param workManager
+     *            work manager of the resource adapter
+     */
+    public DataStorageReplicator(WorkManager workManager) {
+        this.workManager = workManager;
+    }
+
+
+    /**
+     * Puts a file from a local file system to all the specified clients in parallel.
+     * 
+     * @param clients
+     *            clients to which the file is written
+     * @param path
+     *            path of the destination file
+     * @param localPath
+     *            path of the source file
+     * @return errors which occurred, keyed by the client - empty if all replicas were written
+     */
+    public Map<DataStorageClient, IOException> putFile(List<DataStorageClient> clients, final String path,
+            final String localPath) {
+        Map<DataStorageClient, ReplicaWork> works = new LinkedHashMap<DataStorageClient, ReplicaWork>();
+        for (final DataStorageClient client : clients) {
+            ReplicaWork work = new ReplicaWork() {
+
+                @Override
+                protected void write()
+                        throws IOException {
+                    client.putFile(path, localPath);
+                }
+            };
+            start(work, path, client);
+            works.put(client, work);
+        }
+        return collect(works);
+    }
+
+
+    /**
+     * Puts a file read from the input stream to all the specified clients in parallel. The stream is read only once.
+     * If it cannot be read to the end, none of the replicas is considered written.
+     * 
+     * @param clients
+     *            clients to which the file is written
+     * @param path
+     *            path of the destination file
+     * @param src
+     *            input stream of the source file
+     * @return errors which occurred, keyed by the client - empty if all replicas were written
+     */
+    public Map<DataStorageClient, IOException> putFile(List<DataStorageClient> clients, final String path,
+            InputStream src) {
+        Map<DataStorageClient, ReplicaWork> works = new LinkedHashMap<DataStorageClient, ReplicaWork>();
+        PipedOutputStream[] pipes = new PipedOutputStream[clients.size()];
+        int open = 0;
+        try {
+            for (int i = 0; i < clients.size(); i++) {
+                final DataStorageClient client = clients.get(i);
+                final PipedInputStream pipe = new PipedInputStream(BUFFER_SIZE);
+                pipes[i] = new PipedOutputStream(pipe);
+                ReplicaWork work = new ReplicaWork() {
+
+                    @Override
+                    protected void write()
+                            throws IOException {
+                        try {
+                            client.putFile(path, pipe);
+                        } finally {
+                            // makes the writing side fail fast instead of waiting for space in the pipe
+                            IOUtils.closeQuietly(pipe);
+                        }
+                    }
+                };
+                works.put(client, work);
+                // the work is running once it is started, so teeing cannot block on a pipe nobody reads
+                if (start(work, path, client)) {
+                    open++;
+                } else {
+                    IOUtils.closeQuietly(pipes[i]);
+                    pipes[i] = null;
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Pipes for replicas of " + path + " could not be created.", e);
+            closeAll(pipes);
+            Map<DataStorageClient, IOException> errors = collect(works);
+            for (DataStorageClient client : clients) {
+                errors.put(client, e);
+            }
+            return errors;
+        }
+
+        IOException readError = null;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            int n;
+            while (open > 0 && (n = src.read(buffer)) != -1) {
+                for (int i = 0; i < pipes.length; i++) {
+                    if (pipes[i] != null) {
+                        try {
+                            pipes[i].write(buffer, 0, n);
+                        } catch (IOException e) {
+                            // the work has already finished - its own exception is reported
+                            logger.debug("replica of " + path + " for the client " + clients.get(i)
+                                    + " stopped accepting data", e);
+                            IOUtils.closeQuietly(pipes[i]);
+                            pipes[i] = null;
+                            open--;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("There was a problem while reading the source of " + path, e);
+            readError = e;
+        } finally {
+            closeAll(pipes);
+        }
+
+        Map<DataStorageClient, IOException> errors = collect(works);
+        if (readError != null) {
+            // replicas got a premature end of stream, so none of them is complete
+            for (DataStorageClient client : clients) {
+                errors.put(client, readError);
+            }
+        }
+        return errors;
+    }
+
+
+    /**
+     * Starts the replica write and waits until it is running. A write rejected by the work manager is finished at once
+     * with an error.
+     * 
+     * @param work
+     *            replica write
+     * @param path
+     *            path of the destination file
+     * @param client
+     *            client to which the replica is written
+     * @return whether the write was started
+     */
+    private boolean start(ReplicaWork work, String path, DataStorageClient client) {
+        try {
+            workManager.startWork(work, START_TIMEOUT, null, null);
+            return true;
+        } catch (WorkException e) {
+            logger.error("Replica of " + path + " for the client " + client + " could not be started.", e);
+            work.reject(e);
+            return false;
+        }
+    }
+
+
+    /**
+     * Waits for all the replica writes and collects their errors.
+     * 
+     * @param works
+     *            replica writes
+     * @return errors keyed by the client
+     */
+    private Map<DataStorageClient, IOException> collect(Map<DataStorageClient, ReplicaWork> works) {
+        Map<DataStorageClient, IOException> errors = new LinkedHashMap<DataStorageClient, IOException>();
+        boolean interrupted = false;
+        for (Map.Entry<DataStorageClient, ReplicaWork> entry : works.entrySet()) {
+            while (true) {
+                try {
+                    entry.getValue().done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (entry.getValue().error != null) {
+                errors.put(entry.getKey(), entry.getValue().error);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return errors;
+    }
+
+
+    /**
+     * Closes all the pipes that are still open.
+     * 
+     * @param pipes
+     *            pipes
+     */
+    private void closeAll(PipedOutputStream[] pipes) {
+        for (int i = 0; i < pipes.length; i++) {
+            IOUtils.closeQuietly(pipes[i]);
+            pipes[i] = null;
+        }
+    }
+
+
+    /**
+     * Write of one replica run by the work manager. It records its error and signals its end, so the caller can wait
+     * for all the replicas.
+     */
+    private abstract static class ReplicaWork implements Work {
+
+        /** Released when the write has ended, successfully or not. */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /** Error of the write, null if the replica was written. */
+        private volatile IOException error;
+
+        /** Thread running the write, null if it is not running. */
+        private volatile Thread worker;
+
+
+        @Override
+        public void run() {
+            worker = Thread.currentThread();
+            try {
+                write();
+            } catch (IOException e) {
+                error = e;
+            } catch (Throwable t) {
+                error = new IOException(t);
+            } finally {
+                worker = null;
+                done.countDown();
+            }
+        }
+
+
+        @Override
+        public void release() {
+            Thread thread = worker;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+
+        /**
+         * Ends the write which the work manager refused to run.
+         * 
+         * @param cause
+         *            reason of the refusal
+         */
+        void reject(WorkException cause) {
+            error = new IOException("Replica write was not started by the work manager.", cause);
+            done.countDown();
+        }
+
+
+        /**
+         * Writes the replica.
+         * 
+         * @throws IOException
+         *             if the replica cannot be written
+         */
+        protected abstract void write()
+                throws IOException;
+    }
+
+}
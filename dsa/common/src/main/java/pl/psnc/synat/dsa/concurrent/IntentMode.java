@@ -0,0 +1,87 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+/**
+ * Modes in which a node of the tree of locks can be held. A lock on a path is held in the shared or exclusive mode on
+ * the last node of the path and in the corresponding intention mode on all its ancestors.
+ * 
+ */
+enum IntentMode {
+
+    /**
+     * Intention shared - some descendant is locked to read.
+     */
+    IS,
+
+    /**
+     * Intention exclusive - some descendant is locked to write.
+     */
+    IX,
+
+    /**
+     * Shared - the node (with its subtree) is locked to read.
+     */
+    S,
+
+    /**
+     * Exclusive - the node (with its subtree) is locked to write.
+     */
+    X;
+
+    /**
+     * Compatibility matrix indexed by the ordinals of modes.
+     */
+    private static final boolean[][] COMPATIBLE = { { true, true, true, false }, { true, true, false, false },
+            { true, false, true, false }, { false, false, false, false } };
+
+
+    /**
+     * Checks whether this mode held by one thread allows another thread to hold the specified mode on the same node.
+     * 
+     * @param other
+     *            mode requested by another thread
+     * @return whether modes are compatible
+     */
+    boolean isCompatibleWith(IntentMode other) {
+        return COMPATIBLE[ordinal()][other.ordinal()];
+    }
+
+
+    /**
+     * Returns the mode in which the last node of a path is held for the specified lock mode.
+     * 
+     * @param mode
+     *            lock mode
+     * @return S or X
+     */
+    static IntentMode forTarget(LockMode mode) {
+        return mode == LockMode.TO_READ ? S : X;
+    }
+
+
+    /**
+     * Returns the mode in which ancestors of the last node of a path are held for the specified lock mode.
+     * 
+     * @param mode
+     *            lock mode
+     * @return IS or IX
+     */
+    static IntentMode forAncestors(LockMode mode) {
+        return mode == LockMode.TO_READ ? IS : IX;
+    }
+
+}
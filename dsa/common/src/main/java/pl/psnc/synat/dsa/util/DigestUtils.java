@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Provides static utility methods calculating digests of files. The data is read once and every requested digest is
+ * updated with the same block.
+ *
+ */
+public final class DigestUtils {
+
+    /** Size of the block read at once. */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+
+    /**
+     * Private constructor.
+     */
+    private DigestUtils() {
+    }
+
+
+    /**
+     * Calculates digests of the data read from the stream. The stream is not closed.
+     *
+     * @param stream
+     *            data
+     * @param algorithms
+     *            names of the digest algorithms
+     * @return digests by the names of the algorithms
+     * @throws IOException
+     *             when the stream cannot be read
+     */
+    public static Map<String, byte[]> digest(InputStream stream, Collection<String> algorithms)
+            throws IOException {
+        Map<String, MessageDigest> digests = createDigests(algorithms);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = stream.read(buffer)) != -1) {
+            for (MessageDigest digest : digests.values()) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return finish(digests);
+    }
+
+
+    /**
+     * Calculates digests of the whole content of the channel, read from its beginning. The position of the channel is
+     * not changed.
+     *
+     * @param channel
+     *            channel of a file
+     * @param algorithms
+     *            names of the digest algorithms
+     * @return digests by the names of the algorithms
+     * @throws IOException
+     *             when the channel cannot be read
+     */
+    public static Map<String, byte[]> digest(FileChannel channel, Collection<String> algorithms)
+            throws IOException {
+        Map<String, MessageDigest> digests = createDigests(algorithms);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long position = 0;
+        int n;
+        while ((n = channel.read(buffer, position)) != -1) {
+            for (MessageDigest digest : digests.values()) {
+                digest.update(buffer.array(), 0, n);
+            }
+            position += n;
+            buffer.clear();
+        }
+        return finish(digests);
+    }
+
+
+    /**
+     * Creates digests of the given algorithms.
+     *
+     * @param algorithms
+     *            names of the digest algorithms
+     * @return digests by the names of the algorithms
+     * @throws IllegalArgumentException
+     *             when some algorithm is not supported
+     */
+    private static Map<String, MessageDigest> createDigests(Collection<String> algorithms) {
+        Map<String, MessageDigest> digests = new LinkedHashMap<String, MessageDigest>();
+        for (String algorithm : algorithms) {
+            try {
+                digests.put(algorithm, MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Digest algorithm " + algorithm + " is not supported", e);
+            }
+        }
+        return digests;
+    }
+
+
+    /**
+     * Completes the digests.
+     *
+     * @param digests
+     *            digests by the names of the algorithms
+     * @return digest values by the names of the algorithms
+     */
+    private static Map<String, byte[]> finish(Map<String, MessageDigest> digests) {
+        Map<String, byte[]> values = new HashMap<String, byte[]>();
+        for (Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().digest());
+        }
+        return values;
+    }
+
+}
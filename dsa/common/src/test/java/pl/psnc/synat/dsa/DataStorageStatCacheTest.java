@@ -0,0 +1,236 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link DataStorageStatCache}: which paths are fetched and which entries are dropped when the transaction
+ * changes the data storage.
+ */
+public class DataStorageStatCacheTest {
+
+    /** Types of paths in the data storage. */
+    private Map<String, DataStoragePathType> storage;
+
+    /** Paths passed to each call of {@link DataStorageClient#statAll(Collection)}. */
+    private List<List<String>> calls;
+
+    /** Client reading {@link #storage}. */
+    private DataStorageClient client;
+
+    /** Cache to test. */
+    private DataStorageStatCache cache;
+
+
+    @Before
+    public void setUp() {
+        storage = new HashMap<String, DataStoragePathType>();
+        storage.put("object", DataStoragePathType.DIRECTORY);
+        storage.put("object/content", DataStoragePathType.DIRECTORY);
+        storage.put("object/content/file", DataStoragePathType.FILE);
+        storage.put("object/contents", DataStoragePathType.FILE);
+        calls = new ArrayList<List<String>>();
+        client = createClient();
+        cache = new DataStorageStatCache();
+    }
+
+
+    /**
+     * Only the paths which are not cached yet are fetched, all of them with one call.
+     */
+    @Test
+    public void shouldFetchOnlyMissingPathsInOneCall()
+            throws Exception {
+        cache.prefetch(client, Arrays.asList("object", "object/content", "object"));
+        cache.prefetch(client, Arrays.asList("object", "object/content/file", "object/missing"));
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList("object", "object/content"),
+            Arrays.asList("object/content/file", "object/missing")), calls);
+        Assert.assertEquals(DataStoragePathType.FILE, cache.stat(client, "object/content/file"));
+        Assert.assertEquals(DataStoragePathType.NONE, cache.stat(client, "object/missing"));
+        Assert.assertEquals(2, calls.size());
+    }
+
+
+    /**
+     * Cached types are returned without calling the client, even if the data storage has changed.
+     */
+    @Test
+    public void shouldServeCachedTypes()
+            throws Exception {
+        Assert.assertEquals(DataStoragePathType.DIRECTORY, cache.stat(client, "object"));
+        storage.remove("object");
+        Assert.assertEquals(DataStoragePathType.DIRECTORY, cache.stat(client, "object"));
+        Assert.assertEquals(1, calls.size());
+    }
+
+
+    /**
+     * Creating a file records its type, other entries stay.
+     */
+    @Test
+    public void shouldRecordWrittenFile()
+            throws Exception {
+        cache.prefetch(client, Arrays.asList("object", "object/new"));
+        storage.put("object/new", DataStoragePathType.FILE);
+        cache.put(client, "object/new", DataStoragePathType.FILE);
+
+        Assert.assertEquals(DataStoragePathType.FILE, cache.stat(client, "object/new"));
+        Assert.assertEquals(DataStoragePathType.DIRECTORY, cache.stat(client, "object"));
+        Assert.assertEquals(1, calls.size());
+    }
+
+
+    /**
+     * Deleting a directory drops the entries of its whole content, but not of the paths sharing its name as a prefix.
+     */
+    @Test
+    public void shouldDropContentOfDeletedDirectory()
+            throws Exception {
+        cache.prefetch(client,
+            Arrays.asList("object/content", "object/content/file", "object/contents", "object"));
+        storage.remove("object/content");
+        storage.remove("object/content/file");
+        cache.put(client, "object/content", DataStoragePathType.NONE);
+        calls.clear();
+
+        Assert.assertEquals(DataStoragePathType.NONE, cache.stat(client, "object/content"));
+        Assert.assertEquals(DataStoragePathType.FILE, cache.stat(client, "object/contents"));
+        Assert.assertEquals(DataStoragePathType.DIRECTORY, cache.stat(client, "object"));
+        Assert.assertTrue(calls.isEmpty());
+
+        Assert.assertEquals(DataStoragePathType.NONE, cache.stat(client, "object/content/file"));
+        Assert.assertEquals(Arrays.asList(Arrays.asList("object/content/file")), calls);
+    }
+
+
+    /**
+     * Replacing a directory by a file drops the entries of the former content of the directory.
+     */
+    @Test
+    public void shouldDropContentOfDirectoryReplacedByFile()
+            throws Exception {
+        cache.prefetch(client, Arrays.asList("object/content", "object/content/file"));
+        storage.remove("object/content/file");
+        storage.put("object/content", DataStoragePathType.FILE);
+        cache.put(client, "object/content", DataStoragePathType.FILE);
+        calls.clear();
+
+        Assert.assertEquals(DataStoragePathType.FILE, cache.stat(client, "object/content"));
+        Assert.assertEquals(DataStoragePathType.NONE, cache.stat(client, "object/content/file"));
+        Assert.assertEquals(1, calls.size());
+    }
+
+
+    /**
+     * Creating a directory keeps the entries below it - it can be recorded after its content was already examined.
+     */
+    @Test
+    public void shouldKeepContentOfCreatedDirectory()
+            throws Exception {
+        cache.prefetch(client, Arrays.asList("object/content", "object/content/file"));
+        cache.put(client, "object/content", DataStoragePathType.DIRECTORY);
+        calls.clear();
+
+        Assert.assertEquals(DataStoragePathType.FILE, cache.stat(client, "object/content/file"));
+        Assert.assertTrue(calls.isEmpty());
+    }
+
+
+    /**
+     * A path whose state is unknown after a failed write is fetched again, together with everything below it.
+     */
+    @Test
+    public void shouldRefetchInvalidatedPaths()
+            throws Exception {
+        cache.prefetch(client, Arrays.asList("object/content", "object/content/file", "object/contents"));
+        storage.remove("object/content/file");
+        cache.invalidate(client, "object/content");
+        calls.clear();
+
+        Assert.assertEquals(DataStoragePathType.DIRECTORY, cache.stat(client, "object/content"));
+        Assert.assertEquals(DataStoragePathType.NONE, cache.stat(client, "object/content/file"));
+        Assert.assertEquals(DataStoragePathType.FILE, cache.stat(client, "object/contents"));
+        Assert.assertEquals(2, calls.size());
+    }
+
+
+    /**
+     * Entries of different clients are independent and all of them are forgotten when the transaction ends.
+     */
+    @Test
+    public void shouldSeparateClientsAndForgetEverythingOnClear()
+            throws Exception {
+        DataStorageClient other = createClient();
+        cache.stat(client, "object");
+        cache.put(other, "object", DataStoragePathType.NONE);
+        Assert.assertEquals(DataStoragePathType.DIRECTORY, cache.stat(client, "object"));
+        Assert.assertEquals(DataStoragePathType.NONE, cache.stat(other, "object"));
+        Assert.assertEquals(1, calls.size());
+
+        cache.clear();
+        Assert.assertEquals(DataStoragePathType.DIRECTORY, cache.stat(other, "object"));
+        Assert.assertEquals(2, calls.size());
+    }
+
+
+    /**
+     * Creates a client which answers {@link DataStorageClient#statAll(Collection)} from {@link #storage}.
+     * 
+     * @return client
+     */
+    private DataStorageClient createClient() {
+        return (DataStorageClient) Proxy.newProxyInstance(DataStorageClient.class.getClassLoader(),
+            new Class<?>[] { DataStorageClient.class }, new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    if (method.getName().equals("statAll")) {
+                        @SuppressWarnings("unchecked")
+                        List<String> paths = new ArrayList<String>((Collection<String>) args[0]);
+                        calls.add(paths);
+                        Map<String, DataStoragePathType> types = new HashMap<String, DataStoragePathType>();
+                        for (String path : paths) {
+                            DataStoragePathType type = storage.get(path);
+                            types.put(path, type != null ? type : DataStoragePathType.NONE);
+                        }
+                        return types;
+                    }
+                    if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+}
@@ -0,0 +1,332 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.psnc.synat.dsa.DataStorageClient;
+
+/**
+ * Tests the granting of locks by {@link DataStorageLockManager}. Each test works on its own top-level folder, since
+ * the manager is shared.
+ */
+public class DataStorageLockManagerTest {
+
+    /** Time (in milliseconds) after which a thread which should make progress is considered stuck. */
+    private static final long TIMEOUT = 5000;
+
+    /** Lock manager. */
+    private DataStorageLockManager lockManager;
+
+    /** Threads started by the test. */
+    private List<Holder> holders;
+
+    /** Names of the holders in the order in which they were granted their locks. */
+    private List<String> granted;
+
+
+    @Before
+    public void setUp() {
+        lockManager = DataStorageLockManager.getInstance();
+        holders = new ArrayList<Holder>();
+        granted = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+
+    @After
+    public void tearDown()
+            throws InterruptedException {
+        for (Holder holder : holders) {
+            holder.release();
+        }
+        lockManager.unlockAll();
+    }
+
+
+    /**
+     * Readers of a folder and of its descendants do not block each other.
+     */
+    @Test
+    public void shouldGrantReadsOfAncestorAndDescendant()
+            throws Exception {
+        hold("descendant", LockMode.TO_READ, "readers/folder/file").awaitGranted();
+        hold("ancestor", LockMode.TO_READ, "readers").awaitGranted();
+        hold("sibling", LockMode.TO_READ, "readers/folder").awaitGranted();
+    }
+
+
+    /**
+     * Writing a descendant blocks reading its ancestor until the writer is done, and the other way round.
+     */
+    @Test
+    public void shouldBlockAncestorOfWrittenPath()
+            throws Exception {
+        Holder writer = hold("writer", LockMode.TO_DELETE, "descendant/folder/file");
+        writer.awaitGranted();
+        Holder reader = hold("reader", LockMode.TO_READ, "descendant/folder");
+        reader.awaitBlocked();
+
+        writer.release();
+        reader.awaitGranted();
+        Holder secondWriter = hold("second writer", LockMode.TO_CREATE, "descendant/folder/file");
+        secondWriter.awaitBlocked();
+
+        reader.release();
+        secondWriter.awaitGranted();
+    }
+
+
+    /**
+     * Writing a folder blocks every access to its subtree, but not to the paths beside it.
+     */
+    @Test
+    public void shouldBlockDescendantsOfWrittenPath()
+            throws Exception {
+        hold("writer", LockMode.TO_DELETE, "ancestor/folder").awaitGranted();
+        hold("reader", LockMode.TO_READ, "ancestor/folder/file").awaitBlocked();
+        hold("other writer", LockMode.TO_DELETE, "ancestor/folder/other").awaitBlocked();
+        hold("neighbour", LockMode.TO_DELETE, "ancestor/neighbour").awaitGranted();
+        hold("prefix", LockMode.TO_DELETE, "ancestor/folder2").awaitGranted();
+    }
+
+
+    /**
+     * A thread may lock the paths covered by its own lock again, and all its locks are released at once.
+     */
+    @Test
+    public void shouldBeReentrant()
+            throws Exception {
+        lockManager.lockToDelete("reentrant/folder");
+        lockManager.lockToDelete("reentrant/folder/file");
+        lockManager.lockToRead("reentrant/folder/other");
+        lockManager.lockToCreate("reentrant/folder/new", Collections.<DataStorageClient> emptyList());
+        lockManager.lockToRead("reentrant");
+
+        Holder other = hold("other", LockMode.TO_READ, "reentrant/folder/file");
+        other.awaitBlocked();
+        lockManager.unlockAll();
+        other.awaitGranted();
+    }
+
+
+    /**
+     * A read lock cannot be upgraded to a write lock.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotUpgradeReadLock() {
+        lockManager.lockToRead("upgrade/folder");
+        lockManager.lockToDelete("upgrade/folder/file");
+    }
+
+
+    /**
+     * A thread which already holds a lock is not queued behind the requests waiting for it.
+     */
+    @Test
+    public void shouldNotQueueThreadHoldingLock()
+            throws Exception {
+        lockManager.lockToRead("holding/folder");
+        Holder writer = hold("writer", LockMode.TO_DELETE, "holding");
+        writer.awaitBlocked();
+
+        // conflicts with the waiting writer, but the writer waits for this thread
+        lockManager.lockToRead("holding/other");
+        Assert.assertFalse(writer.isGranted());
+
+        lockManager.unlockAll();
+        writer.awaitGranted();
+    }
+
+
+    /**
+     * Requests of a stripe are granted in the order of their arrival: a reader which is compatible with the current
+     * readers does not overtake a writer waiting for them.
+     */
+    @Test
+    public void shouldGrantInArrivalOrder()
+            throws Exception {
+        Holder firstReader = hold("first reader", LockMode.TO_READ, "fifo/folder/file");
+        firstReader.awaitGranted();
+        Holder writer = hold("writer", LockMode.TO_DELETE, "fifo/folder");
+        writer.awaitBlocked();
+        Holder secondReader = hold("second reader", LockMode.TO_READ, "fifo/folder/other");
+        secondReader.awaitBlocked();
+        Holder unrelated = hold("unrelated", LockMode.TO_READ, "fifo/unrelated");
+        unrelated.awaitGranted();
+
+        firstReader.release();
+        writer.awaitGranted();
+        Assert.assertFalse(secondReader.isGranted());
+
+        writer.release();
+        secondReader.awaitGranted();
+        Assert.assertEquals(list("first reader", "unrelated", "writer", "second reader"), granted);
+    }
+
+
+    /**
+     * Starts a thread which locks the path and holds the lock until it is released.
+     * 
+     * @param name
+     *            name of the thread
+     * @param mode
+     *            mode of locking
+     * @param path
+     *            path to lock
+     * @return started thread
+     */
+    private Holder hold(String name, LockMode mode, String path) {
+        Holder holder = new Holder(name, mode, path);
+        holders.add(holder);
+        holder.start();
+        return holder;
+    }
+
+
+    /**
+     * Creates a list of the given names.
+     * 
+     * @param names
+     *            names
+     * @return list
+     */
+    private List<String> list(String... names) {
+        List<String> list = new ArrayList<String>();
+        Collections.addAll(list, names);
+        return list;
+    }
+
+
+    /**
+     * Thread which locks a path and holds the lock until it is released.
+     */
+    private class Holder extends Thread {
+
+        /** Mode of locking. */
+        private final LockMode mode;
+
+        /** Path to lock. */
+        private final String path;
+
+        /** Counted down when the lock is granted. */
+        private final CountDownLatch grantedLatch = new CountDownLatch(1);
+
+        /** Counted down when the lock should be released. */
+        private final CountDownLatch releaseLatch = new CountDownLatch(1);
+
+
+        /**
+         * Creates the thread.
+         * 
+         * @param name
+         *            name of the thread
+         * @param mode
+         *            mode of locking
+         * @param path
+         *            path to lock
+         */
+        Holder(String name, LockMode mode, String path) {
+            super(name);
+            this.mode = mode;
+            this.path = path;
+            setDaemon(true);
+        }
+
+
+        @Override
+        public void run() {
+            switch (mode) {
+                case TO_READ:
+                    lockManager.lockToRead(path);
+                    break;
+                case TO_CREATE:
+                    lockManager.lockToCreate(path, Collections.<DataStorageClient> emptyList());
+                    break;
+                default:
+                    lockManager.lockToDelete(path);
+                    break;
+            }
+            granted.add(getName());
+            grantedLatch.countDown();
+            try {
+                releaseLatch.await();
+            } catch (InterruptedException e) {
+                interrupt();
+            } finally {
+                lockManager.unlockAll();
+            }
+        }
+
+
+        public boolean isGranted() {
+            return grantedLatch.getCount() == 0;
+        }
+
+
+        /**
+         * Waits until the lock is granted.
+         * 
+         * @throws InterruptedException
+         *             if interrupted
+         */
+        public void awaitGranted()
+                throws InterruptedException {
+            Assert.assertTrue(getName() + " was not granted the lock",
+                grantedLatch.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+
+        /**
+         * Waits until the thread is blocked by the lock manager.
+         * 
+         * @throws InterruptedException
+         *             if interrupted
+         */
+        public void awaitBlocked()
+                throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (getState() != State.WAITING || isGranted()) {
+                Assert.assertFalse(getName() + " was granted the lock", isGranted());
+                Assert.assertTrue(getName() + " did not block", System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+
+
+        /**
+         * Releases the lock and waits until the thread ends.
+         * 
+         * @throws InterruptedException
+         *             if interrupted
+         */
+        public void release()
+                throws InterruptedException {
+            releaseLatch.countDown();
+            join(TIMEOUT);
+        }
+
+    }
+
+}
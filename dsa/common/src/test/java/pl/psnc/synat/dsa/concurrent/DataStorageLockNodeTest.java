@@ -0,0 +1,241 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the bookkeeping of a single node of the tree of locks.
+ */
+public class DataStorageLockNodeTest {
+
+    /** Lock of the stripe. */
+    private ConditionRecordingLock stripeLock;
+
+    /** Root of the stripe. */
+    private DataStorageLockNode root;
+
+    /** Other thread holding nodes in the tests. */
+    private Thread other;
+
+
+    @Before
+    public void setUp() {
+        stripeLock = new ConditionRecordingLock();
+        root = new DataStorageLockNode(stripeLock, "", null);
+        other = new Thread();
+    }
+
+
+    /**
+     * A thread is never blocked by its own modes, only by the modes of other threads.
+     */
+    @Test
+    public void shouldIgnoreModesOfRequestingThread() {
+        Thread me = Thread.currentThread();
+        DataStorageLockNode node = root.getChild("object", true);
+        node.acquire(me, IntentMode.X);
+        Assert.assertTrue(node.isGrantable(me, IntentMode.X));
+        Assert.assertTrue(node.isGrantable(me, IntentMode.S));
+        Assert.assertFalse(node.isGrantable(other, IntentMode.IS));
+
+        node.acquire(other, IntentMode.IS);
+        Assert.assertFalse(node.isGrantable(me, IntentMode.X));
+        Assert.assertTrue(node.isGrantable(me, IntentMode.IX));
+    }
+
+
+    /**
+     * Modes held many times are released only when each acquisition is released.
+     */
+    @Test
+    public void shouldCountAcquisitions() {
+        DataStorageLockNode node = root.getChild("object", true);
+        node.acquire(other, IntentMode.S);
+        node.acquire(other, IntentMode.S);
+
+        node.release(other, IntentMode.S);
+        Assert.assertFalse(node.isGrantable(Thread.currentThread(), IntentMode.X));
+        node.release(other, IntentMode.S);
+        Assert.assertTrue(node.isGrantable(Thread.currentThread(), IntentMode.X));
+    }
+
+
+    /**
+     * Releasing a mode which is not held is an error.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectReleaseOfModeNotHeld() {
+        DataStorageLockNode node = root.getChild("object", true);
+        node.acquire(other, IntentMode.S);
+        node.release(other, IntentMode.X);
+    }
+
+
+    /**
+     * Children are created on demand and looked up afterwards.
+     */
+    @Test
+    public void shouldCreateChildrenOnDemand() {
+        Assert.assertNull(root.getChild("object", false));
+        DataStorageLockNode node = root.getChild("object", true);
+        Assert.assertSame(node, root.getChild("object", false));
+        Assert.assertSame(node, root.getChild("object", true));
+    }
+
+
+    /**
+     * The node and all its unused ancestors are removed, but never the root of the stripe.
+     */
+    @Test
+    public void shouldPruneUnusedBranch() {
+        DataStorageLockNode object = root.getChild("object", true);
+        DataStorageLockNode file = object.getChild("file", true);
+
+        file.prune();
+        Assert.assertNull(root.getChild("object", false));
+
+        object = root.getChild("object", true);
+        root.prune();
+        Assert.assertSame(object, root.getChild("object", false));
+    }
+
+
+    /**
+     * Nodes which are held are not removed.
+     */
+    @Test
+    public void shouldNotPruneHeldNodes() {
+        DataStorageLockNode object = root.getChild("object", true);
+        DataStorageLockNode file = object.getChild("file", true);
+        object.acquire(other, IntentMode.IS);
+        file.acquire(other, IntentMode.S);
+
+        file.prune();
+        Assert.assertSame(file, object.getChild("file", false));
+
+        file.release(other, IntentMode.S);
+        file.prune();
+        Assert.assertNull(object.getChild("file", false));
+        Assert.assertSame(object, root.getChild("object", false));
+
+        object.release(other, IntentMode.IS);
+        object.prune();
+        Assert.assertNull(root.getChild("object", false));
+    }
+
+
+    /**
+     * Nodes which still have other children are not removed.
+     */
+    @Test
+    public void shouldNotPruneAncestorsWithOtherChildren() {
+        DataStorageLockNode object = root.getChild("object", true);
+        DataStorageLockNode file = object.getChild("file", true);
+        DataStorageLockNode sibling = object.getChild("sibling", true);
+        sibling.acquire(other, IntentMode.X);
+
+        file.prune();
+        Assert.assertNull(object.getChild("file", false));
+        Assert.assertSame(object, root.getChild("object", false));
+    }
+
+
+    /**
+     * Nodes which some thread waits for are not removed, even if nobody holds them - the waiting thread will hold them.
+     */
+    @Test
+    public void shouldNotPruneNodesWithWaiters()
+            throws Exception {
+        final DataStorageLockNode node = root.getChild("object", true);
+        Condition released = stripeLock.getConditions().get(1);
+        node.acquire(other, IntentMode.X);
+        Thread waiter = new Thread() {
+
+            @Override
+            public void run() {
+                stripeLock.lock();
+                try {
+                    node.await();
+                } finally {
+                    stripeLock.unlock();
+                }
+            }
+        };
+        waiter.start();
+
+        stripeLock.lock();
+        try {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+            while (!stripeLock.hasWaiters(released)) {
+                Assert.assertTrue("the waiter did not start waiting", System.currentTimeMillis() < deadline);
+                stripeLock.unlock();
+                Thread.sleep(1);
+                stripeLock.lock();
+            }
+            // the waiter is signalled, but it cannot leave the node before the stripe lock is released
+            node.release(other, IntentMode.X);
+            node.prune();
+            Assert.assertSame(node, root.getChild("object", false));
+        } finally {
+            stripeLock.unlock();
+        }
+
+        waiter.join(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertFalse("the waiter was not woken up", waiter.isAlive());
+        stripeLock.lock();
+        try {
+            node.prune();
+            Assert.assertNull(root.getChild("object", false));
+        } finally {
+            stripeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Stripe lock which gives access to the conditions of the nodes, in the order of their creation.
+     */
+    @SuppressWarnings("serial")
+    private static class ConditionRecordingLock extends ReentrantLock {
+
+        /** Created conditions. */
+        private final List<Condition> conditions = new ArrayList<Condition>();
+
+
+        @Override
+        public Condition newCondition() {
+            Condition condition = super.newCondition();
+            conditions.add(condition);
+            return condition;
+        }
+
+
+        public List<Condition> getConditions() {
+            return conditions;
+        }
+
+    }
+
+}
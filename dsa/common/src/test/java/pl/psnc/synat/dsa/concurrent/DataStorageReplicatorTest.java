@@ -0,0 +1,295 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.resource.spi.work.Work;
+import javax.resource.spi.work.WorkManager;
+import javax.resource.spi.work.WorkRejectedException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.psnc.synat.dsa.DataStorageClient;
+
+/**
+ * Tests the parallel writes of replicas by {@link DataStorageReplicator} run by a work manager.
+ */
+public class DataStorageReplicatorTest {
+
+    /** Path of the written file. */
+    private static final String PATH = "tx/object/file";
+
+    /** Timeout of the tests (in milliseconds) - a replicator which cannot feed all the pipes hangs. */
+    private static final long TIMEOUT = 10000;
+
+    /** Content of the written file - larger than the pipes of the replicator. */
+    private byte[] content;
+
+    /** Numbers (counted from 0) of the works rejected by the work manager. */
+    private Set<Integer> rejected;
+
+    /** Number of works submitted to the work manager. */
+    private AtomicInteger submitted;
+
+    /** Threads which wrote the replicas, keyed by the client. */
+    private Map<DataStorageClient, Thread> writers;
+
+    /** Replicas written from a stream, keyed by the client. */
+    private Map<DataStorageClient, byte[]> replicas;
+
+    /** Replicator to test. */
+    private DataStorageReplicator replicator;
+
+
+    @Before
+    public void setUp() {
+        content = new byte[1024 * 1024 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        rejected = new HashSet<Integer>();
+        submitted = new AtomicInteger();
+        writers = new ConcurrentHashMap<DataStorageClient, Thread>();
+        replicas = new ConcurrentHashMap<DataStorageClient, byte[]>();
+        replicator = new DataStorageReplicator(createWorkManager());
+    }
+
+
+    /**
+     * A local file is written to all the clients by the threads of the work manager.
+     */
+    @Test(timeout = TIMEOUT)
+    public void shouldWriteLocalFileInWorkManagerThreads() {
+        List<DataStorageClient> clients = createClients(3, -1);
+
+        Map<DataStorageClient, IOException> errors = replicator.putFile(clients, PATH, "/tmp/source");
+
+        Assert.assertTrue(errors.isEmpty());
+        Assert.assertEquals(3, submitted.get());
+        Set<Thread> threads = new HashSet<Thread>();
+        for (DataStorageClient client : clients) {
+            Thread writer = writers.get(client);
+            Assert.assertNotNull(writer);
+            Assert.assertNotSame(Thread.currentThread(), writer);
+            threads.add(writer);
+        }
+        Assert.assertEquals(3, threads.size());
+    }
+
+
+    /**
+     * A stream is read once and every client gets all of it.
+     */
+    @Test(timeout = TIMEOUT)
+    public void shouldTeeStreamToAllClients() {
+        List<DataStorageClient> clients = createClients(3, -1);
+
+        Map<DataStorageClient, IOException> errors = replicator.putFile(clients, PATH,
+            new ByteArrayInputStream(content));
+
+        Assert.assertTrue(errors.isEmpty());
+        for (DataStorageClient client : clients) {
+            Assert.assertArrayEquals(content, replicas.get(client));
+        }
+    }
+
+
+    /**
+     * A write rejected by the work manager is reported for its client only, the other replicas are written.
+     */
+    @Test(timeout = TIMEOUT)
+    public void shouldReportRejectedWrite() {
+        List<DataStorageClient> clients = createClients(3, -1);
+        rejected.add(1);
+
+        Map<DataStorageClient, IOException> errors = replicator.putFile(clients, PATH,
+            new ByteArrayInputStream(content));
+
+        Assert.assertEquals(Collections.singleton(clients.get(1)), errors.keySet());
+        Assert.assertTrue(errors.get(clients.get(1)).getCause() instanceof WorkRejectedException);
+        Assert.assertArrayEquals(content, replicas.get(clients.get(0)));
+        Assert.assertArrayEquals(content, replicas.get(clients.get(2)));
+    }
+
+
+    /**
+     * A failed write is reported for its client only, and it does not stop the other replicas.
+     */
+    @Test(timeout = TIMEOUT)
+    public void shouldReportFailedWrite() {
+        List<DataStorageClient> clients = createClients(3, 0);
+
+        Map<DataStorageClient, IOException> errors = replicator.putFile(clients, PATH,
+            new ByteArrayInputStream(content));
+
+        Assert.assertEquals(Collections.singleton(clients.get(0)), errors.keySet());
+        Assert.assertArrayEquals(content, replicas.get(clients.get(1)));
+        Assert.assertArrayEquals(content, replicas.get(clients.get(2)));
+    }
+
+
+    /**
+     * If the source cannot be read to the end, none of the replicas is written.
+     */
+    @Test(timeout = TIMEOUT)
+    public void shouldFailAllWritesWhenSourceFails() {
+        List<DataStorageClient> clients = createClients(2, -1);
+        final IOException failure = new IOException("broken source");
+        InputStream source = new ByteArrayInputStream(content) {
+
+            @Override
+            public int read(byte[] b)
+                    throws IOException {
+                if (available() < content.length / 2) {
+                    throw failure;
+                }
+                return super.read(b);
+            }
+        };
+
+        Map<DataStorageClient, IOException> errors = replicator.putFile(clients, PATH, source);
+
+        Assert.assertEquals(new HashSet<DataStorageClient>(clients), errors.keySet());
+        for (IOException error : errors.values()) {
+            Assert.assertSame(failure, error);
+        }
+    }
+
+
+    /**
+     * Creates a work manager which starts every work in a new thread, unless the work is to be rejected.
+     * 
+     * @return work manager
+     */
+    private WorkManager createWorkManager() {
+        return (WorkManager) Proxy.newProxyInstance(WorkManager.class.getClassLoader(),
+            new Class<?>[] { WorkManager.class }, new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                        throws WorkRejectedException {
+                    if (method.getName().equals("startWork")) {
+                        if (rejected.contains(submitted.getAndIncrement())) {
+                            throw new WorkRejectedException("rejected", WorkRejectedException.START_TIMED_OUT);
+                        }
+                        new Thread((Work) args[0]).start();
+                        return 0L;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+
+    /**
+     * Creates clients which store the written replicas.
+     * 
+     * @param count
+     *            number of clients
+     * @param failing
+     *            number of the client whose writes fail after reading a part of the stream, -1 if none
+     * @return clients
+     */
+    private List<DataStorageClient> createClients(int count, int failing) {
+        List<DataStorageClient> clients = new ArrayList<DataStorageClient>();
+        for (int i = 0; i < count; i++) {
+            clients.add(createClient(i == failing));
+        }
+        return clients;
+    }
+
+
+    /**
+     * Creates a client which stores the written replicas.
+     * 
+     * @param failing
+     *            whether its writes fail after reading a part of the stream
+     * @return client
+     */
+    private DataStorageClient createClient(final boolean failing) {
+        return (DataStorageClient) Proxy.newProxyInstance(DataStorageClient.class.getClassLoader(),
+            new Class<?>[] { DataStorageClient.class }, new InvocationHandler() {
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args)
+                        throws Throwable {
+                    if (method.getName().equals("putFile")) {
+                        DataStorageClient client = (DataStorageClient) proxy;
+                        writers.put(client, Thread.currentThread());
+                        if (args[1] instanceof InputStream) {
+                            replicas.put(client, read((InputStream) args[1], failing));
+                        }
+                        return null;
+                    }
+                    if (method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    if (method.getName().equals("toString")) {
+                        return "client@" + System.identityHashCode(proxy);
+                    }
+                    throw new InvocationTargetException(new UnsupportedOperationException(method.getName()));
+                }
+            });
+    }
+
+
+    /**
+     * Reads the stream to the end.
+     * 
+     * @param input
+     *            stream
+     * @param failing
+     *            whether to fail after reading a part of the stream
+     * @return read bytes
+     * @throws IOException
+     *             if the stream cannot be read, or the reading fails on purpose
+     */
+    private byte[] read(InputStream input, boolean failing)
+            throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = input.read(buffer)) != -1) {
+            output.write(buffer, 0, n);
+            if (failing && output.size() > content.length / 4) {
+                throw new IOException("broken replica");
+            }
+        }
+        return output.toByteArray();
+    }
+}
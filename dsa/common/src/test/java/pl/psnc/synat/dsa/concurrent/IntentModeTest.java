@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the compatibility of the modes in which nodes of the tree of locks are held.
+ */
+public class IntentModeTest {
+
+    /**
+     * Intention modes are compatible with each other, shared mode only with the read ones, exclusive mode with none.
+     */
+    @Test
+    public void shouldFollowCompatibilityMatrix() {
+        assertCompatible(IntentMode.IS, IntentMode.IS, IntentMode.IX, IntentMode.S);
+        assertCompatible(IntentMode.IX, IntentMode.IS, IntentMode.IX);
+        assertCompatible(IntentMode.S, IntentMode.IS, IntentMode.S);
+        assertCompatible(IntentMode.X);
+    }
+
+
+    /**
+     * Compatibility does not depend on which thread came first.
+     */
+    @Test
+    public void shouldBeSymmetric() {
+        for (IntentMode held : IntentMode.values()) {
+            for (IntentMode requested : IntentMode.values()) {
+                Assert.assertEquals(held + "/" + requested, held.isCompatibleWith(requested),
+                    requested.isCompatibleWith(held));
+            }
+        }
+    }
+
+
+    /**
+     * Reading needs the shared modes, creating and deleting the exclusive ones.
+     */
+    @Test
+    public void shouldMapLockModes() {
+        Assert.assertEquals(IntentMode.S, IntentMode.forTarget(LockMode.TO_READ));
+        Assert.assertEquals(IntentMode.IS, IntentMode.forAncestors(LockMode.TO_READ));
+        Assert.assertEquals(IntentMode.X, IntentMode.forTarget(LockMode.TO_CREATE));
+        Assert.assertEquals(IntentMode.IX, IntentMode.forAncestors(LockMode.TO_CREATE));
+        Assert.assertEquals(IntentMode.X, IntentMode.forTarget(LockMode.TO_DELETE));
+        Assert.assertEquals(IntentMode.IX, IntentMode.forAncestors(LockMode.TO_DELETE));
+    }
+
+
+    /**
+     * Asserts that the held mode is compatible exactly with the given modes.
+     * 
+     * @param held
+     *            held mode
+     * @param compatible
+     *            all the modes compatible with it
+     */
+    private void assertCompatible(IntentMode held, IntentMode... compatible) {
+        for (IntentMode requested : IntentMode.values()) {
+            boolean expected = false;
+            for (IntentMode mode : compatible) {
+                expected |= mode == requested;
+            }
+            Assert.assertEquals(held + "/" + requested, expected, held.isCompatibleWith(requested));
+        }
+    }
+
+}
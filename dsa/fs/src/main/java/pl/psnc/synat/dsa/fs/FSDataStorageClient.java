@@ -16,23 +16,39 @@
 package pl.psnc.synat.dsa.fs;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 import pl.psnc.synat.dsa.DataStorageClient;
+import pl.psnc.synat.dsa.DataStoragePathType;
 import pl.psnc.synat.dsa.exception.NameSyntaxException;
+import pl.psnc.synat.dsa.util.DigestUtils;
 
 /**
  * Client for the file system protocol. It can handle one mounted archive.
  * 
+ * Files of the local file system are copied with {@link FileChannel} transfers, which the operating system can do
+ * without copying the data to the user space. Other streams are copied through a buffer. Files are moved by renaming
+ * them, which is atomic within one file system, and by copying them when they cannot be renamed.
+ * 
  */
 public class FSDataStorageClient implements DataStorageClient {
 
+    /** Maximal number of bytes transfered by one call of the channel transfer methods. */
+    private static final long TRANSFER_CHUNK = 64L * 1024 * 1024;
+
     /** The root folder where the archive is. */
     private final String root;
 
@@ -130,7 +146,7 @@ public class FSDataStorageClient implements DataStorageClient {
             throws IOException {
         File file = new File(root + path);
         File localFile = new File(localPath);
-        FileUtils.copyFile(localFile, file, false);
+        copy(localFile, file);
     }
 
 
@@ -138,7 +154,19 @@ public class FSDataStorageClient implements DataStorageClient {
     public void putFile(String dstPath, InputStream src)
             throws IOException {
         File file = new File(root + dstPath);
-        FileUtils.copyInputStreamToFile(src, file);
+        createParentFolder(file);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            if (src instanceof FileInputStream) {
+                FileChannel source = ((FileInputStream) src).getChannel();
+                transfer(source, source.position(), source.size() - source.position(), out.getChannel());
+                source.position(source.size());
+            } else {
+                IOUtils.copyLarge(src, out);
+            }
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
     }
 
 
@@ -147,7 +175,22 @@ public class FSDataStorageClient implements DataStorageClient {
             throws IOException {
         File oldfile = new File(root + oldpath);
         File newfile = new File(root + newpath);
-        if (!oldfile.renameTo(newfile)) {
+        if (oldfile.renameTo(newfile)) {
+            return;
+        }
+        if (!oldfile.isFile()) {
+            throw new IOException("File '" + oldpath + "' could not be renamed as '" + newpath + "' in " + root + "'.");
+        }
+        // e.g. the destination is on another mounted device
+        try {
+            copy(oldfile, newfile);
+        } catch (IOException e) {
+            newfile.delete();
+            throw new IOException("File '" + oldpath + "' could not be renamed as '" + newpath + "' in " + root + "'.",
+                    e);
+        }
+        if (!oldfile.delete()) {
+            newfile.delete();
             throw new IOException("File '" + oldpath + "' could not be renamed as '" + newpath + "' in " + root + "'.");
         }
     }
@@ -181,15 +224,24 @@ public class FSDataStorageClient implements DataStorageClient {
                         + " cannot be created."));
             }
         }
-        FileUtils.copyFile(file, localFile, false);
+        copy(file, localFile);
     }
 
 
+    /**
+     * {@inheritDoc}
+     * 
+     * The returned stream is a {@link FileInputStream}, so its channel can be used for seeking, memory mapping or
+     * zero-copy transfers.
+     */
     @Override
     public InputStream getFile(String path)
             throws IOException {
         File file = new File(root + path);
-        return FileUtils.openInputStream(file);
+        if (file.isDirectory()) {
+            throw new IOException("File '" + file + "' exists but is a directory");
+        }
+        return new FileInputStream(file);
     }
 
 
@@ -200,6 +252,123 @@ public class FSDataStorageClient implements DataStorageClient {
     }
 
 
+    @Override
+    public Map<String, DataStoragePathType> statAll(Collection<String> paths) {
+        Map<String, DataStoragePathType> types = new HashMap<String, DataStoragePathType>();
+        for (String path : paths) {
+            File file = new File(root + path);
+            if (file.isDirectory()) {
+                types.put(path, DataStoragePathType.DIRECTORY);
+            } else if (file.isFile()) {
+                types.put(path, DataStoragePathType.FILE);
+            } else {
+                types.put(path, DataStoragePathType.NONE);
+            }
+        }
+        return types;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The file is read through its channel directly from the mounted archive.
+     */
+    @Override
+    public Map<String, byte[]> digestFile(String path, Collection<String> algorithms)
+            throws IOException {
+        File file = new File(root + path);
+        if (!file.isFile()) {
+            throw new FileNotFoundException("File '" + file + "' does not exist or is not a file");
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            return DigestUtils.digest(in.getChannel(), algorithms);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+
+    /**
+     * Copies a file using channel transfers. Creates the parent folder of the destination file if needed.
+     * 
+     * @param source
+     *            source file
+     * @param destination
+     *            destination file
+     * @throws IOException
+     *             when the source file does not exist or copying fails
+     */
+    private static void copy(File source, File destination)
+            throws IOException {
+        if (!source.isFile()) {
+            throw new FileNotFoundException("Source '" + source + "' does not exist or is not a file");
+        }
+        createParentFolder(destination);
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(destination);
+            try {
+                FileChannel sourceChannel = in.getChannel();
+                transfer(sourceChannel, 0, sourceChannel.size(), out.getChannel());
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        if (source.length() != destination.length()) {
+            throw new IOException("Failed to copy full contents from '" + source + "' to '" + destination + "'");
+        }
+    }
+
+
+    /**
+     * Transfers the region of the source channel to the target channel. The operating system can do it without copying
+     * the data to the user space.
+     * 
+     * @param source
+     *            source channel
+     * @param position
+     *            position of the region in the source channel
+     * @param count
+     *            length of the region
+     * @param target
+     *            target channel
+     * @throws IOException
+     *             when transfer fails
+     */
+    private static void transfer(FileChannel source, long position, long count, FileChannel target)
+            throws IOException {
+        long done = 0;
+        while (done < count) {
+            long transfered = source.transferTo(position + done, Math.min(TRANSFER_CHUNK, count - done), target);
+            if (transfered <= 0) {
+                throw new IOException("Transfer stopped after " + done + " of " + count + " bytes");
+            }
+            done += transfered;
+        }
+    }
+
+
+    /**
+     * Creates the parent folder of the file if it does not exist.
+     * 
+     * @param file
+     *            file
+     * @throws IOException
+     *             when the folder cannot be created
+     */
+    private static void createParentFolder(File file)
+            throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Directory '" + parent + "' could not be created.");
+        }
+    }
+
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer("FSDataStorageClient ");
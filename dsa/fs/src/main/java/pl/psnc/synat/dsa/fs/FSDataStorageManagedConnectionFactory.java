@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.dsa.DataStorageManagedConnection;
 import pl.psnc.synat.dsa.DataStorageManagedConnectionFactory;
+import pl.psnc.synat.dsa.concurrent.DataStorageReplicator;
 
 /**
  * Factory of both managed connection and factory of connections to data storages based on file system. Supports
@@ -52,6 +53,9 @@ public class FSDataStorageManagedConnectionFactory extends DataStorageManagedCon
     /** Redundancy factor - it says how many copies should be distributed among archives. */
     private Integer redundancy;
 
+    /** Whether copies of a file should be written to all archives at the same time (instead of one after another). */
+    private Boolean parallelReplication;
+
 
     @Override
     public Object createConnectionFactory(ConnectionManager cxManager)
@@ -69,13 +73,18 @@ public class FSDataStorageManagedConnectionFactory extends DataStorageManagedCon
         logger.debug("ConnectionRequestInfo: " + cxRequestInfo);
         DataStorageManagedConnection managedConnection = null;
         if (roots.size() > 1) {
-            managedConnection = new FSMultiDataStorageManagedConnection(roots, redundancy,
+            DataStorageReplicator replicator = null;
+            if (Boolean.TRUE.equals(parallelReplication)) {
+                replicator = getReplicator();
+            }
+            managedConnection = new FSMultiDataStorageManagedConnection(roots, redundancy, replicator,
                     (FSDataStorageConnectionRequestInfo) cxRequestInfo);
 
         } else {
             managedConnection = new FSOneDataStorageManagedConnection(roots.iterator().next(),
                     (FSDataStorageConnectionRequestInfo) cxRequestInfo);
         }
+        managedConnection.setDigestThrottle(getDigestThrottle());
         logger.debug("cerated: " + managedConnection);
         return managedConnection;
     }
@@ -149,12 +158,25 @@ public class FSDataStorageManagedConnectionFactory extends DataStorageManagedCon
     }
 
 
+    public Boolean getParallelReplication() {
+        return parallelReplication;
+    }
+
+
+    public void setParallelReplication(Boolean parallelReplication) {
+        this.parallelReplication = parallelReplication;
+    }
+
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer("FSDataStorageManagedConnectionFactory ");
         sb.append("[hashCode = ").append(hashCode());
         sb.append(", ra = ").append(ra);
         sb.append(", roots = ").append(roots);
+        sb.append(", redundancy = ").append(redundancy);
+        sb.append(", parallelReplication = ").append(parallelReplication);
+        sb.append(", digestsPerDataStorage = ").append(getDigestsPerDataStorage());
         sb.append("]");
         return sb.toString();
     }
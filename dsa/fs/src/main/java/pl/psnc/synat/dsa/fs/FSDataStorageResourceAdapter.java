@@ -36,12 +36,14 @@ public class FSDataStorageResourceAdapter extends DataStorageResourceAdapter {
     @Override
     public void start(BootstrapContext ctx)
             throws ResourceAdapterInternalException {
+        super.start(ctx);
         logger.debug("FSDataStorageResourceAdapter started, bootstrap context: " + ctx);
     }
 
 
     @Override
     public void stop() {
+        super.stop();
         logger.debug("FSDataStorageResourceAdapter stopped");
     }
 
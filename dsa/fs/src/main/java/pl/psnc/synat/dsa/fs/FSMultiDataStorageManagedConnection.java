@@ -33,6 +33,7 @@ import pl.psnc.synat.dsa.DataStorageClientComparator;
 import pl.psnc.synat.dsa.DataStorageManagedConnectionMetaData;
 import pl.psnc.synat.dsa.DataStorageWOOperation;
 import pl.psnc.synat.dsa.MultiDataStorageManagedConnection;
+import pl.psnc.synat.dsa.concurrent.DataStorageReplicator;
 import pl.psnc.synat.dsa.exception.DataStorageResourceException;
 
 /**
@@ -52,15 +53,18 @@ public class FSMultiDataStorageManagedConnection extends MultiDataStorageManaged
      *            set of root folders
      * @param redundancy
      *            redundancy factor
+     * @param replicator
+     *            replicator writing copies of a file to all archives at the same time, or null if they should be
+     *            written one after another
      * @param cxRequestInfo
      *            parameters of connection
      * @throws DataStorageResourceException
      *             if some IO exception occurred
      */
-    public FSMultiDataStorageManagedConnection(Set<String> roots, int redundancy,
+    public FSMultiDataStorageManagedConnection(Set<String> roots, int redundancy, DataStorageReplicator replicator,
             FSDataStorageConnectionRequestInfo cxRequestInfo)
             throws DataStorageResourceException {
-        super(redundancy);
+        super(redundancy, replicator);
         logger.debug("FSDataStorageConnectionRequestInfo: " + cxRequestInfo);
         if (roots.size() < redundancy) {
             logger.error("The redundancy factor cannot be greater than the number of archives!");
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.psnc.synat.dsa.DataStorageConnection;
+
+/**
+ * Tests that the writes and deletions done by a transaction are visible to the transaction itself, although the types
+ * of the paths are cached for the whole transaction.
+ */
+public class FSOneDataStorageManagedConnectionTest {
+
+    /** Sequence of the transaction ids. */
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    /** Root folder of the data storage. */
+    private File root;
+
+    /** Managed connection to test. */
+    private FSOneDataStorageManagedConnection managedConnection;
+
+    /** Connection of the managed connection. */
+    private DataStorageConnection connection;
+
+    /** Resource of the managed connection. */
+    private XAResource xares;
+
+    /** Current transaction. */
+    private Xid xid;
+
+
+    @Before
+    public void setUp()
+            throws Exception {
+        root = File.createTempFile("dsa", "");
+        Assert.assertTrue(root.delete() && root.mkdir());
+        managedConnection = new FSOneDataStorageManagedConnection(root.getAbsolutePath(), null);
+        xares = managedConnection.getXAResource();
+        begin();
+    }
+
+
+    @After
+    public void tearDown()
+            throws Exception {
+        try {
+            if (xid != null) {
+                xares.end(xid, XAResource.TMFAIL);
+                xares.rollback(xid);
+            }
+            managedConnection.cleanup();
+            managedConnection.destroy();
+        } finally {
+            FileUtils.deleteDirectory(root);
+        }
+    }
+
+
+    /**
+     * A file is found once it is written, although its absence was checked before.
+     */
+    @Test
+    public void shouldSeeWrittenFile()
+            throws Exception {
+        connection.createDirectory("object");
+        Assert.assertFalse(connection.fileExists("object/file"));
+
+        put("object/file");
+        Assert.assertTrue(connection.fileExists("object/file"));
+        Assert.assertFalse(connection.directoryExists("object/file"));
+    }
+
+
+    /**
+     * A deleted file is not found, and it can be written again.
+     */
+    @Test
+    public void shouldNotSeeDeletedFile()
+            throws Exception {
+        connection.createDirectory("object");
+        put("object/file");
+        Assert.assertTrue(connection.fileExists("object/file"));
+
+        connection.deleteFile("object/file");
+        Assert.assertFalse(connection.fileExists("object/file"));
+
+        put("object/file");
+        Assert.assertTrue(connection.fileExists("object/file"));
+    }
+
+
+    /**
+     * Nothing from the content of a deleted directory is found, and the directory can be created and written again.
+     */
+    @Test
+    public void shouldNotSeeContentOfDeletedDirectory()
+            throws Exception {
+        connection.createDirectory("object/folder/nested");
+        put("object/folder/file");
+        put("object/folder/nested/file");
+        put("object/folder2");
+        Assert.assertTrue(connection.fileExists("object/folder/nested/file"));
+
+        connection.deleteDirectory("object/folder");
+        Assert.assertFalse(connection.directoryExists("object/folder"));
+        Assert.assertFalse(connection.directoryExists("object/folder/nested"));
+        Assert.assertFalse(connection.fileExists("object/folder/file"));
+        Assert.assertTrue(connection.fileExists("object/folder2"));
+
+        connection.createDirectory("object/folder/nested");
+        put("object/folder/nested/other");
+        Assert.assertTrue(connection.fileExists("object/folder/nested/other"));
+        Assert.assertFalse(connection.fileExists("object/folder/nested/file"));
+        Assert.assertEquals(1, connection.listDirectory("object/folder/nested").size());
+    }
+
+
+    /**
+     * Changes committed by a transaction are found by the next ones, although the earlier ones cached their absence
+     * or presence. A read lock cannot be upgraded, so every transaction either reads or writes.
+     */
+    @Test
+    public void shouldSeeChangesOfPreviousTransaction()
+            throws Exception {
+        Assert.assertFalse(connection.directoryExists("object"));
+        Assert.assertFalse(connection.fileExists("object/file"));
+        commit();
+
+        begin();
+        connection.createDirectory("object");
+        put("object/file");
+        commit();
+
+        begin();
+        Assert.assertTrue(connection.directoryExists("object"));
+        Assert.assertTrue(connection.fileExists("object/file"));
+        commit();
+
+        begin();
+        connection.deleteFile("object/file");
+        commit();
+
+        begin();
+        Assert.assertFalse(connection.fileExists("object/file"));
+        Assert.assertFalse(new File(root, "object/file").exists());
+    }
+
+
+    /**
+     * Starts a new transaction with a new connection handle, since the cleanup invalidates the previous one.
+     * 
+     * @throws Exception
+     *             if the transaction cannot be started
+     */
+    private void begin()
+            throws Exception {
+        connection = (DataStorageConnection) managedConnection.getConnection(null, null);
+        xid = new TestXid(SEQUENCE.incrementAndGet());
+        xares.start(xid, XAResource.TMNOFLAGS);
+    }
+
+
+    /**
+     * Commits the current transaction.
+     * 
+     * @throws Exception
+     *             if the transaction cannot be committed
+     */
+    private void commit()
+            throws Exception {
+        xares.end(xid, XAResource.TMSUCCESS);
+        xares.commit(xid, true);
+        managedConnection.cleanup();
+        xid = null;
+    }
+
+
+    /**
+     * Writes a small file.
+     * 
+     * @param path
+     *            path of the file
+     * @throws Exception
+     *             if the file cannot be written
+     */
+    private void put(String path)
+            throws Exception {
+        connection.putFile(path, new ByteArrayInputStream(path.getBytes("UTF-8")));
+    }
+
+
+    /**
+     * Transaction id with a single branch.
+     */
+    private static class TestXid implements Xid {
+
+        /** Global transaction id. */
+        private final byte[] globalTransactionId;
+
+
+        /**
+         * Creates the id.
+         * 
+         * @param sequence
+         *            number of the transaction
+         */
+        TestXid(int sequence) {
+            globalTransactionId = String.format("test%012d", sequence).getBytes();
+        }
+
+
+        @Override
+        public int getFormatId() {
+            return 1;
+        }
+
+
+        @Override
+        public byte[] getGlobalTransactionId() {
+            return globalTransactionId;
+        }
+
+
+        @Override
+        public byte[] getBranchQualifier() {
+            return new byte[] { 1 };
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(globalTransactionId);
+        }
+
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TestXid && Arrays.equals(globalTransactionId, ((TestXid) obj).globalTransactionId);
+        }
+
+    }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.dsa.sftp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+
+/**
+ * Pool of SFTP channels multiplexed over one SSH session. Channels are opened lazily up to the size of the pool, so
+ * concurrent operations of one client do not queue up on a single channel.
+ * 
+ */
+public class SftpChannelPool {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(SftpChannelPool.class);
+
+    /**
+     * Session over which channels are opened.
+     */
+    private final Session session;
+
+    /**
+     * Maximal number of open channels.
+     */
+    private final int size;
+
+    /**
+     * Number of outstanding read/write requests per channel (the SFTP request window) or 0 for the default.
+     */
+    private final int bulkRequests;
+
+    /**
+     * Permits to open dedicated channels of streams - at most as many as the size of the pool.
+     */
+    private final Semaphore streams;
+
+    /**
+     * Channels that are open and not used at the moment.
+     */
+    private final LinkedList<ChannelSftp> idle;
+
+    /**
+     * Number of open channels (idle and borrowed).
+     */
+    private int open;
+
+    /**
+     * Whether the pool was closed.
+     */
+    private boolean closed;
+
+
+    /**
+     * Creates a new pool.
+     * 
+     * @param session
+     *            connected session
+     * @param size
+     *            maximal number of open channels
+     * @param bulkRequests
+     *            number of outstanding read/write requests per channel or 0 for the default
+     */
+    public SftpChannelPool(Session session, int size, int bulkRequests) {
+        this.session = session;
+        this.size = Math.max(1, size);
+        this.bulkRequests = bulkRequests;
+        this.idle = new LinkedList<ChannelSftp>();
+        this.streams = new Semaphore(this.size, true);
+    }
+
+
+    /**
+     * Borrows a channel. Opens a new one if all are in use and the pool is not full, otherwise waits for a channel to be
+     * returned.
+     * 
+     * @return connected channel
+     * @throws IOException
+     *             if the channel could not be opened or the pool is closed
+     */
+    public ChannelSftp borrow()
+            throws IOException {
+        synchronized (this) {
+            while (true) {
+                if (closed) {
+                    throw new IOException("SFTP channel pool is closed.");
+                }
+                while (!idle.isEmpty()) {
+                    ChannelSftp channel = idle.removeFirst();
+                    if (channel.isConnected()) {
+                        return channel;
+                    }
+                    logger.warn("dropping a disconnected SFTP channel");
+                    open--;
+                }
+                if (open < size) {
+                    open++;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for an SFTP channel.");
+                }
+            }
+        }
+        try {
+            return openChannel();
+        } catch (IOException e) {
+            synchronized (this) {
+                open--;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Opens and configures a new channel.
+     * 
+     * @return connected channel
+     * @throws IOException
+     *             if the channel could not be opened
+     */
+    private ChannelSftp openChannel()
+            throws IOException {
+        try {
+            ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
+            channel.connect();
+            if (bulkRequests > 0) {
+                channel.setBulkRequests(bulkRequests);
+            }
+            logger.debug("opened SFTP channel " + channel.getId());
+            return channel;
+        } catch (JSchException e) {
+            logger.error("Opening SFTP channel failed!", e);
+            throw new IOException("Opening SFTP channel failed!");
+        }
+    }
+
+
+    /**
+     * Returns the borrowed channel to the pool.
+     * 
+     * @param channel
+     *            channel
+     */
+    public synchronized void release(ChannelSftp channel) {
+        if (closed || !channel.isConnected()) {
+            channel.disconnect();
+            open--;
+        } else {
+            idle.addFirst(channel);
+        }
+        notifyAll();
+    }
+
+
+    /**
+     * Opens a stream of a remote file on a dedicated channel. Channels of streams are limited separately from the
+     * channels of the other operations - a stream which is read slowly (or is never closed) does not block other
+     * operations, but at most as many streams as the size of the pool are open at the same time. If all of them are
+     * open, waits for one to be closed. The channel is closed together with the stream.
+     * 
+     * @param path
+     *            path of the remote file
+     * @return input stream of the file
+     * @throws SftpException
+     *             if the file could not be read
+     * @throws IOException
+     *             if the channel could not be opened or the pool is closed
+     */
+    public InputStream openStream(String path)
+            throws SftpException, IOException {
+        try {
+            streams.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an SFTP channel.");
+        }
+        final ChannelSftp channel;
+        InputStream stream;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("SFTP channel pool is closed.");
+                }
+            }
+            channel = openChannel();
+            try {
+                stream = channel.get(path);
+            } catch (SftpException e) {
+                channel.disconnect();
+                throw e;
+            }
+        } catch (SftpException e) {
+            streams.release();
+            throw e;
+        } catch (IOException e) {
+            streams.release();
+            throw e;
+        }
+        return new FilterInputStream(stream) {
+
+            /** Whether the stream was closed. */
+            private boolean streamClosed;
+
+
+            @Override
+            public void close()
+                    throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    channel.disconnect();
+                    synchronized (this) {
+                        if (!streamClosed) {
+                            streamClosed = true;
+                            streams.release();
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Closes all idle channels. Borrowed channels are closed when they are returned.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (ChannelSftp channel : idle) {
+            channel.quit();
+            open--;
+        }
+        idle.clear();
+        notifyAll();
+    }
+
+}
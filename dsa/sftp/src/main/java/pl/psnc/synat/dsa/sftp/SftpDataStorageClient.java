@@ -23,18 +23,28 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.dsa.DataStorageClient;
+import pl.psnc.synat.dsa.DataStoragePathType;
+import pl.psnc.synat.dsa.concurrent.DaemonThreadFactory;
 import pl.psnc.synat.dsa.exception.DataStorageResourceException;
 import pl.psnc.synat.dsa.exception.NameSyntaxException;
 import pl.psnc.synat.dsa.sftp.config.Credential;
 import pl.psnc.synat.dsa.sftp.util.ConfigUtil;
+import pl.psnc.synat.dsa.util.DigestUtils;
 
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.ChannelSftp.LsEntry;
@@ -45,7 +55,8 @@ import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
 /**
- * Client for the SFTP protocol.
+ * Client for the SFTP protocol. Operations are executed over a pool of SFTP channels of one session, so concurrent
+ * operations do not wait for each other and a recursive deletion is spread over all channels.
  * 
  */
 public class SftpDataStorageClient implements DataStorageClient {
@@ -78,19 +89,34 @@ public class SftpDataStorageClient implements DataStorageClient {
      */
     private final JSch jsch;
 
+    /**
+     * Maximal number of SFTP channels open in the session.
+     */
+    private final int channels;
+
+    /**
+     * Number of outstanding read/write requests per channel or 0 for the JSch default.
+     */
+    private final int bulkRequests;
+
     /**
      * Open session to SFTP server.
      */
     private Session session;
 
     /**
-     * SFTP channel to send commands.
+     * Pool of SFTP channels to send commands.
      */
-    private ChannelSftp channel;
+    private SftpChannelPool pool;
+
+    /**
+     * Executor of operations spread over many channels - null if there is only one channel.
+     */
+    private ExecutorService executor;
 
 
     /**
-     * Creates a new SFTP client.
+     * Creates a new SFTP client with one SFTP channel.
      * 
      * @param host
      *            host of data storage
@@ -110,10 +136,41 @@ public class SftpDataStorageClient implements DataStorageClient {
     public SftpDataStorageClient(String host, Integer port, String publicKeyType, String publicKey,
             Credential credential)
             throws IOException, DataStorageResourceException {
+        this(host, port, publicKeyType, publicKey, credential, 1, 0);
+    }
+
+
+    /**
+     * Creates a new SFTP client.
+     * 
+     * @param host
+     *            host of data storage
+     * @param port
+     *            port of data storage
+     * @param publicKeyType
+     *            public key type of data storage
+     * @param publicKey
+     *            public key of data storage
+     * @param credential
+     *            credential to data storage
+     * @param channels
+     *            maximal number of SFTP channels open in the session
+     * @param bulkRequests
+     *            number of outstanding read/write requests per channel or 0 for the default
+     * @throws IOException
+     *             when configuration is wrong
+     * @throws DataStorageResourceException
+     *             when decryption failed
+     */
+    public SftpDataStorageClient(String host, Integer port, String publicKeyType, String publicKey,
+            Credential credential, int channels, int bulkRequests)
+            throws IOException, DataStorageResourceException {
         this.host = host;
         this.port = port;
         this.knownHost = host + " " + publicKeyType + " " + publicKey;
         this.credential = credential;
+        this.channels = Math.max(1, channels);
+        this.bulkRequests = bulkRequests;
         this.jsch = new JSch();
         try {
             this.jsch.setKnownHosts(new ByteArrayInputStream(knownHost.getBytes("UTF-8")));
@@ -139,12 +196,11 @@ public class SftpDataStorageClient implements DataStorageClient {
             logger.error("Connecting to host " + host + " failed!", e);
             throw new IOException("Connecting to host failed!");
         }
-        try {
-            channel = (ChannelSftp) session.openChannel("sftp");
-            channel.connect();
-        } catch (JSchException e) {
-            logger.error("Opening SFTP channel failed!", e);
-            throw new IOException("Opening SFTP channel failed!");
+        pool = new SftpChannelPool(session, channels, bulkRequests);
+        // opens the first channel to check the connection
+        pool.release(pool.borrow());
+        if (channels > 1) {
+            executor = Executors.newFixedThreadPool(channels, new DaemonThreadFactory("sftp-" + host));
         }
     }
 
@@ -163,7 +219,11 @@ public class SftpDataStorageClient implements DataStorageClient {
 
     @Override
     public void disconnect() {
-        channel.quit();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pool.close();
         session.disconnect();
         session = null;
     }
@@ -172,6 +232,7 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public boolean directoryExists(String path)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.ls(path);
         } catch (SftpException e) {
@@ -180,6 +241,8 @@ public class SftpDataStorageClient implements DataStorageClient {
             }
             logger.error("checking if the directory exists failed", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
         return true;
     }
@@ -188,11 +251,14 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public void createDirectory(String path)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.mkdir(path);
         } catch (SftpException e) {
             logger.error("creation of the directory failed", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -200,11 +266,18 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public void deleteDirectory(String path)
             throws IOException {
-        try {
-            traverse(channel, path);
-        } catch (SftpException e) {
-            logger.error("deletion of the directory failed.", e);
-            throw new IOException(e);
+        if (executor == null) {
+            ChannelSftp channel = pool.borrow();
+            try {
+                traverse(channel, path);
+            } catch (SftpException e) {
+                logger.error("deletion of the directory failed.", e);
+                throw new IOException(e);
+            } finally {
+                pool.release(channel);
+            }
+        } else {
+            traverseConcurrently(path);
         }
     }
 
@@ -241,10 +314,144 @@ public class SftpDataStorageClient implements DataStorageClient {
     }
 
 
+    /**
+     * Delete directory and its content recursively using all channels of the pool. Directories are listed level by
+     * level, then all files are removed and finally directories are removed starting from the deepest level. Each step
+     * is spread over the channels.
+     * 
+     * @param path
+     *            path of the directory
+     * @throws IOException
+     *             when something went wrong
+     */
+    private void traverseConcurrently(String path)
+            throws IOException {
+        ChannelSftp channel = pool.borrow();
+        try {
+            if (!channel.stat(path).isDir()) {
+                channel.rm(path);
+                return;
+            }
+        } catch (SftpException e) {
+            logger.error("deletion of the directory failed.", e);
+            throw new IOException(e);
+        } finally {
+            pool.release(channel);
+        }
+        List<List<String>> levels = new ArrayList<List<String>>();
+        final List<String> files = Collections.synchronizedList(new ArrayList<String>());
+        List<String> level = Collections.singletonList(path);
+        while (!level.isEmpty()) {
+            levels.add(level);
+            final List<String> next = Collections.synchronizedList(new ArrayList<String>());
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (final String dir : level) {
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Void call()
+                            throws IOException, SftpException {
+                        ChannelSftp channel = pool.borrow();
+                        try {
+                            Vector<LsEntry> entries = channel.ls(dir);
+                            for (LsEntry entry : entries != null ? entries : new Vector<LsEntry>()) {
+                                if ((!entry.getFilename().equals(".")) && (!entry.getFilename().equals(".."))) {
+                                    if (entry.getAttrs().isDir()) {
+                                        next.add(dir + "/" + entry.getFilename());
+                                    } else {
+                                        files.add(dir + "/" + entry.getFilename());
+                                    }
+                                }
+                            }
+                        } finally {
+                            pool.release(channel);
+                        }
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks);
+            level = next;
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final String file : files) {
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call()
+                        throws IOException, SftpException {
+                    ChannelSftp channel = pool.borrow();
+                    try {
+                        channel.rm(file);
+                    } finally {
+                        pool.release(channel);
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+        for (int i = levels.size() - 1; i >= 0; i--) {
+            tasks = new ArrayList<Callable<Void>>();
+            for (final String dir : levels.get(i)) {
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    public Void call()
+                            throws IOException, SftpException {
+                        ChannelSftp channel = pool.borrow();
+                        try {
+                            channel.rmdir(dir);
+                        } finally {
+                            pool.release(channel);
+                        }
+                        return null;
+                    }
+                });
+            }
+            invokeAll(tasks);
+        }
+    }
+
+
+    /**
+     * Executes tasks concurrently and waits for all of them.
+     * 
+     * @param tasks
+     *            tasks
+     * @throws IOException
+     *             when any of the tasks failed
+     */
+    private void invokeAll(List<Callable<Void>> tasks)
+            throws IOException {
+        IOException error = null;
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        logger.error("operation executed over many channels failed.", e.getCause());
+                        error = new IOException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("operation executed over many channels interrupted.");
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+
     @Override
     @SuppressWarnings("unchecked")
     public Collection<File> listDirectory(String path)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             Vector<LsEntry> files = channel.ls(path);
             List<File> result = new ArrayList<File>();
@@ -262,6 +469,8 @@ public class SftpDataStorageClient implements DataStorageClient {
             }
             logger.error("listing the directory failed.", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -269,6 +478,7 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public boolean fileExists(String path)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.stat(path);
         } catch (SftpException e) {
@@ -277,6 +487,8 @@ public class SftpDataStorageClient implements DataStorageClient {
             }
             logger.error("checking if the file exists failed", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
         return true;
     }
@@ -285,11 +497,14 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public void putFile(String path, String localPath)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.put(localPath, path);
         } catch (SftpException e) {
             logger.error("putting the file failed.", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -297,11 +512,14 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public void putFile(String dstPath, InputStream src)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.put(src, dstPath);
         } catch (SftpException e) {
             logger.error("putting the file failed.", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -309,11 +527,14 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public void moveFile(String oldpath, String newpath)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.rename(oldpath, newpath);
         } catch (SftpException e) {
             logger.error("moving the file failed", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -321,11 +542,14 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public void deleteFile(String path)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.rm(path);
         } catch (SftpException e) {
             logger.error("deletion of the file failed", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -333,6 +557,7 @@ public class SftpDataStorageClient implements DataStorageClient {
     @Override
     public File getFileInfo(String path)
             throws IOException {
+        ChannelSftp channel = pool.borrow();
         try {
             channel.stat(path);
             return new File(path);
@@ -342,6 +567,8 @@ public class SftpDataStorageClient implements DataStorageClient {
             }
             logger.error("getting file info failed.", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -356,11 +583,14 @@ public class SftpDataStorageClient implements DataStorageClient {
                         + " cannot be created."));
             }
         }
+        ChannelSftp channel = pool.borrow();
         try {
             channel.get(path, localPath);
         } catch (SftpException e) {
             logger.error("getting the file failed.", e);
             throw new IOException(e);
+        } finally {
+            pool.release(channel);
         }
     }
 
@@ -369,7 +599,7 @@ public class SftpDataStorageClient implements DataStorageClient {
     public InputStream getFile(String path)
             throws IOException {
         try {
-            return channel.get(path);
+            return pool.openStream(path);
         } catch (SftpException e) {
             logger.error("getting the file failed.", e);
             throw new IOException(e);
@@ -379,6 +609,13 @@ public class SftpDataStorageClient implements DataStorageClient {
 
     @Override
     public boolean exists(String path) {
+        ChannelSftp channel;
+        try {
+            channel = pool.borrow();
+        } catch (IOException e) {
+            logger.error("checking if the file or directory exists failed", e);
+            return false;
+        }
         try {
             channel.stat(path);
         } catch (SftpException e) {
@@ -387,11 +624,97 @@ public class SftpDataStorageClient implements DataStorageClient {
             }
             logger.error("checking if the file or directory exists failed", e);
             return false;
+        } finally {
+            pool.release(channel);
         }
         return true;
     }
 
 
+    @Override
+    public Map<String, DataStoragePathType> statAll(Collection<String> paths)
+            throws IOException {
+        final Map<String, DataStoragePathType> types = Collections
+                .synchronizedMap(new HashMap<String, DataStoragePathType>());
+        if (executor == null || paths.size() < 2) {
+            stat(paths, types);
+            return types;
+        }
+        int parts = Math.min(channels, paths.size());
+        List<List<String>> partitions = new ArrayList<List<String>>();
+        for (int i = 0; i < parts; i++) {
+            partitions.add(new ArrayList<String>());
+        }
+        int i = 0;
+        for (String path : paths) {
+            partitions.get(i++ % parts).add(path);
+        }
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final List<String> partition : partitions) {
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call()
+                        throws IOException {
+                    stat(partition, types);
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+        return types;
+    }
+
+
+    /**
+     * Checks types of the paths one by one over one channel.
+     * 
+     * @param paths
+     *            paths to check
+     * @param types
+     *            map to which the types are put
+     * @throws IOException
+     *             when some error occurs
+     */
+    private void stat(Collection<String> paths, Map<String, DataStoragePathType> types)
+            throws IOException {
+        ChannelSftp channel = pool.borrow();
+        try {
+            for (String path : paths) {
+                try {
+                    types.put(path, channel.stat(path).isDir() ? DataStoragePathType.DIRECTORY
+                            : DataStoragePathType.FILE);
+                } catch (SftpException e) {
+                    if (e.id != 2) {
+                        logger.error("checking the type of " + path + " failed", e);
+                        throw new IOException(e);
+                    }
+                    types.put(path, DataStoragePathType.NONE); // no such file
+                }
+            }
+        } finally {
+            pool.release(channel);
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * 
+     * The file is streamed over a pooled channel and digested while it is read - it is not stored locally.
+     */
+    @Override
+    public Map<String, byte[]> digestFile(String path, Collection<String> algorithms)
+            throws IOException {
+        InputStream stream = getFile(path);
+        try {
+            return DigestUtils.digest(stream, algorithms);
+        } finally {
+            stream.close();
+        }
+    }
+
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer("FSDataStorageClient ");
@@ -62,6 +62,16 @@ public class SftpDataStorageManagedConnectionFactory extends DataStorageManagedC
      */
     private String publicKey;
 
+    /**
+     * Maximal number of SFTP channels open in one session.
+     */
+    private Integer channels;
+
+    /**
+     * Number of outstanding read/write requests per SFTP channel.
+     */
+    private Integer bulkRequests;
+
 
     @Override
     public Object createConnectionFactory(ConnectionManager cxManager)
@@ -78,7 +88,9 @@ public class SftpDataStorageManagedConnectionFactory extends DataStorageManagedC
         logger.debug("Subject: " + subject);
         logger.debug("ConnectionRequestInfo: " + cxRequestInfo);
         SftpOneDataStorageManagedConnection managedConnection = new SftpOneDataStorageManagedConnection(host, port,
-                publicKeyType, publicKey, (SftpDataStorageConnectionRequestInfo) cxRequestInfo);
+                publicKeyType, publicKey, channels != null ? channels : 1, bulkRequests != null ? bulkRequests : 0,
+                (SftpDataStorageConnectionRequestInfo) cxRequestInfo);
+        managedConnection.setDigestThrottle(getDigestThrottle());
         logger.debug("cerated: " + managedConnection);
         return managedConnection;
     }
@@ -144,11 +156,32 @@ public class SftpDataStorageManagedConnectionFactory extends DataStorageManagedC
     }
 
 
+    public Integer getChannels() {
+        return channels;
+    }
+
+
+    public void setChannels(Integer channels) {
+        this.channels = channels;
+    }
+
+
+    public Integer getBulkRequests() {
+        return bulkRequests;
+    }
+
+
+    public void setBulkRequests(Integer bulkRequests) {
+        this.bulkRequests = bulkRequests;
+    }
+
+
     @Override
     public String toString() {
         StringBuffer sb = new StringBuffer("SftpDataStorageManagedConnectionFactory ");
         sb.append("[hashCode = ").append(hashCode());
         sb.append(", ra = ").append(ra);
+        sb.append(", digestsPerDataStorage = ").append(getDigestsPerDataStorage());
         sb.append("]");
         return sb.toString();
     }
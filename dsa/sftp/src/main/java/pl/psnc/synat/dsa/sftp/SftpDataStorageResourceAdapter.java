@@ -36,12 +36,14 @@ public class SftpDataStorageResourceAdapter extends DataStorageResourceAdapter {
     @Override
     public void start(BootstrapContext ctx)
             throws ResourceAdapterInternalException {
+        super.start(ctx);
         logger.debug("SftpDataStorageResourceAdapter started, bootstrap context: " + ctx);
     }
 
 
     @Override
     public void stop() {
+        super.stop();
         logger.debug("SftpDataStorageResourceAdapter stopped");
     }
 
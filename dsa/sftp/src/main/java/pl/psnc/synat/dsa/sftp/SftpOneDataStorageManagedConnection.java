@@ -58,20 +58,24 @@ public class SftpOneDataStorageManagedConnection extends OneDataStorageManagedCo
      *            public key type of data storage
      * @param publicKey
      *            public key of data storage
-     * 
+     * @param channels
+     *            maximal number of SFTP channels open in the session
+     * @param bulkRequests
+     *            number of outstanding read/write requests per channel or 0 for the default
      * @param cxRequestInfo
      *            parameters of connection
      * @throws DataStorageResourceException
      *             if some IO exception occurred
      */
     public SftpOneDataStorageManagedConnection(String host, Integer port, String publicKeyType, String publicKey,
-            SftpDataStorageConnectionRequestInfo cxRequestInfo)
+            int channels, int bulkRequests, SftpDataStorageConnectionRequestInfo cxRequestInfo)
             throws DataStorageResourceException {
         super();
         logger.debug("SftpDataStorageConnectionRequestInfo: " + cxRequestInfo);
         Credential credential = ConfigUtil.getCredentialForOrganization(cxRequestInfo.getOrganization());
         try {
-            client = new SftpDataStorageClient(host, port, publicKeyType, publicKey, credential);
+            client = new SftpDataStorageClient(host, port, publicKeyType, publicKey, credential, channels,
+                    bulkRequests);
             client.connect();
         } catch (IOException e) {
             throw new DataStorageResourceException(e);
@@ -19,4 +19,4 @@ for %%i in (lib\nzmetool\adapters\*.jar) do call "%FITS_HOME%\cpappend.bat" %%i
 
 set CLASSPATH=%JARS%;%FITS_HOME%\xml\nlnz
 
-java -Xmx1024m pl.psnc.synat.fits.rmi.FitsRmi %1
+java -Xmx1024m pl.psnc.synat.fits.rmi.FitsRmi %1 %2
@@ -15,12 +15,20 @@
  */
 package pl.psnc.synat.fits.rmi;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.rmi.AccessException;
+import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.LogManager;
@@ -35,7 +43,10 @@ import pl.psnc.synat.wrdz.common.metadata.tech.rmi.FitsTechMetadataExtractorCons
 import edu.harvard.hul.ois.fits.exceptions.FitsException;
 
 /**
- * The main class. Starts or stops the FITS service in the RMI registry.
+ * The main class. Starts or stops the FITS service in the RMI registry. The service can be started with a number of
+ * worker processes - the first one runs in the process holding the registry, the others are started as child JVMs and
+ * bound under the names <code>FitsRmiService-1</code>, <code>FitsRmiService-2</code> and so on. Clients spread their
+ * calls over all of them.
  * 
  */
 public class FitsRmi {
@@ -76,10 +87,19 @@ public class FitsRmi {
         stdout = System.out;
         stderr = System.err;
 
-        if (args.length >= 1 && !(args[0].equals("start") || args[0].equals("stop"))) {
-            stdout.println("Invalid CLI options. Use: start or stop");
+        if (args.length >= 1 && !(args[0].equals("start") || args[0].equals("stop") || args[0].equals("worker"))) {
+            stdout.println("Invalid CLI options. Use: start [number of workers] or stop");
             System.exit(0);
         }
+        int workers = 1;
+        if (args.length >= 2) {
+            try {
+                workers = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                stdout.println("Invalid CLI options. The number of workers must be an integer");
+                System.exit(0);
+            }
+        }
 
         redirectStandardOutput();
 
@@ -87,6 +107,9 @@ public class FitsRmi {
             startAsService(); // for windows service
         } else if (args[0].equals("start")) {
             start();
+            startWorkers(workers);
+        } else if (args[0].equals("worker")) {
+            startWorker(workers);
         } else {
             stop();
         }
@@ -230,6 +253,117 @@ public class FitsRmi {
     }
 
 
+    /**
+     * Starts additional worker processes. Each of them runs in its own JVM with the same options and class path.
+     * 
+     * @param workers
+     *            total number of workers, including the one running in this process
+     */
+    private static void startWorkers(int workers) {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 1; i < workers; i++) {
+            List<String> command = new ArrayList<String>();
+            command.add(java);
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.add("-classpath");
+            command.add(System.getProperty("java.class.path"));
+            command.add(FitsRmi.class.getName());
+            command.add("worker");
+            command.add(String.valueOf(i));
+            try {
+                Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+                forwardOutput(process, i);
+                stdout.println("FITS worker " + i + " started");
+            } catch (IOException e) {
+                stdout.println("Error starting the FITS worker " + i);
+                stdout.println(e.toString());
+            }
+        }
+    }
+
+
+    /**
+     * Copies the output of a worker process to the log, so the process does not block on a full pipe.
+     * 
+     * @param process
+     *            worker process
+     * @param number
+     *            number of the worker
+     */
+    private static void forwardOutput(final Process process, final int number) {
+        Thread thread = new Thread("fits-worker-" + number + "-output") {
+
+            @Override
+            public void run() {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        System.out.println("[worker " + number + "] " + line);
+                    }
+                } catch (IOException e) {
+                    System.out.println("[worker " + number + "] " + e.toString());
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /**
+     * Runs an additional worker process. It binds its own FITS service in the registry of the parent process and
+     * exits when the parent process ends (its standard input is closed).
+     * 
+     * @param number
+     *            number of the worker
+     */
+    private static void startWorker(int number) {
+        final String name = FitsTechMetadataExtractorConsts.FITS_RMI_SERVICE_NAME
+                + FitsTechMetadataExtractorConsts.FITS_RMI_WORKER_SEPARATOR + number;
+        try {
+            registry = LocateRegistry.getRegistry("localhost", FitsTechMetadataExtractorConsts.RMI_REGISTRY_PORT);
+            fitsService = new FitsTechMetadataExtractorService();
+            FitsTechMetadataExtractor stub = (FitsTechMetadataExtractor) UnicastRemoteObject.exportObject(fitsService,
+                0);
+            registry.rebind(name, stub);
+            stdout.println("FITS worker registered and bound under the name: " + name);
+        } catch (FitsException e) {
+            stdout.println("Error creating an instance of the service class");
+            stdout.println(e.toString());
+            System.exit(1);
+        } catch (RemoteException e) {
+            stdout.println("Error binding the worker to the RMI registry");
+            stdout.println(e.toString());
+            System.exit(1);
+        }
+
+        Thread watcher = new Thread("fits-worker-watcher") {
+
+            @Override
+            public void run() {
+                try {
+                    while (System.in.read() != -1) {
+                        continue;
+                    }
+                } catch (IOException e) {
+                    stdout.println(e.toString());
+                }
+                try {
+                    registry.unbind(name);
+                } catch (RemoteException e) {
+                    stdout.println(e.toString());
+                } catch (NotBoundException e) {
+                    stdout.println(e.toString());
+                }
+                System.exit(0);
+            }
+        };
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+
     private static void startAsService() {
         FitsRmi.start();
 
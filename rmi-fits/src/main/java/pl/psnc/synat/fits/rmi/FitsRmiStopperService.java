@@ -30,10 +30,14 @@ public class FitsRmiStopperService implements FitsRmiStopper {
     @Override
     public void stop(Registry registry)
             throws RemoteException {
-        try {
-            registry.unbind(FitsTechMetadataExtractorConsts.FITS_RMI_SERVICE_NAME);
-        } catch (NotBoundException e) {
-            System.out.println(e.toString());
+        for (String name : registry.list()) {
+            if (name.startsWith(FitsTechMetadataExtractorConsts.FITS_RMI_SERVICE_NAME)) {
+                try {
+                    registry.unbind(name);
+                } catch (NotBoundException e) {
+                    System.out.println(e.toString());
+                }
+            }
         }
         new StoppingThread().start();
     }
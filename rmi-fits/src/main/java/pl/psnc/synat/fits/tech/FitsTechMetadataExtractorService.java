@@ -16,7 +16,9 @@
 package pl.psnc.synat.fits.tech;
 
 import java.io.File;
+import java.net.URISyntaxException;
 import java.rmi.RemoteException;
+import java.security.CodeSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +42,9 @@ public class FitsTechMetadataExtractorService implements FitsTechMetadataExtract
     /** FITS instance. */
     //private final Fits fits;
 
+    /** Version of the extraction tool. */
+    private final String toolVersion;
+
     /**
      * Constructs this technical metadata extractor.
      * 
@@ -49,6 +54,7 @@ public class FitsTechMetadataExtractorService implements FitsTechMetadataExtract
     public FitsTechMetadataExtractorService()
             throws FitsException {
         //fits = new Fits();
+        toolVersion = "FITS" + describe(Fits.class) + " RMI-FITS" + describe(ExtractedMetadataBuilder.class);
     }
 
 
@@ -71,4 +77,40 @@ public class FitsTechMetadataExtractorService implements FitsTechMetadataExtract
         }
     }
 
+
+    @Override
+    public String getToolVersion()
+            throws RemoteException {
+        return toolVersion;
+    }
+
+
+    /**
+     * Describes the version of the library containing the class. Besides the declared version, the size and the
+     * modification time of the jar file are used, so replacing the library changes the description.
+     * 
+     * @param clazz
+     *            class of the library
+     * @return description of the version
+     */
+    private static String describe(Class<?> clazz) {
+        StringBuilder sb = new StringBuilder();
+        Package pkg = clazz.getPackage();
+        if (pkg != null && pkg.getImplementationVersion() != null) {
+            sb.append(' ').append(pkg.getImplementationVersion());
+        }
+        CodeSource source = clazz.getProtectionDomain().getCodeSource();
+        if (source != null && source.getLocation() != null) {
+            try {
+                File jar = new File(source.getLocation().toURI());
+                sb.append(' ').append(jar.length()).append('/').append(jar.lastModified());
+            } catch (URISyntaxException e) {
+                logger.warn("Location of " + clazz + " could not be resolved", e);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Location of " + clazz + " is not a file", e);
+            }
+        }
+        return sb.toString();
+    }
+
 }
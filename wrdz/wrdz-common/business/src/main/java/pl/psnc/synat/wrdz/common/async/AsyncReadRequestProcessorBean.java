@@ -39,7 +39,9 @@ public abstract class AsyncReadRequestProcessorBean {
 
     /**
      * Checks whether the response for asynchronous request is prepared or it is in progress. This method must be used
-     * in every method in subclasses, after constructing the requested URL.
+     * in every method in subclasses, after constructing the requested URL. The URL identifies the content of the
+     * response (e.g. object identifier, its resolved version and the fetching options), so it must be built in a
+     * canonical form - then a prepared response is shared by all the requests for the same content.
      * 
      * @param requestedUrl
      *            URL of the request
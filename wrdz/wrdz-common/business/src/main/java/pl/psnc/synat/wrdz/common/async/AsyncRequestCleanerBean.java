@@ -16,7 +16,7 @@
 package pl.psnc.synat.wrdz.common.async;
 
 import java.io.File;
-import java.util.Calendar;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -30,12 +30,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.wrdz.common.config.Configuration;
+import pl.psnc.synat.wrdz.common.dao.QueryFilter;
+import pl.psnc.synat.wrdz.common.dao.QueryModifier;
+import pl.psnc.synat.wrdz.common.dao.QuerySorter;
 import pl.psnc.synat.wrdz.common.dao.async.AsyncRequestResultDao;
 import pl.psnc.synat.wrdz.common.dao.async.AsyncRequestResultFilterFactory;
+import pl.psnc.synat.wrdz.common.dao.async.AsyncRequestResultSorterBuilder;
 import pl.psnc.synat.wrdz.common.entity.async.AsyncRequestResult;
 
 /**
- * Cleaner of responses for asynchronous request.
+ * Cleaner of responses for asynchronous request. Responses which have not been downloaded for the cleaning period are
+ * removed, and when the responses exceed the maximal size of the cache, the least recently (or least frequently) used
+ * ones are removed as well. Responses which are being downloaded are never removed.
  */
 @Singleton
 public class AsyncRequestCleanerBean {
@@ -43,6 +49,12 @@ public class AsyncRequestCleanerBean {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(AsyncRequestCleanerBean.class);
 
+    /** Name of the least frequently used eviction policy. */
+    private static final String POLICY_LFU = "LFU";
+
+    /** Number of the candidates for eviction fetched at once. */
+    private static final int EVICTION_PAGE_SIZE = 100;
+
     /**
      * Configuration.
      */
@@ -55,6 +67,12 @@ public class AsyncRequestCleanerBean {
     @EJB
     private AsyncRequestResultDao asyncRequestResultDaoBean;
 
+    /**
+     * Tracker of the downloads of the results.
+     */
+    @EJB
+    private AsyncRequestResultStore asyncRequestResultStoreBean;
+
 
     /**
      * Cleans responses for asynchronous request. Both in the database and on the disk.
@@ -62,44 +80,119 @@ public class AsyncRequestCleanerBean {
      * @param timer
      *            timer
      */
-    @Schedule(hour = "0", minute = "0", second = "0", dayOfWeek = "*", persistent = true,
-            info = "Every day at midnight")
+    @Schedule(hour = "*", minute = "*/15", second = "0", dayOfWeek = "*", persistent = false,
+            info = "Every 15 minutes")
     public void run(Timer timer) {
         int days = config.getAsyncCleaningPeriod();
-        Calendar now = Calendar.getInstance();
-        now.set(Calendar.HOUR_OF_DAY, 0);
-        now.set(Calendar.MINUTE, 0);
-        now.set(Calendar.SECOND, 0);
-        now.set(Calendar.MILLISECOND, 0);
-        Date date = now.getTime();
-        date.setTime(date.getTime() - (days + 1) * 86400000L);
-        logger.debug("cleaning all results before " + date + " (cleaning period: " + days + " days");
+        Date date = new Date(System.currentTimeMillis() - days * 86400000L);
+        long maxSize = config.getAsyncCacheMaxSize() * 1024 * 1024;
+        logger.debug("cleaning all results not accessed since " + date + " (cleaning period: " + days
+                + " days), cache size limit: " + maxSize);
+        String root = config.getAsyncCacheHome();
+
         AsyncRequestResultFilterFactory queryFilterFactory = asyncRequestResultDaoBean.createQueryModifier()
                 .getQueryFilterFactory();
-        List<AsyncRequestResult> results = asyncRequestResultDaoBean.findBy(
-            queryFilterFactory.byCompletedBefore(date, false), false);
-        logger.debug("results to remove: " + results.size());
-        String root = config.getAsyncCacheHome();
-        for (AsyncRequestResult result : results) {
-            logger.debug("result: " + result);
-            boolean success = true;
-            if (result.hasContent()) {
-                File file = new File(root + "/" + result.getId());
-                if (file.exists()) {
-                    success = file.delete();
-                    if (success) {
-                        logger.debug("File " + result.getId() + " successfully deleted");
-                    } else {
-                        logger.debug("Deleting the file " + result.getId() + " failed");
-                    }
-                } else {
-                    logger.debug("File " + result.getId() + " does not exist!");
+        for (AsyncRequestResult result : asyncRequestResultDaoBean.findBy(
+            queryFilterFactory.byLastAccessedBefore(date, false), false)) {
+            if (!asyncRequestResultStoreBean.isInUse(result.getId())) {
+                logger.debug("expired result: " + result);
+                remove(result, root);
+            }
+        }
+
+        if (maxSize > 0) {
+            long size = asyncRequestResultDaoBean.getTotalSize();
+            if (size > maxSize) {
+                logger.debug("cache size " + size + " exceeds the limit " + maxSize);
+                size -= evict(size - maxSize, root);
+                if (size > maxSize) {
+                    logger.warn("Cache of asynchronous responses still exceeds the limit (" + size + " bytes)"
+                            + " - the remaining responses are being downloaded.");
                 }
             }
-            if (success) {
-                asyncRequestResultDaoBean.delete(result);
+        }
+    }
+
+
+    /**
+     * Removes the results according to the eviction policy until the given number of bytes is freed. The candidates
+     * are read page by page in the order of the policy and removed once enough of them are selected, so that the
+     * removals do not shift the pages being read.
+     * 
+     * @param excess
+     *            number of bytes to free
+     * @param root
+     *            cache home
+     * @return number of bytes freed
+     */
+    private long evict(long excess, String root) {
+        QueryModifier<AsyncRequestResultFilterFactory, AsyncRequestResultSorterBuilder, AsyncRequestResult> modifier;
+        modifier = asyncRequestResultDaoBean.createQueryModifier();
+        QueryFilter<AsyncRequestResult> filter = modifier.getQueryFilterFactory().byHasContent();
+        AsyncRequestResultSorterBuilder sorterBuilder = modifier.getQuerySorterBuilder();
+        if (POLICY_LFU.equalsIgnoreCase(config.getAsyncEvictionPolicy())) {
+            sorterBuilder.byAccessCount(true);
+        }
+        QuerySorter<AsyncRequestResult> sorter = sorterBuilder.byLastAccessedOn(true).buildSorter();
+
+        List<AsyncRequestResult> evicted = new ArrayList<AsyncRequestResult>();
+        long selected = 0;
+        for (int page = 0; selected < excess; page++) {
+            List<AsyncRequestResult> candidates = asyncRequestResultDaoBean.findPaginatedBy(filter, sorter,
+                EVICTION_PAGE_SIZE, page);
+            for (AsyncRequestResult result : candidates) {
+                if (selected >= excess) {
+                    break;
+                }
+                if (!asyncRequestResultStoreBean.isInUse(result.getId())) {
+                    evicted.add(result);
+                    selected += result.getSize();
+                }
+            }
+            if (candidates.size() < EVICTION_PAGE_SIZE) {
+                break;
             }
         }
+
+        long freed = 0;
+        for (AsyncRequestResult result : evicted) {
+            logger.debug("evicted result: " + result);
+            if (remove(result, root)) {
+                freed += result.getSize();
+            }
+        }
+        return freed;
+    }
+
+
+    /**
+     * Removes the result both from the database and from the disk.
+     * 
+     * @param result
+     *            result
+     * @param root
+     *            cache home
+     * @return whether the result was removed
+     */
+    private boolean remove(AsyncRequestResult result, String root) {
+        boolean success = true;
+        if (result.hasContent()) {
+            File file = new File(root + "/" + result.getId());
+            if (file.exists()) {
+                success = file.delete();
+                if (success) {
+                    logger.debug("File " + result.getId() + " successfully deleted");
+                } else {
+                    logger.debug("Deleting the file " + result.getId() + " failed");
+                }
+            } else {
+                logger.debug("File " + result.getId() + " does not exist!");
+            }
+        }
+        if (success) {
+            asyncRequestResultDaoBean.delete(result);
+        }
+        return success;
     }
 
 }
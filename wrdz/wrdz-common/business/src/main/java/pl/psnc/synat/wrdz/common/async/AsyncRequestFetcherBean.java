@@ -92,7 +92,7 @@ public class AsyncRequestFetcherBean implements AsyncRequestFetcher {
         AsyncRequestResult result = asyncRequestResultDaoBean.findFirstResultBy(queryFilterFactory.and(
             queryFilterFactory.byRequestedUrl(requestedUrl),
             queryFilterFactory.byCode(AsyncRequestResultConsts.HTTP_CODE_OK),
-            queryFilterFactory.byCompletedAfter(date, true)));
+            queryFilterFactory.byLastAccessedAfter(date, true)));
         if (result != null) {
             return result;
         } else {
@@ -82,23 +82,26 @@ public class AsyncRequestResultManagerBean implements AsyncRequestResultManager
 
 
     @Override
-    public void saveResultString(String resultId, String result)
+    public void saveResultString(AsyncRequestResult asyncResult, String result)
             throws IOException {
         String root = config.getAsyncCacheHome();
-        OutputStream fstream = new FileOutputStream(new File(root + "/" + resultId));
-        fstream.write(result.getBytes("utf-8"));
+        byte[] content = result.getBytes("utf-8");
+        OutputStream fstream = new FileOutputStream(new File(root + "/" + asyncResult.getId()));
+        fstream.write(content);
         fstream.close();
+        asyncResult.setSize((long) content.length);
     }
 
 
     @Override
-    public void saveResultFile(String resultId, String path)
+    public void saveResultFile(AsyncRequestResult asyncResult, String path)
             throws IOException {
         File srcfile = new File(path);
         String root = config.getAsyncCacheHome();
-        File dstfile = new File(root + "/" + resultId);
+        File dstfile = new File(root + "/" + asyncResult.getId());
         if (!srcfile.renameTo(dstfile)) {
             throw new IOException("File '" + srcfile + "' could not be renamed as '" + dstfile + "'.");
         }
+        asyncResult.setSize(dstfile.length());
     }
 }
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.async;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ejb.EJB;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.wrdz.common.dao.async.AsyncRequestResultDao;
+import pl.psnc.synat.wrdz.common.entity.async.AsyncRequestResult;
+
+/**
+ * Default implementation of {@link AsyncRequestResultStore}. Downloads in progress are counted in memory, the access
+ * statistics are stored with the results.
+ */
+@Singleton
+@Lock(LockType.READ)
+public class AsyncRequestResultStoreBean implements AsyncRequestResultStore {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(AsyncRequestResultStoreBean.class);
+
+    /**
+     * Time (in milliseconds) after which a download which has not been released is considered abandoned.
+     */
+    private static final long MAX_LEASE_TIME = 24 * 3600 * 1000L;
+
+    /**
+     * DAO for results of asynchronous requests.
+     */
+    @EJB
+    private AsyncRequestResultDao asyncRequestResultDaoBean;
+
+    /**
+     * Downloads in progress, keyed by the result id.
+     */
+    private final Map<String, Lease> leases = new HashMap<String, Lease>();
+
+
+    @Override
+    public void acquire(String resultId) {
+        synchronized (leases) {
+            Lease lease = leases.get(resultId);
+            if (lease == null) {
+                lease = new Lease();
+                leases.put(resultId, lease);
+            }
+            lease.count++;
+            lease.acquiredOn = System.currentTimeMillis();
+        }
+    }
+
+
+    @Override
+    public void recordAccess(String resultId, boolean download) {
+        AsyncRequestResult result = asyncRequestResultDaoBean.findById(resultId);
+        if (result != null) {
+            result.setLastAccessedOn(new Date());
+            if (download) {
+                result.setAccessCount(result.getAccessCount() + 1);
+            }
+        }
+    }
+
+
+    @Override
+    public void release(String resultId) {
+        synchronized (leases) {
+            Lease lease = leases.get(resultId);
+            if (lease != null && --lease.count <= 0) {
+                leases.remove(resultId);
+            }
+        }
+    }
+
+
+    @Override
+    public boolean isInUse(String resultId) {
+        synchronized (leases) {
+            Lease lease = leases.get(resultId);
+            if (lease == null) {
+                return false;
+            }
+            if (System.currentTimeMillis() - lease.acquiredOn > MAX_LEASE_TIME) {
+                logger.warn("Download of the result " + resultId + " has not been released - it is abandoned.");
+                leases.remove(resultId);
+                return false;
+            }
+            return true;
+        }
+    }
+
+
+    /**
+     * Downloads in progress of a single result.
+     */
+    private static class Lease {
+
+        /** Number of downloads in progress. */
+        private int count;
+
+        /** Time of the latest download start. */
+        private long acquiredOn;
+
+    }
+
+}
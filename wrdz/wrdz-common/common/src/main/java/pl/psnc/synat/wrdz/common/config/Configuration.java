@@ -128,6 +128,28 @@ public class Configuration {
     }
 
 
+    /**
+     * Returns the maximal total size (in megabytes) of the responses for asynchronous requests kept in the cache. When
+     * it is exceeded, the least valuable responses are removed before their cleaning period passes.
+     * 
+     * @return maximal size of the cache in megabytes, or 0 if the size is not limited
+     */
+    public long getAsyncCacheMaxSize() {
+        return config.getLong("async.max-size", 0L);
+    }
+
+
+    /**
+     * Returns the policy according to which responses for asynchronous requests are removed when the cache exceeds its
+     * maximal size: <code>LRU</code> (least recently used first) or <code>LFU</code> (least frequently used first).
+     * 
+     * @return eviction policy
+     */
+    public String getAsyncEvictionPolicy() {
+        return config.getString("async.eviction-policy", "LRU");
+    }
+
+
     /**
      * Whether to verify the hostname for https connections.
      * 
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.format;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * File format described in the format registry snapshot.
+ */
+public class FormatRecord {
+
+    /** UDFR IRI of the format. */
+    private final String iri;
+
+    /** PRONOM identifiers of the format. */
+    private final List<String> puids;
+
+    /** Release date of the format (the earliest, if there are more). */
+    private final Date releaseDate;
+
+    /** Withdrawal date of the format (the earliest, if there are more). */
+    private final Date withdrawalDate;
+
+    /** UDFR IRIs of the previous versions of the format. */
+    private final Set<String> previousVersions;
+
+    /** Mimetype of the format. */
+    private final String mimetype;
+
+    /** Default extension of the format. */
+    private final String extension;
+
+
+    /**
+     * Constructor.
+     * 
+     * @param iri
+     *            UDFR IRI of the format
+     * @param puids
+     *            PRONOM identifiers of the format
+     * @param releaseDate
+     *            release date, or null if unknown
+     * @param withdrawalDate
+     *            withdrawal date, or null if the format was not withdrawn
+     * @param previousVersions
+     *            UDFR IRIs of the previous versions of the format
+     * @param mimetype
+     *            mimetype, or null if unknown
+     * @param extension
+     *            default extension, or null if unknown
+     */
+    public FormatRecord(String iri, List<String> puids, Date releaseDate, Date withdrawalDate,
+            Set<String> previousVersions, String mimetype, String extension) {
+        this.iri = iri;
+        this.puids = Collections.unmodifiableList(puids);
+        this.releaseDate = releaseDate;
+        this.withdrawalDate = withdrawalDate;
+        this.previousVersions = Collections.unmodifiableSet(previousVersions);
+        this.mimetype = mimetype;
+        this.extension = extension;
+    }
+
+
+    public String getIri() {
+        return iri;
+    }
+
+
+    public List<String> getPuids() {
+        return puids;
+    }
+
+
+    /**
+     * Returns the first PRONOM identifier of the format.
+     * 
+     * @return PRONOM identifier, or null if the format has none
+     */
+    public String getPuid() {
+        return puids.isEmpty() ? null : puids.get(0);
+    }
+
+
+    public Date getReleaseDate() {
+        return releaseDate;
+    }
+
+
+    public Date getWithdrawalDate() {
+        return withdrawalDate;
+    }
+
+
+    public Set<String> getPreviousVersions() {
+        return previousVersions;
+    }
+
+
+    public String getMimetype() {
+        return mimetype;
+    }
+
+
+    public String getExtension() {
+        return extension;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("FormatRecord ");
+        sb.append("[iri = ").append(iri);
+        sb.append(", puids = ").append(puids);
+        sb.append(", releaseDate = ").append(releaseDate);
+        sb.append(", withdrawalDate = ").append(withdrawalDate);
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.format;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the format registry (PRONOM formats described in UDFR), indexed by the PRONOM identifiers and the UDFR
+ * IRIs of the formats. The snapshot is immutable, so it can be queried by many threads at the same time.
+ */
+public class FormatRegistry {
+
+    /** Formats by their UDFR IRIs. */
+    private final Map<String, FormatRecord> byIri;
+
+    /** Formats by their PRONOM identifiers. */
+    private final Map<String, FormatRecord> byPuid;
+
+    /** Subsequent versions of the formats by the UDFR IRIs of their previous versions. */
+    private final Map<String, List<FormatRecord>> successors;
+
+
+    /**
+     * Builds the indexes of the given formats.
+     * 
+     * @param records
+     *            formats of the registry
+     */
+    public FormatRegistry(Collection<FormatRecord> records) {
+        byIri = new HashMap<String, FormatRecord>();
+        byPuid = new HashMap<String, FormatRecord>();
+        successors = new HashMap<String, List<FormatRecord>>();
+        for (FormatRecord record : records) {
+            byIri.put(record.getIri(), record);
+            for (String puid : record.getPuids()) {
+                if (!byPuid.containsKey(puid)) {
+                    byPuid.put(puid, record);
+                }
+            }
+            for (String previousVersion : record.getPreviousVersions()) {
+                List<FormatRecord> list = successors.get(previousVersion);
+                if (list == null) {
+                    list = new ArrayList<FormatRecord>();
+                    successors.put(previousVersion, list);
+                }
+                list.add(record);
+            }
+        }
+    }
+
+
+    /**
+     * Finds the format with the given PRONOM identifier.
+     * 
+     * @param puid
+     *            PRONOM identifier
+     * @return format or null if there is no such format in the registry
+     */
+    public FormatRecord findByPuid(String puid) {
+        return byPuid.get(puid);
+    }
+
+
+    /**
+     * Finds the format with the given UDFR IRI.
+     * 
+     * @param iri
+     *            UDFR IRI
+     * @return format or null if there is no such format in the registry
+     */
+    public FormatRecord findByIri(String iri) {
+        return byIri.get(iri);
+    }
+
+
+    /**
+     * Returns the formats which are subsequent versions of the given format.
+     * 
+     * @param record
+     *            format
+     * @return subsequent versions, possibly empty
+     */
+    public List<FormatRecord> getSuccessors(FormatRecord record) {
+        List<FormatRecord> list = successors.get(record.getIri());
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+
+    /**
+     * Returns the number of formats in the registry.
+     * 
+     * @return number of formats
+     */
+    public int size() {
+        return byIri.size();
+    }
+
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
+import pl.psnc.synat.wrdz.common.metadata.XmlParsers;
+
+/**
+ * Reads the format registry snapshot from the sparql results (XML) of the format registry query of
+ * {@link FormatRegistryStore}. Each result describes one combination of the properties of a format, so the results of
+ * the same format are merged into one {@link FormatRecord}.
+ */
+public final class FormatRegistryReader {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(FormatRegistryReader.class);
+
+    /** Sparql results namespace uri. */
+    private static final String NS_URI = "http://www.w3.org/2005/sparql-results#";
+
+    /** Result element name. */
+    private static final String RESULT = "result";
+
+    /** Binding element name. */
+    private static final String BINDING = "binding";
+
+    /** Binding name attribute. */
+    private static final String BINDING_NAME = "name";
+
+    /** Binding of the format UDFR IRI. */
+    private static final String FILE_FORMAT = "fileFormat";
+
+    /** Binding of the format PUID. */
+    private static final String PUID = "fileFormatPuid";
+
+    /** Binding of the format release date. */
+    private static final String RELEASE_DATE = "releaseDate";
+
+    /** Binding of the format withdrawal date. */
+    private static final String WITHDRAWAL_DATE = "withdrawalDate";
+
+    /** Binding of the previous version of the format. */
+    private static final String PREVIOUS_VERSION = "previousVersion";
+
+    /** Binding of the format mimetype. */
+    private static final String MIMETYPE = "mimetype";
+
+    /** Binding of the format default extension. */
+    private static final String EXTENSION = "extension";
+
+    /** Date format used for parsing dates returned by UDFR. */
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
+
+    /**
+     * No instances.
+     */
+    private FormatRegistryReader() {
+        throw new UnsupportedOperationException("No instances");
+    }
+
+
+    /**
+     * Reads the format registry snapshot. The stream is not closed.
+     * 
+     * @param stream
+     *            sparql results
+     * @return format registry
+     * @throws IOException
+     *             when the stream cannot be read or does not contain sparql results
+     */
+    public static FormatRegistry read(InputStream stream)
+            throws IOException {
+        Document document;
+        try {
+            document = XmlParsers.getNamespaceAwareDocumentBuilder().parse(stream);
+        } catch (SAXException e) {
+            throw new IOException("Could not parse the format registry snapshot", e);
+        } catch (ParserConfigurationException e) {
+            throw new WrdzRuntimeException(e.getMessage(), e);
+        }
+
+        DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+        Map<String, Builder> builders = new LinkedHashMap<String, Builder>();
+
+        NodeList results = document.getElementsByTagNameNS(NS_URI, RESULT);
+        for (int i = 0; i < results.getLength(); i++) {
+            Map<String, String> bindings = readBindings((Element) results.item(i));
+            String iri = bindings.get(FILE_FORMAT);
+            if (iri == null) {
+                continue;
+            }
+            Builder builder = builders.get(iri);
+            if (builder == null) {
+                builder = new Builder(iri);
+                builders.put(iri, builder);
+            }
+            builder.add(bindings, dateFormat);
+        }
+
+        List<FormatRecord> records = new ArrayList<FormatRecord>(builders.size());
+        for (Builder builder : builders.values()) {
+            records.add(builder.build());
+        }
+        return new FormatRegistry(records);
+    }
+
+
+    /**
+     * Reads the values of the bindings of the given result.
+     * 
+     * @param result
+     *            result element
+     * @return values by the names of the bindings
+     */
+    private static Map<String, String> readBindings(Element result) {
+        Map<String, String> bindings = new LinkedHashMap<String, String>();
+        for (Node node = result.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeType() == Node.ELEMENT_NODE && BINDING.equals(node.getLocalName())) {
+                String value = node.getTextContent();
+                if (value != null) {
+                    bindings.put(((Element) node).getAttribute(BINDING_NAME), value.trim());
+                }
+            }
+        }
+        return bindings;
+    }
+
+
+    /**
+     * Collects the properties of one format from its results.
+     */
+    private static class Builder {
+
+        /** UDFR IRI of the format. */
+        private final String iri;
+
+        /** PRONOM identifiers of the format. */
+        private final Set<String> puids = new LinkedHashSet<String>();
+
+        /** The earliest release date. */
+        private Date releaseDate;
+
+        /** The earliest withdrawal date. */
+        private Date withdrawalDate;
+
+        /** UDFR IRIs of the previous versions. */
+        private final Set<String> previousVersions = new LinkedHashSet<String>();
+
+        /** The first mimetype. */
+        private String mimetype;
+
+        /** The first extension. */
+        private String extension;
+
+
+        /**
+         * Constructor.
+         * 
+         * @param iri
+         *            UDFR IRI of the format
+         */
+        Builder(String iri) {
+            this.iri = iri;
+        }
+
+
+        /**
+         * Adds the properties of one result.
+         * 
+         * @param bindings
+         *            values by the names of the bindings
+         * @param dateFormat
+         *            format of the dates
+         */
+        void add(Map<String, String> bindings, DateFormat dateFormat) {
+            if (bindings.containsKey(PUID)) {
+                puids.add(bindings.get(PUID));
+            }
+            if (bindings.containsKey(PREVIOUS_VERSION)) {
+                previousVersions.add(bindings.get(PREVIOUS_VERSION));
+            }
+            releaseDate = earliest(releaseDate, bindings.get(RELEASE_DATE), dateFormat);
+            withdrawalDate = earliest(withdrawalDate, bindings.get(WITHDRAWAL_DATE), dateFormat);
+            if (mimetype == null) {
+                mimetype = bindings.get(MIMETYPE);
+            }
+            if (extension == null) {
+                extension = bindings.get(EXTENSION);
+            }
+        }
+
+
+        /**
+         * Returns the earlier of the given dates.
+         * 
+         * @param date
+         *            date found so far, or null
+         * @param value
+         *            unparsed date, or null
+         * @param dateFormat
+         *            format of the dates
+         * @return the earlier date
+         */
+        private Date earliest(Date date, String value, DateFormat dateFormat) {
+            if (value == null) {
+                return date;
+            }
+            try {
+                Date newDate = dateFormat.parse(value);
+                if (date == null || date.after(newDate)) {
+                    return newDate;
+                }
+            } catch (ParseException e) {
+                logger.warn("Unparsable date of the format {}: {}", iri, value);
+            }
+            return date;
+        }
+
+
+        /**
+         * Creates the format.
+         * 
+         * @return format
+         */
+        FormatRecord build() {
+            return new FormatRecord(iri, new ArrayList<String>(puids), releaseDate, withdrawalDate, previousVersions,
+                    mimetype, extension);
+        }
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.format;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
+
+/**
+ * Keeps the format registry snapshot in memory and in a local file, so that format lookups do not depend on the UDFR
+ * endpoint.
+ * <p>
+ * The snapshot is the result of a single sparql query which retrieves the identifiers, release and withdrawal dates,
+ * previous versions, mimetypes and extensions of all the formats. It can be downloaded from the endpoint (see
+ * {@link #refresh()}) or imported from a dump file containing the result of the same query (see {@link #load()}).
+ * <p>
+ * This class is thread-safe - the snapshot is replaced as a whole, so readers never see a partially loaded registry.
+ */
+public class FormatRegistryStore {
+
+    /** URI of the UDFR http endpoint. */
+    public static final String UDFR_ENDPOINT = "http://udfr.org/ontowiki/sparql/";
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(FormatRegistryStore.class);
+
+    /** Path to the file containing the sparql query that retrieves the whole format registry. */
+    private static final String QUERY_FILE = "/sparqls/format-registry.sparql";
+
+    /** Http endpoint post request parameter containing the sparql query to be executed. */
+    private static final String POST_PARAM = "query";
+
+    /** Query encoding. */
+    private static final String ENCODING = "UTF-8";
+
+    /** Media type of the sparql results. */
+    private static final String RESULTS_TYPE = "application/sparql-results+xml";
+
+    /** URI of the sparql http endpoint. */
+    private final String endpoint;
+
+    /** Local snapshot file, or null if the snapshot is kept in memory only. */
+    private final File snapshot;
+
+    /** Dump file to be imported, or null if there is none. */
+    private final File dump;
+
+    /** The sparql query that retrieves the whole format registry. */
+    private final String query;
+
+    /** Current snapshot, null until it is loaded. */
+    private volatile FormatRegistry registry;
+
+
+    /**
+     * Constructor.
+     * 
+     * @param endpoint
+     *            URI of the sparql http endpoint
+     * @param snapshot
+     *            local snapshot file, or null if the snapshot should be kept in memory only
+     * @param dump
+     *            dump file to be imported, or null if there is none
+     */
+    public FormatRegistryStore(String endpoint, File snapshot, File dump) {
+        this.endpoint = endpoint;
+        this.snapshot = snapshot;
+        this.dump = dump;
+        InputStream input = null;
+        try {
+            input = getClass().getResourceAsStream(QUERY_FILE);
+            query = IOUtils.toString(input, ENCODING);
+        } catch (IOException e) {
+            throw new WrdzRuntimeException("Could not read sparql query file", e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+
+    /**
+     * Loads the snapshot stored locally. The dump file is imported if it is newer than the local snapshot file (or if
+     * there is no such file yet), and it replaces the local snapshot file.
+     * 
+     * @return <code>true</code> if a snapshot was loaded; <code>false</code> if there is no local snapshot yet
+     * @throws IOException
+     *             when the snapshot cannot be read
+     */
+    public synchronized boolean load()
+            throws IOException {
+        if (dump != null && dump.isFile()
+                && (snapshot == null || !snapshot.isFile() || dump.lastModified() > snapshot.lastModified())) {
+            FormatRegistry imported = readFile(dump);
+            if (snapshot != null) {
+                FileUtils.copyFile(dump, snapshot, false);
+            }
+            registry = imported;
+            logger.info("Imported " + imported.size() + " formats from the format registry dump " + dump);
+            return true;
+        }
+        if (snapshot != null && snapshot.isFile()) {
+            registry = readFile(snapshot);
+            logger.info("Loaded " + registry.size() + " formats from the format registry snapshot " + snapshot);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Downloads a new snapshot from the endpoint and replaces the current one. The current snapshot is kept if the new
+     * one cannot be downloaded.
+     * 
+     * @throws IOException
+     *             when the snapshot cannot be downloaded or stored
+     */
+    public synchronized void refresh()
+            throws IOException {
+        File temp;
+        if (snapshot != null) {
+            temp = File.createTempFile("format-registry", ".tmp", snapshot.getAbsoluteFile().getParentFile());
+        } else {
+            temp = File.createTempFile("format-registry", ".tmp");
+        }
+        try {
+            download(temp);
+            FormatRegistry downloaded = readFile(temp);
+            if (snapshot != null && !temp.renameTo(snapshot)) {
+                FileUtils.copyFile(temp, snapshot, false);
+            }
+            registry = downloaded;
+            logger.info("Downloaded " + downloaded.size() + " formats from the format registry " + endpoint);
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                logger.warn("Could not delete temporary file: " + temp.getAbsolutePath());
+            }
+        }
+    }
+
+
+    /**
+     * Returns the current snapshot.
+     * 
+     * @return format registry, or null if no snapshot was loaded yet
+     */
+    public FormatRegistry getRegistry() {
+        return registry;
+    }
+
+
+    /**
+     * Executes the format registry query via an http post request to the endpoint and stores the response in the given
+     * file.
+     * 
+     * @param file
+     *            target file
+     * @throws IOException
+     *             when the endpoint cannot be contacted or returns an error
+     */
+    private void download(File file)
+            throws IOException {
+        HttpClient client = new DefaultHttpClient();
+        try {
+            HttpPost request = new HttpPost(endpoint);
+            request.setHeader("Accept", RESULTS_TYPE);
+            List<NameValuePair> pairs = new ArrayList<NameValuePair>();
+            pairs.add(new BasicNameValuePair(POST_PARAM, query));
+            request.setEntity(new UrlEncodedFormEntity(pairs, ENCODING));
+
+            HttpResponse response = client.execute(request);
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                EntityUtils.consume(response.getEntity());
+                throw new IOException("Unexpected response from the format registry: " + response.getStatusLine());
+            }
+            OutputStream output = new FileOutputStream(file);
+            try {
+                response.getEntity().writeTo(output);
+            } finally {
+                output.close();
+            }
+        } finally {
+            client.getConnectionManager().shutdown();
+        }
+    }
+
+
+    /**
+     * Reads the snapshot from the given file.
+     * 
+     * @param file
+     *            sparql results file
+     * @return format registry
+     * @throws IOException
+     *             when the file cannot be read or parsed
+     */
+    private FormatRegistry readFile(File file)
+            throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return FormatRegistryReader.read(input);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+}
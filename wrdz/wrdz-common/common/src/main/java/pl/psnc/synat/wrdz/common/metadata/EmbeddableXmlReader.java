@@ -0,0 +1,126 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+/**
+ * Reads an XML document which is copied verbatim into another document. The byte order mark, the XML declaration and
+ * the whitespace before the root element, which cannot appear inside the other document, are skipped. Only the
+ * beginning of the document is examined, the rest is passed through as it is read.
+ */
+public class EmbeddableXmlReader extends FilterReader {
+
+    /** Maximal number of characters examined at the beginning of the document. */
+    private static final int PREFIX_SIZE = 1024;
+
+    /** Beginning of the XML declaration. */
+    private static final String DECLARATION_START = "<?xml";
+
+    /** End of the XML declaration. */
+    private static final String DECLARATION_END = "?>";
+
+    /** Whether the beginning of the document has been skipped. */
+    private boolean skipped;
+
+
+    /**
+     * Constructs a new reader.
+     * 
+     * @param reader
+     *            reader of the whole document
+     */
+    public EmbeddableXmlReader(Reader reader) {
+        super(new PushbackReader(reader, PREFIX_SIZE));
+    }
+
+
+    /**
+     * Skips the beginning of the document up to the root element. It is done by the first read, unless this method
+     * was called before.
+     * 
+     * @throws IOException
+     *             if the document could not be read
+     */
+    public void skipProlog()
+            throws IOException {
+        if (skipped) {
+            return;
+        }
+        skipped = true;
+        char[] prefix = new char[PREFIX_SIZE];
+        int length = 0;
+        while (length < prefix.length) {
+            int count = in.read(prefix, length, prefix.length - length);
+            if (count == -1) {
+                break;
+            }
+            length += count;
+        }
+        String contents = new String(prefix, 0, length);
+        int start = 0;
+        if (!contents.isEmpty() && contents.charAt(0) == '\uFEFF') {
+            start++;
+        }
+        if (contents.startsWith(DECLARATION_START, start)) {
+            int end = contents.indexOf(DECLARATION_END, start);
+            if (end != -1) {
+                start = end + DECLARATION_END.length();
+            }
+        }
+        while (start < length && Character.isWhitespace(contents.charAt(start))) {
+            start++;
+        }
+        if (start < length) {
+            ((PushbackReader) in).unread(prefix, start, length - start);
+        }
+    }
+
+
+    @Override
+    public int read()
+            throws IOException {
+        skipProlog();
+        return super.read();
+    }
+
+
+    @Override
+    public int read(char[] buffer, int offset, int length)
+            throws IOException {
+        skipProlog();
+        return super.read(buffer, offset, length);
+    }
+
+
+    @Override
+    public long skip(long count)
+            throws IOException {
+        skipProlog();
+        return super.skip(count);
+    }
+
+
+    @Override
+    public boolean ready()
+            throws IOException {
+        // skipping the beginning might block
+        return skipped && super.ready();
+    }
+}
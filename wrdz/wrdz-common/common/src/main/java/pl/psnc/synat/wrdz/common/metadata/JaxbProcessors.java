@@ -0,0 +1,170 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * JAXB context together with marshallers and unmarshallers cached per thread. The context is thread-safe and expensive
+ * to create, so it is shared by all the users of the same context path. Marshallers and unmarshallers are not
+ * thread-safe, but they can be reused by the thread which created them, so they are not created for every document.
+ * 
+ * Each set of marshaller properties has its own cached marshaller - the returned marshallers must not be reconfigured.
+ * They must not be kept longer than the current task either, since the next task may run in a different thread.
+ */
+public final class JaxbProcessors {
+
+    /** Marshaller properties of the marshaller with the default configuration. */
+    public static final Map<String, Object> DEFAULT_PROPERTIES = Collections.emptyMap();
+
+    /** Shared instances by their context path. */
+    private static final Map<String, JaxbProcessors> INSTANCES = new HashMap<String, JaxbProcessors>();
+
+    /**
+     * JAXB context.
+     */
+    private final JAXBContext context;
+
+    /**
+     * Unmarshaller of the current thread.
+     */
+    private final ThreadCache<Unmarshaller> unmarshallers;
+
+    /**
+     * Marshallers of the current thread by their properties.
+     */
+    private final ThreadCache<Map<Map<String, Object>, Marshaller>> marshallers;
+
+
+    /**
+     * Creates processors of the given context, not shared with other users.
+     * 
+     * @param context
+     *            JAXB context
+     */
+    public JaxbProcessors(JAXBContext context) {
+        this.context = context;
+        this.unmarshallers = new ThreadCache<Unmarshaller>();
+        this.marshallers = new ThreadCache<Map<Map<String, Object>, Marshaller>>() {
+
+            @Override
+            protected Map<Map<String, Object>, Marshaller> initialValue() {
+                return new HashMap<Map<String, Object>, Marshaller>();
+            }
+        };
+    }
+
+
+    /**
+     * Returns the shared processors of the given context path. The context is created the first time it is needed.
+     * 
+     * @param contextPath
+     *            list of colon separated package names of the JAXB classes
+     * @return processors of the context
+     * @throws JAXBException
+     *             when the context cannot be created
+     */
+    public static synchronized JaxbProcessors getInstance(String contextPath)
+            throws JAXBException {
+        JaxbProcessors processors = INSTANCES.get(contextPath);
+        if (processors == null) {
+            processors = new JaxbProcessors(JAXBContext.newInstance(contextPath));
+            INSTANCES.put(contextPath, processors);
+        }
+        return processors;
+    }
+
+
+    /**
+     * Drops the shared processors and the marshallers and unmarshallers cached by all threads, so that they do not keep
+     * the JAXB classes reachable from the container threads. Should be called when the application is stopped.
+     */
+    public static synchronized void clear() {
+        for (JaxbProcessors processors : INSTANCES.values()) {
+            processors.unmarshallers.clear();
+            processors.marshallers.clear();
+        }
+        INSTANCES.clear();
+    }
+
+
+    public JAXBContext getContext() {
+        return context;
+    }
+
+
+    /**
+     * Returns the unmarshaller of the current thread.
+     * 
+     * @return unmarshaller
+     * @throws JAXBException
+     *             when the unmarshaller cannot be created
+     */
+    public Unmarshaller getUnmarshaller()
+            throws JAXBException {
+        Unmarshaller unmarshaller = unmarshallers.get();
+        if (unmarshaller == null) {
+            unmarshaller = context.createUnmarshaller();
+            unmarshallers.set(unmarshaller);
+        }
+        return unmarshaller;
+    }
+
+
+    /**
+     * Returns the marshaller of the current thread with the default configuration.
+     * 
+     * @return marshaller
+     * @throws JAXBException
+     *             when the marshaller cannot be created
+     */
+    public Marshaller getMarshaller()
+            throws JAXBException {
+        return getMarshaller(DEFAULT_PROPERTIES);
+    }
+
+
+    /**
+     * Returns the marshaller of the current thread configured with the given properties.
+     * 
+     * @param properties
+     *            marshaller properties, preferably a constant of the caller
+     * @return marshaller
+     * @throws JAXBException
+     *             when the marshaller cannot be created or some property is not supported
+     */
+    public Marshaller getMarshaller(Map<String, Object> properties)
+            throws JAXBException {
+        Map<Map<String, Object>, Marshaller> cache = marshallers.get();
+        Marshaller marshaller = cache.get(properties);
+        if (marshaller == null) {
+            marshaller = context.createMarshaller();
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                marshaller.setProperty(property.getKey(), property.getValue());
+            }
+            cache.put(properties, marshaller);
+        }
+        return marshaller;
+    }
+
+}
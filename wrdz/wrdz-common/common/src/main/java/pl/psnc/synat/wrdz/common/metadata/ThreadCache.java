@@ -0,0 +1,109 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Value cached per thread which can be dropped in all threads at once.
+ * 
+ * A plain {@link ThreadLocal} value stays in the container worker threads after the application is undeployed and
+ * keeps its classes (and so the whole application class loader) reachable. Here each thread keeps only an
+ * {@link AtomicReference}, a class of the platform, and {@link #clear()} empties the references of all threads.
+ * 
+ * @param <T>
+ *            type of the cached value
+ */
+class ThreadCache<T> {
+
+    /** Reference of the current thread. */
+    private final ThreadLocal<AtomicReference<T>> references = new ThreadLocal<AtomicReference<T>>();
+
+    /** References of all live threads. */
+    private final Set<AtomicReference<T>> allReferences = Collections
+            .newSetFromMap(new WeakHashMap<AtomicReference<T>, Boolean>());
+
+
+    /**
+     * Creates the value of the current thread, the first time it is needed. Returns <code>null</code> by default.
+     * 
+     * @return new value
+     */
+    protected T initialValue() {
+        return null;
+    }
+
+
+    /**
+     * Returns the value of the current thread, creating it if needed.
+     * 
+     * @return value of the current thread
+     */
+    public T get() {
+        AtomicReference<T> reference = getReference();
+        T value = reference.get();
+        if (value == null) {
+            value = initialValue();
+            reference.set(value);
+        }
+        return value;
+    }
+
+
+    /**
+     * Sets the value of the current thread.
+     * 
+     * @param value
+     *            new value
+     */
+    public void set(T value) {
+        getReference().set(value);
+    }
+
+
+    /**
+     * Drops the values of all threads. A thread using the cache afterwards creates its value again.
+     */
+    public void clear() {
+        synchronized (allReferences) {
+            for (AtomicReference<T> reference : allReferences) {
+                reference.set(null);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the reference of the current thread, registering it the first time.
+     * 
+     * @return reference of the current thread
+     */
+    private AtomicReference<T> getReference() {
+        AtomicReference<T> reference = references.get();
+        if (reference == null) {
+            reference = new AtomicReference<T>();
+            references.set(reference);
+            synchronized (allReferences) {
+                allReferences.add(reference);
+            }
+        }
+        return reference;
+    }
+
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * DOM parsers and compiled XPath expressions cached per thread. Neither of them is thread-safe, but both can be reused
+ * by the thread which created them, so looking up the parser factories and compiling the expressions is not repeated
+ * for every document.
+ * 
+ * The returned objects must not be kept longer than the current task, since the next task may run in a different
+ * thread.
+ */
+public final class XmlParsers {
+
+    /** Maximal number of compiled XPath expressions cached by one thread. */
+    private static final int MAX_EXPRESSIONS = 64;
+
+    /** Factory of parsers which neither expand entities nor resolve namespaces. */
+    private static final DocumentBuilderFactory VERBATIM_FACTORY;
+
+    /** Factory of namespace aware parsers. */
+    private static final DocumentBuilderFactory NAMESPACE_AWARE_FACTORY;
+
+    /** Parsers of the current thread by their factories. */
+    private static final ThreadCache<Map<DocumentBuilderFactory, DocumentBuilder>> BUILDERS;
+
+    /** XPath evaluator of the current thread. */
+    private static final ThreadCache<XPath> XPATHS;
+
+    /** Compiled XPath expressions of the current thread by their namespace context and text. */
+    private static final ThreadCache<Map<NamespaceContext, Map<String, XPathExpression>>> EXPRESSIONS;
+
+    static {
+        VERBATIM_FACTORY = DocumentBuilderFactory.newInstance();
+        VERBATIM_FACTORY.setIgnoringElementContentWhitespace(false);
+        VERBATIM_FACTORY.setValidating(false);
+        VERBATIM_FACTORY.setExpandEntityReferences(false);
+        VERBATIM_FACTORY.setIgnoringComments(false);
+        VERBATIM_FACTORY.setNamespaceAware(false);
+        VERBATIM_FACTORY.setXIncludeAware(false);
+        VERBATIM_FACTORY.setCoalescing(false);
+        NAMESPACE_AWARE_FACTORY = DocumentBuilderFactory.newInstance();
+        NAMESPACE_AWARE_FACTORY.setNamespaceAware(true);
+        BUILDERS = new ThreadCache<Map<DocumentBuilderFactory, DocumentBuilder>>() {
+
+            @Override
+            protected Map<DocumentBuilderFactory, DocumentBuilder> initialValue() {
+                return new HashMap<DocumentBuilderFactory, DocumentBuilder>();
+            }
+        };
+        XPATHS = new ThreadCache<XPath>() {
+
+            @Override
+            protected XPath initialValue() {
+                return XPathFactory.newInstance().newXPath();
+            }
+        };
+        EXPRESSIONS = new ThreadCache<Map<NamespaceContext, Map<String, XPathExpression>>>() {
+
+            @Override
+            protected Map<NamespaceContext, Map<String, XPathExpression>> initialValue() {
+                return new HashMap<NamespaceContext, Map<String, XPathExpression>>();
+            }
+        };
+    }
+
+
+    /**
+     * No instances.
+     */
+    private XmlParsers() {
+        throw new UnsupportedOperationException("No instances");
+    }
+
+
+    /**
+     * Drops the parsers and the expressions cached by all threads. Should be called when the application is stopped.
+     */
+    public static void clear() {
+        BUILDERS.clear();
+        XPATHS.clear();
+        EXPRESSIONS.clear();
+    }
+
+
+    /**
+     * Returns the parser of the current thread which keeps the document as it is written - it neither expands entities
+     * nor resolves namespaces.
+     * 
+     * @return parser
+     * @throws ParserConfigurationException
+     *             when the parser cannot be created
+     */
+    public static DocumentBuilder getVerbatimDocumentBuilder()
+            throws ParserConfigurationException {
+        return getDocumentBuilder(VERBATIM_FACTORY);
+    }
+
+
+    /**
+     * Returns the namespace aware parser of the current thread.
+     * 
+     * @return parser
+     * @throws ParserConfigurationException
+     *             when the parser cannot be created
+     */
+    public static DocumentBuilder getNamespaceAwareDocumentBuilder()
+            throws ParserConfigurationException {
+        return getDocumentBuilder(NAMESPACE_AWARE_FACTORY);
+    }
+
+
+    /**
+     * Returns the parser of the current thread created by the given factory, reset to its initial state.
+     * 
+     * @param factory
+     *            factory of the parser
+     * @return parser
+     * @throws ParserConfigurationException
+     *             when the parser cannot be created
+     */
+    private static DocumentBuilder getDocumentBuilder(DocumentBuilderFactory factory)
+            throws ParserConfigurationException {
+        Map<DocumentBuilderFactory, DocumentBuilder> builders = BUILDERS.get();
+        DocumentBuilder builder = builders.get(factory);
+        if (builder == null) {
+            // factories are not guaranteed to be thread-safe
+            synchronized (factory) {
+                builder = factory.newDocumentBuilder();
+            }
+            builders.put(factory, builder);
+        } else {
+            builder.reset();
+        }
+        return builder;
+    }
+
+
+    /**
+     * Returns the compiled XPath expression of the current thread.
+     * 
+     * @param namespaceContext
+     *            namespace context of the expression (not null), preferably a constant of the caller
+     * @param expression
+     *            text of the expression
+     * @return compiled expression
+     * @throws XPathExpressionException
+     *             when the expression cannot be compiled
+     */
+    public static XPathExpression getXPathExpression(NamespaceContext namespaceContext, String expression)
+            throws XPathExpressionException {
+        Map<NamespaceContext, Map<String, XPathExpression>> contexts = EXPRESSIONS.get();
+        Map<String, XPathExpression> expressions = contexts.get(namespaceContext);
+        if (expressions == null) {
+            expressions = new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+
+                /** Serial version UID. */
+                private static final long serialVersionUID = 1L;
+
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                    return size() > MAX_EXPRESSIONS;
+                }
+            };
+            contexts.put(namespaceContext, expressions);
+        }
+        // the most recently used expressions are kept
+        XPathExpression compiled = expressions.get(expression);
+        if (compiled == null) {
+            XPath xpath = XPATHS.get();
+            xpath.setNamespaceContext(namespaceContext);
+            compiled = xpath.compile(expression);
+            expressions.put(expression, compiled);
+        }
+        return compiled;
+    }
+
+}
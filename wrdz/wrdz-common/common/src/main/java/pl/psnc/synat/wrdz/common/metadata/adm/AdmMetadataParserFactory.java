@@ -15,10 +15,11 @@
  */
 package pl.psnc.synat.wrdz.common.metadata.adm;
 
-import javax.xml.bind.JAXBContext;
-
 import org.apache.log4j.Logger;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+import pl.psnc.synat.wrdz.common.metadata.mets.MetsConsts;
+
 /**
  * Factory class of mets metadata parser implementation.
  */
@@ -43,9 +44,9 @@ public final class AdmMetadataParserFactory {
 
 
     /**
-     * JAXBContext instance.
+     * JAXBContext instance with cached unmarshallers.
      */
-    private final JAXBContext context;
+    private final JaxbProcessors context;
 
 
     /**
@@ -53,7 +54,7 @@ public final class AdmMetadataParserFactory {
      */
     private AdmMetadataParserFactory() {
         try {
-            context = JAXBContext.newInstance("gov.loc.mets:info.lc.xmlns.premis_v2");
+            context = JaxbProcessors.getInstance(MetsConsts.JAXB_CONTEXT_PATH);
         } catch (Exception ex) {
             logger.error("An error occured while creating JAXBContext element.", ex);
             throw new RuntimeException(ex);
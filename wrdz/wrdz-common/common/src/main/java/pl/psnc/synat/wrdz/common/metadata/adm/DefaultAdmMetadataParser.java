@@ -20,10 +20,9 @@ import info.lc.xmlns.premis_v2.PremisComplexType;
 
 import java.io.InputStream;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
+
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
 
 /**
  * Basic implementation of mets metadata parser.
@@ -31,23 +30,19 @@ import javax.xml.bind.Unmarshaller;
 class DefaultAdmMetadataParser implements AdmMetadataParser {
 
     /**
-     * Unmarshaller of the METS metadata.
+     * JAXB context with cached unmarshallers of the METS metadata.
      */
-    private final Unmarshaller unmarshaller;
+    private final JaxbProcessors jaxbProcessors;
 
 
     /**
      * Default constructor.
      * 
-     * @param jbcontext
-     *            JAXB context object
+     * @param jaxbProcessors
+     *            JAXB context object with cached unmarshallers
      */
-    DefaultAdmMetadataParser(JAXBContext jbcontext) {
-        try {
-            this.unmarshaller = jbcontext.createUnmarshaller();
-        } catch (JAXBException ex) {
-            throw new RuntimeException("Unable to create JAXB unmarshaler!");
-        }
+    DefaultAdmMetadataParser(JaxbProcessors jaxbProcessors) {
+        this.jaxbProcessors = jaxbProcessors;
     }
 
 
@@ -63,7 +58,7 @@ class DefaultAdmMetadataParser implements AdmMetadataParser {
     public Mets unmarshalMets(InputStream is)
             throws Exception {
 
-        Mets root = (Mets) unmarshaller.unmarshal(is);
+        Mets root = (Mets) jaxbProcessors.getUnmarshaller().unmarshal(is);
         return root;
     }
 
@@ -80,7 +75,7 @@ class DefaultAdmMetadataParser implements AdmMetadataParser {
     public PremisComplexType unmarshallPremis(InputStream is)
             throws Exception {
 
-        JAXBElement<?> root = (JAXBElement<?>) unmarshaller.unmarshal(is);
+        JAXBElement<?> root = (JAXBElement<?>) jaxbProcessors.getUnmarshaller().unmarshal(is);
         PremisComplexType premisRoot = (PremisComplexType) root.getValue();
         return premisRoot;
 
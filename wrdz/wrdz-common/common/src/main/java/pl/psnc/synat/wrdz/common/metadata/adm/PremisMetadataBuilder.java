@@ -32,11 +32,13 @@ import java.io.StringWriter;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -45,6 +47,8 @@ import javax.xml.namespace.QName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+
 /**
  * Builder of administrative metadata of a file in the PREMIS schema.
  */
@@ -59,9 +63,23 @@ public class PremisMetadataBuilder implements AdmMetadataBuilder {
     private static final SimpleDateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
 
     /**
-     * Marshaller of the PREMIS metadata.
+     * Properties of the marshaller of the PREMIS metadata.
      */
-    private final Marshaller marshaller;
+    private static final Map<String, Object> MARSHALLER_PROPERTIES;
+
+    static {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        properties.put(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        properties.put(Marshaller.JAXB_SCHEMA_LOCATION, PremisConsts.PREMIS_NAMESPACE_URI + " "
+                + PremisConsts.PREMIS_SCHEMA_LOCATION);
+        MARSHALLER_PROPERTIES = Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * JAXB context for the PREMIS classes with cached marshallers.
+     */
+    private final JaxbProcessors jaxbProcessors;
 
     /**
      * Premis root object.
@@ -77,20 +95,11 @@ public class PremisMetadataBuilder implements AdmMetadataBuilder {
     /**
      * Constructs builder of administrative metadata in the PREMIS schema.
      * 
-     * @param jaxbContext
-     *            JAXB context for the PREMIS classes
+     * @param jaxbProcessors
+     *            JAXB context for the PREMIS classes with cached marshallers
      */
-    public PremisMetadataBuilder(JAXBContext jaxbContext) {
-        try {
-            this.marshaller = jaxbContext.createMarshaller();
-            this.marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            this.marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-            this.marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, PremisConsts.PREMIS_NAMESPACE_URI + " "
-                    + PremisConsts.PREMIS_SCHEMA_LOCATION);
-        } catch (JAXBException e) {
-            logger.error("JAXB - PREMIS marshaller creation failed.", e);
-            throw new RuntimeException(e);
-        }
+    public PremisMetadataBuilder(JaxbProcessors jaxbProcessors) {
+        this.jaxbProcessors = jaxbProcessors;
         premis = new PremisComplexType();
         premis.setVersion(PremisConsts.PREMIS_VERSION);
         premisExplorer = new PremisMetadataExplorer(premis);
@@ -103,6 +112,7 @@ public class PremisMetadataBuilder implements AdmMetadataBuilder {
         StringWriter xmlWriter = new StringWriter();
         xmlWriter.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
         try {
+            Marshaller marshaller = jaxbProcessors.getMarshaller(MARSHALLER_PROPERTIES);
             marshaller.marshal(new JAXBElement<PremisComplexType>(new QName(PremisConsts.PREMIS_NAMESPACE_URI,
                     "premis", PremisConsts.PREMIS_PREFIX), PremisComplexType.class, premis), xmlWriter);
         } catch (JAXBException e) {
@@ -15,12 +15,13 @@
  */
 package pl.psnc.synat.wrdz.common.metadata.adm;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+
 /**
  * The factory of an administrative metadata builder in the PREMIS schema.
  */
@@ -35,9 +36,9 @@ public final class PremisMetadataBuilderFactory {
     private static PremisMetadataBuilderFactory instance = new PremisMetadataBuilderFactory();
 
     /**
-     * JAXB context for the premis classes.
+     * JAXB context for the premis classes with cached marshallers.
      */
-    private JAXBContext jaxbContext;
+    private JaxbProcessors jaxbProcessors;
 
 
     /**
@@ -45,7 +46,7 @@ public final class PremisMetadataBuilderFactory {
      */
     private PremisMetadataBuilderFactory() {
         try {
-            jaxbContext = JAXBContext.newInstance("info.lc.xmlns.premis_v2");
+            jaxbProcessors = JaxbProcessors.getInstance("info.lc.xmlns.premis_v2");
         } catch (JAXBException e) {
             logger.error("JAXB context for PREMIS creation failed.", e);
             throw new RuntimeException(e);
@@ -69,7 +70,7 @@ public final class PremisMetadataBuilderFactory {
      * @return new premis metadata builder
      */
     public PremisMetadataBuilder getPremisMetadataBuilder() {
-        return new PremisMetadataBuilder(jaxbContext);
+        return new PremisMetadataBuilder(jaxbProcessors);
     }
 
 }
@@ -44,6 +44,11 @@ public final class MetsConsts {
      */
     public static final String METS_SCHEMA_LOCATION = "http://www.loc.gov/standards/mets/mets.xsd";
 
+    /**
+     * JAXB context path of the METS (and PREMIS) classes.
+     */
+    public static final String JAXB_CONTEXT_PATH = "gov.loc.mets:info.lc.xmlns.premis_v2";
+
     /************************************************************************************************************/
 
     /**
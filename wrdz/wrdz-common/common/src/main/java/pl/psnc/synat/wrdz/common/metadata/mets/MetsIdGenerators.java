@@ -22,6 +22,8 @@ import gov.loc.mets.MdSecType.MdRef;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Generates ids for sections in METS metadata.
@@ -78,6 +80,11 @@ public class MetsIdGenerators {
      */
     private static final String DIGIPROV_ADM_SECTION_ID_PREFIX = "P";
 
+    /**
+     * Pattern of ids of the top-level sections and files (a prefix, an optional file group prefix and a number).
+     */
+    private static final Pattern SECTION_ID_PATTERN = Pattern.compile("([DAFG])(\\d+)(?:F(\\d+))?");
+
     /**
      * Last value for id of a descriptive section for digital object metadata.
      */
@@ -404,6 +411,60 @@ public class MetsIdGenerators {
     }
 
 
+    /**
+     * Marks the id of a section already present in METS metadata as used, so that the ids returned later do not collide
+     * with it. Ids of subsections of administrative sections are not tracked - new subsections are created only in new
+     * administrative sections.
+     * 
+     * @param id
+     *            id of a descriptive, an administrative or a file group section or of a file
+     */
+    void reserve(String id) {
+        Matcher matcher = SECTION_ID_PATTERN.matcher(id);
+        if (!matcher.matches()) {
+            return;
+        }
+        int number;
+        char prefix = matcher.group(1).charAt(0);
+        try {
+            number = Integer.parseInt(matcher.group(2));
+            if (matcher.group(3) != null) {
+                if (prefix == FILE_GROUP_SECTION_ID_PREFIX.charAt(0)) {
+                    file = Math.max(file, Integer.parseInt(matcher.group(3)));
+                }
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // ids beyond the range of this generator cannot collide with it
+            return;
+        }
+        if (prefix == OBJECT_DMD_SECTION_ID_PREFIX.charAt(0)) {
+            odmd = Math.max(odmd, number);
+        } else if (prefix == OBJECT_ADM_SECTION_ID_PREFIX.charAt(0)) {
+            oadm = Math.max(oadm, number);
+        } else if (prefix == FILE_ADM_SECTION_ID_PREFIX.charAt(0)) {
+            fadm = Math.max(fadm, number);
+        } else {
+            fgrp = Math.max(fgrp, number);
+        }
+    }
+
+
+    /**
+     * Marks the id of an event already present in PREMIS metadata as used.
+     * 
+     * @param id
+     *            id of an event
+     */
+    void reservePremisEventId(String id) {
+        try {
+            pevt = Math.max(pevt, Integer.parseInt(id.trim()));
+        } catch (NumberFormatException e) {
+            // ids not created by this generator cannot collide with it
+        }
+    }
+
+
     /**
      * Creates id of a section based upon prefix and id number.
      * 
@@ -417,6 +478,9 @@ public class MetsIdGenerators {
      */
     private String createId(String prefix, int id, int length) {
         String s = Integer.toString(id);
+        if (s.length() >= length) {
+            return prefix + s;
+        }
         return prefix + LEADING_ZEROS.substring(s.length() + LEADING_ZEROS.length() - length) + s;
     }
 
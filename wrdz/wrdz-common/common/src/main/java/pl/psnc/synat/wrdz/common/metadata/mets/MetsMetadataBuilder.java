@@ -39,8 +39,12 @@ import info.lc.xmlns.premis_v2.RelatedObjectIdentificationComplexType;
 import info.lc.xmlns.premis_v2.RelationshipComplexType;
 import info.lc.xmlns.premis_v2.Representation;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
@@ -48,21 +52,37 @@ import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import javax.xml.bind.JAXBContext;
+import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
 
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
@@ -73,6 +93,8 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+import pl.psnc.synat.wrdz.common.metadata.XmlParsers;
 import pl.psnc.synat.wrdz.common.metadata.adm.PremisConsts;
 import pl.psnc.synat.wrdz.common.metadata.xmlns.NamespaceType;
 
@@ -91,24 +113,72 @@ public class MetsMetadataBuilder {
     private static final SimpleDateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
 
     /**
-     * Date type factory for converting dates into XML Gregorian Calendar instances.
+     * Factory of the writers used in the streaming mode.
      */
-    private final DatatypeFactory datatypeFactory;
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    /**
+     * Factory of StAX readers of METS metadata of a previous version.
+     */
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    /**
+     * Factory of StAX events.
+     */
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+    /**
+     * Namespace of the XLink attributes of references to files.
+     */
+    private static final String XLINK_NAMESPACE_URI = "http://www.w3.org/1999/xlink";
+
+    /**
+     * Names of the subsections of an administrative section.
+     */
+    private static final Set<String> ADM_SUBSECTIONS = new HashSet<String>(Arrays.asList("techMD", "sourceMD",
+        "rightsMD", "digiprovMD"));
 
     /**
-     * Marshaller of the METS metadata.
+     * Names of the sections which are removed from METS metadata of a previous version when their id is removed.
      */
-    private final Marshaller marshaller;
+    private static final Set<String> REMOVABLE_SECTIONS = new HashSet<String>(Arrays.asList("dmdSec", "amdSec",
+        "techMD", "sourceMD", "rightsMD", "digiprovMD", "file"));
 
     /**
-     * Unmarshaller of the METS metadata.
+     * Top-level METS sections in the order of the schema - the new sections are inserted in front of the first section
+     * of a later kind.
      */
-    private final Unmarshaller unmarshaller;
+    private static final List<String> TOP_LEVEL_SECTIONS = Arrays.asList("metsHdr", "dmdSec", "amdSec", "fileSec");
 
     /**
-     * Document builder factory for parsing XML to DOM.
+     * Properties of the marshaller of the whole METS document.
      */
-    private final DocumentBuilderFactory domBuilderFactory;
+    private static final Map<String, Object> MARSHALLER_PROPERTIES;
+
+    /**
+     * Properties of the marshaller of METS sections in the streaming mode.
+     */
+    private static final Map<String, Object> STREAM_MARSHALLER_PROPERTIES;
+
+    static {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        STREAM_MARSHALLER_PROPERTIES = Collections.unmodifiableMap(new HashMap<String, Object>(properties));
+        properties.put(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        properties.put(Marshaller.JAXB_SCHEMA_LOCATION, MetsConsts.METS_NAMESPACE_URI + " "
+                + MetsConsts.METS_SCHEMA_LOCATION);
+        MARSHALLER_PROPERTIES = Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Date type factory for converting dates into XML Gregorian Calendar instances.
+     */
+    private final DatatypeFactory datatypeFactory;
+
+    /**
+     * JAXB context for the METS classes with cached marshallers and unmarshallers.
+     */
+    private final JaxbProcessors jaxbProcessors;
 
     /**
      * Generators of ids for METS metadata sections.
@@ -146,41 +216,100 @@ public class MetsMetadataBuilder {
      */
     private FileType lastFileTypeSec;
 
+    /**
+     * Administrative sections by their ids.
+     */
+    private Map<String, AmdSecType> admSecsById;
+
+    /**
+     * Ids of the administrative sections of data files (values of <code>dataFileMap</code>).
+     */
+    private Set<String> dataFileAdmIds;
+
+    /**
+     * File sections by the location of the data file - built on the first lookup and kept up to date afterwards.
+     */
+    private Map<String, FileType> filesByHref;
+
+    /**
+     * References to metadata files in the administrative sections by their location - built on the first lookup and
+     * kept up to date afterwards.
+     */
+    private Map<String, MdRef> admReferencesByHref;
+
+    /**
+     * Previous METS metadata parsed most recently.
+     */
+    private String previousMetsSource;
+
+    /**
+     * Parsed previous METS metadata.
+     */
+    private Mets previousMets;
+
+    /**
+     * File sections (with a single location) of the previous METS metadata by the location of the data file.
+     */
+    private Map<String, List<FileType>> previousFilesByHref;
+
+    /**
+     * Writer of METS metadata in the streaming mode or <code>null</code> if METS metadata are built in memory.
+     */
+    private XMLStreamWriter streamWriter;
+
+    /**
+     * Marshaller of METS sections in the streaming mode.
+     */
+    private Marshaller streamMarshaller;
+
+    /**
+     * Whether the administrative section with PREMIS metadata is open in the streaming mode.
+     */
+    private boolean premisSectionOpen;
+
+    /**
+     * Whether the file section is open in the streaming mode.
+     */
+    private boolean fileSectionOpen;
+
+    /**
+     * METS metadata of the previous version, which new sections are appended to.
+     */
+    private File previousMetsFile;
+
+    /**
+     * Ids of the sections and files of the previous version which are removed in the new one.
+     */
+    private Set<String> removedSectionIds;
+
+    /**
+     * Id of the digital provenance section with PREMIS metadata in the previous version.
+     */
+    private String previousPremisDpId;
+
+    /**
+     * Number of relationships in the PREMIS object description of the previous version.
+     */
+    private int previousRelationships;
+
 
     /**
      * Constructs builder of METS metadata.
      * 
-     * @param jaxbContext
-     *            JAXB context for the METS classes
+     * @param jaxbProcessors
+     *            JAXB context for the METS classes with cached marshallers and unmarshallers
      * @param datatypeFactory
      *            factory for converting dates into XML Gregorian Calendar instances.
-     * @param domBuilderFactory
-     *            factory for parsing XML to DOM.
      */
-    public MetsMetadataBuilder(JAXBContext jaxbContext, DatatypeFactory datatypeFactory,
-            DocumentBuilderFactory domBuilderFactory) {
-        try {
-            this.marshaller = jaxbContext.createMarshaller();
-            this.marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            this.marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-            this.marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, MetsConsts.METS_NAMESPACE_URI + " "
-                    + MetsConsts.METS_SCHEMA_LOCATION);
-        } catch (JAXBException e) {
-            logger.error("JAXB - METS marshaller creation failed.", e);
-            throw new RuntimeException(e);
-        }
-        try {
-            this.unmarshaller = jaxbContext.createUnmarshaller();
-        } catch (JAXBException e) {
-            logger.error("JAXB - METS unmarshaller creation failed.", e);
-            throw new RuntimeException(e);
-        }
+    public MetsMetadataBuilder(JaxbProcessors jaxbProcessors, DatatypeFactory datatypeFactory) {
+        this.jaxbProcessors = jaxbProcessors;
         this.datatypeFactory = datatypeFactory;
-        this.domBuilderFactory = domBuilderFactory;
         this.idGenerators = new MetsIdGenerators();
         this.premisAdmId = null;
         this.premisDpId = null;
         this.dataFileMap = new HashMap<String, String>();
+        this.admSecsById = new HashMap<String, AmdSecType>();
+        this.dataFileAdmIds = new HashSet<String>();
         this.mets = new Mets();
     }
 
@@ -188,47 +317,33 @@ public class MetsMetadataBuilder {
     /**
      * Constructs builder of METS metadata.
      * 
-     * @param jaxbContext
-     *            JAXB context for the METS classes
+     * @param jaxbProcessors
+     *            JAXB context for the METS classes with cached marshallers and unmarshallers
      * @param datatypeFactory
      *            factory for converting dates into XML Gregorian Calendar instances.
-     * @param domBuilderFactory
-     *            factory for parsing XML to DOM.
      * @param tmpMetsFileUri
      *            URI to tmpMets file.
      */
-    public MetsMetadataBuilder(JAXBContext jaxbContext, DatatypeFactory datatypeFactory,
-            DocumentBuilderFactory domBuilderFactory, URI tmpMetsFileUri) {
-        try {
-            this.marshaller = jaxbContext.createMarshaller();
-            this.marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-            this.marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
-            this.marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, MetsConsts.METS_NAMESPACE_URI + " "
-                    + MetsConsts.METS_SCHEMA_LOCATION);
-        } catch (JAXBException e) {
-            logger.error("JAXB - METS marshaller creation failed.", e);
-            throw new RuntimeException(e);
-        }
-        try {
-            this.unmarshaller = jaxbContext.createUnmarshaller();
-        } catch (JAXBException e) {
-            logger.error("JAXB - METS unmarshaller creation failed.", e);
-            throw new RuntimeException(e);
-        }
+    public MetsMetadataBuilder(JaxbProcessors jaxbProcessors, DatatypeFactory datatypeFactory, URI tmpMetsFileUri) {
+        this.jaxbProcessors = jaxbProcessors;
         this.datatypeFactory = datatypeFactory;
-        this.domBuilderFactory = domBuilderFactory;
         this.idGenerators = new MetsIdGenerators();
         this.premisAdmId = null;
         this.premisDpId = null;
         this.dataFileMap = new HashMap<String, String>();
+        this.admSecsById = new HashMap<String, AmdSecType>();
+        this.dataFileAdmIds = new HashSet<String>();
 
         try {
             File tmpMetsFile = new File(tmpMetsFileUri.getPath());
-            this.mets = (Mets) unmarshaller.unmarshal(tmpMetsFile);
+            this.mets = (Mets) jaxbProcessors.getUnmarshaller().unmarshal(tmpMetsFile);
         } catch (JAXBException e) {
             logger.error("JAXB - METS unmarshaller - tmpMets file unmarshalling failed.", e);
             throw new RuntimeException(e);
         }
+        for (AmdSecType admSec : mets.getAmdSec()) {
+            indexAdmSection(admSec);
+        }
     }
 
 
@@ -244,7 +359,7 @@ public class MetsMetadataBuilder {
         StringWriter xmlWriter = new StringWriter();
         xmlWriter.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
         try {
-            marshaller.marshal(mets, xmlWriter);
+            jaxbProcessors.getMarshaller(MARSHALLER_PROPERTIES).marshal(mets, xmlWriter);
         } catch (JAXBException e) {
             logger.error("Building XML with metadata failed.", e);
             throw new MetsMetadataProcessingException(e);
@@ -253,6 +368,684 @@ public class MetsMetadataBuilder {
     }
 
 
+    /**
+     * Switches the builder into the streaming mode and starts writing METS metadata into the output stream. The header,
+     * the object metadata and the PREMIS object description (with the origin and the derivatives of the object) added
+     * so far are written and released, so they must be complete at this point. From now on PREMIS events are written
+     * as soon as the next one is added, administrative sections of data files are written by
+     * {@link #writeFileSections()} and data files by {@link #writeDataFile(String, Integer)}, so the memory used does
+     * not depend on the size of the object. The document is completed by {@link #finishStreaming()}.
+     * 
+     * @param output
+     *            output stream for METS metadata (it is not closed by the builder)
+     * @return this builder
+     * @throws MetsMetadataProcessingException
+     *             when writing of METS metadata failed
+     */
+    public MetsMetadataBuilder startStreaming(OutputStream output)
+            throws MetsMetadataProcessingException {
+        if (streamWriter != null) {
+            throw new IllegalStateException("The builder is already in the streaming mode.");
+        }
+        try {
+            streamWriter = OUTPUT_FACTORY.createXMLStreamWriter(output, "UTF-8");
+            streamWriter.writeStartDocument("UTF-8", "1.0");
+            streamWriter.writeCharacters("\n");
+            streamWriter.setPrefix(MetsConsts.METS_PREFIX, MetsConsts.METS_NAMESPACE_URI);
+            streamWriter.writeStartElement(MetsConsts.METS_PREFIX, "mets", MetsConsts.METS_NAMESPACE_URI);
+            streamWriter.writeNamespace(MetsConsts.METS_PREFIX, MetsConsts.METS_NAMESPACE_URI);
+            streamWriter.writeNamespace(PremisConsts.PREMIS_PREFIX, PremisConsts.PREMIS_NAMESPACE_URI);
+            streamWriter.writeNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+            streamWriter.writeAttribute("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "schemaLocation",
+                MetsConsts.METS_NAMESPACE_URI + " " + MetsConsts.METS_SCHEMA_LOCATION);
+            if (mets.getOBJID() != null) {
+                streamWriter.writeAttribute("OBJID", mets.getOBJID());
+            }
+            if (mets.getTYPE() != null) {
+                streamWriter.writeAttribute("TYPE", mets.getTYPE());
+            }
+            streamMarshaller = createStreamMarshaller();
+            if (mets.getMetsHdr() != null) {
+                streamMarshaller.marshal(
+                    new JAXBElement<MetsHdr>(getMetsName("metsHdr"), MetsHdr.class, mets.getMetsHdr()), streamWriter);
+                mets.setMetsHdr(null);
+            }
+            for (MdSecType dmdSec : mets.getDmdSec()) {
+                streamMarshaller.marshal(
+                    new JAXBElement<MdSecType>(getMetsName("dmdSec"), MdSecType.class, dmdSec), streamWriter);
+            }
+            mets.getDmdSec().clear();
+            writeAdministrativeSections();
+            if (premisAdmId != null) {
+                openPremisSection();
+            }
+        } catch (XMLStreamException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        } catch (JAXBException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        }
+        return this;
+    }
+
+
+    /**
+     * Writes the administrative sections of data files added since the last call and releases them. Valid only in the
+     * streaming mode, before the first data file is written.
+     * 
+     * @return this builder
+     * @throws MetsMetadataProcessingException
+     *             when writing of METS metadata failed
+     */
+    public MetsMetadataBuilder writeFileSections()
+            throws MetsMetadataProcessingException {
+        checkStreaming();
+        if (fileSectionOpen && !mets.getAmdSec().isEmpty()) {
+            throw new IllegalStateException("Administrative sections cannot follow the file section.");
+        }
+        try {
+            closePremisSection();
+            writeAdministrativeSections();
+        } catch (XMLStreamException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        } catch (JAXBException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        }
+        return this;
+    }
+
+
+    /**
+     * Writes a data file section in the streaming mode - the counterpart of {@link #addDataFile(String, Integer)}.
+     * Administrative sections of data files which were not written yet are written before the file section is opened.
+     * 
+     * @param datafilePath
+     *            path to the data file in the context of digital object
+     * @param seq
+     *            sequence property value; can be <code>null</code>
+     * @return this builder
+     * @throws MetsMetadataProcessingException
+     *             when writing of METS metadata failed
+     */
+    public MetsMetadataBuilder writeDataFile(String datafilePath, Integer seq)
+            throws MetsMetadataProcessingException {
+        checkStreaming();
+        try {
+            if (!fileSectionOpen) {
+                closePremisSection();
+                writeAdministrativeSections();
+                contentFgId = idGenerators.getFileGrpId();
+                streamWriter.writeStartElement(MetsConsts.METS_PREFIX, "fileSec", MetsConsts.METS_NAMESPACE_URI);
+                streamWriter.writeStartElement(MetsConsts.METS_PREFIX, "fileGrp", MetsConsts.METS_NAMESPACE_URI);
+                streamWriter.writeAttribute("ID", contentFgId);
+                fileSectionOpen = true;
+            }
+            FileType file = new FileType();
+            file.setID(idGenerators.getFileId(contentFgId));
+            file.setSEQ(seq);
+            String admId = dataFileMap.get(datafilePath);
+            if (admId != null) {
+                // the section itself is already written - only its id is referenced
+                AmdSecType admSec = new AmdSecType();
+                admSec.setID(admId);
+                file.getADMID().add(admSec);
+            }
+            FLocat fLocat = new FLocat();
+            fLocat.setHref(datafilePath);
+            fLocat.setLOCTYPE(MetsConsts.METS_DATA_LOCATION_TYPE_RELATIVE);
+            file.getFLocat().add(fLocat);
+            streamMarshaller.marshal(new JAXBElement<FileType>(getMetsName("file"), FileType.class, file),
+                streamWriter);
+        } catch (XMLStreamException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        } catch (JAXBException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        }
+        return this;
+    }
+
+
+    /**
+     * Completes METS metadata written in the streaming mode. The output stream is flushed, but not closed.
+     * 
+     * @throws MetsMetadataProcessingException
+     *             when writing of METS metadata failed
+     */
+    public void finishStreaming()
+            throws MetsMetadataProcessingException {
+        checkStreaming();
+        try {
+            closePremisSection();
+            writeAdministrativeSections();
+            if (fileSectionOpen) {
+                streamWriter.writeEndElement();
+                streamWriter.writeEndElement();
+                fileSectionOpen = false;
+            }
+            streamWriter.writeEndElement();
+            streamWriter.writeEndDocument();
+            streamWriter.flush();
+            streamWriter.close();
+        } catch (XMLStreamException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        } catch (JAXBException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        }
+    }
+
+
+    /**
+     * Loads METS metadata of the previous version of the object, so that METS metadata of the next version can be
+     * written as a delta by {@link #writeNextVersion(OutputStream)}. The previous metadata are only scanned - the ids
+     * used there are reserved and the sections of the removed files and metadata are found, nothing is kept in memory.
+     * Only the changes should be added to the builder then: the new header values, the metadata of the new and
+     * modified files and of the object, the event of the new version and the new and modified data files.
+     * 
+     * @param previousMetsFile
+     *            file with METS metadata of the previous version
+     * @param removedDataFiles
+     *            paths of the data files which are deleted or modified in the new version
+     * @param removedMetadataFiles
+     *            paths of the object metadata files which are deleted or modified in the new version
+     * @return this builder
+     * @throws MetsMetadataProcessingException
+     *             when METS metadata of the previous version cannot be read
+     */
+    public MetsMetadataBuilder loadPreviousVersion(File previousMetsFile, Set<String> removedDataFiles,
+            Set<String> removedMetadataFiles)
+            throws MetsMetadataProcessingException {
+        this.previousMetsFile = previousMetsFile;
+        this.removedSectionIds = new HashSet<String>();
+        this.previousPremisDpId = null;
+        this.previousRelationships = 0;
+        String previousFgId = null;
+        String sectionId = null;
+        String admSecId = null;
+        int admChildren = 0;
+        int admRemovedChildren = 0;
+        String fileId = null;
+        String fileAdmIds = null;
+        String constructedDpId = null;
+        boolean inPremis = false;
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(previousMetsFile));
+            try {
+                XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String name = reader.getLocalName();
+                        String id = reader.getAttributeValue(null, "ID");
+                        if (PremisConsts.PREMIS_NAMESPACE_URI.equals(reader.getNamespaceURI())) {
+                            if (inPremis && "relationship".equals(name)) {
+                                previousRelationships++;
+                            } else if (inPremis && "eventIdentifierValue".equals(name)) {
+                                idGenerators.reservePremisEventId(reader.getElementText());
+                            } else if ("premis".equals(name) && constructedDpId != null && previousPremisDpId == null) {
+                                previousPremisDpId = constructedDpId;
+                                inPremis = true;
+                            }
+                            continue;
+                        }
+                        if (!MetsConsts.METS_NAMESPACE_URI.equals(reader.getNamespaceURI())) {
+                            continue;
+                        }
+                        if (id != null) {
+                            idGenerators.reserve(id);
+                        }
+                        if ("dmdSec".equals(name)) {
+                            sectionId = id;
+                        } else if ("amdSec".equals(name)) {
+                            admSecId = id;
+                            admChildren = 0;
+                            admRemovedChildren = 0;
+                        } else if (ADM_SUBSECTIONS.contains(name)) {
+                            sectionId = id;
+                            admChildren++;
+                            if ("digiprovMD".equals(name)
+                                    && "CONSTRUCTED".equals(reader.getAttributeValue(null, "STATUS"))) {
+                                constructedDpId = id;
+                            }
+                        } else if ("mdRef".equals(name)) {
+                            String href = reader.getAttributeValue(XLINK_NAMESPACE_URI, "href");
+                            if (sectionId != null && removedMetadataFiles.contains(href)) {
+                                removedSectionIds.add(sectionId);
+                                if (admSecId != null) {
+                                    admRemovedChildren++;
+                                }
+                            }
+                        } else if ("fileGrp".equals(name)) {
+                            if (previousFgId == null) {
+                                previousFgId = id;
+                            }
+                        } else if ("file".equals(name)) {
+                            fileId = id;
+                            fileAdmIds = reader.getAttributeValue(null, "ADMID");
+                        } else if ("FLocat".equals(name)) {
+                            String href = reader.getAttributeValue(XLINK_NAMESPACE_URI, "href");
+                            if (fileId != null && removedDataFiles.contains(href)) {
+                                removedSectionIds.add(fileId);
+                                if (fileAdmIds != null) {
+                                    removedSectionIds.addAll(Arrays.asList(fileAdmIds.trim().split("\\s+")));
+                                }
+                            }
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        String name = reader.getLocalName();
+                        if (PremisConsts.PREMIS_NAMESPACE_URI.equals(reader.getNamespaceURI())) {
+                            if ("premis".equals(name)) {
+                                inPremis = false;
+                            }
+                        } else if ("amdSec".equals(name)) {
+                            // an administrative section cannot be empty
+                            if (admChildren > 0 && admRemovedChildren == admChildren) {
+                                removedSectionIds.add(admSecId);
+                            }
+                            admSecId = null;
+                        } else if ("dmdSec".equals(name) || ADM_SUBSECTIONS.contains(name)) {
+                            sectionId = null;
+                            constructedDpId = null;
+                        } else if ("file".equals(name)) {
+                            fileId = null;
+                        }
+                    }
+                }
+                reader.close();
+            } finally {
+                input.close();
+            }
+        } catch (XMLStreamException e) {
+            logger.error("Reading METS metadata of the previous version failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        } catch (IOException e) {
+            logger.error("Reading METS metadata of the previous version failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        }
+        if (previousFgId != null) {
+            // new data files are appended to the existing group
+            FileGrp fileGrpSec = new FileGrp();
+            fileGrpSec.setID(previousFgId);
+            getFileSection().getFileGrp().add(fileGrpSec);
+            contentFgId = previousFgId;
+        }
+        return this;
+    }
+
+
+    /**
+     * Returns the number of relationships (origins and derivatives) of the object described in METS metadata of the
+     * previous version. They are copied as they are, so the next version can be written as a delta only if the object
+     * has not been migrated since then.
+     * 
+     * @return number of relationships or -1 if the previous version does not contain PREMIS metadata
+     */
+    public int getPreviousRelationshipCount() {
+        if (previousPremisDpId == null) {
+            return -1;
+        }
+        return previousRelationships;
+    }
+
+
+    /**
+     * Writes METS metadata of the next version as METS metadata of the previous version (loaded by
+     * {@link #loadPreviousVersion(File, Set, Set)}) with the changes added to this builder applied. The previous
+     * metadata are copied section by section without unmarshalling, the sections of the removed files and metadata are
+     * skipped and the new ones are inserted in front of the first section of a later kind.
+     * 
+     * @param output
+     *            output stream for METS metadata (it is not closed by the builder)
+     * @throws MetsMetadataProcessingException
+     *             when reading of the previous or writing of the next METS metadata failed
+     */
+    public void writeNextVersion(OutputStream output)
+            throws MetsMetadataProcessingException {
+        if (previousMetsFile == null) {
+            throw new IllegalStateException("METS metadata of the previous version are not loaded.");
+        }
+        List<EventComplexType> events = new ArrayList<EventComplexType>();
+        if (premisAdmId != null) {
+            events.addAll(getPremisDigiprovMetadata().getEvent());
+        }
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(previousMetsFile));
+            try {
+                XMLEventReader reader = INPUT_FACTORY.createXMLEventReader(input);
+                XMLEventWriter writer = OUTPUT_FACTORY.createXMLEventWriter(output, "UTF-8");
+                streamMarshaller = createStreamMarshaller();
+                int written = 0;
+                int depth = 0;
+                int skippedDepth = 0;
+                int premisDepth = 0;
+                int fileGrpDepth = 0;
+                boolean inPremisDp = false;
+                while (reader.hasNext()) {
+                    XMLEvent event = reader.nextEvent();
+                    if (skippedDepth > 0) {
+                        if (event.isStartElement()) {
+                            depth++;
+                        } else if (event.isEndElement()) {
+                            if (depth == skippedDepth) {
+                                skippedDepth = 0;
+                            }
+                            depth--;
+                        }
+                        continue;
+                    }
+                    if (event.isStartElement()) {
+                        StartElement element = event.asStartElement();
+                        depth++;
+                        String name = element.getName().getLocalPart();
+                        boolean metsElement = MetsConsts.METS_NAMESPACE_URI.equals(element.getName().getNamespaceURI());
+                        Attribute id = element.getAttributeByName(new QName("ID"));
+                        if (metsElement && id != null && REMOVABLE_SECTIONS.contains(name)
+                                && removedSectionIds.contains(id.getValue())) {
+                            skippedDepth = depth;
+                            continue;
+                        }
+                        if (depth == 2) {
+                            int rank = TOP_LEVEL_SECTIONS.indexOf(name);
+                            written = writeNewSections(writer, written, metsElement && rank >= 0 ? rank
+                                    : TOP_LEVEL_SECTIONS.size());
+                            if (metsElement && "metsHdr".equals(name)) {
+                                event = updateHeader(element);
+                            }
+                        } else if (premisDepth > 0 && depth == premisDepth + 1
+                                && ("agent".equals(name) || "rights".equals(name))) {
+                            // events precede agents and rights in PREMIS
+                            writeEvents(writer, events);
+                        }
+                        if (metsElement && "digiprovMD".equals(name) && id != null
+                                && id.getValue().equals(previousPremisDpId)) {
+                            inPremisDp = true;
+                        } else if (inPremisDp && premisDepth == 0 && "premis".equals(name)) {
+                            premisDepth = depth;
+                        } else if (metsElement && "fileGrp".equals(name) && id != null
+                                && id.getValue().equals(contentFgId)) {
+                            fileGrpDepth = depth;
+                        }
+                    } else if (event.isEndElement()) {
+                        if (depth == premisDepth) {
+                            writeEvents(writer, events);
+                            premisDepth = -1;
+                            inPremisDp = false;
+                        } else if (depth == fileGrpDepth) {
+                            writeDataFiles(writer, getContentFileGroupSection());
+                            fileGrpDepth = 0;
+                        } else if (depth == 1) {
+                            written = writeNewSections(writer, written, TOP_LEVEL_SECTIONS.size());
+                        }
+                        depth--;
+                    }
+                    writer.add(event);
+                }
+                writer.flush();
+                writer.close();
+                reader.close();
+            } finally {
+                input.close();
+            }
+        } catch (XMLStreamException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        } catch (JAXBException e) {
+            logger.error("Streaming XML with metadata failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        } catch (IOException e) {
+            logger.error("Reading METS metadata of the previous version failed.", e);
+            throw new MetsMetadataProcessingException(e);
+        }
+    }
+
+
+    /**
+     * Writes the new top-level sections which precede a section of the given kind and have not been written yet.
+     * 
+     * @param writer
+     *            writer of METS metadata
+     * @param written
+     *            number of kinds of top-level sections already written (see {@link #TOP_LEVEL_SECTIONS})
+     * @param rank
+     *            index of the kind of the next section in {@link #TOP_LEVEL_SECTIONS}
+     * @return number of kinds of top-level sections written so far
+     * @throws JAXBException
+     *             when marshalling failed
+     */
+    private int writeNewSections(XMLEventWriter writer, int written, int rank)
+            throws JAXBException {
+        for (; written < rank; written++) {
+            if (written == 1) {
+                for (MdSecType dmdSec : mets.getDmdSec()) {
+                    streamMarshaller.marshal(
+                        new JAXBElement<MdSecType>(getMetsName("dmdSec"), MdSecType.class, dmdSec), writer);
+                }
+            } else if (written == 2) {
+                for (AmdSecType admSec : mets.getAmdSec()) {
+                    if (premisAdmId == null || !premisAdmId.equals(admSec.getID())) {
+                        streamMarshaller.marshal(new JAXBElement<AmdSecType>(getMetsName("amdSec"),
+                                AmdSecType.class, admSec), writer);
+                    }
+                }
+            } else if (written == 3 && contentFgId != null && !getContentFileGroupSection().getFile().isEmpty()) {
+                // the previous version has no data files, otherwise they are appended to its file group
+                streamMarshaller.marshal(new JAXBElement<FileSec>(getMetsName("fileSec"), FileSec.class,
+                        getFileSection()), writer);
+                getContentFileGroupSection().getFile().clear();
+            }
+        }
+        return written;
+    }
+
+
+    /**
+     * Writes the new PREMIS events, if they have not been written yet.
+     * 
+     * @param writer
+     *            writer of METS metadata
+     * @param events
+     *            events to write - the list is cleared
+     * @throws JAXBException
+     *             when marshalling failed
+     */
+    private void writeEvents(XMLEventWriter writer, List<EventComplexType> events)
+            throws JAXBException {
+        for (EventComplexType event : events) {
+            streamMarshaller.marshal(new JAXBElement<EventComplexType>(new QName(PremisConsts.PREMIS_NAMESPACE_URI,
+                    "event", PremisConsts.PREMIS_PREFIX), EventComplexType.class, event), writer);
+        }
+        events.clear();
+    }
+
+
+    /**
+     * Writes the new data files at the end of the file group and releases them.
+     * 
+     * @param writer
+     *            writer of METS metadata
+     * @param fileGrpSec
+     *            file group with new data files
+     * @throws JAXBException
+     *             when marshalling failed
+     */
+    private void writeDataFiles(XMLEventWriter writer, FileGrp fileGrpSec)
+            throws JAXBException {
+        for (FileType file : fileGrpSec.getFile()) {
+            streamMarshaller.marshal(new JAXBElement<FileType>(getMetsName("file"), FileType.class, file), writer);
+        }
+        fileGrpSec.getFile().clear();
+    }
+
+
+    /**
+     * Replaces the modification date and the record status in the header of the previous version with the ones set in
+     * this builder.
+     * 
+     * @param element
+     *            start of the header of the previous version
+     * @return start of the header of the next version
+     */
+    @SuppressWarnings("unchecked")
+    private StartElement updateHeader(StartElement element) {
+        MetsHdr header = mets.getMetsHdr();
+        if (header == null) {
+            return element;
+        }
+        Map<QName, String> values = new LinkedHashMap<QName, String>();
+        Iterator<Attribute> it = element.getAttributes();
+        while (it.hasNext()) {
+            Attribute attribute = it.next();
+            values.put(attribute.getName(), attribute.getValue());
+        }
+        if (header.getLASTMODDATE() != null) {
+            values.put(new QName("LASTMODDATE"), header.getLASTMODDATE().toXMLFormat());
+        }
+        if (header.getRECORDSTATUS() != null) {
+            values.put(new QName("RECORDSTATUS"), header.getRECORDSTATUS());
+        }
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (Map.Entry<QName, String> value : values.entrySet()) {
+            attributes.add(EVENT_FACTORY.createAttribute(value.getKey(), value.getValue()));
+        }
+        return EVENT_FACTORY.createStartElement(element.getName(), attributes.iterator(), element.getNamespaces());
+    }
+
+
+    /**
+     * Gets a marshaller of fragments of METS metadata.
+     * 
+     * @return marshaller
+     * @throws JAXBException
+     *             when the marshaller cannot be created
+     */
+    private Marshaller createStreamMarshaller()
+            throws JAXBException {
+        // fragments are nested in the root written separately, so they must not repeat the schema location
+        return jaxbProcessors.getMarshaller(STREAM_MARSHALLER_PROPERTIES);
+    }
+
+
+    /**
+     * Checks whether the builder is in the streaming mode.
+     */
+    private void checkStreaming() {
+        if (streamWriter == null) {
+            throw new IllegalStateException("The builder is not in the streaming mode.");
+        }
+    }
+
+
+    /**
+     * Gets the qualified name of an element in the METS namespace.
+     * 
+     * @param name
+     *            local name
+     * @return qualified name
+     */
+    private QName getMetsName(String name) {
+        return new QName(MetsConsts.METS_NAMESPACE_URI, name, MetsConsts.METS_PREFIX);
+    }
+
+
+    /**
+     * Writes the administrative sections kept in memory (except for the one with PREMIS metadata) and releases them.
+     * 
+     * @throws JAXBException
+     *             when marshalling failed
+     */
+    private void writeAdministrativeSections()
+            throws JAXBException {
+        for (AmdSecType admSec : mets.getAmdSec()) {
+            if (premisAdmId == null || !premisAdmId.equals(admSec.getID())) {
+                streamMarshaller.marshal(
+                    new JAXBElement<AmdSecType>(getMetsName("amdSec"), AmdSecType.class, admSec), streamWriter);
+                admSecsById.remove(admSec.getID());
+            }
+        }
+        mets.getAmdSec().clear();
+    }
+
+
+    /**
+     * Opens the administrative section with PREMIS metadata in the streaming mode and writes the PREMIS object
+     * description together with the events added so far. Later events are written as they are added.
+     * 
+     * @throws XMLStreamException
+     *             when writing failed
+     * @throws JAXBException
+     *             when marshalling failed
+     */
+    private void openPremisSection()
+            throws XMLStreamException, JAXBException {
+        MdSecType digiprovSec = getPremisDigiprovSection();
+        PremisComplexType premis = getPremisDigiprovMetadata();
+        MdWrap mdWrap = digiprovSec.getMdWrap();
+        streamWriter.writeStartElement(MetsConsts.METS_PREFIX, "amdSec", MetsConsts.METS_NAMESPACE_URI);
+        streamWriter.writeAttribute("ID", premisAdmId);
+        streamWriter.writeStartElement(MetsConsts.METS_PREFIX, "digiprovMD", MetsConsts.METS_NAMESPACE_URI);
+        streamWriter.writeAttribute("ID", digiprovSec.getID());
+        streamWriter.writeAttribute("STATUS", digiprovSec.getSTATUS());
+        streamWriter.writeStartElement(MetsConsts.METS_PREFIX, "mdWrap", MetsConsts.METS_NAMESPACE_URI);
+        streamWriter.writeAttribute("MDTYPE", mdWrap.getMDTYPE());
+        streamWriter.writeAttribute("LABEL", mdWrap.getLABEL());
+        streamWriter.writeStartElement(MetsConsts.METS_PREFIX, "xmlData", MetsConsts.METS_NAMESPACE_URI);
+        streamWriter.writeStartElement(PremisConsts.PREMIS_PREFIX, "premis", PremisConsts.PREMIS_NAMESPACE_URI);
+        streamWriter.writeAttribute("version", premis.getVersion());
+        for (ObjectComplexType object : premis.getObject()) {
+            streamMarshaller.marshal(new JAXBElement<ObjectComplexType>(new QName(PremisConsts.PREMIS_NAMESPACE_URI,
+                    "object", PremisConsts.PREMIS_PREFIX), ObjectComplexType.class, object), streamWriter);
+        }
+        premis.getObject().clear();
+        premisSectionOpen = true;
+        writePremisEvents(premis);
+    }
+
+
+    /**
+     * Writes the PREMIS events kept in memory and releases them.
+     * 
+     * @param premis
+     *            PREMIS metadata with the events
+     * @throws JAXBException
+     *             when marshalling failed
+     */
+    private void writePremisEvents(PremisComplexType premis)
+            throws JAXBException {
+        for (EventComplexType event : premis.getEvent()) {
+            streamMarshaller.marshal(new JAXBElement<EventComplexType>(new QName(PremisConsts.PREMIS_NAMESPACE_URI,
+                    "event", PremisConsts.PREMIS_PREFIX), EventComplexType.class, event), streamWriter);
+        }
+        premis.getEvent().clear();
+    }
+
+
+    /**
+     * Writes the remaining PREMIS events and closes the administrative section with PREMIS metadata, if it is open.
+     * 
+     * @throws XMLStreamException
+     *             when writing failed
+     * @throws JAXBException
+     *             when marshalling failed
+     */
+    private void closePremisSection()
+            throws XMLStreamException, JAXBException {
+        if (premisSectionOpen) {
+            writePremisEvents(getPremisDigiprovMetadata());
+            // premis, xmlData, mdWrap, digiprovMD and amdSec
+            for (int i = 0; i < 5; i++) {
+                streamWriter.writeEndElement();
+            }
+            premisSectionOpen = false;
+        }
+    }
+
+
     /**
      * Sets the main identifier of a digital object.
      * 
@@ -587,6 +1380,10 @@ public class MetsMetadataBuilder {
             String metadataLabel) {
         MdSecType mdSec = getNewMdSecForObject(status, type);
         mdSec.setMdRef(getNewMdRefSection(type, metadataPath, metadataLabel));
+        List<MdSecType> dmdSecs = mets.getDmdSec();
+        if (dmdSecs.isEmpty() || dmdSecs.get(dmdSecs.size() - 1) != mdSec) {
+            indexAdmReference(mdSec.getMdRef());
+        }
         return this;
     }
 
@@ -710,6 +1507,7 @@ public class MetsMetadataBuilder {
             String metadataPath, String metadataLabel) {
         MdSecType mdSec = getNewMdSecForFile(datafilePath, status, type);
         mdSec.setMdRef(getNewMdRefSection(type, metadataPath, metadataLabel));
+        indexAdmReference(mdSec.getMdRef());
         return this;
     }
 
@@ -863,7 +1661,7 @@ public class MetsMetadataBuilder {
         }
         DocumentBuilder documentBuilder = null;
         try {
-            documentBuilder = domBuilderFactory.newDocumentBuilder();
+            documentBuilder = XmlParsers.getVerbatimDocumentBuilder();
         } catch (ParserConfigurationException e) {
             logger.error("Problem with creation of document builder." + e.toString());
             throw new RuntimeException(e);
@@ -910,13 +1708,7 @@ public class MetsMetadataBuilder {
             String metadataLabel, String metadataStatus) {
         String metadataType = type.equals(NamespaceType.UNKNOWN) ? MetsConsts.METS_METADATA_TYPE_OTHER : type.name()
                 .replace('_', ':');
-        Mets prevMets = null;
-        try {
-            prevMets = (Mets) unmarshaller.unmarshal(new StringReader(previousMetsMetadata));
-        } catch (Exception e) {
-            logger.error("Problem with reading previuos version of METS metadata." + e.toString());
-            throw new RuntimeException(e);
-        }
+        Mets prevMets = getPreviousMets(previousMetsMetadata);
         if (datafilePath == null) {
             for (MdSecType dmdSec : prevMets.getDmdSec()) {
                 if (matchMdSection(dmdSec, metadataStatus, metadataLabel, metadataType)) {
@@ -946,32 +1738,29 @@ public class MetsMetadataBuilder {
                 }
             }
         } else {
-            for (FileGrp fileGrp : prevMets.getFileSec().getFileGrp()) {
-                for (FileType file : fileGrp.getFile()) {
-                    if (file.getFLocat().size() == 1) {
-                        if (file.getFLocat().get(0).getHref().equals(datafilePath)) {
-                            if (file.getADMID().size() == 1) {
-                                AmdSecType admSec = (AmdSecType) file.getADMID().get(0);
-                                for (MdSecType techSec : admSec.getTechMD()) {
-                                    if (matchMdSection(techSec, metadataStatus, metadataLabel, metadataType)) {
-                                        return techSec.getMdWrap();
-                                    }
-                                }
-                                for (MdSecType sourceSec : admSec.getSourceMD()) {
-                                    if (matchMdSection(sourceSec, metadataStatus, metadataLabel, metadataType)) {
-                                        return sourceSec.getMdWrap();
-                                    }
-                                }
-                                for (MdSecType rightsSec : admSec.getRightsMD()) {
-                                    if (matchMdSection(rightsSec, metadataStatus, metadataLabel, metadataType)) {
-                                        return rightsSec.getMdWrap();
-                                    }
-                                }
-                                for (MdSecType digiprovSec : admSec.getDigiprovMD()) {
-                                    if (matchMdSection(digiprovSec, metadataStatus, metadataLabel, metadataType)) {
-                                        return digiprovSec.getMdWrap();
-                                    }
-                                }
+            List<FileType> files = previousFilesByHref.get(datafilePath);
+            if (files != null) {
+                for (FileType file : files) {
+                    if (file.getADMID().size() == 1) {
+                        AmdSecType admSec = (AmdSecType) file.getADMID().get(0);
+                        for (MdSecType techSec : admSec.getTechMD()) {
+                            if (matchMdSection(techSec, metadataStatus, metadataLabel, metadataType)) {
+                                return techSec.getMdWrap();
+                            }
+                        }
+                        for (MdSecType sourceSec : admSec.getSourceMD()) {
+                            if (matchMdSection(sourceSec, metadataStatus, metadataLabel, metadataType)) {
+                                return sourceSec.getMdWrap();
+                            }
+                        }
+                        for (MdSecType rightsSec : admSec.getRightsMD()) {
+                            if (matchMdSection(rightsSec, metadataStatus, metadataLabel, metadataType)) {
+                                return rightsSec.getMdWrap();
+                            }
+                        }
+                        for (MdSecType digiprovSec : admSec.getDigiprovMD()) {
+                            if (matchMdSection(digiprovSec, metadataStatus, metadataLabel, metadataType)) {
+                                return digiprovSec.getMdWrap();
                             }
                         }
                     }
@@ -982,6 +1771,48 @@ public class MetsMetadataBuilder {
     }
 
 
+    /**
+     * Gets the parsed previous METS metadata. The metadata are parsed only once for all the sections taken from them,
+     * and the file sections are indexed by the location of the data file.
+     * 
+     * @param previousMetsMetadata
+     *            previous METS metadata
+     * @return parsed previous METS metadata
+     */
+    private Mets getPreviousMets(String previousMetsMetadata) {
+        if (previousMetsMetadata != previousMetsSource && !previousMetsMetadata.equals(previousMetsSource)) {
+            Mets prevMets = null;
+            try {
+                prevMets = (Mets) jaxbProcessors.getUnmarshaller().unmarshal(
+                    new StringReader(previousMetsMetadata));
+            } catch (Exception e) {
+                logger.error("Problem with reading previuos version of METS metadata." + e.toString());
+                throw new RuntimeException(e);
+            }
+            Map<String, List<FileType>> filesByHref = new HashMap<String, List<FileType>>();
+            if (prevMets.getFileSec() != null) {
+                for (FileGrp fileGrp : prevMets.getFileSec().getFileGrp()) {
+                    for (FileType file : fileGrp.getFile()) {
+                        if (file.getFLocat().size() == 1) {
+                            String href = file.getFLocat().get(0).getHref();
+                            List<FileType> files = filesByHref.get(href);
+                            if (files == null) {
+                                files = new ArrayList<FileType>(1);
+                                filesByHref.put(href, files);
+                            }
+                            files.add(file);
+                        }
+                    }
+                }
+            }
+            previousMets = prevMets;
+            previousFilesByHref = filesByHref;
+            previousMetsSource = previousMetsMetadata;
+        }
+        return previousMets;
+    }
+
+
     /**
      * Match existing metadata section with metadata attributes.
      * 
@@ -1042,12 +1873,9 @@ public class MetsMetadataBuilder {
         file.setID(idGenerators.getFileId(contentFgId));
         file.setSEQ(seq);
         if (dataFileMap.containsKey(datafilePath)) {
-            String admFileId = dataFileMap.get(datafilePath);
-            for (AmdSecType admSec : mets.getAmdSec()) {
-                if (admSec.getID().equals(admFileId)) {
-                    file.getADMID().add(admSec);
-                    break;
-                }
+            AmdSecType admSec = admSecsById.get(dataFileMap.get(datafilePath));
+            if (admSec != null) {
+                file.getADMID().add(admSec);
             }
         }
         FLocat fLocat = new FLocat();
@@ -1055,6 +1883,9 @@ public class MetsMetadataBuilder {
         fLocat.setLOCTYPE(MetsConsts.METS_DATA_LOCATION_TYPE_RELATIVE);
         file.getFLocat().add(fLocat);
         fileGrpSec.getFile().add(file);
+        if (filesByHref != null && !filesByHref.containsKey(datafilePath)) {
+            filesByHref.put(datafilePath, file);
+        }
         return this;
     }
 
@@ -1153,6 +1984,7 @@ public class MetsMetadataBuilder {
         AmdSecType admSec = new AmdSecType();
         admSec.setID(idGenerators.getObjectAdmId());
         mets.getAmdSec().add(admSec);
+        indexAdmSection(admSec);
         return admSec;
     }
 
@@ -1230,19 +2062,22 @@ public class MetsMetadataBuilder {
      */
     private AmdSecType getFileAdministrativeSection(String datafilePath) {
         if (dataFileMap.containsKey(datafilePath)) {
-            String amdId = dataFileMap.get(datafilePath);
-            for (AmdSecType admSec : mets.getAmdSec()) {
-                if (admSec.getID().equals(amdId)) {
-                    idGenerators.fillMaps(admSec);
-                    return admSec;
-                }
+            AmdSecType admSec = admSecsById.get(dataFileMap.get(datafilePath));
+            if (admSec != null) {
+                idGenerators.fillMaps(admSec);
+                return admSec;
             }
         }
         AmdSecType admSec = new AmdSecType();
         String amdId = idGenerators.getFileAdmId();
-        dataFileMap.put(datafilePath, amdId);
+        String previousAmdId = dataFileMap.put(datafilePath, amdId);
+        if (previousAmdId != null && !dataFileMap.containsValue(previousAmdId)) {
+            dataFileAdmIds.remove(previousAmdId);
+        }
+        dataFileAdmIds.add(amdId);
         admSec.setID(amdId);
         mets.getAmdSec().add(admSec);
+        indexAdmSection(admSec);
         return admSec;
     }
 
@@ -1273,6 +2108,18 @@ public class MetsMetadataBuilder {
      */
     private EventComplexType getNewPremisEventSection() {
         PremisComplexType premisDpSec = getPremisDigiprovMetadata();
+        if (streamWriter != null) {
+            if (!premisSectionOpen) {
+                throw new IllegalStateException("PREMIS metadata have already been written.");
+            }
+            try {
+                // the previous event is complete by now
+                writePremisEvents(premisDpSec);
+            } catch (JAXBException e) {
+                logger.error("Streaming XML with metadata failed.", e);
+                throw new RuntimeException(e);
+            }
+        }
         EventComplexType evtSec = new EventComplexType();
         EventIdentifierComplexType evtId = new EventIdentifierComplexType();
         evtId.setEventIdentifierType(MetsConsts.PREMIS_EVENT_TYPE);
@@ -1337,15 +2184,14 @@ public class MetsMetadataBuilder {
      * @return administrative section with PREMIS metadata
      */
     private AmdSecType getPremisAdministrativeSection() {
-        for (AmdSecType amdSec : mets.getAmdSec()) {
-            if (amdSec.getID().equals(premisAdmId)) {
-                return amdSec;
-            }
+        if (premisAdmId != null && admSecsById.containsKey(premisAdmId)) {
+            return admSecsById.get(premisAdmId);
         }
         AmdSecType admSec = new AmdSecType();
         premisAdmId = idGenerators.getObjectAdmId();
         admSec.setID(premisAdmId);
         mets.getAmdSec().add(admSec);
+        indexAdmSection(admSec);
         return admSec;
     }
 
@@ -1387,25 +2233,20 @@ public class MetsMetadataBuilder {
 
 
     /**
-     * Gets the file location section of METS metadata.
+     * Gets the file location section of METS metadata. The location must not be changed directly - use
+     * {@link #relocateDataFile(String, String, String)} instead.
      * 
+     * @param url
+     *            url to data file
      * @return file location section
      */
     public FLocat findFileSectionByURL(String url) {
-        FileSec fileSec = getFileSection();
-        Iterator<FileGrp> it = fileSec.getFileGrp().iterator();
-        while (it.hasNext()) {
-            FileGrp fileGrp = (FileGrp) it.next();
-            Iterator<FileType> it1 = fileGrp.getFile().iterator();
-            while (it1.hasNext()) {
-                FileType fileType = (FileType) it1.next();
-                Iterator<FLocat> it2 = fileType.getFLocat().iterator();
-                while (it2.hasNext()) {
-                    FLocat locat = (FLocat) it2.next();
-                    if (locat.getHref().equals(url)) {
-                        lastFileTypeSec = fileType;
-                        return locat;
-                    }
+        FileType fileType = getFilesByHref().get(url);
+        if (fileType != null) {
+            for (FLocat locat : fileType.getFLocat()) {
+                if (locat.getHref().equals(url)) {
+                    lastFileTypeSec = fileType;
+                    return locat;
                 }
             }
         }
@@ -1414,6 +2255,55 @@ public class MetsMetadataBuilder {
     }
 
 
+    /**
+     * Changes the location of the data file.
+     * 
+     * @param url
+     *            current url to data file
+     * @param href
+     *            new location of the data file
+     * @param locType
+     *            type of the new location
+     * @return file section of the data file or <code>null</code> if there is no data file at the specified url
+     */
+    public FileType relocateDataFile(String url, String href, String locType) {
+        FLocat locat = findFileSectionByURL(url);
+        if (locat == null) {
+            return null;
+        }
+        FileType fileType = lastFileTypeSec;
+        locat.setHref(href);
+        locat.setLOCTYPE(locType);
+        filesByHref.remove(url);
+        if (!filesByHref.containsKey(href)) {
+            filesByHref.put(href, fileType);
+        }
+        return fileType;
+    }
+
+
+    /**
+     * Gets the file sections by the location of the data file, indexing them on the first call.
+     * 
+     * @return file sections by location
+     */
+    private Map<String, FileType> getFilesByHref() {
+        if (filesByHref == null) {
+            filesByHref = new HashMap<String, FileType>();
+            for (FileGrp fileGrp : getFileSection().getFileGrp()) {
+                for (FileType fileType : fileGrp.getFile()) {
+                    for (FLocat locat : fileType.getFLocat()) {
+                        if (locat.getHref() != null && !filesByHref.containsKey(locat.getHref())) {
+                            filesByHref.put(locat.getHref(), fileType);
+                        }
+                    }
+                }
+            }
+        }
+        return filesByHref;
+    }
+
+
     /**
      * Gets last FileTypeSec founded by findFileSectionByURL().
      * 
@@ -1425,63 +2315,115 @@ public class MetsMetadataBuilder {
 
 
     /**
-     * Gets the file location section of METS metadata.
+     * Gets the reference to the metadata file from an administrative section of METS metadata. The location must not
+     * be changed directly - use {@link #relocateFileMetadata(String, String, String)} instead.
      * 
      * @param url
      *            url to metadata file
      * @return MdRef section
      */
     public MdRef findFileAdmSectionByURL(String url) {
-        Iterator<AmdSecType> it = mets.getAmdSec().iterator();
-        while (it.hasNext()) {
-            AmdSecType amdSecType = (AmdSecType) it.next();
-            Iterator<MdSecType> it1 = amdSecType.getTechMD().iterator();
-            while (it1.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it1.next();
-                MdRef mdRef = mdSecType.getMdRef();
-                if ((mdRef == null) || (mdRef.getHref() == null)) {
-                    continue;
-                }
-                if (mdRef.getHref().equals(url)) {
-                    return mdRef;
-                }
+        return getAdmReferencesByHref().get(url);
+    }
+
+
+    /**
+     * Changes the location of the metadata file referenced from an administrative section.
+     * 
+     * @param url
+     *            current url to metadata file
+     * @param href
+     *            new location of the metadata file
+     * @param locType
+     *            type of the new location
+     * @return whether there was a metadata file at the specified url
+     */
+    public boolean relocateFileMetadata(String url, String href, String locType) {
+        MdRef mdRef = findFileAdmSectionByURL(url);
+        if (mdRef == null) {
+            return false;
+        }
+        relocateAdmReference(mdRef, href, locType);
+        return true;
+    }
+
+
+    /**
+     * Changes the location of the metadata file referenced from an administrative section and updates the index.
+     * 
+     * @param mdRef
+     *            reference to the metadata file
+     * @param href
+     *            new location of the metadata file
+     * @param locType
+     *            type of the new location
+     */
+    private void relocateAdmReference(MdRef mdRef, String href, String locType) {
+        if (admReferencesByHref != null) {
+            if (mdRef.getHref() != null && admReferencesByHref.get(mdRef.getHref()) == mdRef) {
+                admReferencesByHref.remove(mdRef.getHref());
             }
-            Iterator<MdSecType> it2 = amdSecType.getSourceMD().iterator();
-            while (it2.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it2.next();
-                MdRef mdRef = mdSecType.getMdRef();
-                if ((mdRef == null) || (mdRef.getHref() == null)) {
-                    continue;
-                }
-                if (mdRef.getHref().equals(url)) {
-                    return mdRef;
-                }
+            if (href != null && !admReferencesByHref.containsKey(href)) {
+                admReferencesByHref.put(href, mdRef);
             }
-            Iterator<MdSecType> it3 = amdSecType.getRightsMD().iterator();
-            while (it3.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it3.next();
-                MdRef mdRef = mdSecType.getMdRef();
-                if ((mdRef == null) || (mdRef.getHref() == null)) {
-                    continue;
+        }
+        mdRef.setHref(href);
+        mdRef.setLOCTYPE(locType);
+    }
+
+
+    /**
+     * Gets the references to metadata files in the administrative sections by their location, indexing them on the
+     * first call.
+     * 
+     * @return references by location
+     */
+    private Map<String, MdRef> getAdmReferencesByHref() {
+        if (admReferencesByHref == null) {
+            admReferencesByHref = new HashMap<String, MdRef>();
+            for (AmdSecType amdSecType : mets.getAmdSec()) {
+                for (MdSecType mdSecType : amdSecType.getTechMD()) {
+                    indexAdmReference(mdSecType.getMdRef());
                 }
-                if (mdRef.getHref().equals(url)) {
-                    return mdRef;
+                for (MdSecType mdSecType : amdSecType.getSourceMD()) {
+                    indexAdmReference(mdSecType.getMdRef());
                 }
-            }
-            Iterator<MdSecType> it4 = amdSecType.getDigiprovMD().iterator();
-            while (it4.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it4.next();
-                MdRef mdRef = mdSecType.getMdRef();
-                if ((mdRef == null) || (mdRef.getHref() == null)) {
-                    continue;
+                for (MdSecType mdSecType : amdSecType.getRightsMD()) {
+                    indexAdmReference(mdSecType.getMdRef());
                 }
-                if (mdRef.getHref().equals(url)) {
-                    return mdRef;
+                for (MdSecType mdSecType : amdSecType.getDigiprovMD()) {
+                    indexAdmReference(mdSecType.getMdRef());
                 }
             }
         }
+        return admReferencesByHref;
+    }
 
-        return null;
+
+    /**
+     * Adds the reference to a metadata file in an administrative section to the index, if the index is already built.
+     * 
+     * @param mdRef
+     *            reference to the metadata file or <code>null</code>
+     */
+    private void indexAdmReference(MdRef mdRef) {
+        if (admReferencesByHref != null && mdRef != null && mdRef.getHref() != null
+                && !admReferencesByHref.containsKey(mdRef.getHref())) {
+            admReferencesByHref.put(mdRef.getHref(), mdRef);
+        }
+    }
+
+
+    /**
+     * Adds the administrative section to the index of sections by id.
+     * 
+     * @param admSec
+     *            administrative section
+     */
+    private void indexAdmSection(AmdSecType admSec) {
+        if (admSec.getID() != null && !admSecsById.containsKey(admSec.getID())) {
+            admSecsById.put(admSec.getID(), admSec);
+        }
     }
 
 
@@ -1528,7 +2470,7 @@ public class MetsMetadataBuilder {
         Iterator<AmdSecType> it = mets.getAmdSec().iterator();
         while (it.hasNext()) {
             AmdSecType amdSecType = (AmdSecType) it.next();
-            if (dataFileMap.containsValue(amdSecType.getID())) {
+            if (dataFileAdmIds.contains(amdSecType.getID())) {
                 continue;
             }
             Iterator<MdSecType> it1 = amdSecType.getTechMD().iterator();
@@ -1546,8 +2488,7 @@ public class MetsMetadataBuilder {
                 if (fpath == null) {
                     continue;
                 }
-                mdRef.setHref(fpath);
-                mdRef.setLOCTYPE(MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
+                relocateAdmReference(mdRef, fpath, MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
             }
             Iterator<MdSecType> it2 = amdSecType.getSourceMD().iterator();
             while (it2.hasNext()) {
@@ -1564,8 +2505,7 @@ public class MetsMetadataBuilder {
                 if (fpath == null) {
                     continue;
                 }
-                mdRef.setHref(fpath);
-                mdRef.setLOCTYPE(MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
+                relocateAdmReference(mdRef, fpath, MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
             }
             Iterator<MdSecType> it3 = amdSecType.getRightsMD().iterator();
             while (it3.hasNext()) {
@@ -1582,8 +2522,7 @@ public class MetsMetadataBuilder {
                 if (fpath == null) {
                     continue;
                 }
-                mdRef.setHref(fpath);
-                mdRef.setLOCTYPE(MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
+                relocateAdmReference(mdRef, fpath, MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
             }
             Iterator<MdSecType> it4 = amdSecType.getDigiprovMD().iterator();
             while (it4.hasNext()) {
@@ -1600,8 +2539,7 @@ public class MetsMetadataBuilder {
                 if (fpath == null) {
                     continue;
                 }
-                mdRef.setHref(fpath);
-                mdRef.setLOCTYPE(MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
+                relocateAdmReference(mdRef, fpath, MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
             }
         }
     }
@@ -1613,6 +2551,7 @@ public class MetsMetadataBuilder {
     public void addMapping(String dataFilePath, String amdSecId) {
         if (!dataFileMap.containsKey(dataFilePath)) {
             dataFileMap.put(dataFilePath, amdSecId);
+            dataFileAdmIds.add(amdSecId);
         }
     }
 }
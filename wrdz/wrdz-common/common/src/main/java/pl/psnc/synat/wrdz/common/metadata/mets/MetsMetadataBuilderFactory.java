@@ -17,15 +17,15 @@ package pl.psnc.synat.wrdz.common.metadata.mets;
 
 import java.net.URI;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+
 /**
  * The factory of metadata builder in the METS schema.
  */
@@ -40,27 +40,22 @@ public final class MetsMetadataBuilderFactory {
     private static MetsMetadataBuilderFactory instance = new MetsMetadataBuilderFactory();
 
     /**
-     * JAXB context for the mets classes.
+     * JAXB context for the mets classes with cached marshallers and unmarshallers.
      */
-    private final JAXBContext jaxbContext;
+    private final JaxbProcessors jaxbProcessors;
 
     /**
      * Date type factory for converting dates into XML Gregorian Calendar instances.
      */
     private final DatatypeFactory datatypeFactory;
 
-    /**
-     * Document builder factory for parsing XML to DOM.
-     */
-    private final DocumentBuilderFactory domBuilderFactory;
-
 
     /**
      * Private constructor.
      */
     private MetsMetadataBuilderFactory() {
         try {
-            jaxbContext = JAXBContext.newInstance("gov.loc.mets:info.lc.xmlns.premis_v2");
+            jaxbProcessors = JaxbProcessors.getInstance(MetsConsts.JAXB_CONTEXT_PATH);
         } catch (JAXBException e) {
             logger.error("JAXB context for METS creation failed.", e);
             throw new RuntimeException(e);
@@ -71,14 +66,6 @@ public final class MetsMetadataBuilderFactory {
             logger.error("Problem with creation of DatatypeFactory instance.", e);
             throw new RuntimeException(e);
         }
-        domBuilderFactory = DocumentBuilderFactory.newInstance();
-        domBuilderFactory.setIgnoringElementContentWhitespace(false);
-        domBuilderFactory.setValidating(false);
-        domBuilderFactory.setExpandEntityReferences(false);
-        domBuilderFactory.setIgnoringComments(false);
-        domBuilderFactory.setNamespaceAware(false);
-        domBuilderFactory.setXIncludeAware(false);
-        domBuilderFactory.setCoalescing(false);
     }
 
 
@@ -98,7 +85,7 @@ public final class MetsMetadataBuilderFactory {
      * @return new METS (and PREMIS) metadata builder
      */
     public MetsMetadataBuilder getMetsMetadataBuilder() {
-        return new MetsMetadataBuilder(jaxbContext, datatypeFactory, domBuilderFactory);
+        return new MetsMetadataBuilder(jaxbProcessors, datatypeFactory);
     }
 
 
@@ -111,9 +98,9 @@ public final class MetsMetadataBuilderFactory {
      */
     public MetsMetadataBuilder getMetsMetadataBuilder(URI tmpMetsFileUri) {
         if (tmpMetsFileUri == null) {
-            return new MetsMetadataBuilder(jaxbContext, datatypeFactory, domBuilderFactory);
+            return new MetsMetadataBuilder(jaxbProcessors, datatypeFactory);
         } else {
-            return new MetsMetadataBuilder(jaxbContext, datatypeFactory, domBuilderFactory, tmpMetsFileUri);
+            return new MetsMetadataBuilder(jaxbProcessors, datatypeFactory, tmpMetsFileUri);
         }
     }
 
@@ -34,14 +34,14 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+
 /**
  * Reader of METS metadata of a digital object.
  */
@@ -51,35 +51,35 @@ public class MetsMetadataReader {
     private static final Logger logger = LoggerFactory.getLogger(MetsMetadataReader.class);
 
     /**
-     * Unmarshaller of the METS metadata.
+     * JAXB context for the METS classes with cached marshallers and unmarshallers.
      */
-    private final Unmarshaller unmarshaller;
+    private final JaxbProcessors jaxbProcessors;
 
     /**
-     * Marshaller of the METS metadata.
+     * Mets root object.
      */
-    private final Marshaller marshaller;
+    private Mets mets;
 
     /**
-     * Mets root object.
+     * Administrative and metadata sections by their ids (the first one in document order wins) - built on the first
+     * lookup.
      */
-    private Mets mets;
+    private Map<String, Object> sectionsById;
+
+    /**
+     * File sections by their ids - built on the first lookup.
+     */
+    private Map<String, List<FileType>> filesById;
 
 
     /**
      * Constructs reader of METS metadata.
      * 
-     * @param jaxbContext
-     *            JAXB context for the METS classes
+     * @param jaxbProcessors
+     *            JAXB context for the METS classes with cached marshallers and unmarshallers
      */
-    public MetsMetadataReader(JAXBContext jaxbContext) {
-        try {
-            this.unmarshaller = jaxbContext.createUnmarshaller();
-            this.marshaller = jaxbContext.createMarshaller();
-        } catch (JAXBException e) {
-            logger.error("JAXB - METS unmarshaller creation failed.", e);
-            throw new RuntimeException(e);
-        }
+    public MetsMetadataReader(JaxbProcessors jaxbProcessors) {
+        this.jaxbProcessors = jaxbProcessors;
     }
 
 
@@ -95,10 +95,11 @@ public class MetsMetadataReader {
     public MetsMetadataReader parse(String metsMetadata)
             throws MetsMetadataProcessingException {
         try {
-            mets = (Mets) unmarshaller.unmarshal(new StringReader(metsMetadata));
+            mets = (Mets) jaxbProcessors.getUnmarshaller().unmarshal(new StringReader(metsMetadata));
         } catch (Exception e) {
             throw new MetsMetadataProcessingException(e);
         }
+        resetIndexes();
         return this;
     }
 
@@ -115,7 +116,8 @@ public class MetsMetadataReader {
     public MetsMetadataReader parse(InputStream metsMetadata)
             throws MetsMetadataProcessingException {
         try {
-            mets = (Mets) unmarshaller.unmarshal(metsMetadata);
+            mets = (Mets) jaxbProcessors.getUnmarshaller().unmarshal(metsMetadata);
+            resetIndexes();
         } catch (Exception e) {
             logger.error("Problem with reading previuos version of METS metadata." + e.toString());
             throw new MetsMetadataProcessingException(e);
@@ -171,7 +173,7 @@ public class MetsMetadataReader {
             throw new MetsMetadataProcessingException(e1);
         }
         try {
-            marshaller.marshal(mets, tmpFile);
+            jaxbProcessors.getMarshaller().marshal(mets, tmpFile);
         } catch (Exception e) {
             tmpFile.delete();
             throw new MetsMetadataProcessingException(e);
@@ -196,7 +198,12 @@ public class MetsMetadataReader {
      * @return object identifier
      */
     public Marshaller getMarshaller() {
-        return marshaller;
+        try {
+            return jaxbProcessors.getMarshaller();
+        } catch (JAXBException e) {
+            logger.error("JAXB - METS marshaller creation failed.", e);
+            throw new RuntimeException(e);
+        }
     }
 
 
@@ -232,12 +239,9 @@ public class MetsMetadataReader {
      * @return objectTypeID
      */
     public AmdSecType getAdmId(String amdId) {
-        Iterator<AmdSecType> it = mets.getAmdSec().iterator();
-        while (it.hasNext()) {
-            AmdSecType amdSec = (AmdSecType) it.next();
-            if (amdSec.getID().equals(amdId)) {
-                return amdSec;
-            }
+        Object section = getSectionsById().get(amdId);
+        if (section instanceof AmdSecType) {
+            return (AmdSecType) section;
         }
         return new AmdSecType();
     }
@@ -386,68 +390,20 @@ public class MetsMetadataReader {
      * 
      */
     public MdSecType findMetadataSectionByFileIdAndMid(String fid, String mid) {
-
-        List<FileType> allFilesList = getAllFilesFromFileSec();
-        List<Object> metadataSections = new LinkedList<Object>();
-
-        Iterator<FileType> it = allFilesList.iterator();
-        while (it.hasNext()) {
-            FileType fileType = (FileType) it.next();
-            if (fileType.getID().equals(fid)) {
-                metadataSections.addAll(fileType.getADMID());
-                metadataSections.addAll(fileType.getDMDID());
-            }
+        List<FileType> files = getFilesById().get(fid);
+        if (files == null) {
+            return null;
         }
-
-        Iterator<Object> it1 = metadataSections.iterator();
-
-        while (it1.hasNext()) {
-            Object o = it1.next();
-
-            AmdSecType amdSecType = (AmdSecType) o;
-
-            Iterator<MdSecType> it2 = amdSecType.getTechMD().iterator();
-            while (it2.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it2.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(mid)) {
-                    return mdSecType;
-                }
-            }
-            Iterator<MdSecType> it3 = amdSecType.getSourceMD().iterator();
-            while (it3.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it3.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(mid)) {
-                    return mdSecType;
-                }
-            }
-            Iterator<MdSecType> it4 = amdSecType.getRightsMD().iterator();
-            while (it4.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it4.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(mid)) {
-                    return mdSecType;
-                }
-            }
-            Iterator<MdSecType> it5 = amdSecType.getDigiprovMD().iterator();
-            while (it5.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it5.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(mid)) {
-                    return mdSecType;
+        for (FileType fileType : files) {
+            for (Object section : fileType.getADMID()) {
+                if (section instanceof AmdSecType) {
+                    MdSecType mdSecType = findMetadataSection((AmdSecType) section, mid);
+                    if (mdSecType != null) {
+                        return mdSecType;
+                    }
                 }
             }
         }
-
         return null;
     }
 
@@ -463,55 +419,120 @@ public class MetsMetadataReader {
      */
     public MdSecType findMetadataSectionById(String id)
             throws MetsMetadataProcessingException {
-        Iterator<AmdSecType> it = mets.getAmdSec().iterator();
-        while (it.hasNext()) {
-            AmdSecType amdSecType = (AmdSecType) it.next();
-            if (amdSecType.getID().equals(id)) {
-                return null;
-            }
+        Object section = getSectionsById().get(id);
+        if (section instanceof MdSecType) {
+            return (MdSecType) section;
+        }
+        return null;
+    }
 
-            Iterator<MdSecType> it1 = amdSecType.getTechMD().iterator();
-            while (it1.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it1.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(id)) {
-                    return mdSecType;
-                }
-            }
-            Iterator<MdSecType> it2 = amdSecType.getSourceMD().iterator();
-            while (it2.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it2.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(id)) {
+
+    /**
+     * Finds the metadata section with the given id among the metadata sections of the administrative section.
+     * 
+     * @param amdSecType
+     *            administrative section
+     * @param mid
+     *            metadata section id
+     * @return metadata section or <code>null</code> if not found
+     */
+    private MdSecType findMetadataSection(AmdSecType amdSecType, String mid) {
+        for (List<MdSecType> mdSecs : getMetadataSections(amdSecType)) {
+            for (MdSecType mdSecType : mdSecs) {
+                if (mdSecType != null && mdSecType.getID() != null && mdSecType.getID().equals(mid)) {
                     return mdSecType;
                 }
             }
-            Iterator<MdSecType> it3 = amdSecType.getRightsMD().iterator();
-            while (it3.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it3.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(id)) {
-                    return mdSecType;
+        }
+        return null;
+    }
+
+
+    /**
+     * Gets the lists of technical, source, rights and digital provenance metadata sections of the administrative
+     * section, in that order.
+     * 
+     * @param amdSecType
+     *            administrative section
+     * @return lists of metadata sections
+     */
+    @SuppressWarnings("unchecked")
+    private List<MdSecType>[] getMetadataSections(AmdSecType amdSecType) {
+        return new List[] { amdSecType.getTechMD(), amdSecType.getSourceMD(), amdSecType.getRightsMD(),
+                amdSecType.getDigiprovMD() };
+    }
+
+
+    /**
+     * Drops the indexes of the previously parsed metadata.
+     */
+    private void resetIndexes() {
+        sectionsById = null;
+        filesById = null;
+    }
+
+
+    /**
+     * Gets the administrative and metadata sections by their ids, indexing them on the first call. As in a sequential
+     * scan, the first section with the given id wins, administrative sections being visited before their metadata
+     * sections.
+     * 
+     * @return sections by id
+     */
+    private Map<String, Object> getSectionsById() {
+        if (sectionsById == null) {
+            sectionsById = new HashMap<String, Object>();
+            for (AmdSecType amdSecType : mets.getAmdSec()) {
+                indexSection(amdSecType.getID(), amdSecType);
+                for (List<MdSecType> mdSecs : getMetadataSections(amdSecType)) {
+                    for (MdSecType mdSecType : mdSecs) {
+                        if (mdSecType != null) {
+                            indexSection(mdSecType.getID(), mdSecType);
+                        }
+                    }
                 }
             }
-            Iterator<MdSecType> it4 = amdSecType.getDigiprovMD().iterator();
-            while (it4.hasNext()) {
-                MdSecType mdSecType = (MdSecType) it4.next();
-                if ((mdSecType == null) || (mdSecType.getID() == null)) {
-                    continue;
-                }
-                if (mdSecType.getID().equals(id)) {
-                    return mdSecType;
+        }
+        return sectionsById;
+    }
+
+
+    /**
+     * Adds the section to the index of sections by id unless a section with the same id is already there.
+     * 
+     * @param id
+     *            id of the section
+     * @param section
+     *            section
+     */
+    private void indexSection(String id, Object section) {
+        if (id != null && !sectionsById.containsKey(id)) {
+            sectionsById.put(id, section);
+        }
+    }
+
+
+    /**
+     * Gets the file sections by their ids, indexing them on the first call.
+     * 
+     * @return file sections by id
+     */
+    private Map<String, List<FileType>> getFilesById() {
+        if (filesById == null) {
+            filesById = new HashMap<String, List<FileType>>();
+            if (mets.getFileSec() != null) {
+                for (FileGrp fileGrp : mets.getFileSec().getFileGrp()) {
+                    for (FileType fileType : fileGrp.getFile()) {
+                        List<FileType> files = filesById.get(fileType.getID());
+                        if (files == null) {
+                            files = new ArrayList<FileType>(1);
+                            filesById.put(fileType.getID(), files);
+                        }
+                        files.add(fileType);
+                    }
                 }
             }
         }
-
-        return null;
+        return filesById;
     }
 }
@@ -15,12 +15,13 @@
  */
 package pl.psnc.synat.wrdz.common.metadata.mets;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+
 /**
  * The factory of metadata reader in the METS schema.
  */
@@ -35,9 +36,9 @@ public final class MetsMetadataReaderFactory {
     private static MetsMetadataReaderFactory instance = new MetsMetadataReaderFactory();
 
     /**
-     * JAXB context for the mets classes.
+     * JAXB context for the mets classes with cached marshallers and unmarshallers.
      */
-    private final JAXBContext jaxbContext;
+    private final JaxbProcessors jaxbProcessors;
 
 
     /**
@@ -45,7 +46,7 @@ public final class MetsMetadataReaderFactory {
      */
     private MetsMetadataReaderFactory() {
         try {
-            jaxbContext = JAXBContext.newInstance("gov.loc.mets:info.lc.xmlns.premis_v2");
+            jaxbProcessors = JaxbProcessors.getInstance(MetsConsts.JAXB_CONTEXT_PATH);
         } catch (JAXBException e) {
             logger.error("JAXB context for METS creation failed.", e);
             throw new RuntimeException(e);
@@ -69,7 +70,7 @@ public final class MetsMetadataReaderFactory {
      * @return new METS (and PREMIS) metadata reader
      */
     public MetsMetadataReader getMetsMetadataReader() {
-        return new MetsMetadataReader(jaxbContext);
+        return new MetsMetadataReader(jaxbProcessors);
     }
 
 }
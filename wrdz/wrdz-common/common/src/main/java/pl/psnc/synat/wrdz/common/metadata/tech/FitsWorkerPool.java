@@ -0,0 +1,247 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata.tech;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.wrdz.common.metadata.tech.rmi.FitsTechMetadataExtractor;
+import pl.psnc.synat.wrdz.common.metadata.tech.rmi.FitsTechMetadataExtractorConsts;
+
+/**
+ * Client-side cache of the stubs of FITS worker processes. Every worker handles one call at a time, so a call is
+ * given the worker which is idle. Workers whose calls failed on the communication level are dropped and looked up again
+ * when the registry is listed next time, so restarted workers join the pool without restarting the application.
+ */
+class FitsWorkerPool {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(FitsWorkerPool.class);
+
+    /**
+     * Interval (in milliseconds) between listings of the RMI registry.
+     */
+    private static final long REFRESH_INTERVAL = 60 * 1000;
+
+    /**
+     * Workers keyed by their names in the RMI registry.
+     */
+    private final Map<String, Worker> workers = new LinkedHashMap<String, Worker>();
+
+    /**
+     * Time of the last listing of the RMI registry.
+     */
+    private long refreshedAt;
+
+
+    /**
+     * Borrows an idle worker, waiting for one if all of them are busy.
+     * 
+     * @param timeout
+     *            maximal time (in milliseconds) to wait for an idle worker
+     * @return worker
+     * @throws TechMetadataExtractionException
+     *             when no worker is registered or none became idle in time
+     */
+    public synchronized Worker borrow(long timeout)
+            throws TechMetadataExtractionException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            Worker worker = tryBorrow();
+            if (worker != null) {
+                return worker;
+            }
+            if (workers.isEmpty()) {
+                throw new TechMetadataExtractionException("No FITS service is bound in the RMI registry");
+            }
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                throw new TechMetadataExtractionException("No FITS worker became idle in " + timeout + " ms");
+            }
+            try {
+                wait(Math.min(wait, REFRESH_INTERVAL));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TechMetadataExtractionException("Interrupted while waiting for a FITS worker", e);
+            }
+        }
+    }
+
+
+    /**
+     * Borrows an idle worker if there is one.
+     * 
+     * @return worker or null if all the workers are busy
+     * @throws TechMetadataExtractionException
+     *             when the RMI registry could not be listed
+     */
+    public synchronized Worker tryBorrow()
+            throws TechMetadataExtractionException {
+        if (workers.isEmpty() || System.currentTimeMillis() - refreshedAt > REFRESH_INTERVAL) {
+            refresh();
+        }
+        for (Worker worker : workers.values()) {
+            if (!worker.busy) {
+                worker.busy = true;
+                return worker;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the borrowed worker.
+     * 
+     * @param worker
+     *            worker
+     * @param healthy
+     *            whether the worker responded properly - unhealthy workers are dropped
+     */
+    public synchronized void release(Worker worker, boolean healthy) {
+        worker.busy = false;
+        if (!healthy && workers.get(worker.name) == worker) {
+            logger.warn("dropping the FITS worker " + worker.name);
+            workers.remove(worker.name);
+        }
+        notifyAll();
+    }
+
+
+    /**
+     * Returns the version of the extraction tool of the workers.
+     * 
+     * @return version of the tool
+     * @throws TechMetadataExtractionException
+     *             when no worker is registered
+     */
+    public synchronized String getToolVersion()
+            throws TechMetadataExtractionException {
+        if (workers.isEmpty() || System.currentTimeMillis() - refreshedAt > REFRESH_INTERVAL) {
+            refresh();
+        }
+        if (workers.isEmpty()) {
+            throw new TechMetadataExtractionException("No FITS service is bound in the RMI registry");
+        }
+        return workers.values().iterator().next().version;
+    }
+
+
+    /**
+     * Lists the RMI registry. Looks up new workers and drops the ones which are not bound any more.
+     * 
+     * @throws TechMetadataExtractionException
+     *             when the RMI registry could not be listed
+     */
+    private void refresh()
+            throws TechMetadataExtractionException {
+        refreshedAt = System.currentTimeMillis();
+        Registry registry;
+        String[] names;
+        try {
+            registry = LocateRegistry.getRegistry("localhost", FitsTechMetadataExtractorConsts.RMI_REGISTRY_PORT);
+            names = registry.list();
+        } catch (RemoteException e) {
+            logger.error("Error getting RMI registry", e);
+            throw new TechMetadataExtractionException(e);
+        }
+        Set<String> bound = new HashSet<String>();
+        for (String name : names) {
+            if (!name.startsWith(FitsTechMetadataExtractorConsts.FITS_RMI_SERVICE_NAME)) {
+                continue;
+            }
+            bound.add(name);
+            if (workers.containsKey(name)) {
+                continue;
+            }
+            try {
+                FitsTechMetadataExtractor stub = (FitsTechMetadataExtractor) registry.lookup(name);
+                workers.put(name, new Worker(name, stub, stub.getToolVersion()));
+                logger.debug("FITS worker " + name + " joined the pool");
+            } catch (RemoteException e) {
+                logger.warn("Error getting FITS worker " + name + " in the RMI registry", e);
+            } catch (NotBoundException e) {
+                logger.debug("FITS worker " + name + " was unbound in the meantime");
+            }
+        }
+        workers.keySet().retainAll(bound);
+    }
+
+
+    /**
+     * Stub of one FITS worker process.
+     */
+    static final class Worker {
+
+        /**
+         * Name in the RMI registry.
+         */
+        private final String name;
+
+        /**
+         * Remote stub.
+         */
+        private final FitsTechMetadataExtractor stub;
+
+        /**
+         * Version of the extraction tool.
+         */
+        private final String version;
+
+        /**
+         * Whether the worker is borrowed.
+         */
+        private boolean busy;
+
+
+        /**
+         * Creates a worker.
+         * 
+         * @param name
+         *            name in the RMI registry
+         * @param stub
+         *            remote stub
+         * @param version
+         *            version of the extraction tool
+         */
+        private Worker(String name, FitsTechMetadataExtractor stub, String version) {
+            this.name = name;
+            this.stub = stub;
+            this.version = version;
+        }
+
+
+        public String getName() {
+            return name;
+        }
+
+
+        public FitsTechMetadataExtractor getStub() {
+            return stub;
+        }
+
+    }
+
+}
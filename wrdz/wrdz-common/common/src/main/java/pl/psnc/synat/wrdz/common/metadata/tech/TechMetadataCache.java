@@ -0,0 +1,289 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata.tech;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of technical metadata extracted from files. Entries are keyed by the content hash of a file and the
+ * version of the extraction tool, so byte-identical files are extracted only once per version of the tool. Entries are
+ * serialized files in a local directory. When their total size exceeds the limit, the least recently used ones are
+ * removed.
+ */
+public class TechMetadataCache {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(TechMetadataCache.class);
+
+    /**
+     * Extension of the entry files.
+     */
+    private static final String EXTENSION = ".ser";
+
+    /**
+     * Root directory of the cache.
+     */
+    private final File directory;
+
+    /**
+     * Maximal total size (in bytes) of the entries.
+     */
+    private final long maxSize;
+
+    /**
+     * Sizes of the entry files in the order of their use, the least recently used first.
+     */
+    private final LinkedHashMap<File, Long> entries = new LinkedHashMap<File, Long>(16, 0.75f, true);
+
+    /**
+     * Total size of the entries.
+     */
+    private long size;
+
+    /**
+     * Whether the entries present in the directory were loaded.
+     */
+    private boolean loaded;
+
+
+    /**
+     * Creates a cache.
+     * 
+     * @param directory
+     *            root directory of the cache
+     * @param maxSize
+     *            maximal total size (in bytes) of the entries
+     */
+    public TechMetadataCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+
+    public File getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * Returns the cached metadata of the file.
+     * 
+     * @param contentKey
+     *            content hash of the file
+     * @param toolVersion
+     *            version of the extraction tool
+     * @return metadata or null if they are not cached
+     */
+    public ExtractedMetadata get(String contentKey, String toolVersion) {
+        File file = getFile(contentKey, toolVersion);
+        synchronized (this) {
+            load();
+            if (entries.get(file) == null) {
+                return null;
+            }
+        }
+        try {
+            ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                ExtractedMetadata metadata = (ExtractedMetadata) input.readObject();
+                file.setLastModified(System.currentTimeMillis());
+                return metadata;
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            logger.warn("cached metadata " + file + " could not be read", e);
+        } catch (ClassNotFoundException e) {
+            logger.warn("cached metadata " + file + " are incompatible", e);
+        } catch (ClassCastException e) {
+            logger.warn("cached metadata " + file + " are incompatible", e);
+        }
+        remove(file);
+        return null;
+    }
+
+
+    /**
+     * Stores the metadata of the file. Errors are only logged - the cache is not necessary for the extraction.
+     * 
+     * @param contentKey
+     *            content hash of the file
+     * @param toolVersion
+     *            version of the extraction tool
+     * @param metadata
+     *            extracted metadata
+     */
+    public void put(String contentKey, String toolVersion, ExtractedMetadata metadata) {
+        File file = getFile(contentKey, toolVersion);
+        File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            file.getParentFile().mkdirs();
+            ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                output.writeObject(metadata);
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(file)) {
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Could not rename " + temp + " to " + file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("metadata could not be cached in " + file, e);
+            temp.delete();
+            return;
+        }
+        synchronized (this) {
+            load();
+            Long previous = entries.put(file, file.length());
+            size += file.length() - (previous != null ? previous : 0);
+            evict();
+        }
+    }
+
+
+    /**
+     * Removes the entry.
+     * 
+     * @param file
+     *            entry file
+     */
+    private synchronized void remove(File file) {
+        Long removed = entries.remove(file);
+        if (removed != null) {
+            size -= removed;
+        }
+        file.delete();
+    }
+
+
+    /**
+     * Removes the least recently used entries until their total size fits in the limit.
+     */
+    private void evict() {
+        Iterator<Map.Entry<File, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<File, Long> eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.getValue();
+            if (!eldest.getKey().delete()) {
+                logger.warn("evicted cache entry " + eldest.getKey() + " could not be deleted");
+            }
+        }
+    }
+
+
+    /**
+     * Loads the entries present in the directory, ordered by the time of their last use.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        List<File> files = new ArrayList<File>();
+        File[] versions = directory.listFiles();
+        if (versions != null) {
+            for (File version : versions) {
+                File[] cached = version.listFiles();
+                if (cached != null) {
+                    for (File file : cached) {
+                        if (file.getName().endsWith(EXTENSION)) {
+                            files.add(file);
+                        } else {
+                            file.delete();
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File o1, File o2) {
+                long diff = o1.lastModified() - o2.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (File file : files) {
+            entries.put(file, file.length());
+            size += file.length();
+        }
+        logger.debug("loaded " + entries.size() + " cached metadata entries of total size " + size);
+        evict();
+    }
+
+
+    /**
+     * Returns the file of the entry.
+     * 
+     * @param contentKey
+     *            content hash of the file
+     * @param toolVersion
+     *            version of the extraction tool
+     * @return entry file
+     */
+    private File getFile(String contentKey, String toolVersion) {
+        return new File(new File(directory, digest(toolVersion)), contentKey.replaceAll("[^A-Za-z0-9_-]", "_")
+                + EXTENSION);
+    }
+
+
+    /**
+     * Calculates a short digest of the tool version, used as the name of the directory of its entries.
+     * 
+     * @param toolVersion
+     *            version of the extraction tool
+     * @return hexadecimal digest
+     */
+    private String digest(String toolVersion) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(toolVersion.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
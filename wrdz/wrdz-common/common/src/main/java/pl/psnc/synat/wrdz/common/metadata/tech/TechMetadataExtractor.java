@@ -15,26 +15,102 @@
  */
 package pl.psnc.synat.wrdz.common.metadata.tech;
 
-import java.rmi.AccessException;
-import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
+import java.rmi.ServerException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import pl.psnc.synat.wrdz.common.metadata.tech.rmi.FitsTechMetadataExtractor;
-import pl.psnc.synat.wrdz.common.metadata.tech.rmi.FitsTechMetadataExtractorConsts;
+import pl.psnc.synat.wrdz.common.utility.DaemonThreadFactory;
 
 /**
- * Technical matadata extractor. It uses FITS by RMI.
+ * Technical matadata extractor. It uses FITS by RMI. Calls are spread over all the FITS worker processes bound in the
+ * RMI registry, each of them handling one file at a time.
  */
 public class TechMetadataExtractor {
 
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(TechMetadataExtractor.class);
 
+    /**
+     * Default maximal time (in milliseconds) of extraction of one file.
+     */
+    public static final long DEFAULT_TIMEOUT = 10 * 60 * 1000;
+
+    /**
+     * Maximal number of threads making the RMI calls. A thread is busy only while it holds a worker, so calls wait in
+     * the queue only when more workers than threads are bound.
+     */
+    private static final int MAX_THREADS = 64;
+
+    /**
+     * Time (in seconds) after which an idle thread making the RMI calls is stopped.
+     */
+    private static final long KEEP_ALIVE = 60;
+
+    /**
+     * Threads making the RMI calls.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Stubs of the FITS workers.
+     */
+    private final FitsWorkerPool pool = new FitsWorkerPool();
+
+    /**
+     * Cache of the extracted metadata or null if the results are not cached.
+     */
+    private volatile TechMetadataCache cache;
+
+
+    /**
+     * Creates an extractor. Its threads are started when needed and stopped when idle.
+     */
+    public TechMetadataExtractor() {
+        executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("fits-client"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+
+    public TechMetadataCache getCache() {
+        return cache;
+    }
+
+
+    public void setCache(TechMetadataCache cache) {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Stops the threads making the RMI calls. The extractor cannot be used afterwards.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
 
     /**
      * Extracts technical metadata of the file specified by the path.
@@ -48,33 +124,243 @@ public class TechMetadataExtractor {
      */
     public ExtractedMetadata extract(String path)
             throws TechMetadataExtractionException {
-        Registry registry = null;
-        try {
-            registry = LocateRegistry.getRegistry("localhost", FitsTechMetadataExtractorConsts.RMI_REGISTRY_PORT);
-        } catch (RemoteException e) {
-            logger.error("Error getting RMI registry", e);
-            throw new TechMetadataExtractionException(e);
+        return extract(Collections.singleton(path), DEFAULT_TIMEOUT).get(path);
+    }
+
+
+    /**
+     * Extracts technical metadata of all the files specified by the paths, using as many FITS workers at the same time
+     * as are idle. A file whose worker stopped responding is passed to another worker once.
+     * 
+     * @param paths
+     *            local paths to the files from which metadata have to be extracted
+     * @param timeout
+     *            maximal time (in milliseconds) of extraction of one file
+     * @return extracted metadata keyed by the paths
+     * @throws TechMetadataExtractionException
+     *             when extraction of any of the files failed or did not finish in time
+     */
+    public Map<String, ExtractedMetadata> extract(Collection<String> paths, long timeout)
+            throws TechMetadataExtractionException {
+        return extract(paths, Collections.<String, String> emptyMap(), timeout);
+    }
+
+
+    /**
+     * Extracts technical metadata of all the files specified by the paths. Files whose content keys are given are
+     * looked up in the cache first, and the metadata extracted from them are stored in the cache.
+     * 
+     * @param paths
+     *            local paths to the files from which metadata have to be extracted
+     * @param contentKeys
+     *            content hashes of the files keyed by their paths - files without a key are not cached
+     * @param timeout
+     *            maximal time (in milliseconds) of extraction of one file
+     * @return extracted metadata keyed by the paths
+     * @throws TechMetadataExtractionException
+     *             when extraction of any of the files failed or did not finish in time
+     */
+    public Map<String, ExtractedMetadata> extract(Collection<String> paths, Map<String, String> contentKeys,
+            long timeout)
+            throws TechMetadataExtractionException {
+        TechMetadataCache currentCache = cache;
+        if (currentCache == null || contentKeys.isEmpty()) {
+            return run(paths, timeout);
         }
-        FitsTechMetadataExtractor extractor;
-        try {
-            extractor = (FitsTechMetadataExtractor) registry
-                    .lookup(FitsTechMetadataExtractorConsts.FITS_RMI_SERVICE_NAME);
-        } catch (AccessException e) {
-            logger.error("Error accessing FITS service in the RMI registry", e);
-            throw new TechMetadataExtractionException(e);
-        } catch (RemoteException e) {
-            logger.error("Error getting FITS service in the RMI registry", e);
-            throw new TechMetadataExtractionException(e);
-        } catch (NotBoundException e) {
-            logger.error("Error getting FITS service in the RMI registry", e);
-            throw new TechMetadataExtractionException(e);
+        String toolVersion = pool.getToolVersion();
+        Map<String, ExtractedMetadata> cached = new HashMap<String, ExtractedMetadata>();
+        List<String> missing = new ArrayList<String>();
+        for (String path : paths) {
+            String key = contentKeys.get(path);
+            ExtractedMetadata metadata = key != null ? currentCache.get(key, toolVersion) : null;
+            if (metadata != null) {
+                cached.put(path, metadata);
+            } else {
+                missing.add(path);
+            }
+        }
+        logger.debug("metadata of " + cached.size() + " of " + paths.size() + " files found in the cache");
+        Map<String, ExtractedMetadata> extracted = run(missing, timeout);
+        Map<String, ExtractedMetadata> results = new LinkedHashMap<String, ExtractedMetadata>();
+        for (String path : paths) {
+            ExtractedMetadata metadata = cached.get(path);
+            if (metadata == null) {
+                metadata = extracted.get(path);
+                String key = contentKeys.get(path);
+                if (key != null && metadata != null) {
+                    currentCache.put(key, toolVersion, metadata);
+                }
+            }
+            results.put(path, metadata);
         }
+        return results;
+    }
+
+
+    /**
+     * Extracts technical metadata of the files by the FITS workers.
+     * 
+     * @param paths
+     *            local paths to the files from which metadata have to be extracted
+     * @param timeout
+     *            maximal time (in milliseconds) of extraction of one file
+     * @return extracted metadata keyed by the paths
+     * @throws TechMetadataExtractionException
+     *             when extraction of any of the files failed or did not finish in time
+     */
+    private Map<String, ExtractedMetadata> run(Collection<String> paths, long timeout)
+            throws TechMetadataExtractionException {
+        Map<String, ExtractedMetadata> results = new LinkedHashMap<String, ExtractedMetadata>();
+        Set<String> pending = new LinkedHashSet<String>(paths);
+        Set<String> retried = new HashSet<String>();
+        CompletionService<ExtractedMetadata> completion = new ExecutorCompletionService<ExtractedMetadata>(executor);
+        Map<Future<ExtractedMetadata>, Call> running = new IdentityHashMap<Future<ExtractedMetadata>, Call>();
         try {
-            ExtractedMetadata result = extractor.extractTechMetadata(path);
-            return result;
-        } catch (RemoteException e) {
-            logger.error("Error calling FITS service in the RMI registry", e);
-            throw new TechMetadataExtractionException(e);
+            while (!pending.isEmpty() || !running.isEmpty()) {
+                Iterator<String> iterator = pending.iterator();
+                while (iterator.hasNext()) {
+                    FitsWorkerPool.Worker worker = running.isEmpty() ? pool.borrow(timeout) : pool.tryBorrow();
+                    if (worker == null) {
+                        break;
+                    }
+                    Call call = new Call(worker, iterator.next());
+                    iterator.remove();
+                    running.put(completion.submit(call), call);
+                }
+                Future<ExtractedMetadata> done = completion.poll(getWait(running.values(), timeout),
+                    TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    if (getWait(running.values(), timeout) == 0) {
+                        Call expired = getOldest(running.values());
+                        expired.abandon();
+                        throw new TechMetadataExtractionException("FITS worker " + expired.worker.getName()
+                                + " did not extract metadata of " + expired.path + " in " + timeout + " ms");
+                    }
+                    continue;
+                }
+                Call call = running.remove(done);
+                try {
+                    results.put(call.path, done.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RemoteException && !(cause instanceof ServerException)
+                            && retried.add(call.path)) {
+                        logger.warn("FITS worker " + call.worker.getName() + " failed, retrying " + call.path, cause);
+                        pending.add(call.path);
+                    } else {
+                        logger.error("Error calling FITS service in the RMI registry", cause);
+                        throw new TechMetadataExtractionException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TechMetadataExtractionException("Interrupted while extracting metadata", e);
+        }
+        return results;
+    }
+
+
+    /**
+     * Returns the time to wait for the first running call to finish.
+     * 
+     * @param calls
+     *            running calls
+     * @param timeout
+     *            maximal time (in milliseconds) of one call
+     * @return time in milliseconds, 0 if any of the calls is overdue
+     */
+    private long getWait(Collection<Call> calls, long timeout) {
+        Call oldest = getOldest(calls);
+        if (oldest == null) {
+            return 0;
+        }
+        return Math.max(0, oldest.startedAt + timeout - System.currentTimeMillis());
+    }
+
+
+    /**
+     * Returns the call running for the longest time.
+     * 
+     * @param calls
+     *            running calls
+     * @return the oldest call or null if there are no calls
+     */
+    private Call getOldest(Collection<Call> calls) {
+        Call oldest = null;
+        for (Call call : calls) {
+            if (oldest == null || call.startedAt < oldest.startedAt) {
+                oldest = call;
+            }
+        }
+        return oldest;
+    }
+
+
+    /**
+     * Extraction of one file by one worker. The worker is returned to the pool when the call finishes, even if nobody
+     * waits for the result any more.
+     */
+    private final class Call implements Callable<ExtractedMetadata> {
+
+        /**
+         * Worker making the extraction.
+         */
+        private final FitsWorkerPool.Worker worker;
+
+        /**
+         * Local path to the file.
+         */
+        private final String path;
+
+        /**
+         * Time the call was scheduled.
+         */
+        private final long startedAt;
+
+        /**
+         * Whether the call exceeded its time - the worker is then considered broken.
+         */
+        private volatile boolean abandoned;
+
+
+        /**
+         * Creates a call.
+         * 
+         * @param worker
+         *            borrowed worker
+         * @param path
+         *            local path to the file
+         */
+        private Call(FitsWorkerPool.Worker worker, String path) {
+            this.worker = worker;
+            this.path = path;
+            this.startedAt = System.currentTimeMillis();
+        }
+
+
+        /**
+         * Marks the call as exceeding its time.
+         */
+        private void abandon() {
+            abandoned = true;
+        }
+
+
+        @Override
+        public ExtractedMetadata call()
+                throws RemoteException {
+            boolean healthy = false;
+            try {
+                ExtractedMetadata result = worker.getStub().extractTechMetadata(path);
+                healthy = true;
+                return result;
+            } catch (ServerException e) {
+                healthy = true;
+                throw e;
+            } finally {
+                pool.release(worker, healthy && !abandoned);
+            }
         }
     }
 
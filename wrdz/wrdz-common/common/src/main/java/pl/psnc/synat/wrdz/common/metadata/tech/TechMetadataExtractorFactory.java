@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.common.metadata.tech;
 
+import java.io.File;
 
 /**
  * The factory of a technical metadata extractor.
@@ -26,6 +27,11 @@ public final class TechMetadataExtractorFactory {
      */
     private static TechMetadataExtractorFactory instance = new TechMetadataExtractorFactory();
 
+    /**
+     * Extractor shared by all the clients, so they share the stubs of the FITS workers.
+     */
+    private final TechMetadataExtractor extractor = new TechMetadataExtractor();
+
 
     /**
      * Private constructor.
@@ -53,7 +59,38 @@ public final class TechMetadataExtractorFactory {
      */
     public TechMetadataExtractor getTechMetadataExtractor()
             throws TechMetadataExtractionException {
-        return new TechMetadataExtractor();
+        return extractor;
+    }
+
+
+    /**
+     * Gets a technical metadata extractor which caches the extracted metadata in the given directory. The cache is
+     * created by the first call, later calls share it.
+     * 
+     * @param cacheDirectory
+     *            root directory of the cache
+     * @param cacheSize
+     *            maximal total size (in bytes) of the cache
+     * @return technical metadata extractor
+     * @throws TechMetadataExtractionException
+     *             when metadata extractor could not be created
+     */
+    public synchronized TechMetadataExtractor getTechMetadataExtractor(File cacheDirectory, long cacheSize)
+            throws TechMetadataExtractionException {
+        TechMetadataCache cache = extractor.getCache();
+        if (cache == null || !cache.getDirectory().equals(cacheDirectory)) {
+            extractor.setCache(new TechMetadataCache(cacheDirectory, cacheSize));
+        }
+        return extractor;
+    }
+
+
+    /**
+     * Stops the threads of the shared extractor. It should be called when the application is undeployed, so that the
+     * threads do not keep the classes of the application loaded.
+     */
+    public void shutdown() {
+        extractor.shutdown();
     }
 
 }
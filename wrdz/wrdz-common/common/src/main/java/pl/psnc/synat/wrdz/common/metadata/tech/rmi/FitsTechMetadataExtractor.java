@@ -37,4 +37,16 @@ public interface FitsTechMetadataExtractor extends Remote {
     ExtractedMetadata extractTechMetadata(String path)
             throws RemoteException;
 
+
+    /**
+     * Returns the version of the extraction tool. It changes whenever the extracted metadata might change, so it can
+     * be used to invalidate cached results.
+     * 
+     * @return version of the tool
+     * @throws RemoteException
+     *             when something went wrong
+     */
+    String getToolVersion()
+            throws RemoteException;
+
 }
@@ -42,4 +42,10 @@ public final class FitsTechMetadataExtractorConsts {
      */
     public static final String FITS_RMI_SERVICE_NAME = "FitsRmiService";
 
+    /**
+     * Separator between the name of the FITS RMI service and the number of an additional worker process, e.g.
+     * <code>FitsRmiService-1</code>. All the names starting with the service name are used by clients.
+     */
+    public static final String FITS_RMI_WORKER_SEPARATOR = "-";
+
 }
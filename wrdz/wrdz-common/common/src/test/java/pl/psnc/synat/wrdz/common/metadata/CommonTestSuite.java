@@ -0,0 +1,33 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+import pl.psnc.synat.wrdz.common.metadata.mets.MetsIdGeneratorsTest;
+import pl.psnc.synat.wrdz.common.metadata.mets.MetsMetadataBuilderTest;
+
+/**
+ * Test suite for the metadata processing of the common library - plain unit tests, which do not need the EJB
+ * container.
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ MetsIdGeneratorsTest.class, MetsMetadataBuilderTest.class })
+public class CommonTestSuite {
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata.mets;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MetsIdGenerators}.
+ */
+public class MetsIdGeneratorsTest {
+
+    /** Tested generators. */
+    private MetsIdGenerators generators;
+
+
+    /**
+     * Creates fresh generators for each test.
+     */
+    @Before
+    public void setUp() {
+        generators = new MetsIdGenerators();
+    }
+
+
+    /**
+     * Reserved ids are skipped by the generators.
+     */
+    @Test
+    public void shouldSkipReservedIds() {
+        generators.reserve("D0007");
+        generators.reserve("G02F0005");
+        assertEquals("D0008", generators.getObjectDmdId());
+        assertEquals("G01", generators.getFileGrpId());
+        assertEquals("G01F0006", generators.getFileId("G01"));
+    }
+
+
+    /**
+     * Ids with numbers beyond the range of the generators are ignored.
+     */
+    @Test
+    public void shouldIgnoreOversizedIds() {
+        generators.reserve("D20140101123456");
+        generators.reserve("G01F20140101123456");
+        assertEquals("D0001", generators.getObjectDmdId());
+        assertEquals("G01", generators.getFileGrpId());
+    }
+
+}
@@ -0,0 +1,490 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.metadata.mets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gov.loc.mets.AmdSecType;
+import gov.loc.mets.FileType;
+import gov.loc.mets.MdSecType;
+import gov.loc.mets.Mets;
+import gov.loc.mets.MetsType.FileSec.FileGrp;
+import gov.loc.mets.MetsType.MetsHdr;
+import info.lc.xmlns.premis_v2.EventComplexType;
+import info.lc.xmlns.premis_v2.PremisComplexType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.datatype.DatatypeFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+import pl.psnc.synat.wrdz.common.metadata.xmlns.NamespaceType;
+
+/**
+ * Tests for {@link MetsMetadataBuilder} - METS metadata of the next version written as a delta of the previous version
+ * must be equivalent to the ones constructed from scratch.
+ */
+public class MetsMetadataBuilderTest {
+
+    /** Creation date of the first version. */
+    private static final Date FIRST_VERSION_DATE = new Date(1400000000000L);
+
+    /** Creation date of the second version. */
+    private static final Date SECOND_VERSION_DATE = new Date(1400086400000L);
+
+    /** Data file which is not changed in the second version. */
+    private static final String UNCHANGED_FILE = "content/unchanged.txt";
+
+    /** Data file which is modified in the second version. */
+    private static final String MODIFIED_FILE = "content/modified.txt";
+
+    /** Data file which is removed in the second version. */
+    private static final String REMOVED_FILE = "content/removed.txt";
+
+    /** Data file which is added in the second version. */
+    private static final String ADDED_FILE = "content/added.txt";
+
+    /** Object metadata of the first version, replaced in the second one. */
+    private static final String FIRST_OBJECT_METADATA = "metadata/dc.xml";
+
+    /** Object metadata of the second version. */
+    private static final String SECOND_OBJECT_METADATA = "metadata/mods.xml";
+
+    /** JAXB processors of the METS classes. */
+    private JaxbProcessors jaxbProcessors;
+
+    /** Factory of XML dates. */
+    private DatatypeFactory datatypeFactory;
+
+    /** METS metadata of the first version. */
+    private File firstVersion;
+
+
+    /**
+     * Writes METS metadata of the first version into a temporary file.
+     *
+     * @throws Exception
+     *             when METS metadata cannot be built
+     */
+    @Before
+    public void setUp()
+            throws Exception {
+        jaxbProcessors = JaxbProcessors.getInstance(MetsConsts.JAXB_CONTEXT_PATH);
+        datatypeFactory = DatatypeFactory.newInstance();
+        MetsMetadataBuilder builder = newBuilder();
+        builder.setObjectIdentifier("oid", "PUBLIC");
+        builder.setObjectType("MASTER");
+        builder.setCreationDate(FIRST_VERSION_DATE);
+        builder.setVersionNumber(1);
+        builder.addMetadataForObjectByLink("PROVIDED", NamespaceType.DC, FIRST_OBJECT_METADATA, "dc.xml");
+        addFileMetadata(builder, UNCHANGED_FILE, 1);
+        addFileMetadata(builder, MODIFIED_FILE, 1);
+        addFileMetadata(builder, REMOVED_FILE, 1);
+        builder.setObjectModificationEvent(FIRST_VERSION_DATE, 1,
+            Arrays.asList(UNCHANGED_FILE, MODIFIED_FILE, REMOVED_FILE));
+        builder.addDataFile(UNCHANGED_FILE, 1);
+        builder.addDataFile(MODIFIED_FILE, 2);
+        builder.addDataFile(REMOVED_FILE, 3);
+        firstVersion = File.createTempFile("mets", ".xml");
+        write(builder.build().getXml().getBytes("UTF-8"), firstVersion);
+    }
+
+
+    /**
+     * Removes the temporary file.
+     */
+    @After
+    public void tearDown() {
+        if (firstVersion != null) {
+            firstVersion.delete();
+        }
+    }
+
+
+    /**
+     * The delta contains the same files, metadata sections, header and events as METS metadata built from scratch.
+     *
+     * @throws Exception
+     *             when METS metadata cannot be built
+     */
+    @Test
+    public void shouldWriteDeltaEquivalentToFullConstruction()
+            throws Exception {
+        Mets full = buildSecondVersion();
+        Mets delta = writeSecondVersionAsDelta();
+
+        assertHeader(full.getMetsHdr());
+        assertHeader(delta.getMetsHdr());
+        assertEquals(full.getOBJID(), delta.getOBJID());
+        assertEquals(full.getTYPE(), delta.getTYPE());
+        assertEquals(Collections.singletonList(SECOND_OBJECT_METADATA), getDescriptiveReferences(full));
+        assertEquals(getDescriptiveReferences(full), getDescriptiveReferences(delta));
+        assertEquals(full.getStructMap().size(), delta.getStructMap().size());
+        assertEquals(Arrays.asList(UNCHANGED_FILE + " 1 [metadata/" + UNCHANGED_FILE + "-1.xml]", MODIFIED_FILE
+                + " 2 [metadata/" + MODIFIED_FILE + "-2.xml]", ADDED_FILE + " 4 [metadata/" + ADDED_FILE + "-2.xml]"),
+            describeFiles(full));
+        assertEquals(describeFiles(full), describeFiles(delta));
+        assertEquals(Arrays.asList(MetsConsts.METS_OBJECT_VERSION_STATUS + "1", MetsConsts.METS_OBJECT_VERSION_STATUS
+                + "2"), getEventDetails(full));
+        assertEquals(getEventDetails(full), getEventDetails(delta));
+    }
+
+
+    /**
+     * Sections of the unchanged file keep their ids, the sections of the removed and modified files are dropped and
+     * their ids are not reused.
+     *
+     * @throws Exception
+     *             when METS metadata cannot be built
+     */
+    @Test
+    public void shouldKeepUnchangedIdsAndNotReuseRemovedOnes()
+            throws Exception {
+        Mets previous = (Mets) jaxbProcessors.getUnmarshaller().unmarshal(firstVersion);
+        Mets full = buildSecondVersion();
+        Mets delta = writeSecondVersionAsDelta();
+
+        assertEquals(getAdmId(previous, UNCHANGED_FILE), getAdmId(full, UNCHANGED_FILE));
+        assertEquals(getAdmId(previous, UNCHANGED_FILE), getAdmId(delta, UNCHANGED_FILE));
+        assertEquals(getFileGroupId(previous), getFileGroupId(delta));
+        assertEquals(full.getAmdSec().size(), delta.getAmdSec().size());
+        assertUniqueIds(delta);
+        assertNull(getAdmId(delta, REMOVED_FILE));
+        Set<String> previousIds = getAdmIds(previous);
+        previousIds.remove(getAdmId(previous, UNCHANGED_FILE));
+        assertFalse(previousIds.contains(getAdmId(delta, MODIFIED_FILE)));
+        assertFalse(previousIds.contains(getAdmId(delta, ADDED_FILE)));
+        for (AmdSecType admSec : delta.getAmdSec()) {
+            assertFalse(admSec.getID(), previousIds.contains(admSec.getID()) && !isPremisSection(admSec));
+        }
+    }
+
+
+    /**
+     * Builds METS metadata of the second version from scratch.
+     *
+     * @return parsed METS metadata
+     * @throws Exception
+     *             when METS metadata cannot be built
+     */
+    private Mets buildSecondVersion()
+            throws Exception {
+        MetsMetadataBuilder builder = newBuilder();
+        builder.setObjectIdentifier("oid", "PUBLIC");
+        builder.setObjectType("MASTER");
+        builder.setCreationDate(FIRST_VERSION_DATE);
+        builder.setModificationDate(SECOND_VERSION_DATE);
+        builder.setVersionNumber(2);
+        builder.addMetadataForObjectByLink("PROVIDED", NamespaceType.MODS, SECOND_OBJECT_METADATA, "mods.xml");
+        addFileMetadata(builder, UNCHANGED_FILE, 1);
+        addFileMetadata(builder, MODIFIED_FILE, 2);
+        addFileMetadata(builder, ADDED_FILE, 2);
+        builder.setObjectModificationEvent(FIRST_VERSION_DATE, 1,
+            Arrays.asList(UNCHANGED_FILE, MODIFIED_FILE, REMOVED_FILE));
+        builder.setObjectModificationEvent(SECOND_VERSION_DATE, 2, Arrays.asList(MODIFIED_FILE, ADDED_FILE));
+        builder.addDataFile(UNCHANGED_FILE, 1);
+        builder.addDataFile(MODIFIED_FILE, 2);
+        builder.addDataFile(ADDED_FILE, 4);
+        return parse(builder.build().getXml().getBytes("UTF-8"));
+    }
+
+
+    /**
+     * Writes METS metadata of the second version as a delta of the first one.
+     *
+     * @return parsed METS metadata
+     * @throws Exception
+     *             when METS metadata cannot be written
+     */
+    private Mets writeSecondVersionAsDelta()
+            throws Exception {
+        MetsMetadataBuilder builder = newBuilder();
+        builder.loadPreviousVersion(firstVersion, new HashSet<String>(Arrays.asList(MODIFIED_FILE, REMOVED_FILE)),
+            Collections.singleton(FIRST_OBJECT_METADATA));
+        assertEquals(0, builder.getPreviousRelationshipCount());
+        builder.setModificationDate(SECOND_VERSION_DATE);
+        builder.setVersionNumber(2);
+        builder.addMetadataForObjectByLink("PROVIDED", NamespaceType.MODS, SECOND_OBJECT_METADATA, "mods.xml");
+        addFileMetadata(builder, MODIFIED_FILE, 2);
+        addFileMetadata(builder, ADDED_FILE, 2);
+        builder.setObjectModificationEvent(SECOND_VERSION_DATE, 2, Arrays.asList(MODIFIED_FILE, ADDED_FILE));
+        builder.addDataFile(MODIFIED_FILE, 2);
+        builder.addDataFile(ADDED_FILE, 4);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        builder.writeNextVersion(output);
+        return parse(output.toByteArray());
+    }
+
+
+    /**
+     * Creates a new builder.
+     *
+     * @return builder
+     */
+    private MetsMetadataBuilder newBuilder() {
+        return new MetsMetadataBuilder(jaxbProcessors, datatypeFactory);
+    }
+
+
+    /**
+     * Adds the extracted technical metadata of a data file in the given version.
+     *
+     * @param builder
+     *            builder
+     * @param datafilePath
+     *            path to the data file
+     * @param version
+     *            version in which the metadata were extracted
+     */
+    private void addFileMetadata(MetsMetadataBuilder builder, String datafilePath, int version) {
+        builder.addMetadataForFileByLink(datafilePath, "EXTRACTED", NamespaceType.TEXTMD, "metadata/" + datafilePath
+                + "-" + version + ".xml", "textmd.xml");
+    }
+
+
+    /**
+     * Checks the header of the second version.
+     *
+     * @param header
+     *            header
+     */
+    private void assertHeader(MetsHdr header) {
+        assertNotNull(header);
+        assertEquals(MetsConsts.METS_OBJECT_VERSION_STATUS + "2", header.getRECORDSTATUS());
+        assertEquals(FIRST_VERSION_DATE.getTime(), header.getCREATEDATE().toGregorianCalendar().getTimeInMillis());
+        assertEquals(SECOND_VERSION_DATE.getTime(), header.getLASTMODDATE().toGregorianCalendar().getTimeInMillis());
+    }
+
+
+    /**
+     * Checks that all the ids of the administrative sections and their subsections are unique.
+     *
+     * @param mets
+     *            METS metadata
+     */
+    private void assertUniqueIds(Mets mets) {
+        Set<String> ids = new HashSet<String>();
+        for (AmdSecType admSec : mets.getAmdSec()) {
+            assertTrue(admSec.getID(), ids.add(admSec.getID()));
+            for (MdSecType mdSec : getSubsections(admSec)) {
+                assertTrue(mdSec.getID(), ids.add(mdSec.getID()));
+            }
+        }
+    }
+
+
+    /**
+     * Gets the references to the descriptive metadata of the object.
+     *
+     * @param mets
+     *            METS metadata
+     * @return locations of the metadata
+     */
+    private List<String> getDescriptiveReferences(Mets mets) {
+        List<String> hrefs = new ArrayList<String>();
+        for (MdSecType dmdSec : mets.getDmdSec()) {
+            hrefs.add(dmdSec.getMdRef().getHref());
+        }
+        return hrefs;
+    }
+
+
+    /**
+     * Describes the data files with the location, the sequence number and the metadata referenced by their
+     * administrative sections - the ids themselves are left out, but every id must point to an existing section.
+     *
+     * @param mets
+     *            METS metadata
+     * @return descriptions of the files in the document order
+     */
+    private List<String> describeFiles(Mets mets) {
+        List<String> descriptions = new ArrayList<String>();
+        for (FileGrp fileGrp : mets.getFileSec().getFileGrp()) {
+            for (FileType file : fileGrp.getFile()) {
+                List<String> hrefs = new ArrayList<String>();
+                for (Object admId : file.getADMID()) {
+                    assertTrue(String.valueOf(admId), admId instanceof AmdSecType);
+                    assertTrue(mets.getAmdSec().contains(admId));
+                    for (MdSecType mdSec : getSubsections((AmdSecType) admId)) {
+                        hrefs.add(mdSec.getMdRef().getHref());
+                    }
+                }
+                descriptions.add(file.getFLocat().get(0).getHref() + " " + file.getSEQ() + " " + hrefs);
+            }
+        }
+        return descriptions;
+    }
+
+
+    /**
+     * Gets the details of the PREMIS events of the object.
+     *
+     * @param mets
+     *            METS metadata
+     * @return event details in the document order
+     */
+    private List<String> getEventDetails(Mets mets) {
+        List<String> details = new ArrayList<String>();
+        Set<String> ids = new HashSet<String>();
+        for (AmdSecType admSec : mets.getAmdSec()) {
+            if (isPremisSection(admSec)) {
+                PremisComplexType premis = (PremisComplexType) ((JAXBElement<?>) admSec.getDigiprovMD().get(0)
+                        .getMdWrap().getXmlData().getAny().get(0)).getValue();
+                for (EventComplexType event : premis.getEvent()) {
+                    assertTrue(ids.add(event.getEventIdentifier().getEventIdentifierValue()));
+                    details.add(event.getEventDetail());
+                }
+            }
+        }
+        return details;
+    }
+
+
+    /**
+     * Gets the id of the administrative section of a data file.
+     *
+     * @param mets
+     *            METS metadata
+     * @param datafilePath
+     *            path to the data file
+     * @return id of the section or <code>null</code> if there is no such data file
+     */
+    private String getAdmId(Mets mets, String datafilePath) {
+        for (FileGrp fileGrp : mets.getFileSec().getFileGrp()) {
+            for (FileType file : fileGrp.getFile()) {
+                if (file.getFLocat().get(0).getHref().equals(datafilePath)) {
+                    return ((AmdSecType) file.getADMID().get(0)).getID();
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Gets the ids of all the administrative sections.
+     *
+     * @param mets
+     *            METS metadata
+     * @return ids
+     */
+    private Set<String> getAdmIds(Mets mets) {
+        Set<String> ids = new HashSet<String>();
+        for (AmdSecType admSec : mets.getAmdSec()) {
+            ids.add(admSec.getID());
+        }
+        return ids;
+    }
+
+
+    /**
+     * Gets the id of the only file group.
+     *
+     * @param mets
+     *            METS metadata
+     * @return id of the file group
+     */
+    private String getFileGroupId(Mets mets) {
+        assertEquals(1, mets.getFileSec().getFileGrp().size());
+        return mets.getFileSec().getFileGrp().get(0).getID();
+    }
+
+
+    /**
+     * Checks whether the administrative section contains PREMIS metadata of the object.
+     *
+     * @param admSec
+     *            administrative section
+     * @return whether it is the section with PREMIS metadata
+     */
+    private boolean isPremisSection(AmdSecType admSec) {
+        return admSec.getDigiprovMD().size() == 1 && "CONSTRUCTED".equals(admSec.getDigiprovMD().get(0).getSTATUS());
+    }
+
+
+    /**
+     * Gets all the subsections of an administrative section.
+     *
+     * @param admSec
+     *            administrative section
+     * @return subsections
+     */
+    private List<MdSecType> getSubsections(AmdSecType admSec) {
+        List<MdSecType> subsections = new ArrayList<MdSecType>();
+        subsections.addAll(admSec.getTechMD());
+        subsections.addAll(admSec.getSourceMD());
+        subsections.addAll(admSec.getRightsMD());
+        subsections.addAll(admSec.getDigiprovMD());
+        return subsections;
+    }
+
+
+    /**
+     * Parses METS metadata.
+     *
+     * @param xml
+     *            METS metadata
+     * @return parsed METS metadata
+     * @throws Exception
+     *             when METS metadata cannot be parsed
+     */
+    private Mets parse(byte[] xml)
+            throws Exception {
+        return (Mets) jaxbProcessors.getUnmarshaller().unmarshal(new ByteArrayInputStream(xml));
+    }
+
+
+    /**
+     * Writes the bytes into the file.
+     *
+     * @param bytes
+     *            bytes
+     * @param file
+     *            file
+     * @throws IOException
+     *             when writing failed
+     */
+    private void write(byte[] bytes, File file)
+            throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+}
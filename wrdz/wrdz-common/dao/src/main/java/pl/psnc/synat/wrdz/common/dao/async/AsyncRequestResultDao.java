@@ -30,4 +30,11 @@ public interface AsyncRequestResultDao
         extends
         ExtendedGenericDao<AsyncRequestResultFilterFactory, AsyncRequestResultSorterBuilder, AsyncRequestResult, String> {
 
+    /**
+     * Returns the total size of the contents of the results stored in the cache.
+     * 
+     * @return total size in bytes
+     */
+    long getTotalSize();
+
 }
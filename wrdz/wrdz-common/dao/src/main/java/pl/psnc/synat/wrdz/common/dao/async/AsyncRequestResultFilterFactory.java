@@ -37,7 +37,7 @@ public interface AsyncRequestResultFilterFactory extends GenericQueryFilterFacto
 
 
     /**
-     * Filters the results by the completed date matching all completed before the given date.
+     * Filters the results by the completed date matching all completed after the given date.
      * 
      * @param date
      *            reference date
@@ -46,11 +46,11 @@ public interface AsyncRequestResultFilterFactory extends GenericQueryFilterFacto
      *            exclude it.
      * @return current representations of filters set
      */
-    QueryFilter<AsyncRequestResult> byCompletedBefore(Date date, boolean inclusive);
+    QueryFilter<AsyncRequestResult> byCompletedAfter(Date date, boolean inclusive);
 
 
     /**
-     * Filters the results by the completed date matching all completed after the given date.
+     * Filters the results by the date of the last access matching all accessed after the given date.
      * 
      * @param date
      *            reference date
@@ -59,7 +59,28 @@ public interface AsyncRequestResultFilterFactory extends GenericQueryFilterFacto
      *            exclude it.
      * @return current representations of filters set
      */
-    QueryFilter<AsyncRequestResult> byCompletedAfter(Date date, boolean inclusive);
+    QueryFilter<AsyncRequestResult> byLastAccessedAfter(Date date, boolean inclusive);
+
+
+    /**
+     * Filters the results by the date of the last access matching all accessed before the given date.
+     * 
+     * @param date
+     *            reference date
+     * @param inclusive
+     *            if <code>true</code> will cause referenced date to be included in searched boundary, else it would
+     *            exclude it.
+     * @return current representations of filters set
+     */
+    QueryFilter<AsyncRequestResult> byLastAccessedBefore(Date date, boolean inclusive);
+
+
+    /**
+     * Filters the results which have any content stored in the cache.
+     * 
+     * @return current representations of filters set
+     */
+    QueryFilter<AsyncRequestResult> byHasContent();
 
 
     /**
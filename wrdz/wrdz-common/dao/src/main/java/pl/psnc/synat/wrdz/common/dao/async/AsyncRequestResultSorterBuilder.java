@@ -23,4 +23,23 @@ import pl.psnc.synat.wrdz.common.entity.async.AsyncRequestResult;
  */
 public interface AsyncRequestResultSorterBuilder extends GenericQuerySorterBuilder<AsyncRequestResult> {
 
+    /**
+     * Enables sorting by the date of the last access of the result.
+     * 
+     * @param ascendingly
+     *            if <code>true</code> the sorting order will be ascending, else it will be descending.
+     * @return modified instance of the builder with updated sorters list
+     */
+    AsyncRequestResultSorterBuilder byLastAccessedOn(boolean ascendingly);
+
+
+    /**
+     * Enables sorting by the number of downloads of the result.
+     * 
+     * @param ascendingly
+     *            if <code>true</code> the sorting order will be ascending, else it will be descending.
+     * @return modified instance of the builder with updated sorters list
+     */
+    AsyncRequestResultSorterBuilder byAccessCount(boolean ascendingly);
+
 }
@@ -27,6 +27,7 @@ import pl.psnc.synat.wrdz.common.dao.async.AsyncRequestResultDao;
 import pl.psnc.synat.wrdz.common.dao.async.AsyncRequestResultFilterFactory;
 import pl.psnc.synat.wrdz.common.dao.async.AsyncRequestResultSorterBuilder;
 import pl.psnc.synat.wrdz.common.entity.async.AsyncRequestResult;
+import pl.psnc.synat.wrdz.common.entity.async.AsyncRequestResult_;
 
 /**
  * A class managing the persistence of {@link AsyncRequestResult} class. It implements additional operations available
@@ -60,4 +61,14 @@ public class AsyncRequestResultDaoBean
         return new AsyncRequestResultSorterBuilderImpl(criteriaBuilder, criteriaQuery, root, epoch);
     }
 
+
+    @Override
+    public long getTotalSize() {
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<AsyncRequestResult> root = query.from(clazz);
+        query.select(criteriaBuilder.sum(root.get(AsyncRequestResult_.size)));
+        Long size = entityManager.createQuery(query).getSingleResult();
+        return size != null ? size : 0;
+    }
+
 }
@@ -69,29 +69,48 @@ public class AsyncRequestResultFilterFactoryImpl extends GenericQueryFilterFacto
 
 
     @Override
-    public QueryFilter<AsyncRequestResult> byCompletedBefore(Date date, boolean inclusive) {
+    public QueryFilter<AsyncRequestResult> byCompletedAfter(Date date, boolean inclusive) {
         Predicate predicate = null;
         if (inclusive) {
-            predicate = criteriaBuilder.lessThanOrEqualTo(root.get(AsyncRequestResult_.completedOn), date);
+            predicate = criteriaBuilder.greaterThanOrEqualTo(root.get(AsyncRequestResult_.completedOn), date);
         } else {
-            predicate = criteriaBuilder.lessThan(root.get(AsyncRequestResult_.completedOn), date);
+            predicate = criteriaBuilder.greaterThan(root.get(AsyncRequestResult_.completedOn), date);
         }
         return constructQueryFilter(predicate);
     }
 
 
     @Override
-    public QueryFilter<AsyncRequestResult> byCompletedAfter(Date date, boolean inclusive) {
+    public QueryFilter<AsyncRequestResult> byLastAccessedAfter(Date date, boolean inclusive) {
         Predicate predicate = null;
         if (inclusive) {
-            predicate = criteriaBuilder.greaterThanOrEqualTo(root.get(AsyncRequestResult_.completedOn), date);
+            predicate = criteriaBuilder.greaterThanOrEqualTo(root.get(AsyncRequestResult_.lastAccessedOn), date);
         } else {
-            predicate = criteriaBuilder.greaterThan(root.get(AsyncRequestResult_.completedOn), date);
+            predicate = criteriaBuilder.greaterThan(root.get(AsyncRequestResult_.lastAccessedOn), date);
+        }
+        return constructQueryFilter(predicate);
+    }
+
+
+    @Override
+    public QueryFilter<AsyncRequestResult> byLastAccessedBefore(Date date, boolean inclusive) {
+        Predicate predicate = null;
+        if (inclusive) {
+            predicate = criteriaBuilder.lessThanOrEqualTo(root.get(AsyncRequestResult_.lastAccessedOn), date);
+        } else {
+            predicate = criteriaBuilder.lessThan(root.get(AsyncRequestResult_.lastAccessedOn), date);
         }
         return constructQueryFilter(predicate);
     }
 
 
+    @Override
+    public QueryFilter<AsyncRequestResult> byHasContent() {
+        Predicate predicate = criteriaBuilder.isNotNull(root.get(AsyncRequestResult_.contentType));
+        return constructQueryFilter(predicate);
+    }
+
+
     @Override
     public QueryFilter<AsyncRequestResult> byRequestedUrl(String requestedUrl) {
         Join<AsyncRequestResult, AsyncRequest> request = root.join(AsyncRequestResult_.request);
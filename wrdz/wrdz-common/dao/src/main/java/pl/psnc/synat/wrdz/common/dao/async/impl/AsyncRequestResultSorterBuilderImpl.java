@@ -57,4 +57,18 @@ public class AsyncRequestResultSorterBuilderImpl extends GenericQuerySorterBuild
         return root.get(AsyncRequestResult_.id);
     }
 
+
+    @Override
+    public AsyncRequestResultSorterBuilder byLastAccessedOn(boolean ascendingly) {
+        addOrdering(root.get(AsyncRequestResult_.lastAccessedOn), ascendingly);
+        return this;
+    }
+
+
+    @Override
+    public AsyncRequestResultSorterBuilder byAccessCount(boolean ascendingly) {
+        addOrdering(root.get(AsyncRequestResult_.accessCount), ascendingly);
+        return this;
+    }
+
 }
@@ -44,6 +44,9 @@ CREATE TABLE darceo.com_async_request_results
   arr_completed_on timestamp NOT NULL,
   arr_content_type VARCHAR(255),
   arr_result_filename VARCHAR(255),
+  arr_last_accessed_on timestamp NOT NULL,
+  arr_access_count bigint NOT NULL DEFAULT 0,
+  arr_size bigint NOT NULL DEFAULT 0,
   arr_ar_id VARCHAR(63) NOT NULL,
   CONSTRAINT com_async_request_results_pkey PRIMARY KEY (arr_id),
   CONSTRAINT fk_com_async_request_results_arr_ar_id FOREIGN KEY (arr_ar_id)
@@ -52,6 +55,8 @@ CREATE TABLE darceo.com_async_request_results
 );
 
 CREATE INDEX idx_com_async_request_results_arr_completed_on ON darceo.com_async_request_results (arr_completed_on);
+CREATE INDEX idx_com_async_request_results_arr_last_accessed_on ON darceo.com_async_request_results (arr_last_accessed_on);
+CREATE INDEX idx_com_async_request_results_arr_access_count ON darceo.com_async_request_results (arr_access_count, arr_last_accessed_on);
 
 
 -- time.TimestampItem --
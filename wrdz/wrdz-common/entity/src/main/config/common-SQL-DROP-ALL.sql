@@ -7,6 +7,8 @@ DROP TABLE darceo.com_timestamp;
 -- async.AsyncRequest
 
 --DROP INDEX idx_com_async_request_results_arr_completed_on; 
+--DROP INDEX idx_com_async_request_results_arr_last_accessed_on; 
+--DROP INDEX idx_com_async_request_results_arr_access_count; 
 
 ALTER TABLE darceo.com_async_request_results DROP CONSTRAINT com_async_request_results_arr_ar_id_key;
 ALTER TABLE darceo.com_async_request_results DROP CONSTRAINT fk_com_async_request_results_arr_ar_id;
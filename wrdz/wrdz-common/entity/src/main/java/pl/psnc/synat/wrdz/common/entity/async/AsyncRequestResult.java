@@ -54,6 +54,9 @@ public class AsyncRequestResult {
         this.id = id;
         this.request = request;
         this.completedOn = new Date();
+        this.lastAccessedOn = completedOn;
+        this.accessCount = 0L;
+        this.size = 0L;
         this.code = AsyncRequestResultConsts.HTTP_CODE_INTERNAL_SERVER_ERROR;
     }
 
@@ -97,6 +100,25 @@ public class AsyncRequestResult {
     @Column(name = "ARR_RESULT_FILENAME", nullable = true)
     private String filename;
 
+    /**
+     * Date and time of the last download of the result (or of its completion, if it has not been downloaded yet).
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "ARR_LAST_ACCESSED_ON", nullable = false)
+    private Date lastAccessedOn;
+
+    /**
+     * Number of downloads of the result.
+     */
+    @Column(name = "ARR_ACCESS_COUNT", nullable = false)
+    private Long accessCount;
+
+    /**
+     * Size (in bytes) of the content of the result stored in the cache.
+     */
+    @Column(name = "ARR_SIZE", nullable = false)
+    private Long size;
+
 
     public String getId() {
         return id;
@@ -168,6 +190,36 @@ public class AsyncRequestResult {
     }
 
 
+    public Date getLastAccessedOn() {
+        return lastAccessedOn;
+    }
+
+
+    public void setLastAccessedOn(Date lastAccessedOn) {
+        this.lastAccessedOn = lastAccessedOn;
+    }
+
+
+    public Long getAccessCount() {
+        return accessCount;
+    }
+
+
+    public void setAccessCount(Long accessCount) {
+        this.accessCount = accessCount;
+    }
+
+
+    public Long getSize() {
+        return size;
+    }
+
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -209,6 +261,9 @@ public class AsyncRequestResult {
         sb.append(", code = ").append(code);
         sb.append(", contentType = ").append(contentType);
         sb.append(", filename = ").append(filename);
+        sb.append(", lastAccessedOn = ").append(lastAccessedOn);
+        sb.append(", accessCount = ").append(accessCount);
+        sb.append(", size = ").append(size);
         sb.append("]");
         return sb.toString();
     }
@@ -47,29 +47,30 @@ public interface AsyncRequestResultManager {
 
 
     /**
-     * Saves the given result string in the file associated with the given result identifier.
+     * Saves the given result string in the file associated with the given result and records its size.
      * 
-     * @param resultId
-     *            id of the result of an asynchronous request
+     * @param asyncResult
+     *            result of an asynchronous request
      * @param result
      *            the result of asynchronous request
      * @throws IOException
      *             when some error during file creation occurs
      */
-    void saveResultString(String resultId, String result)
+    void saveResultString(AsyncRequestResult asyncResult, String result)
             throws IOException;
 
 
     /**
-     * Saves the contents of the file denoted by the given path in the file associated with the given result identifier.
+     * Saves the contents of the file denoted by the given path in the file associated with the given result and
+     * records its size.
      * 
-     * @param resultId
-     *            id of the result of an asynchronous request
+     * @param asyncResult
+     *            result of an asynchronous request
      * @param path
      *            absolute path to the file with the results of an asynchronous request
      * @throws IOException
      *             when some error during file creation occurs
      */
-    void saveResultFile(String resultId, String path)
+    void saveResultFile(AsyncRequestResult asyncResult, String path)
             throws IOException;
 }
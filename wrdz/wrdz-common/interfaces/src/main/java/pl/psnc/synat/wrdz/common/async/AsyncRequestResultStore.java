@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.async;
+
+import javax.ejb.Local;
+
+/**
+ * Keeps track of the downloads of the results of asynchronous requests. Results which are being downloaded are not
+ * removed from the cache, and the statistics of the downloads decide which results are removed first when the cache
+ * exceeds its size.
+ */
+@Local
+public interface AsyncRequestResultStore {
+
+    /**
+     * Registers the start of a download of the result: protects the result from removal until the download is
+     * released.
+     * 
+     * @param resultId
+     *            id of the result of an asynchronous request
+     */
+    void acquire(String resultId);
+
+
+    /**
+     * Records the access to the result. Only a download of the result from its beginning is counted as its use; the
+     * requests for the remaining ranges of an interrupted download only refresh the date of the last access.
+     * 
+     * @param resultId
+     *            id of the result of an asynchronous request
+     * @param download
+     *            whether the access starts a new download of the result
+     */
+    void recordAccess(String resultId, boolean download);
+
+
+    /**
+     * Registers the end of a download of the result.
+     * 
+     * @param resultId
+     *            id of the result of an asynchronous request
+     */
+    void release(String resultId);
+
+
+    /**
+     * Checks whether the result is being downloaded at the moment.
+     * 
+     * @param resultId
+     *            id of the result of an asynchronous request
+     * @return <code>true</code> if there is a download in progress
+     */
+    boolean isInUse(String resultId);
+
+}
@@ -16,9 +16,17 @@
 package pl.psnc.synat.wrdz.common.async;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
 
+import javax.ejb.EJB;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 
@@ -26,6 +34,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.wrdz.common.entity.async.AsyncRequestResult;
+import pl.psnc.synat.wrdz.common.entity.async.AsyncRequestResultConsts;
+import pl.psnc.synat.wrdz.common.rest.ByteRange;
+import pl.psnc.synat.wrdz.common.rest.FileRangeOutput;
 import pl.psnc.synat.wrdz.common.rest.exception.InternalServerErrorException;
 
 /**
@@ -36,39 +47,272 @@ public abstract class AsyncRequestService {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(AsyncRequestService.class);
 
+    /**
+     * Headers of the current request.
+     */
+    @Context
+    private HttpHeaders httpHeaders;
+
+    /**
+     * Current request.
+     */
+    @Context
+    private HttpServletRequest httpRequest;
 
     /**
-     * Build response from result for asynchronous request.
+     * Tracker of the downloads of the results.
+     */
+    @EJB
+    private AsyncRequestResultStore asyncRequestResultStoreBean;
+
+
+    /**
+     * Build response from result for asynchronous request. Successful results support byte ranges (
+     * <code>Range</code> and <code>If-Range</code> headers), with the entity tag derived from the result id and size.
      * 
      * @param result
      *            result for asynchronous request
      * @return response
      */
     protected Response buildResponse(AsyncRequestResult result) {
-        ResponseBuilder builder = Response.status(result.getCode());
-        if (result.hasContent()) {
-            try {
-                File file = new File(getAsyncResponseFolder() + "/" + result.getId());
-                FileInputStream response = new FileInputStream(file);
-                builder.entity(response);
-                long length = file.length();
-                if (length > 0) {
-                    builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_LENGTH, length);
-                }
-            } catch (FileNotFoundException e) {
-                logger.error("File with the response not found!", e);
+        if (!result.hasContent()) {
+            return Response.status(result.getCode()).build();
+        }
+        // the result must be protected from removal before its file is examined
+        AsyncResultDownload download = acquire(result.getId());
+        try {
+            File file = new File(getAsyncResponseFolder() + "/" + result.getId());
+            if (!file.isFile()) {
+                logger.error("File with the response not found: " + file);
                 throw new InternalServerErrorException();
             }
+            if (AsyncRequestResultConsts.HTTP_CODE_OK.equals(result.getCode())) {
+                return buildFileResponse(file, result.getContentType(), result.getFilename(), result.getId() + "-"
+                        + file.length(), download);
+            }
+            recordAccess(download, true);
+            ResponseBuilder builder = Response.status(result.getCode());
+            builder.entity(createOutput(file, null, null, download));
+            builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_LENGTH, file.length());
             builder.type(result.getContentType());
             if (result.getFilename() != null) {
                 builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_DISPOSITION,
                     AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_DISPOSITION_FILENAME + result.getFilename());
             }
+            return builder.build();
+        } catch (RuntimeException e) {
+            release(download);
+            throw e;
+        }
+    }
+
+
+    /**
+     * Builds response with the content of the file. Honours the <code>Range</code> header of the request: a single
+     * range is returned as partial content, many ranges as a <code>multipart/byteranges</code> body. The range is
+     * ignored if the <code>If-Range</code> header does not match the entity tag.
+     * 
+     * @param file
+     *            the file
+     * @param contentType
+     *            content type of the file
+     * @param filename
+     *            name of the file proposed to the client or <code>null</code>
+     * @param tag
+     *            value of the strong entity tag of the file or <code>null</code> if the file has no stable identity
+     * @return response
+     */
+    protected Response buildFileResponse(File file, String contentType, String filename, String tag) {
+        return buildFileResponse(file, contentType, filename, tag, null);
+    }
+
+
+    /**
+     * Builds response with the content of the file, as {@link #buildFileResponse(File, String, String, String)} does.
+     * If the file is a result of an asynchronous request, the download of the result must already be registered; it
+     * is released once the response is sent. Only a response starting at the beginning of the result counts as a new
+     * download of it, the requests for the remaining ranges of an interrupted download do not.
+     * 
+     * @param file
+     *            the file
+     * @param contentType
+     *            content type of the file
+     * @param filename
+     *            name of the file proposed to the client or <code>null</code>
+     * @param tag
+     *            value of the strong entity tag of the file or <code>null</code> if the file has no stable identity
+     * @param download
+     *            registered download of the result of an asynchronous request stored in the file or <code>null</code>
+     * @return response
+     */
+    private Response buildFileResponse(File file, String contentType, String filename, String tag,
+            AsyncResultDownload download) {
+        long total = file.length();
+        List<ByteRange> ranges = null;
+        String range = getRequestHeader(AsyncRequestServiceConsts.HTTP_HEADER_RANGE);
+        if (range != null && isRangeValid(tag)) {
+            ranges = ByteRange.parse(range, total);
+        }
+
+        if (ranges == null || !ranges.isEmpty()) {
+            recordAccess(download, ranges == null || ranges.get(0).getStart() == 0);
+        }
+
+        ResponseBuilder builder;
+        if (ranges == null) {
+            FileRangeOutput output = createOutput(file, null, contentType, download);
+            builder = Response.ok(output, contentType);
+            builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_LENGTH, output.getLength());
+        } else if (ranges.isEmpty()) {
+            release(download);
+            builder = Response.status(AsyncRequestServiceConsts.HTTP_CODE_RANGE_NOT_SATISFIABLE);
+            builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_RANGE, ByteRange.UNIT + " */" + total);
+        } else {
+            FileRangeOutput output = createOutput(file, ranges, contentType, download);
+            builder = Response.status(AsyncRequestServiceConsts.HTTP_CODE_PARTIAL_CONTENT).entity(output);
+            if (output.isMultipart()) {
+                builder.type(output.getMultipartType());
+            } else {
+                builder.type(contentType);
+                builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_RANGE,
+                    ranges.get(0).toContentRange(total));
+            }
+            builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_LENGTH, output.getLength());
+        }
+        builder.header(AsyncRequestServiceConsts.HTTP_HEADER_ACCEPT_RANGES, ByteRange.UNIT);
+        if (tag != null) {
+            builder.tag(new EntityTag(tag));
+        }
+        if (filename != null) {
+            builder.header(AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_DISPOSITION,
+                AsyncRequestServiceConsts.HTTP_HEADER_CONTENT_DISPOSITION_FILENAME + filename);
         }
         return builder.build();
     }
 
 
+    /**
+     * Creates the output of the file. If the file is a result of an asynchronous request, its registered download is
+     * released when the output is written.
+     * 
+     * @param file
+     *            the file
+     * @param ranges
+     *            ranges to write or <code>null</code> for the whole file
+     * @param contentType
+     *            content type of the file
+     * @param download
+     *            registered download of the result of an asynchronous request stored in the file or <code>null</code>
+     * @return output of the file
+     */
+    private FileRangeOutput createOutput(File file, List<ByteRange> ranges, String contentType,
+            final AsyncResultDownload download) {
+        if (download == null) {
+            return ranges != null ? new FileRangeOutput(file, ranges, contentType) : new FileRangeOutput(file);
+        }
+        if (ranges == null) {
+            ranges = Collections.singletonList(new ByteRange(0, file.length() - 1));
+        }
+        return new FileRangeOutput(file, ranges, contentType) {
+
+            @Override
+            public void write(OutputStream output)
+                    throws IOException, WebApplicationException {
+                try {
+                    super.write(output);
+                } finally {
+                    download.release();
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Registers the download of the result of an asynchronous request, so that the result is not removed until the
+     * download is released. The download is bound to the current request, so that it is released when the request
+     * ends even if the response body is never written.
+     * 
+     * @param resultId
+     *            id of the result
+     * @return registered download or <code>null</code> if downloads are not tracked
+     */
+    private AsyncResultDownload acquire(String resultId) {
+        if (asyncRequestResultStoreBean == null) {
+            return null;
+        }
+        AsyncResultDownload download = new AsyncResultDownload(asyncRequestResultStoreBean, resultId);
+        if (httpRequest != null) {
+            AsyncResultDownloadListener.bind(httpRequest, download);
+        }
+        return download;
+    }
+
+
+    /**
+     * Records the access to the result of the registered download.
+     * 
+     * @param download
+     *            registered download or <code>null</code>
+     * @param newDownload
+     *            whether the access starts a new download of the result
+     */
+    private void recordAccess(AsyncResultDownload download, boolean newDownload) {
+        if (download != null) {
+            download.recordAccess(newDownload);
+        }
+    }
+
+
+    /**
+     * Releases the download registered by {@link #acquire(String)}.
+     * 
+     * @param download
+     *            registered download or <code>null</code>
+     */
+    private void release(AsyncResultDownload download) {
+        if (download != null) {
+            download.release();
+        }
+    }
+
+
+    /**
+     * Checks the <code>If-Range</code> header of the request. The range can be served only if the header is absent or
+     * it matches the current entity tag (strong comparison).
+     * 
+     * @param tag
+     *            value of the entity tag of the file or <code>null</code>
+     * @return whether the requested range can be served
+     */
+    private boolean isRangeValid(String tag) {
+        String ifRange = getRequestHeader(AsyncRequestServiceConsts.HTTP_HEADER_IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        return tag != null && ifRange.trim().equals(new EntityTag(tag).toString());
+    }
+
+
+    /**
+     * Returns the first value of the header of the current request.
+     * 
+     * @param name
+     *            name of the header
+     * @return value of the header or <code>null</code> if it is absent (or the service is used outside of a request)
+     */
+    private String getRequestHeader(String name) {
+        if (httpHeaders == null) {
+            return null;
+        }
+        List<String> values = httpHeaders.getRequestHeader(name);
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        return values.get(0);
+    }
+
+
     /**
      * Returns root folder with files with results for asynchronous request.
      * 
@@ -66,4 +66,34 @@ public final class AsyncRequestServiceConsts {
      */
     public static final String HTTP_HEADER_CONTENT_LENGTH = "Content-Length";
 
+    /**
+     * Http header: Range.
+     */
+    public static final String HTTP_HEADER_RANGE = "Range";
+
+    /**
+     * Http header: If-Range.
+     */
+    public static final String HTTP_HEADER_IF_RANGE = "If-Range";
+
+    /**
+     * Http header: Accept-Ranges.
+     */
+    public static final String HTTP_HEADER_ACCEPT_RANGES = "Accept-Ranges";
+
+    /**
+     * Http header: Content-Range.
+     */
+    public static final String HTTP_HEADER_CONTENT_RANGE = "Content-Range";
+
+    /**
+     * Http code: Partial Content.
+     */
+    public static final int HTTP_CODE_PARTIAL_CONTENT = 206;
+
+    /**
+     * Http code: Requested Range Not Satisfiable.
+     */
+    public static final int HTTP_CODE_RANGE_NOT_SATISFIABLE = 416;
+
 }
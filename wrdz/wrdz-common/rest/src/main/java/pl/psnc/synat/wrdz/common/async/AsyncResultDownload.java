@@ -0,0 +1,71 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.async;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Download of the result of an asynchronous request registered in {@link AsyncRequestResultStore}. The download is
+ * released either when the response body is written or when the request ends, whichever comes first.
+ */
+final class AsyncResultDownload {
+
+    /** Tracker of the downloads of the results. */
+    private final AsyncRequestResultStore store;
+
+    /** Id of the result. */
+    private final String resultId;
+
+    /** Whether the download has been released. */
+    private final AtomicBoolean released = new AtomicBoolean();
+
+
+    /**
+     * Registers the download of the result.
+     * 
+     * @param store
+     *            tracker of the downloads of the results
+     * @param resultId
+     *            id of the result
+     */
+    AsyncResultDownload(AsyncRequestResultStore store, String resultId) {
+        this.store = store;
+        this.resultId = resultId;
+        store.acquire(resultId);
+    }
+
+
+    /**
+     * Records the access to the result.
+     * 
+     * @param download
+     *            whether the access starts a new download of the result
+     */
+    void recordAccess(boolean download) {
+        store.recordAccess(resultId, download);
+    }
+
+
+    /**
+     * Releases the download. Subsequent calls have no effect.
+     */
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            store.release(resultId);
+        }
+    }
+
+}
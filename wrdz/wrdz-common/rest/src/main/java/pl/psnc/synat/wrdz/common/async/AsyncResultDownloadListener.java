@@ -0,0 +1,61 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.async;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+
+/**
+ * Releases the download of the result of an asynchronous request when the request which started it ends. The download
+ * is normally released once the response body is written, but the body is never written if the client disconnects
+ * before it is sent or if the request does not expect it (<code>HEAD</code>). Without this listener such downloads
+ * would protect the result from removal until they are considered abandoned.
+ */
+public class AsyncResultDownloadListener implements ServletRequestListener {
+
+    /** Name of the request attribute holding the download started by the request. */
+    private static final String DOWNLOAD_ATTRIBUTE = AsyncResultDownloadListener.class.getName() + ".download";
+
+
+    /**
+     * Binds the download to the request, so that it is released at the latest when the request ends.
+     * 
+     * @param request
+     *            current request
+     * @param download
+     *            download started by the request
+     */
+    static void bind(ServletRequest request, AsyncResultDownload download) {
+        request.setAttribute(DOWNLOAD_ATTRIBUTE, download);
+    }
+
+
+    @Override
+    public void requestInitialized(ServletRequestEvent event) {
+        // nothing to do
+    }
+
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+        Object download = event.getServletRequest().getAttribute(DOWNLOAD_ATTRIBUTE);
+        if (download instanceof AsyncResultDownload) {
+            ((AsyncResultDownload) download).release();
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Range of bytes of a file requested with the <code>Range</code> HTTP header (RFC 7233). Both ends are inclusive.
+ */
+public final class ByteRange implements Comparable<ByteRange> {
+
+    /** Unit of ranges supported by the server. */
+    public static final String UNIT = "bytes";
+
+    /** Maximal number of ranges served in one response - more ranges are merged into one. */
+    private static final int MAX_RANGES = 16;
+
+    /** First byte of the range. */
+    private final long start;
+
+    /** Last byte of the range. */
+    private final long end;
+
+
+    /**
+     * Creates a new range.
+     * 
+     * @param start
+     *            first byte of the range
+     * @param end
+     *            last byte of the range
+     */
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+
+    public long getStart() {
+        return start;
+    }
+
+
+    public long getEnd() {
+        return end;
+    }
+
+
+    /**
+     * Returns the number of bytes in the range.
+     * 
+     * @return length of the range
+     */
+    public long getLength() {
+        return end - start + 1;
+    }
+
+
+    /**
+     * Returns the value of the <code>Content-Range</code> header for this range.
+     * 
+     * @param total
+     *            length of the whole file
+     * @return header value
+     */
+    public String toContentRange(long total) {
+        return UNIT + " " + start + "-" + end + "/" + total;
+    }
+
+
+    /**
+     * Parses the value of the <code>Range</code> header. Overlapping and adjacent ranges are merged and the result is
+     * sorted by the position in the file.
+     * 
+     * @param header
+     *            value of the header
+     * @param total
+     *            length of the file
+     * @return satisfiable ranges (empty if none of them is satisfiable), or <code>null</code> if the header is not a
+     *         valid byte range specification and should be ignored
+     */
+    public static List<ByteRange> parse(String header, long total) {
+        if (header == null) {
+            return null;
+        }
+        String value = header.trim();
+        if (!value.startsWith(UNIT + "=")) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<ByteRange>();
+        boolean specified = false;
+        for (String spec : value.substring(UNIT.length() + 1).split(",")) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            specified = true;
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // suffix range - last N bytes of the file
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix > 0 && total > 0) {
+                        ranges.add(new ByteRange(Math.max(0, total - suffix), total - 1));
+                    }
+                } else {
+                    long start = Long.parseLong(first);
+                    long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    if (start < total) {
+                        ranges.add(new ByteRange(start, Math.min(end, total - 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (!specified) {
+            // the range set has to contain at least one range
+            return null;
+        }
+        return merge(ranges);
+    }
+
+
+    /**
+     * Sorts the ranges and merges the overlapping and adjacent ones. If there are still too many of them, they are all
+     * merged into one range.
+     * 
+     * @param ranges
+     *            ranges
+     * @return merged ranges
+     */
+    private static List<ByteRange> merge(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        Collections.sort(ranges);
+        List<ByteRange> merged = new ArrayList<ByteRange>();
+        ByteRange current = ranges.get(0);
+        for (ByteRange range : ranges.subList(1, ranges.size())) {
+            if (range.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, range.end));
+            } else {
+                merged.add(current);
+                current = range;
+            }
+        }
+        merged.add(current);
+        if (merged.size() > MAX_RANGES) {
+            ByteRange all = new ByteRange(merged.get(0).start, merged.get(merged.size() - 1).end);
+            merged.clear();
+            merged.add(all);
+        }
+        return merged;
+    }
+
+
+    @Override
+    public int compareTo(ByteRange other) {
+        if (start != other.start) {
+            return start < other.start ? -1 : 1;
+        }
+        return end < other.end ? -1 : (end == other.end ? 0 : 1);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return (int) (start ^ (start >>> 32)) * 31 + (int) (end ^ (end >>> 32));
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ByteRange)) {
+            return false;
+        }
+        ByteRange other = (ByteRange) obj;
+        return start == other.start && end == other.end;
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("ByteRange ");
+        sb.append("[start = ").append(start);
+        sb.append(", end = ").append(end);
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
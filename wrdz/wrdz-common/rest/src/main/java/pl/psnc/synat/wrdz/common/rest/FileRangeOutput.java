@@ -0,0 +1,223 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes a file, or selected ranges of it, into the response. A single range is written as is, many ranges are written
+ * as a <code>multipart/byteranges</code> body. The content is transferred from the file channel directly to the
+ * channel of the response, without copying it through a buffer of the application.
+ */
+public class FileRangeOutput implements StreamingOutput {
+
+    /** Charset of the multipart headers. */
+    private static final String HEADER_CHARSET = "US-ASCII";
+
+    /** Line separator of the multipart headers. */
+    private static final String CRLF = "\r\n";
+
+    /** The file. */
+    private final File file;
+
+    /** Length of the file. */
+    private final long total;
+
+    /** Ranges to write. */
+    private final List<ByteRange> ranges;
+
+    /** Content type of the file (used in multipart bodies). */
+    private final String contentType;
+
+    /** Boundary of the multipart body. */
+    private final String boundary;
+
+
+    /**
+     * Creates an output of the whole file.
+     * 
+     * @param file
+     *            the file
+     */
+    public FileRangeOutput(File file) {
+        this(file, Collections.singletonList(new ByteRange(0, file.length() - 1)), null);
+    }
+
+
+    /**
+     * Creates an output of selected ranges of the file.
+     * 
+     * @param file
+     *            the file
+     * @param ranges
+     *            satisfiable, sorted and disjoint ranges
+     * @param contentType
+     *            content type of the file
+     */
+    public FileRangeOutput(File file, List<ByteRange> ranges, String contentType) {
+        this.file = file;
+        this.total = file.length();
+        this.ranges = ranges;
+        this.contentType = contentType;
+        this.boundary = UUID.randomUUID().toString().replace("-", "");
+    }
+
+
+    /**
+     * Whether the output is a multipart body.
+     * 
+     * @return <code>true</code> if many ranges are written
+     */
+    public boolean isMultipart() {
+        return ranges.size() > 1;
+    }
+
+
+    /**
+     * Returns the content type of the multipart body.
+     * 
+     * @return content type
+     */
+    public String getMultipartType() {
+        return "multipart/byteranges; boundary=" + boundary;
+    }
+
+
+    /**
+     * Returns the number of bytes the output writes.
+     * 
+     * @return length of the response body
+     */
+    public long getLength() {
+        long length = 0;
+        for (ByteRange range : ranges) {
+            length += range.getLength();
+        }
+        if (isMultipart()) {
+            try {
+                for (ByteRange range : ranges) {
+                    length += getPartHeader(range).length;
+                }
+                length += getClosingBoundary().length;
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return length;
+    }
+
+
+    @Override
+    public void write(OutputStream output)
+            throws IOException, WebApplicationException {
+        RandomAccessFile source = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = source.getChannel();
+            WritableByteChannel target = Channels.newChannel(output);
+            if (isMultipart()) {
+                for (ByteRange range : ranges) {
+                    output.write(getPartHeader(range));
+                    transfer(channel, range, target);
+                }
+                output.write(getClosingBoundary());
+            } else if (!ranges.isEmpty() && total > 0) {
+                transfer(channel, ranges.get(0), target);
+            }
+            output.flush();
+        } finally {
+            source.close();
+        }
+    }
+
+
+    /**
+     * Transfers the range of the file into the target channel.
+     * 
+     * @param channel
+     *            channel of the file
+     * @param range
+     *            range to transfer
+     * @param target
+     *            target channel
+     * @throws IOException
+     *             if the transfer fails
+     */
+    private void transfer(FileChannel channel, ByteRange range, WritableByteChannel target)
+            throws IOException {
+        long position = range.getStart();
+        long remaining = range.getLength();
+        while (remaining > 0) {
+            long count = channel.transferTo(position, remaining, target);
+            if (count <= 0) {
+                throw new IOException("File " + file + " was truncated while being sent.");
+            }
+            position += count;
+            remaining -= count;
+        }
+    }
+
+
+    /**
+     * Returns the boundary and the headers preceding the range in the multipart body.
+     * 
+     * @param range
+     *            range
+     * @return encoded headers
+     * @throws UnsupportedEncodingException
+     *             should never happen
+     */
+    private byte[] getPartHeader(ByteRange range)
+            throws UnsupportedEncodingException {
+        StringBuffer sb = new StringBuffer();
+        if (range != ranges.get(0)) {
+            sb.append(CRLF);
+        }
+        sb.append("--").append(boundary).append(CRLF);
+        if (contentType != null) {
+            sb.append("Content-Type: ").append(contentType).append(CRLF);
+        }
+        sb.append("Content-Range: ").append(range.toContentRange(total)).append(CRLF);
+        sb.append(CRLF);
+        return sb.toString().getBytes(HEADER_CHARSET);
+    }
+
+
+    /**
+     * Returns the closing boundary of the multipart body.
+     * 
+     * @return encoded boundary
+     * @throws UnsupportedEncodingException
+     *             should never happen
+     */
+    private byte[] getClosingBoundary()
+            throws UnsupportedEncodingException {
+        return (CRLF + "--" + boundary + "--" + CRLF).getBytes(HEADER_CHARSET);
+    }
+
+}
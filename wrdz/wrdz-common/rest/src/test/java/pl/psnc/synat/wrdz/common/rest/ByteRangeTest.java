@@ -0,0 +1,171 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the <code>Range</code> header by {@link ByteRange}.
+ */
+public class ByteRangeTest {
+
+    /** Length of the file the ranges are requested from. */
+    private static final long TOTAL = 1000;
+
+
+    /**
+     * A closed range is returned as is, and its end is limited to the end of the file.
+     */
+    @Test
+    public void shouldParseClosedRange() {
+        Assert.assertEquals(ranges(0, 499), ByteRange.parse("bytes=0-499", TOTAL));
+        Assert.assertEquals(ranges(500, 999), ByteRange.parse("bytes=500-5000", TOTAL));
+        Assert.assertEquals(ranges(999, 999), ByteRange.parse(" bytes= 999 - 999 ", TOTAL));
+    }
+
+
+    /**
+     * An open-ended range reaches the end of the file.
+     */
+    @Test
+    public void shouldParseOpenEndedRange() {
+        Assert.assertEquals(ranges(0, 999), ByteRange.parse("bytes=0-", TOTAL));
+        Assert.assertEquals(ranges(900, 999), ByteRange.parse("bytes=900-", TOTAL));
+    }
+
+
+    /**
+     * A suffix range covers the last bytes of the file, or the whole file if it is shorter.
+     */
+    @Test
+    public void shouldParseSuffixRange() {
+        Assert.assertEquals(ranges(900, 999), ByteRange.parse("bytes=-100", TOTAL));
+        Assert.assertEquals(ranges(999, 999), ByteRange.parse("bytes=-1", TOTAL));
+        Assert.assertEquals(ranges(0, 999), ByteRange.parse("bytes=-5000", TOTAL));
+    }
+
+
+    /**
+     * Ranges which start after the end of the file, empty suffixes and any range of an empty file are unsatisfiable,
+     * so the request is answered with 416.
+     */
+    @Test
+    public void shouldReturnNoRangeWhenUnsatisfiable() {
+        Assert.assertEquals(ranges(), ByteRange.parse("bytes=1000-", TOTAL));
+        Assert.assertEquals(ranges(), ByteRange.parse("bytes=1000-2000", TOTAL));
+        Assert.assertEquals(ranges(), ByteRange.parse("bytes=-0", TOTAL));
+        Assert.assertEquals(ranges(), ByteRange.parse("bytes=1000-1999, 2000-", TOTAL));
+        Assert.assertEquals(ranges(), ByteRange.parse("bytes=0-", 0));
+        Assert.assertEquals(ranges(), ByteRange.parse("bytes=-100", 0));
+    }
+
+
+    /**
+     * Unsatisfiable ranges are skipped as long as any other range is satisfiable.
+     */
+    @Test
+    public void shouldSkipUnsatisfiableRanges() {
+        Assert.assertEquals(ranges(0, 9), ByteRange.parse("bytes=2000-, 0-9", TOTAL));
+    }
+
+
+    /**
+     * Many ranges are sorted by their position in the file.
+     */
+    @Test
+    public void shouldSortMultipleRanges() {
+        List<ByteRange> expected = ranges(0, 9, 100, 199, 900, 999);
+        Assert.assertEquals(expected, ByteRange.parse("bytes=-100,100-199,0-9", TOTAL));
+    }
+
+
+    /**
+     * Overlapping and adjacent ranges are merged, disjoint ones are not.
+     */
+    @Test
+    public void shouldMergeOverlappingAndAdjacentRanges() {
+        Assert.assertEquals(ranges(0, 199), ByteRange.parse("bytes=0-99,50-199", TOTAL));
+        Assert.assertEquals(ranges(0, 199), ByteRange.parse("bytes=100-199,0-99", TOTAL));
+        Assert.assertEquals(ranges(0, 99, 101, 199), ByteRange.parse("bytes=0-99,101-199", TOTAL));
+        Assert.assertEquals(ranges(0, 999), ByteRange.parse("bytes=0-,-1", TOTAL));
+    }
+
+
+    /**
+     * Too many disjoint ranges are merged into one range, which covers all of them.
+     */
+    @Test
+    public void shouldMergeTooManyRangesIntoOne() {
+        StringBuffer header = new StringBuffer("bytes=");
+        for (int i = 0; i < 20; i++) {
+            header.append(i > 0 ? "," : "").append(i * 10).append("-").append(i * 10 + 4);
+        }
+        Assert.assertEquals(ranges(0, 194), ByteRange.parse(header.toString(), TOTAL));
+    }
+
+
+    /**
+     * A missing header, another unit or a malformed range make the header ignored, so the whole file is sent.
+     */
+    @Test
+    public void shouldIgnoreInvalidHeader() {
+        Assert.assertNull(ByteRange.parse(null, TOTAL));
+        Assert.assertNull(ByteRange.parse("items=0-9", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes 0-9", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=,", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=9", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=9-0", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=a-9", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=0-9-19", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=--9", TOTAL));
+        Assert.assertNull(ByteRange.parse("bytes=0-9,x", TOTAL));
+    }
+
+
+    /**
+     * The <code>Content-Range</code> header describes the range and the whole file.
+     */
+    @Test
+    public void shouldFormatContentRange() {
+        Assert.assertEquals("bytes 900-999/1000", new ByteRange(900, 999).toContentRange(TOTAL));
+        Assert.assertEquals(100, new ByteRange(900, 999).getLength());
+    }
+
+
+    /**
+     * Creates a list of ranges.
+     * 
+     * @param bounds
+     *            first and last bytes of the consecutive ranges
+     * @return list of ranges
+     */
+    private static List<ByteRange> ranges(long... bounds) {
+        if (bounds.length == 0) {
+            return Collections.emptyList();
+        }
+        List<ByteRange> ranges = new ArrayList<ByteRange>();
+        for (int i = 0; i < bounds.length; i += 2) {
+            ranges.add(new ByteRange(bounds[i], bounds[i + 1]));
+        }
+        return ranges;
+    }
+}
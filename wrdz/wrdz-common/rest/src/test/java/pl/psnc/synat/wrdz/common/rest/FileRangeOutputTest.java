@@ -0,0 +1,188 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.common.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the bodies written by {@link FileRangeOutput} for the ranges parsed by {@link ByteRange}.
+ */
+public class FileRangeOutputTest {
+
+    /** Length of the file. */
+    private static final int TOTAL = 1000;
+
+    /** Charset of the multipart headers. */
+    private static final String CHARSET = "US-ASCII";
+
+    /** Content of the file. */
+    private byte[] content;
+
+    /** The file. */
+    private File file;
+
+
+    @Before
+    public void setUp()
+            throws IOException {
+        content = new byte[TOTAL];
+        for (int i = 0; i < TOTAL; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        file = File.createTempFile("range", ".txt");
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+    }
+
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+
+    /**
+     * Without ranges the whole file is written.
+     */
+    @Test
+    public void shouldWriteWholeFile()
+            throws IOException {
+        FileRangeOutput output = new FileRangeOutput(file);
+        Assert.assertFalse(output.isMultipart());
+        Assert.assertEquals(TOTAL, output.getLength());
+        Assert.assertArrayEquals(content, write(output));
+    }
+
+
+    /**
+     * An empty file is written as an empty body.
+     */
+    @Test
+    public void shouldWriteEmptyFile()
+            throws IOException {
+        File empty = File.createTempFile("range", ".txt");
+        try {
+            FileRangeOutput output = new FileRangeOutput(empty);
+            Assert.assertEquals(0, output.getLength());
+            Assert.assertEquals(0, write(output).length);
+        } finally {
+            empty.delete();
+        }
+    }
+
+
+    /**
+     * A single range is written as is.
+     */
+    @Test
+    public void shouldWriteSingleRange()
+            throws IOException {
+        FileRangeOutput output = output("bytes=100-199");
+        Assert.assertFalse(output.isMultipart());
+        Assert.assertEquals(100, output.getLength());
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 100, 200), write(output));
+    }
+
+
+    /**
+     * A suffix range and an open-ended range are written up to the end of the file.
+     */
+    @Test
+    public void shouldWriteRangesReachingEndOfFile()
+            throws IOException {
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 990, TOTAL), write(output("bytes=-10")));
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 995, TOTAL), write(output("bytes=995-")));
+    }
+
+
+    /**
+     * Many ranges are written as a multipart body of the declared length, with the parts in the order of the file.
+     */
+    @Test
+    public void shouldWriteMultipleRangesAsMultipart()
+            throws IOException {
+        FileRangeOutput output = output("bytes=-10,0-9");
+        Assert.assertTrue(output.isMultipart());
+        String type = output.getMultipartType();
+        Assert.assertTrue(type.startsWith("multipart/byteranges; boundary="));
+        String boundary = type.substring(type.indexOf('=') + 1);
+
+        byte[] body = write(output);
+        Assert.assertEquals(output.getLength(), body.length);
+        String expected = "--" + boundary + "\r\n" + "Content-Type: text/plain\r\n"
+                + "Content-Range: bytes 0-9/1000\r\n\r\n" + new String(content, 0, 10, CHARSET) + "\r\n--" + boundary
+                + "\r\n" + "Content-Type: text/plain\r\n" + "Content-Range: bytes 990-999/1000\r\n\r\n"
+                + new String(content, 990, 10, CHARSET) + "\r\n--" + boundary + "--\r\n";
+        Assert.assertEquals(expected, new String(body, CHARSET));
+    }
+
+
+    /**
+     * Every output has its own boundary.
+     */
+    @Test
+    public void shouldUseDifferentBoundaries() {
+        Assert.assertFalse(output("bytes=0-0,9-9").getMultipartType().equals(
+            output("bytes=0-0,9-9").getMultipartType()));
+    }
+
+
+    /**
+     * Creates an output of the ranges of the file.
+     * 
+     * @param header
+     *            value of the <code>Range</code> header
+     * @return output
+     */
+    private FileRangeOutput output(String header) {
+        List<ByteRange> ranges = ByteRange.parse(header, file.length());
+        Assert.assertNotNull(ranges);
+        Assert.assertFalse(ranges.isEmpty());
+        return new FileRangeOutput(file, ranges, "text/plain");
+    }
+
+
+    /**
+     * Writes the output into an array.
+     * 
+     * @param output
+     *            output
+     * @return written bytes
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    private byte[] write(FileRangeOutput output)
+            throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        output.write(body);
+        return body.toByteArray();
+    }
+}
@@ -31,6 +31,7 @@ import javax.inject.Inject;
 
 import pl.psnc.synat.wrdz.mdz.config.MdzConfiguration;
 import pl.psnc.synat.wrdz.mdz.config.PluginInfo;
+import pl.psnc.synat.wrdz.mdz.format.FileFormatVerifier;
 import pl.psnc.synat.wrdz.mdz.format.FileFormatWorkInitializer;
 import pl.psnc.synat.wrdz.mdz.format.FileFormatWorker;
 import pl.psnc.synat.wrdz.mdz.integrity.IntegrityWorker;
@@ -57,6 +58,10 @@ public class MdzScheduler {
     @EJB
     private FileFormatWorkInitializer formatInitializer;
 
+    /** Bean evaluating file formats against the format registry. */
+    @EJB
+    private FileFormatVerifier formatVerifier;
+
     /** Bean handling the actual file format loss risk assessment. */
     @EJB
     private FileFormatWorker formatWorker;
@@ -77,6 +82,7 @@ public class MdzScheduler {
     protected void init() {
         if (configuration.getCheckFormats()) {
             createInitializeFormatWorkTimer();
+            createRefreshFormatRegistryTimer();
             if (!configuration.getFormatWorkerAlwaysActive()) {
                 createActivateFormatWorkerTimer();
                 createDeactivateFormatWorkerTimer();
@@ -88,6 +94,9 @@ public class MdzScheduler {
         if (configuration.getCheckIntegrity()) {
             createActivateIntegrityWorkerTimer();
             createDeactivateIntegrityWorkerTimer();
+            if (configuration.getIntegrityBytesPerHour() > 0) {
+                createResumeIntegrityWorkerTimer();
+            }
         }
 
         createPluginTimers();
@@ -106,6 +115,18 @@ public class MdzScheduler {
     }
 
 
+    /**
+     * Creates the timer to periodically download a new snapshot of the format registry.
+     * 
+     * @see EventType#REFRESH_FORMAT_REGISTRY
+     */
+    private void createRefreshFormatRegistryTimer() {
+        TimerConfig timerConfig = new TimerConfig(EventType.REFRESH_FORMAT_REGISTRY, false);
+        ScheduleExpression expression = configuration.getFormatRegistryRefreshSchedule();
+        timerService.createCalendarTimer(expression, timerConfig);
+    }
+
+
     /**
      * Creates the timer to periodically activate the file format loss risk assessment worker.
      * 
@@ -154,12 +175,25 @@ public class MdzScheduler {
     }
 
 
+    /**
+     * Creates the timer to resume the data integrity verification worker at the beginning of every hour, when its
+     * hourly budget of verified bytes is renewed.
+     * 
+     * @see EventType#RESUME_INTEGRITY_WORKER
+     */
+    private void createResumeIntegrityWorkerTimer() {
+        TimerConfig timerConfig = new TimerConfig(EventType.RESUME_INTEGRITY_WORKER, false);
+        ScheduleExpression expression = new ScheduleExpression().hour("*").minute(0);
+        timerService.createCalendarTimer(expression, timerConfig);
+    }
+
+
     /**
      * Creates the timers to periodically activate and deactivate the configured plugins.
      */
     private void createPluginTimers() {
         for (PluginInfo info : configuration.getPlugins()) {
-            pluginExecutor.registerPlugin(info.getName(), info.getPlugin());
+            pluginExecutor.registerPlugin(info.getName(), info.getPlugin(), info.getConcurrency());
 
             TimerConfig timerConfig = new TimerConfig(new PluginEvent(info.getName(), PluginEventType.ACTIVATE), false);
             ScheduleExpression expression = info.getActivationSchedule();
@@ -187,6 +221,9 @@ public class MdzScheduler {
                     formatInitializer.initializeWork();
                     formatWorker.start();
                     break;
+                case REFRESH_FORMAT_REGISTRY:
+                    formatVerifier.refreshRegistry();
+                    break;
                 case ACTIVATE_FORMAT_WORKER:
                     formatWorker.activate();
                     break;
@@ -199,6 +236,9 @@ public class MdzScheduler {
                 case DEACTIVATE_INTEGRITY_WORKER:
                     integrityWorker.deactivate();
                     break;
+                case RESUME_INTEGRITY_WORKER:
+                    integrityWorker.start();
+                    break;
                 default:
                     throw new RuntimeException("Unexpected EventType value: " + timer.getInfo());
             }
@@ -226,6 +266,9 @@ public class MdzScheduler {
         /** Run the file format work initializer. */
         INITIALIZE_FORMAT_WORK,
 
+        /** Download a new snapshot of the format registry. */
+        REFRESH_FORMAT_REGISTRY,
+
         /** Activate the file format worker. */
         ACTIVATE_FORMAT_WORKER,
 
@@ -236,7 +279,10 @@ public class MdzScheduler {
         ACTIVATE_INTEGRITY_WORKER,
 
         /** Deactivate the data integrity worker. */
-        DEACTIVATE_INTEGRITY_WORKER;
+        DEACTIVATE_INTEGRITY_WORKER,
+
+        /** Resume the data integrity worker stopped by its hourly budget. */
+        RESUME_INTEGRITY_WORKER;
     }
 
 
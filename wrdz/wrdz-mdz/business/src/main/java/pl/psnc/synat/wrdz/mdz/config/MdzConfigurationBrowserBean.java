@@ -43,6 +43,12 @@ public class MdzConfigurationBrowserBean implements MdzConfigurationBrowser {
     /** Label: format age threshold. */
     private static final String FORMAT_AGE_THRESHOLD = "Format age threshold (days)";
 
+    /** Label: format registry endpoint. */
+    private static final String FORMAT_REGISTRY_ENDPOINT = "Format registry endpoint";
+
+    /** Label: format registry refresh schedule. */
+    private static final String FORMAT_REGISTRY_REFRESH_SCHEDULE = "Format registry refresh schedule";
+
     /** Label: format work initializer schedule. */
     private static final String FORMAT_WORK_INITIALIZER_SCHEDULE = "Format work initializer schedule";
 
@@ -55,12 +61,27 @@ public class MdzConfigurationBrowserBean implements MdzConfigurationBrowser {
     /** Label: integrity worker schedule. */
     private static final String INTEGRITY_WORKER_SCHEDULE = "Integrity worker schedule";
 
+    /** Label: number of integrity workers. */
+    private static final String INTEGRITY_WORKER_COUNT = "Integrity workers";
+
+    /** Label: maximal time between verifications of an object. */
+    private static final String INTEGRITY_MAX_AGE = "Integrity verification interval (days)";
+
+    /** Label: hourly verification budget. */
+    private static final String INTEGRITY_BYTES_PER_HOUR = "Integrity verification budget (bytes per hour)";
+
+    /** Label: plugin concurrency level (followed by the plugin name). */
+    private static final String PLUGIN_CONCURRENCY = "Plugin workers: ";
+
     /** Keyword: enabled. */
     private static final String ENABLED = "enabled";
 
     /** Keyword: disabled. */
     private static final String DISABLED = "disabled";
 
+    /** Keyword: unlimited. */
+    private static final String UNLIMITED = "unlimited";
+
     /** Keyword: always active. */
     private static final String ALWAYS_ACTIVE = "always active";
 
@@ -80,6 +101,8 @@ public class MdzConfigurationBrowserBean implements MdzConfigurationBrowser {
             map.put(ANALYZE_OPTIMIZED_OBJECTS, "" + configuration.getAnalyzeOptimizedObjectFileFormats());
             map.put(ASSESS_CONVERTED_OBJECTS, "" + configuration.getAnalyzeConvertedObjectFileFormats());
             map.put(FORMAT_AGE_THRESHOLD, "" + configuration.getFormatVerifierThreshold());
+            map.put(FORMAT_REGISTRY_ENDPOINT, configuration.getFormatRegistryEndpoint());
+            map.put(FORMAT_REGISTRY_REFRESH_SCHEDULE, toString(configuration.getFormatRegistryRefreshSchedule()));
             map.put(FORMAT_WORK_INITIALIZER_SCHEDULE, toString(configuration.getFormatWorkInitializerSchedule()));
             if (configuration.getFormatWorkerAlwaysActive()) {
                 map.put(FORMAT_WORKER_SCHEDULE, ALWAYS_ACTIVE);
@@ -95,10 +118,18 @@ public class MdzConfigurationBrowserBean implements MdzConfigurationBrowser {
             map.put(INTEGRITY_VERIFICATION, ENABLED);
             map.put(INTEGRITY_WORKER_SCHEDULE, toString(configuration.getIntegrityWorkerActivationSchedule()) + " - "
                     + toString(configuration.getIntegrityWorkerDeactivationSchedule()));
+            map.put(INTEGRITY_WORKER_COUNT, "" + configuration.getIntegrityWorkerCount());
+            map.put(INTEGRITY_MAX_AGE, "" + configuration.getIntegrityMaxAge());
+            long budget = configuration.getIntegrityBytesPerHour();
+            map.put(INTEGRITY_BYTES_PER_HOUR, budget > 0 ? "" + budget : UNLIMITED);
         } else {
             map.put(INTEGRITY_VERIFICATION, DISABLED);
         }
 
+        for (PluginInfo plugin : configuration.getPlugins()) {
+            map.put(PLUGIN_CONCURRENCY + plugin.getName(), "" + plugin.getConcurrency());
+        }
+
         return map;
     }
 
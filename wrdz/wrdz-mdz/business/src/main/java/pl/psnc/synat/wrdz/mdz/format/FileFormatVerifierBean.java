@@ -15,50 +15,29 @@
  */
 package pl.psnc.synat.wrdz.mdz.format;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
 
 import javax.annotation.PostConstruct;
-import javax.ejb.Stateless;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
 import javax.inject.Inject;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.HttpStatus;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
-import pl.psnc.synat.wrdz.common.jaxb.NamespaceContextImpl;
+import pl.psnc.synat.wrdz.common.format.FormatRecord;
+import pl.psnc.synat.wrdz.common.format.FormatRegistry;
+import pl.psnc.synat.wrdz.common.format.FormatRegistryStore;
 import pl.psnc.synat.wrdz.mdz.config.MdzConfiguration;
 import pl.psnc.synat.wrdz.mdz.entity.format.FileFormat;
 
 /**
- * Default implementation of the file format verifier which contacts UDFR to obtain format information.
+ * Default implementation of the file format verifier which evaluates formats against a local snapshot of UDFR.
  * <p>
  * Format requires migration if:
  * <ul>
@@ -66,104 +45,73 @@ import pl.psnc.synat.wrdz.mdz.entity.format.FileFormat;
  * <li>it has a defined successor format and was released sufficiently long ago.
  * </ul>
  * How old a format must be to trigger the second condition is defined in the module configuration.
+ * <p>
+ * The snapshot is loaded from the local snapshot file (or imported from the configured dump file) at startup and
+ * downloaded from UDFR when it is refreshed, or when it is needed and there is no local copy yet. Formats are evaluated
+ * in memory, so the snapshot is shared by all the callers and the container does not serialize the calls of this bean.
  */
-@Stateless
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class FileFormatVerifierBean implements FileFormatVerifier {
 
-    /** URI of the UDFR http endpoint. */
-    private static final String UDFR_ENDPOINT = "http://udfr.org/ontowiki/sparql/";
-
-    /** UDFR http endpoint post request parameter containing the sparql query to be executed. */
-    private static final String UDFR_POST_PARAM = "query";
-
-    /** Sparql results namespace prefix (to be used in XPath expressions). */
-    private static final String NS_PREFIX = "sp";
-
-    /** Sparql results namespace uri. */
-    private static final String NS_URI = "http://www.w3.org/2005/sparql-results#";
-
-    /** XPath expression that locates the withdrawal date text nodes. */
-    private static final String XPATH_WITHDRAWAL_DATE = "//sp:binding[@name='withdrawalDate']/sp:literal/text()";
-
-    /** XPath expression that locates the release date text nodes. */
-    private static final String XPATH_RELEASE_DATE = "//sp:binding[@name='releaseDate']/sp:literal/text()";
-
-    /** XPath expression that locates the result elements. */
-    private static final String XPATH_RESULT = "//sp:result";
-
-    /** Date format used for parsing dates returned by UDFR. */
-    private static final String DATE_FORMAT = "yyyy-MM-dd";
-
-    /** Query encoding. */
-    private static final String ENCODING = "UTF-8";
-
-    /** Path to the file containing the sparql query that retrieves format release/withdrawal dates. */
-    private static final String DATES_QUERY_FILE = "/format-dates.sparql";
-
-    /** Path to the file containing the sparql query that retrieves format successors. */
-    private static final String SUCCESSORS_QUERY_FILE = "/format-successors.sparql";
-
     /** Number of milliseconds in a day. */
     private static final int MILLIS_IN_DAY = 86400000;
 
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(FileFormatVerifierBean.class);
 
-    /** The sparql query that retrieves format release/withdrawal dates. */
-    private String datesQuery;
-
-    /** The sparql query that retrieves format successors. */
-    private String successorsQuery;
-
     /** How many milliseconds must pass since format's release before it is considered old. */
     private long threshold;
 
+    /** Local snapshot of the format registry. */
+    private FormatRegistryStore store;
+
     /** Module configuration. */
     @Inject
     private MdzConfiguration configuration;
 
 
     /**
-     * Reads the sparql queries from resource files.
+     * Loads the local snapshot of the format registry.
      */
     @PostConstruct
     protected void init() {
-        InputStream datesInput = null;
-        InputStream successorsInput = null;
+        threshold = (long) configuration.getFormatVerifierThreshold() * MILLIS_IN_DAY;
+        store = new FormatRegistryStore(configuration.getFormatRegistryEndpoint(),
+                toFile(configuration.getFormatRegistrySnapshot()), toFile(configuration.getFormatRegistryDump()));
         try {
-            datesInput = getClass().getResourceAsStream(DATES_QUERY_FILE);
-            datesQuery = IOUtils.toString(datesInput, ENCODING);
-            successorsInput = getClass().getResourceAsStream(SUCCESSORS_QUERY_FILE);
-            successorsQuery = IOUtils.toString(successorsInput, ENCODING);
+            if (!store.load()) {
+                logger.info("There is no local snapshot of the format registry yet");
+            }
         } catch (IOException e) {
-            throw new WrdzRuntimeException("Could not read sparql query files", e);
-        } finally {
-            IOUtils.closeQuietly(datesInput);
-            IOUtils.closeQuietly(successorsInput);
+            logger.error("Could not load the local snapshot of the format registry", e);
         }
-        threshold = (long) configuration.getFormatVerifierThreshold() * MILLIS_IN_DAY;
     }
 
 
     @Override
     public boolean isMigrationRequired(FileFormat format) {
 
-        HttpClient client = new DefaultHttpClient();
+        FormatRegistry registry = getRegistry();
 
-        Document dates = executeUdfrQuery(getDatesQuery(format.getPuid()), client);
+        FormatRecord record = registry.findByPuid(format.getPuid());
+        if (record == null) {
+            return false;
+        }
 
-        Date withdrawalDate = extractDate(dates, XPATH_WITHDRAWAL_DATE);
-        if (withdrawalDate != null) {
+        if (record.getWithdrawalDate() != null) {
             // format has an expiration date
             return true;
         }
 
-        Date releaseDate = extractDate(dates, XPATH_RELEASE_DATE);
+        Date releaseDate = record.getReleaseDate();
         if (releaseDate != null && System.currentTimeMillis() - releaseDate.getTime() > threshold) {
-            Document successors = executeUdfrQuery(getSuccessorsQuery(format.getPuid()), client);
-            if (countNodes(successors, XPATH_RESULT) > 0) {
-                // format is old and has at least one successor
-                return true;
+            for (FormatRecord successor : registry.getSuccessors(record)) {
+                if (successor.getPuid() != null) {
+                    // format is old and has at least one successor
+                    return true;
+                }
             }
         }
 
@@ -171,144 +119,48 @@ public class FileFormatVerifierBean implements FileFormatVerifier {
     }
 
 
-    /**
-     * Constructs a sparql query that will retrieve release and withdrawal dates of the format with the given puid.
-     * 
-     * @param puid
-     *            format PRONOM database identifier
-     * @return sparql query
-     */
-    private String getDatesQuery(String puid) {
-        return String.format(datesQuery, puid);
-    }
-
-
-    /**
-     * Constructs a sparql query that will retrieve successors of the format with the given puid.
-     * 
-     * @param puid
-     *            format PRONOM database identifier
-     * @return sparql query
-     */
-    private String getSuccessorsQuery(String puid) {
-        return String.format(successorsQuery, puid);
-    }
-
-
-    /**
-     * Executes the given sparql query via an http post request to UDFR and returns the parsed xml response.
-     * 
-     * @param query
-     *            sparql query to be executed
-     * @param client
-     *            configured http client
-     * @return parsed UDFR response
-     */
-    private Document executeUdfrQuery(String query, HttpClient client) {
-        HttpPost request = new HttpPost(UDFR_ENDPOINT);
-
-        List<NameValuePair> pairs = new ArrayList<NameValuePair>();
-        pairs.add(new BasicNameValuePair(UDFR_POST_PARAM, query));
-        try {
-            request.setEntity(new UrlEncodedFormEntity(pairs, ENCODING));
-        } catch (UnsupportedEncodingException e) {
-            // this should not happen - incorrect encoding specified in the constant?
-            throw new RuntimeException("Encoding " + ENCODING + " is not supported", e);
-        }
-
+    @Override
+    public void refreshRegistry() {
         try {
-            HttpResponse response = client.execute(request);
-
-            Document result;
-
-            switch (response.getStatusLine().getStatusCode()) {
-                case HttpStatus.SC_OK:
-                    DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-                    domFactory.setNamespaceAware(true);
-                    DocumentBuilder builder = domFactory.newDocumentBuilder();
-                    result = builder.parse(response.getEntity().getContent());
-                    break;
-                default:
-                    throw new WrdzRuntimeException("Unexpected response from UDFR: " + response.getStatusLine());
-            }
-
-            EntityUtils.consume(response.getEntity());
-
-            return result;
-
+            store.refresh();
         } catch (IOException e) {
-            throw new WrdzRuntimeException("Could not connect to UDFR", e);
-        } catch (SAXException e) {
-            throw new WrdzRuntimeException("Error while parsing UDFR response", e);
-        } catch (ParserConfigurationException e) {
-            throw new WrdzRuntimeException(e.getMessage(), e);
+            logger.error("Could not refresh the format registry, the current snapshot is kept", e);
         }
     }
 
 
     /**
-     * Returns the nodes from the given xml document that match the given xpath expression.
+     * Returns the current snapshot of the format registry, downloading it first if there is none yet.
      * 
-     * @param document
-     *            xml document to search
-     * @param path
-     *            xpath expression
-     * @return matching nodes
+     * @return format registry
      */
-    private NodeList xpath(Document document, String path) {
-        XPathFactory factory = XPathFactory.newInstance();
-        XPath xpath = factory.newXPath();
-        xpath.setNamespaceContext(new NamespaceContextImpl(NS_PREFIX, NS_URI));
-
-        try {
-            return (NodeList) xpath.evaluate(path, document, XPathConstants.NODESET);
-        } catch (XPathExpressionException e) {
-            throw new RuntimeException("Incorrect XPath expression", e);
-        }
-    }
-
-
-    /**
-     * Extracts a date from nodes matching the xpath expression in the given document.
-     * 
-     * If multiple dates match, the earliest date is returned.
-     * 
-     * @param document
-     *            xml document to search
-     * @param xpath
-     *            xpath expression
-     * @return earliest matching date, or <code>null</code> if no dates were found
-     */
-    private Date extractDate(Document document, String xpath) {
-        NodeList nodes = xpath(document, xpath);
-
-        DateFormat format = new SimpleDateFormat(DATE_FORMAT);
-        Date result = null;
-        for (int i = 0; i < nodes.getLength(); i++) {
-            try {
-                Date newDate = format.parse(nodes.item(i).getNodeValue());
-                if (result == null || result.after(newDate)) {
-                    result = newDate;
+    private FormatRegistry getRegistry() {
+        FormatRegistry registry = store.getRegistry();
+        if (registry == null) {
+            synchronized (store) {
+                registry = store.getRegistry();
+                if (registry == null) {
+                    try {
+                        store.refresh();
+                    } catch (IOException e) {
+                        throw new WrdzRuntimeException("Could not download the format registry from UDFR", e);
+                    }
+                    registry = store.getRegistry();
                 }
-            } catch (ParseException e) {
-                logger.warn("Unparsable date retrieved from UDFR response: {}", nodes.item(i).getNodeValue());
             }
         }
-
-        return result;
+        return registry;
     }
 
 
     /**
-     * Counts the number of nodes that match the given xpath expression in the given document.
+     * Converts the configured path to a file.
      * 
-     * @param document
-     *            xml document to search
-     * @param xpath
-     *            xpath expression
-     * @return number of matching nodes
+     * @param path
+     *            path, possibly <code>null</code>
+     * @return file, or <code>null</code> if there is no path
      */
-    private int countNodes(Document document, String xpath) {
-        return xpath(document, xpath).getLength();
+    private File toFile(String path) {
+        return path != null ? new File(path) : null;
     }
 }
@@ -19,11 +19,17 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 import javax.ejb.AsyncResult;
 import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
 import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
@@ -54,18 +60,38 @@ import pl.psnc.synat.wrdz.zmd.object.IdentifierBrowser;
  * Default data integrity processor implementation.
  * 
  * <p>
- * The {@link #processAll()} method works by continuously calling the {@link #processOne()} method via a proxy until all
- * formats have been processed or the processing is cancelled using the {@link Future#cancel(boolean)} method.
+ * The {@link #processAll(int)} method works by continuously calling the {@link #processOne(int)} method via a proxy
+ * until all objects of the partition have been processed or the processing is cancelled using the
+ * {@link Future#cancel(boolean)} method.
  * 
- * Each {@link #processOne()} execution happens in a separate transaction to ensure that errors will not cause all
- * previous processing results to be rolled back.
+ * Each {@link #processOne(int)} execution happens in a separate transaction to ensure that errors will not cause all
+ * previous processing results to be rolled back. Each execution looks for one new object of the partition in ZMD and
+ * verifies the object of the partition chosen by the {@link IntegrityScheduler}. The last object added to a partition
+ * is the point from which ZMD is browsed, so processing resumes from it after a restart. Objects are kept after their
+ * verification - a partition is finished when all the identifiers of the partition have been browsed and none of its
+ * objects is due for verification. Objects which have not been found again after the number of partitions changed are
+ * removed only when the cycle is finished, i.e. when every partition has browsed all its identifiers.
+ * 
+ * Partitions are processed concurrently, so the container does not serialize the calls of this bean. Each partition
+ * has its own wait status and the cycle is finished by the partition which finishes last. All the partitions share the
+ * hourly budget of verified bytes - when it is used up, processing stops until it is restarted in the next hour.
+ * 
+ * Depending on the configuration, an object is verified either by hashing its files in the data storages of ZMD, copy
+ * by copy, or by downloading the whole object from ZMD and hashing the files of the archive.
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class IntegrityProcessorBean implements IntegrityProcessor {
 
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(IntegrityProcessorBean.class);
 
+    /** Number of milliseconds in an hour. */
+    private static final long HOUR = 60L * 60 * 1000;
+
+    /** Number of milliseconds in a day. */
+    private static final long DAY = 24 * HOUR;
+
     /** Injected session context. */
     @Resource
     private SessionContext ctx;
@@ -82,6 +108,10 @@ public class IntegrityProcessorBean implements IntegrityProcessor {
     @EJB
     private IntegrityVerifier integrityVerifier;
 
+    /** Integrity scheduler choosing the objects to be verified. */
+    @EJB
+    private IntegrityScheduler integrityScheduler;
+
     /** Communications manager. */
     @EJB
     private MdzMessenger messenger;
@@ -94,17 +124,48 @@ public class IntegrityProcessorBean implements IntegrityProcessor {
     @Inject
     private MdzConfiguration configuration;
 
-    /** Identifier of the object the processor is currently waiting for. */
-    private String waitingForIdentifier;
+    /** Identifiers of the objects the partitions are currently waiting for, by partition. */
+    private final ConcurrentMap<Integer, String> waitingForIdentifiers = new ConcurrentHashMap<Integer, String>();
+
+    /** Locks guarding the wait status of each partition, by partition. */
+    private final ConcurrentMap<Integer, Object> waitLocks = new ConcurrentHashMap<Integer, Object>();
+
+    /** Partitions finished in the current cycle. */
+    private final Set<Integer> finishedPartitions = new HashSet<Integer>();
+
+    /** Lock guarding the budget of verified bytes. */
+    private final Object budgetLock = new Object();
+
+    /** Hour (since the epoch) of the current budget of verified bytes. */
+    private long budgetHour;
+
+    /** Number of bytes verified in the current hour. */
+    private long budgetSpent;
+
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void checkPartitioning(int partitionCount) {
+        long count = objectDao.countOtherPartitioning(partitionCount);
+        if (count > 0) {
+            logger.warn("The number of integrity workers was changed to " + partitionCount + ", " + count
+                    + " objects will be assigned to the new partitions again");
+            objectDao.unassignPartitions(partitionCount);
+        }
+        synchronized (finishedPartitions) {
+            finishedPartitions.clear();
+        }
+    }
 
 
     @Override
     @Asynchronous
     @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
-    public Future<Void> processAll() {
+    public Future<Void> processAll(int partition) {
 
-        if (waitingForIdentifier != null) {
-            logger.warn("Processing started, but processor is waiting for an object. This can cause synchronization problems.");
+        if (waitingForIdentifiers.containsKey(partition)) {
+            logger.warn("Processing of partition " + partition
+                    + " started, but it is waiting for an object. This can cause synchronization problems.");
         }
 
         IntegrityProcessor proxy = ctx.getBusinessObject(IntegrityProcessor.class);
@@ -112,17 +173,20 @@ public class IntegrityProcessorBean implements IntegrityProcessor {
         boolean finished = false;
 
         while (!ctx.wasCancelCalled() && !finished) {
-            IntegrityProcessingResult result = proxy.processOne();
+            IntegrityProcessingResult result = proxy.processOne(partition);
             switch (result) {
                 case PROCESSED:
                     finished = false;
                     break;
                 case PAUSED:
+                case THROTTLED:
                     finished = true;
                     break;
                 case FINISHED:
                     finished = true;
-                    proxy.finishCycle();
+                    if (markFinished(partition)) {
+                        proxy.finishCycle();
+                    }
                     break;
                 default:
                     throw new WrdzRuntimeException("Unexpected result: " + result);
@@ -135,11 +199,29 @@ public class IntegrityProcessorBean implements IntegrityProcessor {
 
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-    public IntegrityProcessingResult processOne() {
+    public IntegrityProcessingResult processOne(int partition) {
+
+        boolean browsed = !discoverNextObject(partition);
+
+        if (!hasBudget()) {
+            return IntegrityProcessingResult.THROTTLED;
+        }
 
-        DigitalObject object = getNextObject();
+        DigitalObject object = integrityScheduler.findNextDue(partition);
         if (object == null) {
-            return IntegrityProcessingResult.FINISHED;
+            // a rediscovered object may not be due yet, but the rest of the partition still has to be browsed
+            return browsed ? IntegrityProcessingResult.FINISHED : IntegrityProcessingResult.PROCESSED;
+        }
+
+        if (configuration.getIntegrityStorageSide()) {
+            // the files are hashed by the data storages, so ZMD does not have to prepare the object
+            IntegrityVerificationResult result = integrityVerifier.verifyInStorage(object.getIdentifier());
+            if (result != null) {
+                markVerified(object, result);
+            } else {
+                objectDao.delete(object);
+            }
+            return IntegrityProcessingResult.PROCESSED;
         }
 
         HttpClient client = httpsClientHelper.getHttpsClient(WrdzModule.MDZ);
@@ -149,33 +231,30 @@ public class IntegrityProcessorBean implements IntegrityProcessor {
 
         try {
 
-            synchronized (this) {
+            synchronized (getWaitLock(partition)) {
                 response = client.execute(get);
 
                 if (response.getStatusLine().getStatusCode() == HttpStatus.SC_ACCEPTED) {
-                    waitingForIdentifier = object.getIdentifier();
+                    waitingForIdentifiers.put(partition, object.getIdentifier());
                     return IntegrityProcessingResult.PAUSED;
                 }
             }
 
             if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
 
-                boolean corrupted = false;
+                IntegrityVerificationResult result;
 
                 File file = storeTemporarily(response.getEntity());
                 try {
-                    corrupted = integrityVerifier.isCorrupted(object.getIdentifier(), file);
+                    boolean corrupted = integrityVerifier.isCorrupted(object.getIdentifier(), file);
+                    result = new IntegrityVerificationResult(corrupted, file.length(), null, null, null);
                 } finally {
                     if (!file.delete()) {
                         logger.warn("Could not delete temporary file: " + file.getAbsolutePath());
                     }
                 }
 
-                if (corrupted) {
-                    messenger.notifyObjectCorrupted(object.getIdentifier());
-                }
-                object.setVerifiedOn(new Date());
-                object.setCorrect(!corrupted);
+                markVerified(object, result);
 
                 return IntegrityProcessingResult.PROCESSED;
             } else {
@@ -193,21 +272,17 @@ public class IntegrityProcessorBean implements IntegrityProcessor {
 
 
     @Override
-    public boolean isWaitingFor(String identifier) {
-        synchronized (this) {
-            if (waitingForIdentifier != null && waitingForIdentifier.equals(identifier)) {
-                waitingForIdentifier = null;
-                return true;
-            }
-            return false;
+    public boolean isWaitingFor(int partition, String identifier) {
+        synchronized (getWaitLock(partition)) {
+            return waitingForIdentifiers.remove(partition, identifier);
         }
     }
 
 
     @Override
-    public void clearWait() {
-        synchronized (this) {
-            waitingForIdentifier = null;
+    public void clearWait(int partition) {
+        synchronized (getWaitLock(partition)) {
+            waitingForIdentifiers.remove(partition);
         }
     }
 
@@ -215,48 +290,161 @@ public class IntegrityProcessorBean implements IntegrityProcessor {
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     public void finishCycle() {
+        // every partition has browsed all its identifiers, so the objects not found again are no longer active in ZMD
+        int removed = objectDao.deleteUnassigned();
+
+        int maxAge = configuration.getIntegrityMaxAge();
         long total = objectDao.countAll();
+        long verified = objectDao.countVerifiedSince(new Date(System.currentTimeMillis() - maxAge * DAY));
         long corrupted = objectDao.countCorrupted();
-        Date start = objectDao.getFirstAdded();
-        Date end = objectDao.getLastVerified();
 
-        String log = String.format(
-            "Finished integrity verification [%s - %s]: verified %d objects, out of which %d were corrupted", start,
-            end, total, corrupted);
+        String log = String.format("Finished integrity verification: %d out of %d objects verified within the last %d"
+                + " days, %d found corrupted at their last verification, %d no longer active", verified, total, maxAge,
+            corrupted, removed);
 
         logger.info(log);
+    }
 
-        objectDao.deleteAll();
+
+    /**
+     * Marks the partition as finished in the current cycle.
+     * 
+     * @param partition
+     *            partition number
+     * @return whether all the partitions are finished, so the cycle can be finished
+     */
+    private boolean markFinished(int partition) {
+        synchronized (finishedPartitions) {
+            finishedPartitions.add(partition);
+            if (finishedPartitions.size() >= configuration.getIntegrityWorkerCount()) {
+                finishedPartitions.clear();
+                return true;
+            }
+            return false;
+        }
     }
 
 
     /**
-     * Returns the next DigitalObject to be processed.
-     * <p>
-     * If that last object stored in the local has already been processed, this method retrieves the next object's
-     * identifier from ZMD and persists an entity representing that identifier before returning it.
-     * <p>
-     * If the last processed object is also the newest object in ZMD, this method returns <code>null</code>.
+     * Returns the lock guarding the wait status of the partition.
      * 
-     * @return next DigitalObject to be processed, or <code>null</code> if there are no more 'next' objects
+     * @param partition
+     *            partition number
+     * @return lock
      */
-    private DigitalObject getNextObject() {
-        DigitalObject object = objectDao.getLast();
-
-        if (object == null || object.getVerifiedOn() != null) {
-            String identifier = object != null ? object.getIdentifier() : null;
-            String nextIdentifier = identifierBrowser.findNextActiveIdentifier(identifier);
-            if (nextIdentifier != null) {
-                object = new DigitalObject();
-                object.setIdentifier(nextIdentifier);
-                object.setAddedOn(new Date());
-                objectDao.persist(object);
-            } else {
-                object = null;
+    private Object getWaitLock(int partition) {
+        Object lock = waitLocks.get(partition);
+        if (lock == null) {
+            lock = new Object();
+            Object previous = waitLocks.putIfAbsent(partition, lock);
+            if (previous != null) {
+                lock = previous;
             }
         }
+        return lock;
+    }
+
+
+    /**
+     * Checks whether the hourly budget of verified bytes has not been used up yet.
+     * 
+     * @return <code>true</code> if another object can be verified in the current hour; <code>false</code> otherwise
+     */
+    private boolean hasBudget() {
+        long budget = configuration.getIntegrityBytesPerHour();
+        if (budget <= 0) {
+            return true;
+        }
+        synchronized (budgetLock) {
+            startBudgetHour();
+            return budgetSpent < budget;
+        }
+    }
+
 
-        return object;
+    /**
+     * Charges the verified bytes to the budget of the current hour.
+     * 
+     * @param bytes
+     *            number of verified bytes
+     */
+    private void spendBudget(long bytes) {
+        synchronized (budgetLock) {
+            startBudgetHour();
+            budgetSpent += bytes;
+        }
+    }
+
+
+    /**
+     * Resets the budget of verified bytes if a new hour has started. Must be called with the budget lock held.
+     */
+    private void startBudgetHour() {
+        long hour = System.currentTimeMillis() / HOUR;
+        if (hour != budgetHour) {
+            budgetHour = hour;
+            budgetSpent = 0;
+        }
+    }
+
+
+    /**
+     * Looks for the next active object of the partition in ZMD.
+     * <p>
+     * The object added to the partition last is the point from which the identifiers of the partition are browsed. If
+     * the next identifier is found, the object is added to the partition, or moved to it if it was already known
+     * before the partitioning had changed.
+     * 
+     * @param partition
+     *            partition number
+     * @return <code>true</code> if an identifier was found; <code>false</code> if all the identifiers of the partition
+     *         have been browsed
+     */
+    private boolean discoverNextObject(int partition) {
+        int partitionCount = configuration.getIntegrityWorkerCount();
+        DigitalObject last = objectDao.getLast(partition);
+        String identifier = last != null ? last.getIdentifier() : null;
+        String nextIdentifier = identifierBrowser.findNextActiveIdentifier(identifier, partition, partitionCount);
+        if (nextIdentifier == null) {
+            return false;
+        }
+        DigitalObject object = objectDao.findById(nextIdentifier);
+        boolean known = object != null;
+        if (!known) {
+            object = new DigitalObject();
+            object.setIdentifier(nextIdentifier);
+        }
+        object.setPartition(partition);
+        object.setPartitionCount(partitionCount);
+        // the browsing point must move forward even if the identifiers are found within the same millisecond
+        Date addedOn = new Date();
+        if (last != null && !addedOn.after(last.getAddedOn())) {
+            addedOn = new Date(last.getAddedOn().getTime() + 1);
+        }
+        object.setAddedOn(addedOn);
+        if (!known) {
+            objectDao.persist(object);
+        }
+        return true;
+    }
+
+
+    /**
+     * Records the result of the object's verification and notifies about a corrupted object.
+     * 
+     * @param object
+     *            verified object
+     * @param result
+     *            result of the verification
+     */
+    private void markVerified(DigitalObject object, IntegrityVerificationResult result) {
+        if (result.isCorrupted()) {
+            messenger.notifyObjectCorrupted(object.getIdentifier());
+        }
+        integrityScheduler.recordVerification(object, result);
+        if (result.getSize() != null) {
+            spendBudget(result.getSize());
+        }
     }
 
 
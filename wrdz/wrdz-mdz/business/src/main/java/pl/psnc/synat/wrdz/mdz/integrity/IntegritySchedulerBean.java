@@ -0,0 +1,160 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.integrity;
+
+import java.util.Date;
+import java.util.Map;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.inject.Inject;
+
+import pl.psnc.synat.wrdz.mdz.config.MdzConfiguration;
+import pl.psnc.synat.wrdz.mdz.dao.integrity.DigitalObjectDao;
+import pl.psnc.synat.wrdz.mdz.dao.integrity.ReplicaStatisticsDao;
+import pl.psnc.synat.wrdz.mdz.entity.integrity.DigitalObject;
+import pl.psnc.synat.wrdz.mdz.entity.integrity.ReplicaStatistics;
+
+/**
+ * Default implementation of {@link IntegrityScheduler}.
+ * <p>
+ * The risk of an object, between 0 and 1, shortens the time after which the object becomes due from the configured
+ * maximal age down to a quarter of it. The date when an object becomes due is calculated and stored when the object is
+ * verified, so that the due objects can be found with an indexed query. Among the due objects, the one which became due
+ * earliest is verified first. Objects which have never been verified are always due first.
+ */
+@Stateless
+public class IntegritySchedulerBean implements IntegrityScheduler {
+
+    /** Number of milliseconds in a day. */
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    /** Fraction of the maximal age after which the objects at the highest risk become due. */
+    private static final double MIN_AGE_FRACTION = 0.25;
+
+    /** Risk of an object which was found corrupted at its last verification. */
+    private static final double FAILURE_RISK = 0.5;
+
+    /** Risk of an object per unit of the error rate of the data storages holding it. */
+    private static final double ERROR_RATE_RISK = 50.0;
+
+    /** Maximal risk coming from the error rate of the data storages. */
+    private static final double MAX_ERROR_RATE_RISK = 0.5;
+
+    /** Risk of an object whose current version was created within the maximal age. */
+    private static final double MODIFICATION_RISK = 0.25;
+
+    /** Risk of an object of {@link #LARGE_SIZE} bytes or more, smaller objects have a proportional part of it. */
+    private static final double SIZE_RISK = 0.25;
+
+    /** Size from which an object has the whole {@link #SIZE_RISK} (10 GB). */
+    private static final double LARGE_SIZE = 10.0 * 1024 * 1024 * 1024;
+
+    /**
+     * Number of correct copies assumed for every data storage, so that a few corrupted copies found in a data storage
+     * which has hardly been verified do not make its error rate extreme.
+     */
+    private static final long PRIOR_CHECKED_COPIES = 1000;
+
+    /** Digital object DAO. */
+    @EJB
+    private DigitalObjectDao objectDao;
+
+    /** Replica statistics DAO. */
+    @EJB
+    private ReplicaStatisticsDao statisticsDao;
+
+    /** Module configuration. */
+    @Inject
+    private MdzConfiguration configuration;
+
+
+    @Override
+    public DigitalObject findNextDue(int partition) {
+        return objectDao.getNextDue(partition, new Date());
+    }
+
+
+    @Override
+    public void recordVerification(DigitalObject object, IntegrityVerificationResult result) {
+        Date now = new Date();
+
+        Double replicaErrorRate = null;
+        for (Map.Entry<String, Integer> checked : result.getCheckedCopies().entrySet()) {
+            Integer corrupted = result.getCorruptedCopies().get(checked.getKey());
+            long corruptedCopies = corrupted != null ? corrupted : 0;
+            // workers of all partitions update the same statistics, so the counts are added by the database
+            if (!statisticsDao.addCopies(checked.getKey(), checked.getValue(), corruptedCopies, now)) {
+                statisticsDao.createIfAbsent(checked.getKey());
+                statisticsDao.addCopies(checked.getKey(), checked.getValue(), corruptedCopies, now);
+            }
+            ReplicaStatistics statistics = statisticsDao.findById(checked.getKey());
+
+            double errorRate = (double) statistics.getCorruptedCopies()
+                    / (statistics.getCheckedCopies() + PRIOR_CHECKED_COPIES);
+            if (replicaErrorRate == null || errorRate > replicaErrorRate) {
+                replicaErrorRate = errorRate;
+            }
+        }
+
+        object.setVerifiedOn(now);
+        object.setCorrect(!result.isCorrupted());
+        object.setFailures(result.isCorrupted() ? object.getFailures() + 1 : 0);
+        if (result.getSize() != null) {
+            object.setSize(result.getSize());
+        }
+        if (result.getModifiedOn() != null) {
+            object.setModifiedOn(result.getModifiedOn());
+        }
+        if (replicaErrorRate != null) {
+            object.setReplicaErrorRate(replicaErrorRate);
+        }
+
+        long maxAge = configuration.getIntegrityMaxAge() * DAY;
+        double risk = calculateRisk(object, now.getTime(), maxAge);
+        long dueAge = (long) (maxAge * (1.0 - (1.0 - MIN_AGE_FRACTION) * risk));
+        object.setDueOn(new Date(now.getTime() + dueAge));
+    }
+
+
+    /**
+     * Calculates the risk of the object's corruption.
+     * 
+     * @param object
+     *            verified object
+     * @param now
+     *            current time
+     * @param maxAge
+     *            maximal time between verifications
+     * @return risk between 0 and 1
+     */
+    private double calculateRisk(DigitalObject object, long now, long maxAge) {
+        double risk = 0;
+        if (object.getFailures() > 0) {
+            risk += FAILURE_RISK;
+        }
+        if (object.getReplicaErrorRate() != null) {
+            risk += Math.min(MAX_ERROR_RATE_RISK, object.getReplicaErrorRate() * ERROR_RATE_RISK);
+        }
+        if (object.getModifiedOn() != null && now - object.getModifiedOn().getTime() < maxAge) {
+            risk += MODIFICATION_RISK;
+        }
+        if (object.getSize() != null) {
+            risk += SIZE_RISK * Math.min(1.0, object.getSize() / LARGE_SIZE);
+        }
+        return Math.min(1.0, risk);
+    }
+}
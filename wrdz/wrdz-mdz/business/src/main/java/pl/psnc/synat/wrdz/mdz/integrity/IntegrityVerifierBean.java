@@ -33,10 +33,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
+import pl.psnc.synat.wrdz.zmd.dto.object.CorruptedReplicaDto;
 import pl.psnc.synat.wrdz.zmd.dto.object.FileHashDto;
+import pl.psnc.synat.wrdz.zmd.dto.object.ReplicaIntegrityReportDto;
 import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 import pl.psnc.synat.wrdz.zmd.object.FileHashBrowser;
 import pl.psnc.synat.wrdz.zmd.object.ObjectNotFoundException;
+import pl.psnc.synat.wrdz.zmd.object.ReplicaIntegrityChecker;
 
 /**
  * Default implementation of {@link IntegrityVerifier}.
@@ -51,6 +54,10 @@ public class IntegrityVerifierBean implements IntegrityVerifier {
     @EJB(name = "FileHashBrowser")
     private FileHashBrowser hashBrowser;
 
+    /** Checker used to verify the copies of files in the data storage of ZMD. */
+    @EJB(name = "ReplicaIntegrityChecker")
+    private ReplicaIntegrityChecker replicaChecker;
+
 
     @Override
     public boolean isCorrupted(String identifier, File file) {
@@ -102,6 +109,25 @@ public class IntegrityVerifierBean implements IntegrityVerifier {
     }
 
 
+    @Override
+    public IntegrityVerificationResult verifyInStorage(String identifier) {
+        ReplicaIntegrityReportDto report;
+        try {
+            report = replicaChecker.checkReplicas(identifier);
+        } catch (ObjectNotFoundException e) {
+            logger.info("Object " + identifier + " is no longer active in ZMD");
+            return null;
+        }
+        for (CorruptedReplicaDto replica : report.getCorruptedReplicas()) {
+            logger.warn(String.format("Object %s: copy of %s in %s has %s hash %s, expected %s", identifier,
+                replica.getObjectFilepath(), replica.getReplica(), replica.getHashType(),
+                replica.getCalculatedHashValue(), replica.getExpectedHashValue()));
+        }
+        return new IntegrityVerificationResult(report.isCorrupted(), report.getSize(), report.getModifiedOn(),
+                report.getCheckedCopies(), report.getCorruptedCopies());
+    }
+
+
     /**
      * Calculates the hash value for data from the given stream using the given hash type.
      * 
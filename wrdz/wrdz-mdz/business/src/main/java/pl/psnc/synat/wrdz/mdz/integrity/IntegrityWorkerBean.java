@@ -15,6 +15,8 @@
  */
 package pl.psnc.synat.wrdz.mdz.integrity;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Future;
 
 import javax.ejb.Singleton;
@@ -23,11 +25,15 @@ import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.mdz.config.MdzConfiguration;
+
 /**
  * Default integrity worker implementation.
  * 
  * Manages the processing performed by the {@link IntegrityProcessor} by providing means to start, stop and restart it
- * when required and ensures that only one processor is running at any given time.
+ * when required. Objects are divided into as many partitions as there are configured workers and each partition is
+ * processed by its own asynchronous call of the processor - it ensures that only one processor is running for any
+ * given partition at any given time.
  */
 @Singleton
 public class IntegrityWorkerBean implements IntegrityWorker {
@@ -39,8 +45,12 @@ public class IntegrityWorkerBean implements IntegrityWorker {
     @Inject
     private IntegrityProcessor processor;
 
-    /** Future object returned by the last called processor method. */
-    private Future<Void> processingResult;
+    /** Module configuration. */
+    @Inject
+    private MdzConfiguration configuration;
+
+    /** Future objects returned by the last called processor method, by partition. */
+    private Map<Integer, Future<Void>> processingResults = new HashMap<Integer, Future<Void>>();
 
     /** Whether the worker is currently active. */
     private boolean active;
@@ -64,16 +74,26 @@ public class IntegrityWorkerBean implements IntegrityWorker {
 
     @Override
     public synchronized void start() {
-        if (active && (processingResult == null || processingResult.isDone())) {
-            processor.clearWait();
-            processingResult = processor.processAll();
+        if (!active) {
+            return;
+        }
+        int partitionCount = configuration.getIntegrityWorkerCount();
+        if (isIdle()) {
+            processor.checkPartitioning(partitionCount);
+        }
+        for (int partition = 0; partition < partitionCount; partition++) {
+            Future<Void> processingResult = processingResults.get(partition);
+            if (processingResult == null || processingResult.isDone()) {
+                processor.clearWait(partition);
+                processingResults.put(partition, processor.processAll(partition));
+            }
         }
     }
 
 
     @Override
     public synchronized void stop() {
-        if (processingResult != null) {
+        for (Future<Void> processingResult : processingResults.values()) {
             processingResult.cancel(true);
         }
     }
@@ -81,8 +101,28 @@ public class IntegrityWorkerBean implements IntegrityWorker {
 
     @Override
     public synchronized void notifyObjectAvailable(String objectIdentifier) {
-        if (active && processor.isWaitingFor(objectIdentifier)) {
-            processingResult = processor.processAll();
+        if (!active) {
+            return;
+        }
+        for (int partition = 0; partition < configuration.getIntegrityWorkerCount(); partition++) {
+            if (processor.isWaitingFor(partition, objectIdentifier)) {
+                processingResults.put(partition, processor.processAll(partition));
+            }
+        }
+    }
+
+
+    /**
+     * Checks whether no partition is being processed.
+     * 
+     * @return <code>true</code> if all the processing has stopped; <code>false</code> otherwise
+     */
+    private boolean isIdle() {
+        for (Future<Void> processingResult : processingResults.values()) {
+            if (!processingResult.isDone()) {
+                return false;
+            }
         }
+        return true;
     }
 }
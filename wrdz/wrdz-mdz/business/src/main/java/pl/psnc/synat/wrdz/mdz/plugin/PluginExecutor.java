@@ -15,24 +15,30 @@
  */
 package pl.psnc.synat.wrdz.mdz.plugin;
 
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 
 import javax.annotation.Resource;
 import javax.ejb.AsyncResult;
 import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
 import javax.ejb.LocalBean;
 import javax.ejb.SessionContext;
 import javax.ejb.Singleton;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.mdz.config.MdzConfiguration;
 import pl.psnc.synat.wrdz.mdz.dao.plugin.PluginIterationDao;
 import pl.psnc.synat.wrdz.mdz.entity.plugin.PluginIteration;
 import pl.psnc.synat.wrdz.mdz.message.MdzMessenger;
@@ -40,19 +46,30 @@ import pl.psnc.synat.wrdz.zmd.object.IdentifierBrowser;
 
 /**
  * Handles plugin execution.
+ * <p>
+ * Each plugin is executed by the configured number of workers, which verify different objects at the same time.
+ * Finished iterations are recorded in batches, each in a separate transaction. The batches of a plugin are recorded one
+ * at a time, in the order in which the objects were taken.
+ * <p>
+ * Every worker is an asynchronous call of {@link #execute(String)}, which occupies a thread of the asynchronous EJB
+ * thread pool of the container for the whole run. The pool is shared with the integrity and format workers of this
+ * module (and the asynchronous beans of the other modules), so the sum of the concurrency levels of the plugins
+ * running at the same time, together with the number of integrity workers, must stay below the size of the pool -
+ * otherwise the workers wait for each other to finish. The pool is sized in the EJB container settings of the
+ * application server.
+ * <p>
+ * Plugins are executed concurrently, so the container does not serialize the calls of this bean.
  */
 @LocalBean
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class PluginExecutor {
 
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(PluginExecutor.class);
 
-    /** Plugin statuses. */
-    private Map<String, Future<Void>> statuses = new HashMap<String, Future<Void>>();
-
-    /** Plugin implementations. */
-    private Map<String, VerificationPlugin> processors = new HashMap<String, VerificationPlugin>();
+    /** Runs of the registered plugins. */
+    private final ConcurrentMap<String, PluginRun> runs = new ConcurrentHashMap<String, PluginRun>();
 
     /** Injected session context. */
     @Resource
@@ -70,6 +87,10 @@ public class PluginExecutor {
     @EJB
     private MdzMessenger messenger;
 
+    /** Module configuration. */
+    @Inject
+    private MdzConfiguration configuration;
+
 
     /**
      * Registers a plugin for future use.
@@ -78,9 +99,12 @@ public class PluginExecutor {
      *            plugin name
      * @param plugin
      *            plugin implementation
+     * @param concurrency
+     *            number of objects the plugin verifies at the same time, each by a separate worker taking a thread of
+     *            the asynchronous EJB thread pool
      */
-    public void registerPlugin(String pluginName, VerificationPlugin plugin) {
-        processors.put(pluginName, plugin);
+    public void registerPlugin(String pluginName, VerificationPlugin plugin, int concurrency) {
+        runs.put(pluginName, new PluginRun(pluginName, plugin, concurrency));
     }
 
 
@@ -90,16 +114,22 @@ public class PluginExecutor {
      * @param pluginName
      *            plugin name
      */
-    public synchronized void start(String pluginName) {
-        if (!processors.containsKey(pluginName)) {
+    public void start(String pluginName) {
+        PluginRun run = runs.get(pluginName);
+        if (run == null) {
             throw new IllegalStateException("Trying to start an unregistered plugin");
         }
 
-        Future<Void> status = statuses.get(pluginName);
-        if (status == null || status.isDone()) {
-            PluginExecutor proxy = ctx.getBusinessObject(PluginExecutor.class);
-            status = proxy.execute(pluginName);
-            statuses.put(pluginName, status);
+        synchronized (run) {
+            if (!run.isRunning()) {
+                PluginExecutor proxy = ctx.getBusinessObject(PluginExecutor.class);
+                run.start(proxy.getCheckpoint(pluginName));
+                List<Future<Void>> workers = new ArrayList<Future<Void>>(run.getConcurrency());
+                for (int i = 0; i < run.getConcurrency(); i++) {
+                    workers.add(proxy.execute(pluginName));
+                }
+                run.setWorkers(workers);
+            }
         }
     }
 
@@ -110,16 +140,33 @@ public class PluginExecutor {
      * @param pluginName
      *            plugin name
      */
-    public synchronized void stop(String pluginName) {
-        Future<Void> status = statuses.get(pluginName);
-        if (status != null) {
-            status.cancel(true);
+    public void stop(String pluginName) {
+        PluginRun run = runs.get(pluginName);
+        if (run != null) {
+            run.cancel();
+            logger.info("Stopped plugin " + run.getStatistics());
         }
     }
 
 
     /**
-     * Executes the plugin with the given name. Internal use only.
+     * Returns the throughput of the registered plugins in their current (or last) runs.
+     * 
+     * @return plugin statistics
+     */
+    public List<PluginStatistics> getStatistics() {
+        List<PluginStatistics> statistics = new ArrayList<PluginStatistics>();
+        for (PluginRun run : runs.values()) {
+            statistics.add(run.getStatistics());
+        }
+        return statistics;
+    }
+
+
+    /**
+     * Executes the plugin with the given name as one of its workers. Internal use only.
+     * <p>
+     * An object the plugin fails to verify is logged and skipped, so that it does not stop the other workers.
      * 
      * @param pluginName
      *            plugin name
@@ -130,14 +177,41 @@ public class PluginExecutor {
     public Future<Void> execute(String pluginName) {
 
         PluginExecutor proxy = ctx.getBusinessObject(PluginExecutor.class);
+        PluginRun run = runs.get(pluginName);
+        int batchSize = configuration.getPluginBatchSize();
 
-        boolean finished = false;
-        while (!ctx.wasCancelCalled() && !finished) {
-            finished = !proxy.executeOnce(pluginName);
-            if (finished) {
-                proxy.finishCycle(pluginName);
+        while (!ctx.wasCancelCalled()) {
+            PluginIteration iteration = run.next(identifierBrowser);
+            if (iteration == null) {
+                break;
+            }
+            String identifier = iteration.getObjectIdentifier();
+
+            boolean reported = false;
+            boolean failed = true;
+            long start = System.currentTimeMillis();
+            try {
+                VerificationResult result = run.getPlugin().execute(identifier);
+                if (result != null) {
+                    handleResult(identifier, pluginName, result);
+                    reported = true;
+                }
+                failed = false;
+            } catch (RuntimeException e) {
+                logger.error(pluginName + ": could not verify object " + identifier, e);
+            } finally {
+                // an unfinished iteration would keep the following ones from being recorded
+                run.finish(iteration, System.currentTimeMillis() - start, reported, failed);
             }
 
+            record(proxy, run, batchSize);
+        }
+
+        record(proxy, run, 1);
+        synchronized (run.getRecordingLock()) {
+            if (run.finishCycle()) {
+                proxy.finishCycle(pluginName);
+            }
         }
 
         return new AsyncResult<Void>(null);
@@ -145,65 +219,30 @@ public class PluginExecutor {
 
 
     /**
-     * Executes a single iteration of the plugin (verifies a single object). Internal use only.
+     * Returns the object the given plugin should resume after. Internal use only.
      * 
      * @param pluginName
      *            plugin name
-     * @return <code>true</code> if an iteration was performed, <code>false</code> if there were no objects to check
+     * @return identifier of the last recorded object, or <code>null</code> if the cycle starts from the beginning
      */
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-    public boolean executeOnce(String pluginName) {
-
-        VerificationPlugin plugin = processors.get(pluginName);
-
-        PluginIteration iteration = startIteration(pluginName);
-        if (iteration != null) {
-            VerificationResult result = plugin.execute(iteration.getObjectIdentifier());
-            handleResult(iteration.getObjectIdentifier(), pluginName, result);
-            finishIteration(iteration);
-            return true;
-        } else {
-            return false;
-        }
-    }
-
-
-    /**
-     * Creates and initializes a plugin iteration.
-     * 
-     * @param pluginName
-     *            plugin name
-     * @return initialized plugin itetation, or <code>null</code> if there are no more objects to check
-     */
-    private PluginIteration startIteration(String pluginName) {
-
+    public String getCheckpoint(String pluginName) {
         PluginIteration iteration = pluginIterationDao.getLast(pluginName);
-
-        String identifier = iteration != null ? iteration.getObjectIdentifier() : null;
-        String nextIdentifier = identifierBrowser.findNextActiveIdentifier(identifier);
-
-        if (nextIdentifier != null) {
-            iteration = new PluginIteration();
-            iteration.setPluginName(pluginName);
-            iteration.setObjectIdentifier(nextIdentifier);
-            iteration.setStartedOn(new Date());
-        } else {
-            iteration = null;
-        }
-
-        return iteration;
+        return iteration != null ? iteration.getObjectIdentifier() : null;
     }
 
 
     /**
-     * Persists the plugin iteration information.
+     * Persists the plugin iterations. Internal use only.
      * 
-     * @param iteration
-     *            plugin iteration information
+     * @param iterations
+     *            finished plugin iterations, in the order in which they were started
      */
-    private void finishIteration(PluginIteration iteration) {
-        iteration.setFinishedOn(new Date());
-        pluginIterationDao.persist(iteration);
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void recordIterations(List<PluginIteration> iterations) {
+        for (PluginIteration iteration : iterations) {
+            pluginIterationDao.persist(iteration);
+        }
     }
 
 
@@ -225,11 +264,33 @@ public class PluginExecutor {
         String log = String.format("%s: finished plugin cycle [%s - %s] (%d objects)", pluginName, start, end, total);
 
         logger.info(log);
+        logger.info("Finished plugin run " + runs.get(pluginName).getStatistics());
 
         pluginIterationDao.deleteAll(pluginName);
     }
 
 
+    /**
+     * Records the finished iterations of the given run, if there are at least the given number of them. Workers record
+     * one batch at a time, so the batches are committed in the order in which they were taken.
+     * 
+     * @param proxy
+     *            business object of this bean
+     * @param run
+     *            plugin run
+     * @param min
+     *            minimal number of recorded iterations
+     */
+    private void record(PluginExecutor proxy, PluginRun run, int min) {
+        synchronized (run.getRecordingLock()) {
+            List<PluginIteration> iterations = run.takeFinished(min);
+            if (!iterations.isEmpty()) {
+                proxy.recordIterations(iterations);
+            }
+        }
+    }
+
+
     /**
      * Handles verification result.
      * 
@@ -241,10 +302,6 @@ public class PluginExecutor {
      *            plugin result
      */
     private void handleResult(String objectIdentifier, String pluginName, VerificationResult result) {
-        if (result == null) {
-            return;
-        }
-
         PluginExecutionReport report = new PluginExecutionReport();
         report.setObjectIdentifier(objectIdentifier);
         report.setPluginName(pluginName);
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import pl.psnc.synat.wrdz.mdz.entity.plugin.PluginIteration;
+import pl.psnc.synat.wrdz.zmd.object.IdentifierBrowser;
+
+/**
+ * Run of a plugin shared by its workers. The workers take the objects to be verified from the common cursor, so each
+ * object is verified once, and the iterations are recorded in the order in which the objects were taken, so that the
+ * last recorded iteration is always a safe point to resume from.
+ */
+class PluginRun {
+
+    /** Plugin name. */
+    private final String pluginName;
+
+    /** Plugin implementation. */
+    private final VerificationPlugin plugin;
+
+    /** Number of workers. */
+    private final int concurrency;
+
+    /** Statuses of the workers. */
+    private List<Future<Void>> workers = Collections.emptyList();
+
+    /** Identifier of the last object taken by a worker. */
+    private String cursor;
+
+    /** Whether there are no more objects to be taken. */
+    private boolean exhausted;
+
+    /** Whether the cycle was finished. */
+    private boolean finished;
+
+    /** Iterations which were started but not recorded yet, in the order in which they were started. */
+    private final LinkedList<PluginIteration> pending = new LinkedList<PluginIteration>();
+
+    /** Lock held by a worker while it takes and records finished iterations, so that batches are not reordered. */
+    private final Object recordingLock = new Object();
+
+    /** When the run started. */
+    private Date startedOn;
+
+    /** When the run ended, null while it is in progress. */
+    private Date endedOn;
+
+    /** Number of verified objects. */
+    private long verified;
+
+    /** Number of objects the plugin reported. */
+    private long reported;
+
+    /** Number of objects the plugin failed to verify. */
+    private long failed;
+
+    /** Total time spent verifying the objects (in milliseconds). */
+    private long busyTime;
+
+
+    /**
+     * Constructor.
+     * 
+     * @param pluginName
+     *            plugin name
+     * @param plugin
+     *            plugin implementation
+     * @param concurrency
+     *            number of workers
+     */
+    PluginRun(String pluginName, VerificationPlugin plugin, int concurrency) {
+        this.pluginName = pluginName;
+        this.plugin = plugin;
+        this.concurrency = concurrency;
+    }
+
+
+    public VerificationPlugin getPlugin() {
+        return plugin;
+    }
+
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+
+    public Object getRecordingLock() {
+        return recordingLock;
+    }
+
+
+    /**
+     * Checks whether some worker is still running.
+     * 
+     * @return <code>true</code> if some worker is running
+     */
+    public synchronized boolean isRunning() {
+        for (Future<Void> worker : workers) {
+            if (!worker.isDone()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Starts a new run, resuming after the given object.
+     * 
+     * @param checkpoint
+     *            identifier of the last recorded object, or null if the cycle starts from the beginning
+     */
+    public synchronized void start(String checkpoint) {
+        cursor = checkpoint;
+        exhausted = false;
+        finished = false;
+        pending.clear();
+        startedOn = new Date();
+        endedOn = null;
+        verified = 0;
+        reported = 0;
+        failed = 0;
+        busyTime = 0;
+    }
+
+
+    public synchronized void setWorkers(List<Future<Void>> workers) {
+        this.workers = workers;
+    }
+
+
+    /**
+     * Cancels the workers. They finish the objects they are verifying.
+     */
+    public synchronized void cancel() {
+        for (Future<Void> worker : workers) {
+            worker.cancel(true);
+        }
+        if (endedOn == null) {
+            endedOn = new Date();
+        }
+    }
+
+
+    /**
+     * Takes the next object to be verified.
+     * 
+     * @param identifierBrowser
+     *            identifier browser used to fetch digital object identifiers from ZMD
+     * @return started iteration, or <code>null</code> if there are no more objects
+     */
+    public synchronized PluginIteration next(IdentifierBrowser identifierBrowser) {
+        if (exhausted) {
+            return null;
+        }
+        String identifier = identifierBrowser.findNextActiveIdentifier(cursor);
+        if (identifier == null) {
+            exhausted = true;
+            return null;
+        }
+        cursor = identifier;
+
+        PluginIteration iteration = new PluginIteration();
+        iteration.setPluginName(pluginName);
+        iteration.setObjectIdentifier(identifier);
+        iteration.setStartedOn(new Date());
+        pending.add(iteration);
+        return iteration;
+    }
+
+
+    /**
+     * Marks the given iteration as finished.
+     * 
+     * @param iteration
+     *            iteration
+     * @param time
+     *            time spent verifying the object (in milliseconds)
+     * @param isReported
+     *            whether the plugin reported the object
+     * @param isFailed
+     *            whether the plugin failed to verify the object
+     */
+    public synchronized void finish(PluginIteration iteration, long time, boolean isReported, boolean isFailed) {
+        iteration.setFinishedOn(new Date());
+        verified++;
+        busyTime += time;
+        if (isReported) {
+            reported++;
+        }
+        if (isFailed) {
+            failed++;
+        }
+    }
+
+
+    /**
+     * Takes the finished iterations to be recorded - the ones which precede the first unfinished iteration - if there
+     * are at least the given number of them.
+     * 
+     * @param min
+     *            minimal number of iterations
+     * @return iterations to be recorded, possibly empty
+     */
+    public synchronized List<PluginIteration> takeFinished(int min) {
+        int count = 0;
+        for (PluginIteration iteration : pending) {
+            if (iteration.getFinishedOn() == null) {
+                break;
+            }
+            count++;
+        }
+        if (count == 0 || count < min) {
+            return Collections.emptyList();
+        }
+        List<PluginIteration> iterations = new ArrayList<PluginIteration>(count);
+        Iterator<PluginIteration> iterator = pending.iterator();
+        for (int i = 0; i < count; i++) {
+            iterations.add(iterator.next());
+            iterator.remove();
+        }
+        return iterations;
+    }
+
+
+    /**
+     * Finishes the cycle if there are no more objects and all the iterations were recorded. Only the first caller
+     * finishes the cycle.
+     * 
+     * @return <code>true</code> if the caller should finish the cycle
+     */
+    public synchronized boolean finishCycle() {
+        if (exhausted && pending.isEmpty() && !finished) {
+            finished = true;
+            endedOn = new Date();
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns the throughput of the run.
+     * 
+     * @return plugin statistics
+     */
+    public synchronized PluginStatistics getStatistics() {
+        long duration = 0;
+        if (startedOn != null) {
+            duration = (endedOn != null ? endedOn.getTime() : System.currentTimeMillis()) - startedOn.getTime();
+        }
+        return new PluginStatistics(pluginName, concurrency, isRunning(), startedOn, duration, verified, reported,
+                failed, busyTime);
+    }
+}
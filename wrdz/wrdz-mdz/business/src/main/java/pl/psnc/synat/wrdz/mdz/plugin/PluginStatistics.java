@@ -0,0 +1,163 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.plugin;
+
+import java.util.Date;
+
+/**
+ * Throughput of a plugin in its current (or last) run.
+ */
+public class PluginStatistics {
+
+    /** Number of milliseconds in an hour. */
+    private static final long HOUR = 60L * 60 * 1000;
+
+    /** Plugin name. */
+    private final String pluginName;
+
+    /** Number of objects the plugin verifies at the same time. */
+    private final int concurrency;
+
+    /** Whether the plugin is running. */
+    private final boolean running;
+
+    /** When the run started. */
+    private final Date startedOn;
+
+    /** Duration of the run so far (in milliseconds). */
+    private final long duration;
+
+    /** Number of verified objects. */
+    private final long verified;
+
+    /** Number of objects the plugin reported. */
+    private final long reported;
+
+    /** Number of objects the plugin failed to verify. */
+    private final long failed;
+
+    /** Total time spent verifying the objects, by all the workers (in milliseconds). */
+    private final long busyTime;
+
+
+    /**
+     * Constructor.
+     * 
+     * @param pluginName
+     *            plugin name
+     * @param concurrency
+     *            number of objects the plugin verifies at the same time
+     * @param running
+     *            whether the plugin is running
+     * @param startedOn
+     *            when the run started
+     * @param duration
+     *            duration of the run so far (in milliseconds)
+     * @param verified
+     *            number of verified objects
+     * @param reported
+     *            number of objects the plugin reported
+     * @param failed
+     *            number of objects the plugin failed to verify
+     * @param busyTime
+     *            total time spent verifying the objects (in milliseconds)
+     */
+    public PluginStatistics(String pluginName, int concurrency, boolean running, Date startedOn, long duration,
+            long verified, long reported, long failed, long busyTime) {
+        this.pluginName = pluginName;
+        this.concurrency = concurrency;
+        this.running = running;
+        this.startedOn = startedOn;
+        this.duration = duration;
+        this.verified = verified;
+        this.reported = reported;
+        this.failed = failed;
+        this.busyTime = busyTime;
+    }
+
+
+    public String getPluginName() {
+        return pluginName;
+    }
+
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    public Date getStartedOn() {
+        return startedOn;
+    }
+
+
+    public long getDuration() {
+        return duration;
+    }
+
+
+    public long getVerified() {
+        return verified;
+    }
+
+
+    public long getReported() {
+        return reported;
+    }
+
+
+    public long getFailed() {
+        return failed;
+    }
+
+
+    public long getBusyTime() {
+        return busyTime;
+    }
+
+
+    /**
+     * Returns the number of objects verified per hour of the run.
+     * 
+     * @return objects per hour
+     */
+    public double getObjectsPerHour() {
+        return (double) verified * HOUR / Math.max(1, duration);
+    }
+
+
+    /**
+     * Returns the average time of verifying one object.
+     * 
+     * @return average time in milliseconds, 0 if no object was verified yet
+     */
+    public long getAverageTime() {
+        return verified > 0 ? busyTime / verified : 0;
+    }
+
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d objects (%d reported, %d failed) in %d s, %.1f objects per hour, %d ms per "
+                + "object with %d workers", pluginName, verified, reported, failed, duration / 1000,
+            getObjectsPerHour(), getAverageTime(), concurrency);
+    }
+}
@@ -23,12 +23,14 @@ import org.junit.runners.Suite.SuiteClasses;
 
 import pl.psnc.synat.wrdz.common.BaseTestSuite;
 import pl.psnc.synat.wrdz.common.Module;
+import pl.psnc.synat.wrdz.mdz.integrity.IntegrityProcessorBeanTest;
+import pl.psnc.synat.wrdz.mdz.plugin.PluginRunTest;
 
 /**
  * Test suite for the MDZ module.
  */
 @RunWith(Suite.class)
-@SuiteClasses({})
+@SuiteClasses({ IntegrityProcessorBeanTest.class, PluginRunTest.class })
 public class MdzTestSuite extends BaseTestSuite {
 
     /**
@@ -0,0 +1,421 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.integrity;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ejb.SessionContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.psnc.synat.wrdz.mdz.config.MdzConfiguration;
+import pl.psnc.synat.wrdz.mdz.dao.integrity.DigitalObjectDao;
+import pl.psnc.synat.wrdz.mdz.entity.integrity.DigitalObject;
+import pl.psnc.synat.wrdz.zmd.object.IdentifierBrowser;
+
+/**
+ * Tests the cycles of {@link IntegrityProcessorBean} with the objects, the identifiers of ZMD and the verification
+ * kept in memory.
+ */
+public class IntegrityProcessorBeanTest {
+
+    /** Number of milliseconds in a day. */
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    /** Prefix of the identifiers. */
+    private static final String PREFIX = "oai:darceo.psnc.pl:";
+
+    /** Number of identifiers in ZMD. */
+    private static final int OBJECTS = 20;
+
+    /** Bean to test. */
+    private IntegrityProcessorBean processor;
+
+    /** Objects stored by the DAO, by identifier. */
+    private Map<String, DigitalObject> objects;
+
+    /** DAO keeping the objects. */
+    private ObjectDaoHandler objectDao;
+
+    /** Active identifiers of ZMD, by their id. */
+    private TreeMap<Long, String> identifiers;
+
+    /** Number of verifications of each object, by identifier. */
+    private Map<String, Integer> verifications;
+
+    /** Configured number of workers. */
+    private int workerCount;
+
+
+    @Before
+    public void setUp()
+            throws Exception {
+        objects = new HashMap<String, DigitalObject>();
+        identifiers = new TreeMap<Long, String>();
+        verifications = new HashMap<String, Integer>();
+        for (long id = 1; id <= OBJECTS; id++) {
+            identifiers.put(id, PREFIX + id);
+        }
+        processor = new IntegrityProcessorBean();
+        inject("ctx", fake(SessionContext.class, new SessionContextHandler()));
+        objectDao = new ObjectDaoHandler();
+        inject("objectDao", fake(DigitalObjectDao.class, objectDao));
+        inject("identifierBrowser", fake(IdentifierBrowser.class, new IdentifierBrowserHandler()));
+        inject("integrityScheduler", fake(IntegrityScheduler.class, new SchedulerHandler()));
+        inject("integrityVerifier", fake(IntegrityVerifier.class, new VerifierHandler()));
+        inject("configuration", new MdzConfiguration() {
+
+            @Override
+            public int getIntegrityWorkerCount() {
+                return workerCount;
+            }
+
+
+            @Override
+            public boolean getIntegrityStorageSide() {
+                return true;
+            }
+
+
+            @Override
+            public long getIntegrityBytesPerHour() {
+                return 0;
+            }
+
+
+            @Override
+            public int getIntegrityMaxAge() {
+                return 30;
+            }
+        });
+    }
+
+
+    @Test
+    public void shouldKeepObjectsWhenWorkerCountChanges()
+            throws Exception {
+        runCycle(2);
+        Assert.assertEquals(OBJECTS, objects.size());
+        Map<String, Date> verifiedOn = new HashMap<String, Date>();
+        for (DigitalObject object : objects.values()) {
+            Assert.assertNotNull(object.getDueOn());
+            verifiedOn.put(object.getIdentifier(), object.getVerifiedOn());
+        }
+
+        runCycle(3);
+
+        Assert.assertEquals(OBJECTS, objects.size());
+        for (Map.Entry<Long, String> identifier : identifiers.entrySet()) {
+            DigitalObject object = objects.get(identifier.getValue());
+            Assert.assertNotNull(identifier.getValue(), object);
+            Assert.assertEquals(identifier.getKey() % 3, object.getPartition());
+            Assert.assertEquals(3, object.getPartitionCount());
+            // objects which are not due are not verified again
+            Assert.assertEquals(verifiedOn.get(object.getIdentifier()), object.getVerifiedOn());
+            Assert.assertEquals(Integer.valueOf(1), verifications.get(object.getIdentifier()));
+        }
+    }
+
+
+    @Test
+    public void shouldRemoveInactiveObjectsAfterAllPartitionsAreBrowsed()
+            throws Exception {
+        runCycle(2);
+        identifiers.remove(7L);
+
+        workerCount = 3;
+        processor.checkPartitioning(workerCount);
+        for (int partition = 0; partition < workerCount - 1; partition++) {
+            processor.processAll(partition);
+        }
+        // the last partition has not been browsed yet
+        Assert.assertEquals(OBJECTS, objects.size());
+
+        processor.processAll(workerCount - 1);
+        Assert.assertEquals(OBJECTS - 1, objects.size());
+        Assert.assertNull(objects.get(PREFIX + 7));
+    }
+
+
+    @Test
+    public void shouldNotFinishPartitionBeforeItIsBrowsed()
+            throws Exception {
+        runCycle(1);
+        workerCount = 2;
+        processor.checkPartitioning(workerCount);
+
+        // the first rediscovered object is not due
+        Assert.assertEquals(IntegrityProcessingResult.PROCESSED, processor.processOne(0));
+        Assert.assertEquals(1, countInPartition(0));
+    }
+
+
+    /**
+     * Runs a whole verification cycle with the given number of workers.
+     * 
+     * @param count
+     *            number of workers
+     */
+    private void runCycle(int count) {
+        workerCount = count;
+        processor.checkPartitioning(count);
+        for (int partition = 0; partition < count; partition++) {
+            processor.processAll(partition);
+        }
+    }
+
+
+    /**
+     * Counts the objects of the partition.
+     * 
+     * @param partition
+     *            partition number
+     * @return number of objects
+     */
+    private int countInPartition(int partition) {
+        int count = 0;
+        for (DigitalObject object : objects.values()) {
+            if (object.getPartition() == partition) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * Sets the private field of the tested bean.
+     * 
+     * @param name
+     *            name of the field
+     * @param value
+     *            value of the field
+     * @throws Exception
+     *             if the field cannot be set
+     */
+    private void inject(String name, Object value)
+            throws Exception {
+        Field field = IntegrityProcessorBean.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(processor, value);
+    }
+
+
+    /**
+     * Creates a fake implementation of the interface.
+     * 
+     * @param <T>
+     *            type of the interface
+     * @param type
+     *            interface
+     * @param handler
+     *            handler of the calls
+     * @return fake implementation
+     */
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+
+    /**
+     * Session context which calls the bean directly and is never cancelled.
+     */
+    private class SessionContextHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getBusinessObject")) {
+                return processor;
+            }
+            if (method.getName().equals("wasCancelCalled")) {
+                return false;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+
+    /**
+     * DAO keeping the objects in memory.
+     */
+    private class ObjectDaoHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("findById")) {
+                return objects.get(args[0]);
+            } else if (name.equals("persist")) {
+                DigitalObject object = (DigitalObject) args[0];
+                objects.put(object.getIdentifier(), object);
+                return null;
+            } else if (name.equals("delete")) {
+                objects.remove(((DigitalObject) args[0]).getIdentifier());
+                return null;
+            } else if (name.equals("getLast")) {
+                return getLast((Integer) args[0]);
+            } else if (name.equals("getNextDue")) {
+                return getNextDue((Integer) args[0], (Date) args[1]);
+            } else if (name.equals("countOtherPartitioning")) {
+                long count = 0;
+                for (DigitalObject object : objects.values()) {
+                    if (object.getPartitionCount() != (Integer) args[0]) {
+                        count++;
+                    }
+                }
+                return count;
+            } else if (name.equals("unassignPartitions")) {
+                for (DigitalObject object : objects.values()) {
+                    object.setPartition(DigitalObject.UNASSIGNED);
+                    object.setPartitionCount((Integer) args[0]);
+                }
+                return objects.size();
+            } else if (name.equals("deleteUnassigned")) {
+                int count = objects.size();
+                Iterator<DigitalObject> iterator = objects.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().getPartition() == DigitalObject.UNASSIGNED) {
+                        iterator.remove();
+                    }
+                }
+                return count - objects.size();
+            } else if (name.equals("countAll") || name.equals("countVerifiedSince") || name.equals("countCorrupted")) {
+                return Long.valueOf(objects.size());
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+
+        /**
+         * Returns the object of the partition added last.
+         * 
+         * @param partition
+         *            partition number
+         * @return object or <code>null</code>
+         */
+        private DigitalObject getLast(int partition) {
+            DigitalObject last = null;
+            for (DigitalObject object : objects.values()) {
+                if (object.getPartition() == partition
+                        && (last == null || object.getAddedOn().after(last.getAddedOn()))) {
+                    last = object;
+                }
+            }
+            return last;
+        }
+
+
+        /**
+         * Returns the object of the partition which is due first.
+         * 
+         * @param partition
+         *            partition number
+         * @param date
+         *            current date
+         * @return object or <code>null</code>
+         */
+        private DigitalObject getNextDue(int partition, Date date) {
+            DigitalObject next = null;
+            for (DigitalObject object : objects.values()) {
+                if (object.getPartition() != partition) {
+                    continue;
+                }
+                if (object.getDueOn() == null) {
+                    return object;
+                }
+                if (!object.getDueOn().after(date) && (next == null || object.getDueOn().before(next.getDueOn()))) {
+                    next = object;
+                }
+            }
+            return next;
+        }
+    }
+
+
+    /**
+     * Identifier browser of the identifiers kept in memory; the partition of an identifier is its id modulo the number
+     * of partitions.
+     */
+    private class IdentifierBrowserHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (!method.getName().equals("findNextActiveIdentifier") || args.length != 3) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            long previous = args[0] != null ? Long.parseLong(((String) args[0]).substring(PREFIX.length())) : 0;
+            int partition = (Integer) args[1];
+            int count = (Integer) args[2];
+            for (Map.Entry<Long, String> identifier : identifiers.tailMap(previous, false).entrySet()) {
+                if (identifier.getKey() % count == partition) {
+                    return identifier.getValue();
+                }
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * Scheduler which makes each verified object due again after a month.
+     */
+    private class SchedulerHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("findNextDue")) {
+                return objectDao.getNextDue((Integer) args[0], new Date());
+            }
+            if (method.getName().equals("recordVerification")) {
+                DigitalObject object = (DigitalObject) args[0];
+                Date now = new Date();
+                object.setVerifiedOn(now);
+                object.setCorrect(true);
+                object.setDueOn(new Date(now.getTime() + 30 * DAY));
+                Integer count = verifications.get(object.getIdentifier());
+                verifications.put(object.getIdentifier(), count != null ? count + 1 : 1);
+                return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+
+    /**
+     * Verifier which finds every object correct.
+     */
+    private class VerifierHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("verifyInStorage")) {
+                return new IntegrityVerificationResult(false, null, null, null, null);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+}
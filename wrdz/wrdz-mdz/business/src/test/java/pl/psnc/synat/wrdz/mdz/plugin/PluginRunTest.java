@@ -0,0 +1,279 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.plugin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.psnc.synat.wrdz.mdz.entity.plugin.PluginIteration;
+import pl.psnc.synat.wrdz.zmd.object.IdentifierBrowser;
+
+/**
+ * Tests the bookkeeping of {@link PluginRun} shared by the workers of a plugin.
+ */
+public class PluginRunTest {
+
+    /** Number of identifiers in ZMD. */
+    private static final int OBJECTS = 200;
+
+    /** Number of workers in the concurrent tests. */
+    private static final int WORKERS = 8;
+
+    /** Active identifiers of ZMD, in their order. */
+    private TreeSet<String> identifiers;
+
+    /** Identifier browser over {@link #identifiers}. */
+    private IdentifierBrowser identifierBrowser;
+
+    /** Run to test. */
+    private PluginRun run;
+
+
+    @Before
+    public void setUp() {
+        identifiers = new TreeSet<String>();
+        for (int i = 1; i <= OBJECTS; i++) {
+            identifiers.add(String.format("oai:darceo.psnc.pl:%04d", i));
+        }
+        identifierBrowser = (IdentifierBrowser) Proxy.newProxyInstance(IdentifierBrowser.class.getClassLoader(),
+            new Class<?>[] { IdentifierBrowser.class }, new IdentifierBrowserHandler());
+        run = new PluginRun("test", null, WORKERS);
+        run.start(null);
+    }
+
+
+    @Test
+    public void shouldTakeOnlyIterationsPrecedingFirstUnfinished() {
+        PluginIteration first = run.next(identifierBrowser);
+        PluginIteration second = run.next(identifierBrowser);
+        PluginIteration third = run.next(identifierBrowser);
+
+        run.finish(second, 1, false, false);
+        run.finish(third, 1, false, false);
+        Assert.assertTrue(run.takeFinished(1).isEmpty());
+
+        run.finish(first, 1, false, false);
+        Assert.assertEquals(list(first, second, third), run.takeFinished(1));
+        Assert.assertTrue(run.takeFinished(1).isEmpty());
+    }
+
+
+    @Test
+    public void shouldTakeFinishedIterationsOnlyInBatches() {
+        PluginIteration first = run.next(identifierBrowser);
+        PluginIteration second = run.next(identifierBrowser);
+        PluginIteration third = run.next(identifierBrowser);
+        run.finish(first, 1, false, false);
+        run.finish(second, 1, false, false);
+
+        Assert.assertTrue(run.takeFinished(3).isEmpty());
+        Assert.assertEquals(list(first, second), run.takeFinished(2));
+
+        run.finish(third, 1, false, false);
+        Assert.assertTrue(run.takeFinished(2).isEmpty());
+        Assert.assertEquals(list(third), run.takeFinished(1));
+    }
+
+
+    @Test
+    public void shouldResumeAfterCheckpoint() {
+        run.start(identifiers.first());
+        PluginIteration iteration = run.next(identifierBrowser);
+        Assert.assertEquals(identifiers.higher(identifiers.first()), iteration.getObjectIdentifier());
+    }
+
+
+    @Test
+    public void shouldRecordIterationsInOrderWhenWorkersFinishOutOfOrder()
+            throws Exception {
+        final List<PluginIteration> recorded = Collections.synchronizedList(new ArrayList<PluginIteration>());
+        final AtomicInteger unsafeCheckpoints = new AtomicInteger();
+        List<Future<Integer>> workers = runWorkers(new Callable<Integer>() {
+
+            @Override
+            public Integer call()
+                    throws Exception {
+                Random random = new Random();
+                PluginIteration iteration;
+                while ((iteration = run.next(identifierBrowser)) != null) {
+                    Thread.sleep(random.nextInt(3));
+                    run.finish(iteration, 1, false, false);
+                    synchronized (run.getRecordingLock()) {
+                        List<PluginIteration> batch = run.takeFinished(5);
+                        if (!batch.isEmpty()) {
+                            recorded.addAll(batch);
+                            // every object up to the checkpoint must have been verified and recorded
+                            String checkpoint = batch.get(batch.size() - 1).getObjectIdentifier();
+                            if (identifiers.headSet(checkpoint, true).size() != recorded.size()) {
+                                unsafeCheckpoints.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+                synchronized (run.getRecordingLock()) {
+                    recorded.addAll(run.takeFinished(1));
+                }
+                return 0;
+            }
+        });
+        for (Future<Integer> worker : workers) {
+            worker.get();
+        }
+
+        Assert.assertEquals(0, unsafeCheckpoints.get());
+        List<String> recordedIdentifiers = new ArrayList<String>();
+        for (PluginIteration iteration : recorded) {
+            recordedIdentifiers.add(iteration.getObjectIdentifier());
+        }
+        Assert.assertEquals(new ArrayList<String>(identifiers), recordedIdentifiers);
+        Assert.assertEquals(OBJECTS, run.getStatistics().getVerified());
+    }
+
+
+    @Test
+    public void shouldNotFinishCycleWithUnrecordedIterations() {
+        identifiers.retainAll(Collections.singleton(identifiers.first()));
+        PluginIteration iteration = run.next(identifierBrowser);
+        Assert.assertFalse(run.finishCycle());
+
+        Assert.assertNull(run.next(identifierBrowser));
+        Assert.assertFalse(run.finishCycle());
+
+        run.finish(iteration, 1, false, false);
+        Assert.assertFalse(run.finishCycle());
+
+        run.takeFinished(1);
+        Assert.assertTrue(run.finishCycle());
+        Assert.assertFalse(run.finishCycle());
+    }
+
+
+    @Test
+    public void shouldFinishCycleExactlyOnce()
+            throws Exception {
+        final AtomicInteger finishedCycles = new AtomicInteger();
+        List<Future<Integer>> workers = runWorkers(new Callable<Integer>() {
+
+            @Override
+            public Integer call()
+                    throws Exception {
+                PluginIteration iteration;
+                while ((iteration = run.next(identifierBrowser)) != null) {
+                    run.finish(iteration, 1, false, false);
+                    synchronized (run.getRecordingLock()) {
+                        run.takeFinished(5);
+                    }
+                }
+                synchronized (run.getRecordingLock()) {
+                    run.takeFinished(1);
+                    if (run.finishCycle()) {
+                        finishedCycles.incrementAndGet();
+                    }
+                }
+                return 0;
+            }
+        });
+        for (Future<Integer> worker : workers) {
+            worker.get();
+        }
+        Assert.assertEquals(1, finishedCycles.get());
+
+        // the next run finishes its own cycle
+        run.start(null);
+        Assert.assertFalse(run.finishCycle());
+        int taken = 0;
+        while (run.next(identifierBrowser) != null) {
+            taken++;
+        }
+        Assert.assertEquals(OBJECTS, taken);
+        Assert.assertFalse(run.finishCycle());
+    }
+
+
+    /**
+     * Starts the workers at the same time.
+     *
+     * @param worker
+     *            task of a worker
+     * @return statuses of the workers
+     */
+    private List<Future<Integer>> runWorkers(final Callable<Integer> worker) {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        List<Future<Integer>> workers = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < WORKERS; i++) {
+            workers.add(executor.submit(new Callable<Integer>() {
+
+                @Override
+                public Integer call()
+                        throws Exception {
+                    start.await();
+                    return worker.call();
+                }
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        return workers;
+    }
+
+
+    /**
+     * Creates a list of the given iterations.
+     *
+     * @param iterations
+     *            iterations
+     * @return list
+     */
+    private List<PluginIteration> list(PluginIteration... iterations) {
+        List<PluginIteration> list = new ArrayList<PluginIteration>();
+        Collections.addAll(list, iterations);
+        return list;
+    }
+
+
+    /**
+     * Identifier browser which returns the identifiers in their natural order.
+     */
+    private class IdentifierBrowserHandler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("findNextActiveIdentifier") && args.length == 1) {
+                String previous = (String) args[0];
+                return previous != null ? identifiers.higher(previous) : identifiers.isEmpty() ? null : identifiers
+                        .first();
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
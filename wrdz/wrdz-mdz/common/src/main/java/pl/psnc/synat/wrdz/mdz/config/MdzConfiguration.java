@@ -33,6 +33,8 @@ import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.wrdz.common.config.ScheduleUtils;
 import pl.psnc.synat.wrdz.common.exception.WrdzConfigurationError;
+import pl.psnc.synat.wrdz.common.format.FormatRegistryStore;
+import pl.psnc.synat.wrdz.common.utility.StringEncoder;
 import pl.psnc.synat.wrdz.mdz.plugin.VerificationPlugin;
 
 /**
@@ -78,15 +80,42 @@ public class MdzConfiguration {
     /** Configuration file element path for @{link {@link #formatVerifierThreshold} (absolute). */
     private static final String FORMAT_VERIFIER_THRESHOLD = "formats.verifier.threshold";
 
+    /** Configuration file element path for {@link #formatRegistryEndpoint} (absolute). */
+    private static final String FORMAT_REGISTRY_ENDPOINT = "formats.registry.endpoint";
+
+    /** Configuration file element path for {@link #formatRegistrySnapshot} (absolute). */
+    private static final String FORMAT_REGISTRY_SNAPSHOT = "formats.registry.snapshot";
+
+    /** Configuration file element path for {@link #formatRegistryDump} (absolute). */
+    private static final String FORMAT_REGISTRY_DUMP = "formats.registry.dump";
+
+    /** Configuration file element path for {@link #formatRegistryRefreshSchedule} (absolute). */
+    private static final String FORMAT_REGISTRY_REFRESH_SCHEDULE = "formats.registry.refresh-schedule";
+
     /** Configuration file element path for {@link #formatWorkerActivationSchedule} (absolute). */
     private static final String INTEGRITY_WORKER_ACTIVATION_SCHEDULE = "integrity.worker.activation-schedule";
 
     /** Configuration file element path for {@link #formatWorkerDeactivationSchedule} (absolute). */
     private static final String INTEGRITY_WORKER_DEACTIVATION_SCHEDULE = "integrity.worker.deactivation-schedule";
 
+    /** Configuration file element path for {@link #integrityWorkerCount} (absolute). */
+    private static final String INTEGRITY_WORKER_COUNT = "integrity.worker.count";
+
+    /** Configuration file element path for {@link #integrityMaxAge} (absolute). */
+    private static final String INTEGRITY_SCHEDULE_MAX_AGE = "integrity.schedule.max-age-days";
+
+    /** Configuration file element path for {@link #integrityBytesPerHour} (absolute). */
+    private static final String INTEGRITY_SCHEDULE_BYTES_PER_HOUR = "integrity.schedule.bytes-per-hour";
+
     /** Configuration file element path for {@link #zmdObjectUrl} (absolute). */
     private static final String INTEGRITY_ZMD_OBJECT_URL = "integrity.zmd-object-url";
 
+    /** Configuration file element path for {@link #integrityStorageSide} (absolute). */
+    private static final String INTEGRITY_STORAGE_SIDE = "integrity.storage-side";
+
+    /** Configuration file element path for {@link #pluginBatchSize} (absolute). */
+    private static final String PLUGINS_BATCH_SIZE = "plugins.batch-size";
+
     /** Configuration file element for {@link #plugins} (absolute). */
     private static final String PLUGINS = "plugins.plugin";
 
@@ -102,6 +131,9 @@ public class MdzConfiguration {
     /** Configuration file element containing the plugin deactivation schedule (relative to {@link #PLUGINS}). */
     private static final String PLUGIN_DEACTIVATION_SCHEDULE = "deactivation-schedule";
 
+    /** Configuration file element containing the plugin concurrency level (relative to {@link #PLUGINS}). */
+    private static final String PLUGIN_CONCURRENCY = "concurrency";
+
     /** Configuration file element containing the hour part of {@link ScheduleExpression} (relative). */
     private static final String SCHEDULE_HOUR = "hour";
 
@@ -147,15 +179,42 @@ public class MdzConfiguration {
     /** How many days must pass since format's release before it is considered old. */
     private int formatVerifierThreshold;
 
+    /** URI of the sparql endpoint of the format registry. */
+    private String formatRegistryEndpoint;
+
+    /** Path to the local snapshot of the format registry, null if it is kept in memory only. */
+    private String formatRegistrySnapshot;
+
+    /** Path to the dump of the format registry to be imported, null if there is none. */
+    private String formatRegistryDump;
+
+    /** When to download a new snapshot of the format registry. */
+    private ScheduleExpression formatRegistryRefreshSchedule;
+
     /** When to activate the integrity worker. */
     private ScheduleExpression integrityWorkerActivationSchedule;
 
     /** When to deactivate the integrity worker. */
     private ScheduleExpression integrityWorkerDeactivationSchedule;
 
+    /** Number of integrity workers verifying disjoint partitions of objects at the same time. */
+    private int integrityWorkerCount;
+
+    /** Number of days within which every object should be verified again. */
+    private int integrityMaxAge;
+
+    /** Number of bytes the integrity workers can verify in one hour, 0 if not limited. */
+    private long integrityBytesPerHour;
+
     /** URL used to fetch objects from ZMD. */
     private String zmdObjectUrl;
 
+    /** Whether the integrity is verified by hashing the files in the data storage instead of downloading objects. */
+    private boolean integrityStorageSide;
+
+    /** Number of plugin iterations recorded in one transaction. */
+    private int pluginBatchSize;
+
     /** Configured plugins. */
     private List<PluginInfo> plugins;
 
@@ -177,9 +236,19 @@ public class MdzConfiguration {
             formatWorkerDeactivationSchedule = readSchedule(config.subset(FORMAT_WORKER_DEACTIVATION_SCHEDULE));
             formatWorkInitializerSchedule = readSchedule(config.subset(FORMAT_INITIALIZER_SCHEDULE));
             formatVerifierThreshold = config.getInt(FORMAT_VERIFIER_THRESHOLD);
+            formatRegistryEndpoint = config.getString(FORMAT_REGISTRY_ENDPOINT, FormatRegistryStore.UDFR_ENDPOINT);
+            formatRegistrySnapshot = readPath(config.getString(FORMAT_REGISTRY_SNAPSHOT));
+            formatRegistryDump = readPath(config.getString(FORMAT_REGISTRY_DUMP));
+            formatRegistryRefreshSchedule = readSchedule(config.subset(FORMAT_REGISTRY_REFRESH_SCHEDULE));
             integrityWorkerActivationSchedule = readSchedule(config.subset(INTEGRITY_WORKER_ACTIVATION_SCHEDULE));
             integrityWorkerDeactivationSchedule = readSchedule(config.subset(INTEGRITY_WORKER_DEACTIVATION_SCHEDULE));
+            integrityWorkerCount = Math.max(1, config.getInt(INTEGRITY_WORKER_COUNT, 4));
+            integrityMaxAge = Math.max(1, config.getInt(INTEGRITY_SCHEDULE_MAX_AGE, 30));
+            integrityBytesPerHour = Math.max(0, config.getLong(INTEGRITY_SCHEDULE_BYTES_PER_HOUR, 0));
             zmdObjectUrl = config.getString(INTEGRITY_ZMD_OBJECT_URL);
+            integrityStorageSide = config.getBoolean(INTEGRITY_STORAGE_SIDE, true);
+
+            pluginBatchSize = Math.max(1, config.getInt(PLUGINS_BATCH_SIZE, 50));
 
             plugins = new ArrayList<PluginInfo>();
 
@@ -209,8 +278,9 @@ public class MdzConfiguration {
                 ScheduleExpression activationSchedule = readSchedule(pluginConfig.subset(PLUGIN_ACTIVATION_SCHEDULE));
                 ScheduleExpression deactivationSchedule = readSchedule(pluginConfig
                         .subset(PLUGIN_DEACTIVATION_SCHEDULE));
+                int concurrency = Math.max(1, pluginConfig.getInt(PLUGIN_CONCURRENCY, 1));
 
-                plugins.add(new PluginInfo(name, plugin, activationSchedule, deactivationSchedule));
+                plugins.add(new PluginInfo(name, plugin, activationSchedule, deactivationSchedule, concurrency));
             }
 
             plugins = Collections.unmodifiableList(plugins);
@@ -306,6 +376,37 @@ public class MdzConfiguration {
     }
 
 
+    public String getFormatRegistryEndpoint() {
+        return formatRegistryEndpoint;
+    }
+
+
+    /**
+     * Returns the path to the local snapshot of the format registry.
+     * 
+     * @return path, or <code>null</code> if the snapshot should be kept in memory only
+     */
+    public String getFormatRegistrySnapshot() {
+        return formatRegistrySnapshot;
+    }
+
+
+    /**
+     * Returns the path to the dump of the format registry which should be imported if it is newer than the local
+     * snapshot.
+     * 
+     * @return path, or <code>null</code> if there is no dump to be imported
+     */
+    public String getFormatRegistryDump() {
+        return formatRegistryDump;
+    }
+
+
+    public ScheduleExpression getFormatRegistryRefreshSchedule() {
+        return ScheduleUtils.clone(formatRegistryRefreshSchedule);
+    }
+
+
     public ScheduleExpression getIntegrityWorkerActivationSchedule() {
         return integrityWorkerActivationSchedule;
     }
@@ -316,6 +417,26 @@ public class MdzConfiguration {
     }
 
 
+    public int getIntegrityWorkerCount() {
+        return integrityWorkerCount;
+    }
+
+
+    public int getIntegrityMaxAge() {
+        return integrityMaxAge;
+    }
+
+
+    /**
+     * Returns the number of bytes the integrity workers can verify in one hour.
+     * 
+     * @return number of bytes, or 0 if verification is not limited
+     */
+    public long getIntegrityBytesPerHour() {
+        return integrityBytesPerHour;
+    }
+
+
     /**
      * Returns the base object URL that can be used to create an object in ZMD.
      * 
@@ -345,11 +466,42 @@ public class MdzConfiguration {
     }
 
 
+    /**
+     * Returns <code>true</code> if data integrity should be verified by hashing the copies of the files where they are
+     * stored, instead of downloading whole objects from ZMD.
+     * 
+     * @return <code>true</code> if the files should be hashed in the data storage; <code>false</code> otherwise
+     */
+    public boolean getIntegrityStorageSide() {
+        return integrityStorageSide;
+    }
+
+
+    public int getPluginBatchSize() {
+        return pluginBatchSize;
+    }
+
+
     public List<PluginInfo> getPlugins() {
         return plugins;
     }
 
 
+    /**
+     * Decodes the system properties in the given path.
+     * 
+     * @param path
+     *            configured path, possibly empty
+     * @return decoded path, or <code>null</code> if no path is configured
+     */
+    private String readPath(String path) {
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+        return StringEncoder.decodePath(path.trim());
+    }
+
+
     /**
      * Reads the schedule definition from the given configuration subset. Handles the hour, minute, day of week, day of
      * month, and month values.
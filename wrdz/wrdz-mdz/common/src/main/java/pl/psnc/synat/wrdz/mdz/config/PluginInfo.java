@@ -37,6 +37,9 @@ public class PluginInfo {
     /** Plugin deactivation schedule. */
     private final ScheduleExpression deactivationSchedule;
 
+    /** Number of objects the plugin verifies at the same time. */
+    private final int concurrency;
+
 
     /**
      * Constructor.
@@ -49,13 +52,16 @@ public class PluginInfo {
      *            activation schedule
      * @param deactivationSchedule
      *            deactivation schedule
+     * @param concurrency
+     *            number of objects the plugin verifies at the same time
      */
     public PluginInfo(String name, VerificationPlugin plugin, ScheduleExpression activationSchedule,
-            ScheduleExpression deactivationSchedule) {
+            ScheduleExpression deactivationSchedule, int concurrency) {
         this.name = name;
         this.plugin = plugin;
         this.activationSchedule = activationSchedule;
         this.deactivationSchedule = deactivationSchedule;
+        this.concurrency = concurrency;
     }
 
 
@@ -77,4 +83,9 @@ public class PluginInfo {
     public ScheduleExpression getDeactivationSchedule() {
         return ScheduleUtils.clone(deactivationSchedule);
     }
+
+
+    public int getConcurrency() {
+        return concurrency;
+    }
 }
@@ -30,11 +30,23 @@ import pl.psnc.synat.wrdz.mdz.entity.integrity.DigitalObject;
 public interface DigitalObjectDao extends GenericDao<DigitalObject, String> {
 
     /**
-     * Returns the entity that was added last.
+     * Returns the entity of the given partition that was added last.
      * 
-     * @return entity instance, or <code>null</code> if no instance exists
+     * @param partition
+     *            partition number
+     * @return entity instance, or <code>null</code> if no instance exists in the partition
      */
-    DigitalObject getLast();
+    DigitalObject getLast(int partition);
+
+
+    /**
+     * Returns the number of entities added while the identifiers were divided into a different number of partitions.
+     * 
+     * @param partitionCount
+     *            current number of partitions
+     * @return the number of entities with a different number of partitions
+     */
+    Long countOtherPartitioning(int partitionCount);
 
 
     /**
@@ -46,23 +58,42 @@ public interface DigitalObjectDao extends GenericDao<DigitalObject, String> {
 
 
     /**
-     * Removes all entities from the table.
+     * Returns the entity of the given partition which has never been verified or, if all of them have been, the one
+     * which became due for verification earliest, provided it is due on the given date.
+     * 
+     * @param partition
+     *            partition number
+     * @param date
+     *            current date
+     * @return entity instance, or <code>null</code> if no entity of the partition is due
+     */
+    DigitalObject getNextDue(int partition, Date date);
+
+
+    /**
+     * Returns the number of entities verified on or after the given date.
+     * 
+     * @param date
+     *            date of verification
+     * @return the number of entities verified since the date
      */
-    void deleteAll();
+    Long countVerifiedSince(Date date);
 
 
     /**
-     * Returns the date when the first object was added.
+     * Moves all entities out of their partitions, so that each of them can be found again in a different partitioning.
      * 
-     * @return the date when the first object was added
+     * @param partitionCount
+     *            new number of partitions
+     * @return the number of updated entities
      */
-    Date getFirstAdded();
+    int unassignPartitions(int partitionCount);
 
 
     /**
-     * Returns the date when the last object was verified.
+     * Removes the entities which do not belong to any partition.
      * 
-     * @return the date when the last object was verified
+     * @return the number of removed entities
      */
-    Date getLastVerified();
+    int deleteUnassigned();
 }
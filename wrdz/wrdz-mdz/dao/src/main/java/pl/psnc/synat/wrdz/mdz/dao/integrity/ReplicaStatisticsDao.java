@@ -0,0 +1,56 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.dao.integrity;
+
+import java.util.Date;
+
+import javax.ejb.Local;
+
+import pl.psnc.synat.wrdz.common.dao.GenericDao;
+import pl.psnc.synat.wrdz.mdz.entity.integrity.ReplicaStatistics;
+
+/**
+ * An interface for a class managing the persistence of {@link ReplicaStatistics} class.
+ */
+@Local
+public interface ReplicaStatisticsDao extends GenericDao<ReplicaStatistics, String> {
+
+    /**
+     * Creates empty statistics of the given data storage in a separate transaction, unless they already exist. Creating
+     * the statistics concurrently with another transaction is not an error.
+     * 
+     * @param replica
+     *            description of the data storage
+     */
+    void createIfAbsent(String replica);
+
+
+    /**
+     * Adds the numbers of copies to the statistics of the given data storage with a single update, so that concurrent
+     * verifications do not overwrite each other's counts.
+     * 
+     * @param replica
+     *            description of the data storage
+     * @param checked
+     *            number of verified copies
+     * @param corrupted
+     *            number of corrupted copies
+     * @param date
+     *            date of the update
+     * @return <code>true</code> if the statistics were updated, <code>false</code> if they do not exist
+     */
+    boolean addCopies(String replica, long checked, long corrupted, Date date);
+}
@@ -22,6 +22,7 @@ import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Root;
 
 import pl.psnc.synat.wrdz.common.dao.GenericDaoBean;
@@ -45,9 +46,10 @@ public class DigitalObjectDaoBean extends GenericDaoBean<DigitalObject, String>
 
 
     @Override
-    public DigitalObject getLast() {
+    public DigitalObject getLast(int partition) {
         CriteriaQuery<DigitalObject> criteriaQuery = criteriaBuilder.createQuery(clazz);
         Root<DigitalObject> root = criteriaQuery.from(clazz);
+        criteriaQuery.where(criteriaBuilder.equal(root.get(DigitalObject_.partition), partition));
         criteriaQuery.orderBy(criteriaBuilder.desc(root.get(DigitalObject_.addedOn)));
         criteriaQuery.select(root);
         List<DigitalObject> results = entityManager.createQuery(criteriaQuery).setMaxResults(1).getResultList();
@@ -59,28 +61,42 @@ public class DigitalObjectDaoBean extends GenericDaoBean<DigitalObject, String>
 
 
     @Override
-    public Long countCorrupted() {
+    public Long countOtherPartitioning(int partitionCount) {
         CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
         Root<DigitalObject> root = criteriaQuery.from(clazz);
         criteriaQuery.select(criteriaBuilder.count(root));
-        criteriaQuery.where(criteriaBuilder.equal(root.get(DigitalObject_.correct), false));
+        criteriaQuery.where(criteriaBuilder.notEqual(root.get(DigitalObject_.partitionCount), partitionCount));
         return entityManager.createQuery(criteriaQuery).getSingleResult();
     }
 
 
     @Override
-    public void deleteAll() {
-        entityManager.createQuery("delete from MdzDigitalObject").executeUpdate();
+    public Long countCorrupted() {
+        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
+        Root<DigitalObject> root = criteriaQuery.from(clazz);
+        criteriaQuery.select(criteriaBuilder.count(root));
+        criteriaQuery.where(criteriaBuilder.equal(root.get(DigitalObject_.correct), false));
+        return entityManager.createQuery(criteriaQuery).getSingleResult();
     }
 
 
     @Override
-    public Date getFirstAdded() {
-        CriteriaQuery<Date> criteriaQuery = criteriaBuilder.createQuery(Date.class);
+    public DigitalObject getNextDue(int partition, Date date) {
+        CriteriaQuery<DigitalObject> criteriaQuery = criteriaBuilder.createQuery(clazz);
         Root<DigitalObject> root = criteriaQuery.from(clazz);
-        criteriaQuery.select(root.get(DigitalObject_.addedOn));
-        criteriaQuery.orderBy(criteriaBuilder.asc(root.get(DigitalObject_.addedOn)));
-        List<Date> results = entityManager.createQuery(criteriaQuery).setMaxResults(1).getResultList();
+        Expression<Date> dueOn = root.get(DigitalObject_.dueOn);
+        criteriaQuery.select(root);
+        criteriaQuery.where(criteriaBuilder.equal(root.get(DigitalObject_.partition), partition),
+            criteriaBuilder.isNull(dueOn));
+        List<DigitalObject> results = entityManager.createQuery(criteriaQuery).setMaxResults(1).getResultList();
+        if (!results.isEmpty()) {
+            return results.get(0);
+        }
+
+        criteriaQuery.where(criteriaBuilder.equal(root.get(DigitalObject_.partition), partition),
+            criteriaBuilder.lessThanOrEqualTo(dueOn, date));
+        criteriaQuery.orderBy(criteriaBuilder.asc(dueOn));
+        results = entityManager.createQuery(criteriaQuery).setMaxResults(1).getResultList();
         if (!results.isEmpty()) {
             return results.get(0);
         }
@@ -89,16 +105,28 @@ public class DigitalObjectDaoBean extends GenericDaoBean<DigitalObject, String>
 
 
     @Override
-    public Date getLastVerified() {
-        CriteriaQuery<Date> criteriaQuery = criteriaBuilder.createQuery(Date.class);
+    public Long countVerifiedSince(Date date) {
+        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
         Root<DigitalObject> root = criteriaQuery.from(clazz);
-        criteriaQuery.select(root.get(DigitalObject_.verifiedOn));
-        criteriaQuery.orderBy(criteriaBuilder.desc(root.get(DigitalObject_.verifiedOn)));
-        List<Date> results = entityManager.createQuery(criteriaQuery).setMaxResults(1).getResultList();
-        if (!results.isEmpty()) {
-            return results.get(0);
-        }
-        return null;
+        criteriaQuery.select(criteriaBuilder.count(root));
+        criteriaQuery.where(criteriaBuilder.greaterThanOrEqualTo(root.get(DigitalObject_.verifiedOn), date));
+        return entityManager.createQuery(criteriaQuery).getSingleResult();
+    }
+
+
+    @Override
+    public int unassignPartitions(int partitionCount) {
+        return entityManager
+                .createQuery("update MdzDigitalObject o set o.partition = :partition, o.partitionCount = :count")
+                .setParameter("partition", DigitalObject.UNASSIGNED).setParameter("count", partitionCount)
+                .executeUpdate();
+    }
+
+
+    @Override
+    public int deleteUnassigned() {
+        return entityManager.createQuery("delete from MdzDigitalObject o where o.partition = :partition")
+                .setParameter("partition", DigitalObject.UNASSIGNED).executeUpdate();
     }
 
 }
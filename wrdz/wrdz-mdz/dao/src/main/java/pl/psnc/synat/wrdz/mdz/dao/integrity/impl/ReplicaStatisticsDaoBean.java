@@ -0,0 +1,74 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.dao.integrity.impl;
+
+import java.util.Date;
+
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.PersistenceException;
+
+import pl.psnc.synat.wrdz.common.dao.GenericDaoBean;
+import pl.psnc.synat.wrdz.mdz.dao.integrity.ReplicaStatisticsDao;
+import pl.psnc.synat.wrdz.mdz.entity.integrity.ReplicaStatistics;
+
+/**
+ * Default implementation of {@link ReplicaStatisticsDao}.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.MANDATORY)
+public class ReplicaStatisticsDaoBean extends GenericDaoBean<ReplicaStatistics, String> implements
+        ReplicaStatisticsDao {
+
+    /**
+     * Creates a new instance of ReplicaStatisticsDaoBean.
+     */
+    public ReplicaStatisticsDaoBean() {
+        super(ReplicaStatistics.class);
+    }
+
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void createIfAbsent(String replica) {
+        if (findById(replica) != null) {
+            return;
+        }
+        ReplicaStatistics statistics = new ReplicaStatistics();
+        statistics.setReplica(replica);
+        statistics.setUpdatedOn(new Date());
+        try {
+            entityManager.persist(statistics);
+            entityManager.flush();
+        } catch (PersistenceException e) {
+            // created by a concurrent transaction in the meantime, this transaction is rolled back
+        }
+    }
+
+
+    @Override
+    public boolean addCopies(String replica, long checked, long corrupted, Date date) {
+        return entityManager
+                .createQuery(
+                    "update ReplicaStatistics s set s.checkedCopies = s.checkedCopies + :checked, "
+                            + "s.corruptedCopies = s.corruptedCopies + :corrupted, s.updatedOn = :date "
+                            + "where s.replica = :replica").setParameter("checked", checked)
+                .setParameter("corrupted", corrupted).setParameter("date", date).setParameter("replica", replica)
+                .executeUpdate() > 0;
+    }
+
+}
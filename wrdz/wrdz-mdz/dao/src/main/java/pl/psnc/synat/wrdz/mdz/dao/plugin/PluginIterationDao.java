@@ -29,7 +29,8 @@ import pl.psnc.synat.wrdz.mdz.entity.plugin.PluginIteration;
 public interface PluginIterationDao extends GenericDao<PluginIteration, String> {
 
     /**
-     * Returns the last recorded iteration of the given plugin.
+     * Returns the last recorded iteration of the given plugin. Iterations are recorded in the order in which they were
+     * started, so this is the iteration of the newest object verified so far.
      * 
      * @param pluginName
      *            plugin name
@@ -50,8 +50,7 @@ public class PluginIterationDaoBean extends GenericDaoBean<PluginIteration, Stri
         CriteriaQuery<PluginIteration> criteriaQuery = criteriaBuilder.createQuery(clazz);
         Root<PluginIteration> root = criteriaQuery.from(clazz);
         criteriaQuery.where(criteriaBuilder.equal(root.get(PluginIteration_.pluginName), pluginName));
-        criteriaQuery.orderBy(criteriaBuilder.desc(root.get(PluginIteration_.finishedOn)),
-            criteriaBuilder.desc(root.get(PluginIteration_.id)));
+        criteriaQuery.orderBy(criteriaBuilder.desc(root.get(PluginIteration_.id)));
         criteriaQuery.select(root);
         List<PluginIteration> results = entityManager.createQuery(criteriaQuery).setMaxResults(1).getResultList();
         if (!results.isEmpty()) {
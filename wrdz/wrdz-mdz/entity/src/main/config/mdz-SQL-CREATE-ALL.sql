@@ -7,12 +7,34 @@ CREATE TABLE darceo.mdz_file_formats
 CREATE TABLE darceo.mdz_digital_objects
 (
   do_identifier VARCHAR(255) NOT NULL,
+  do_partition INTEGER NOT NULL,
+  do_partition_count INTEGER NOT NULL,
   do_added_on TIMESTAMP WITHOUT TIME ZONE NOT NULL,
   do_verified_on TIMESTAMP WITHOUT TIME ZONE,
   do_correct BOOLEAN,
+  do_size BIGINT,
+  do_modified_on TIMESTAMP WITHOUT TIME ZONE,
+  do_failures INTEGER NOT NULL DEFAULT 0,
+  do_replica_error_rate DOUBLE PRECISION,
+  do_due_on TIMESTAMP WITHOUT TIME ZONE,
   CONSTRAINT mdz_digital_objects_pkey PRIMARY KEY (do_identifier)
 );
 
+CREATE INDEX mdz_digital_objects_partition_idx ON darceo.mdz_digital_objects (do_partition, do_added_on);
+
+CREATE INDEX mdz_digital_objects_verified_idx ON darceo.mdz_digital_objects (do_partition, do_verified_on);
+
+CREATE INDEX mdz_digital_objects_due_idx ON darceo.mdz_digital_objects (do_partition, do_due_on);
+
+CREATE TABLE darceo.mdz_replica_statistics
+(
+  rs_replica VARCHAR(255) NOT NULL,
+  rs_checked_copies BIGINT NOT NULL,
+  rs_corrupted_copies BIGINT NOT NULL,
+  rs_updated_on TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT mdz_replica_statistics_pkey PRIMARY KEY (rs_replica)
+);
+
 
 CREATE SEQUENCE darceo.mdz_pi_id_seq INCREMENT BY 1 START WITH 1000;
 
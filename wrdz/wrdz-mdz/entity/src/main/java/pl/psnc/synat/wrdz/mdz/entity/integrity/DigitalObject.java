@@ -27,6 +27,9 @@ import javax.persistence.TemporalType;
 
 /**
  * Represents a WRDZ digital object for the purposes of data integrity verification.
+ * 
+ * Objects are kept between the verification cycles, so the next verification of each object can be scheduled
+ * according to the history of the previous ones.
  */
 @Entity(name = "MdzDigitalObject")
 @Table(name = "MDZ_DIGITAL_OBJECTS", schema = "darceo")
@@ -40,6 +43,17 @@ public class DigitalObject implements Serializable {
     @Column(name = "DO_IDENTIFIER", length = 255, nullable = false, unique = true)
     private String identifier;
 
+    /** Value of the partition of an object that has not been found in the current partitioning yet. */
+    public static final int UNASSIGNED = -1;
+
+    /** Partition of identifiers verified by one worker which the object belongs to. */
+    @Column(name = "DO_PARTITION", nullable = false)
+    private int partition;
+
+    /** Number of partitions in the verification cycle the object was added in. */
+    @Column(name = "DO_PARTITION_COUNT", nullable = false)
+    private int partitionCount;
+
     /** Date when this object was added for verification. */
     @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "DO_ADDED_ON", nullable = false)
@@ -54,6 +68,28 @@ public class DigitalObject implements Serializable {
     @Column(name = "DO_CORRECT", nullable = true)
     private Boolean correct;
 
+    /** Size in bytes of the object's files, known after the first verification. */
+    @Column(name = "DO_SIZE", nullable = true)
+    private Long size;
+
+    /** Date when the current version of the object was created, known after the first verification. */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "DO_MODIFIED_ON", nullable = true)
+    private Date modifiedOn;
+
+    /** Number of the last verifications in a row which found the object corrupted. */
+    @Column(name = "DO_FAILURES", nullable = false)
+    private int failures;
+
+    /** The highest error rate of the data storages which held the object's copies at the last verification. */
+    @Column(name = "DO_REPLICA_ERROR_RATE", nullable = true)
+    private Double replicaErrorRate;
+
+    /** Date when the object becomes due for its next verification, <code>null</code> if it has never been verified. */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "DO_DUE_ON", nullable = true)
+    private Date dueOn;
+
 
     public String getIdentifier() {
         return identifier;
@@ -65,6 +101,26 @@ public class DigitalObject implements Serializable {
     }
 
 
+    public int getPartition() {
+        return partition;
+    }
+
+
+    public void setPartition(int partition) {
+        this.partition = partition;
+    }
+
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+
     public Date getAddedOn() {
         return addedOn;
     }
@@ -93,4 +149,54 @@ public class DigitalObject implements Serializable {
     public void setCorrect(Boolean correct) {
         this.correct = correct;
     }
+
+
+    public Long getSize() {
+        return size;
+    }
+
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+
+    public Date getModifiedOn() {
+        return modifiedOn;
+    }
+
+
+    public void setModifiedOn(Date modifiedOn) {
+        this.modifiedOn = modifiedOn;
+    }
+
+
+    public int getFailures() {
+        return failures;
+    }
+
+
+    public void setFailures(int failures) {
+        this.failures = failures;
+    }
+
+
+    public Double getReplicaErrorRate() {
+        return replicaErrorRate;
+    }
+
+
+    public void setReplicaErrorRate(Double replicaErrorRate) {
+        this.replicaErrorRate = replicaErrorRate;
+    }
+
+
+    public Date getDueOn() {
+        return dueOn;
+    }
+
+
+    public void setDueOn(Date dueOn) {
+        this.dueOn = dueOn;
+    }
 }
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.entity.integrity;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+/**
+ * Represents the results of data integrity verification gathered for a single data storage of ZMD.
+ */
+@Entity
+@Table(name = "MDZ_REPLICA_STATISTICS", schema = "darceo")
+public class ReplicaStatistics implements Serializable {
+
+    /** Serial version UID. */
+    private static final long serialVersionUID = 5203971436209486107L;
+
+    /** Description of the data storage. */
+    @Id
+    @Column(name = "RS_REPLICA", length = 255, nullable = false, unique = true)
+    private String replica;
+
+    /** Number of copies verified in the data storage. */
+    @Column(name = "RS_CHECKED_COPIES", nullable = false)
+    private long checkedCopies;
+
+    /** Number of corrupted copies found in the data storage. */
+    @Column(name = "RS_CORRUPTED_COPIES", nullable = false)
+    private long corruptedCopies;
+
+    /** Date when the statistics were last updated. */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "RS_UPDATED_ON", nullable = false)
+    private Date updatedOn;
+
+
+    public String getReplica() {
+        return replica;
+    }
+
+
+    public void setReplica(String replica) {
+        this.replica = replica;
+    }
+
+
+    public long getCheckedCopies() {
+        return checkedCopies;
+    }
+
+
+    public void setCheckedCopies(long checkedCopies) {
+        this.checkedCopies = checkedCopies;
+    }
+
+
+    public long getCorruptedCopies() {
+        return corruptedCopies;
+    }
+
+
+    public void setCorruptedCopies(long corruptedCopies) {
+        this.corruptedCopies = corruptedCopies;
+    }
+
+
+    public Date getUpdatedOn() {
+        return updatedOn;
+    }
+
+
+    public void setUpdatedOn(Date updatedOn) {
+        this.updatedOn = updatedOn;
+    }
+}
@@ -20,7 +20,8 @@ import javax.ejb.Local;
 import pl.psnc.synat.wrdz.mdz.entity.format.FileFormat;
 
 /**
- * Format verifiers evaluate the loss risk and decide whether formats require migration.
+ * Format verifiers evaluate the loss risk and decide whether formats require migration. The formats are evaluated
+ * against a local snapshot of the format registry.
  */
 @Local
 public interface FileFormatVerifier {
@@ -34,4 +35,11 @@ public interface FileFormatVerifier {
      * @return <code>true</code> if the format requires migration; <code>false</code> otherwise
      */
     boolean isMigrationRequired(FileFormat format);
+
+
+    /**
+     * Downloads a new snapshot of the format registry the formats are evaluated against. The current snapshot is kept
+     * if the registry cannot be contacted.
+     */
+    void refreshRegistry();
 }
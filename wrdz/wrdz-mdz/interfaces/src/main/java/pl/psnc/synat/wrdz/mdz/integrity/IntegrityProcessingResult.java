@@ -26,6 +26,9 @@ public enum IntegrityProcessingResult {
     /** The processing was paused because the object was not yet available for download. */
     PAUSED,
 
-    /** There are no more objects to be processed. */
+    /** The processing was stopped because the hourly budget of verified bytes was used up. */
+    THROTTLED,
+
+    /** All the identifiers of the partition have been browsed and none of its objects is due for verification. */
     FINISHED;
 }
@@ -22,29 +22,53 @@ import javax.ejb.Local;
 /**
  * Responsible for the actual digital object processing.
  * <p>
- * Processing can be postponed when an object's data isn't immediately available for download. In that case, the
- * processor keeps track of that object's identifier and must be manually restarted when that object becomes available.
+ * Objects are divided into disjoint partitions and each partition is processed independently, so several partitions
+ * can be processed at the same time.
+ * <p>
+ * Processing of a partition can be postponed when an object's data isn't immediately available for download. In that
+ * case, the processor keeps track of that object's identifier and the partition must be manually restarted when that
+ * object becomes available.
  */
 @Local
 public interface IntegrityProcessor {
 
     /**
-     * Iteratively processes all active digital objects, checking their data integrity.
+     * Makes sure the progress recorded so far is consistent with the given number of partitions. If the objects were
+     * divided into a different number of partitions, they are moved out of their partitions and assigned to the new
+     * ones as the partitions are browsed again from the beginning. Their verification history is kept.
+     * 
+     * Must not be called while any partition is being processed.
+     * 
+     * @param partitionCount
+     *            number of partitions
+     */
+    void checkPartitioning(int partitionCount);
+
+
+    /**
+     * Iteratively processes all active digital objects of the partition, checking their data integrity.
      * 
      * This method runs asynchronously and is cancellable without losing progress (ie. calling it again after it has
      * been cancelled resumes the processing instead of restarting it).
      * 
      * If an object is not immediately available for download, the processor is set to wait for the object's identifier,
-     * and processing stops. A restart of the processor is required when the object becomes available.
+     * and processing of the partition stops. A restart of the partition is required when the object becomes available.
+     * 
+     * Processing of the partition stops when none of its objects is due for verification, or when the hourly budget of
+     * verified bytes is used up. The verification cycle is finished when all the partitions are finished.
      * 
      * @see Future#cancel(boolean)
+     * @param partition
+     *            partition number
      * @return empty Future object that allows the processing to be stopped if needed
      */
-    Future<Void> processAll();
+    Future<Void> processAll(int partition);
 
 
     /**
-     * Processes a single digital object, verifying its data integrity.
+     * Processes a single digital object of the partition, verifying its data integrity. The object is the one whose
+     * verification is the most urgent - new objects are verified first, the others according to the time of their last
+     * verification and their risk of corruption.
      * 
      * This method fetches the object's files from ZMD, calculates their hashes and checks them against the hash values
      * stored in the ZMD database. A message is sent if the calculated and retrieved hash values do not match.
@@ -52,30 +76,37 @@ public interface IntegrityProcessor {
      * If the object is not immediately available for download, the processor is set to wait for the object's
      * identifier, and this method exits.
      * 
+     * @param partition
+     *            partition number
      * @return processing result
      */
-    IntegrityProcessingResult processOne();
+    IntegrityProcessingResult processOne(int partition);
 
 
     /**
-     * Checks whether the processor is currently waiting for the object with the given identifier, and the wait status
-     * is cleared if the result is positive.
+     * Checks whether the processing of the partition is currently waiting for the object with the given identifier,
+     * and the wait status is cleared if the result is positive.
      * 
+     * @param partition
+     *            partition number
      * @param objectIdentifier
      *            identifier of the digital object
-     * @return <code>true</code> if the processor is waiting for the given object; <code>false</code> otherwise
+     * @return <code>true</code> if the partition is waiting for the given object; <code>false</code> otherwise
      */
-    boolean isWaitingFor(String objectIdentifier);
+    boolean isWaitingFor(int partition, String objectIdentifier);
 
 
     /**
-     * Unconditionally clears the wait status.
+     * Unconditionally clears the wait status of the partition.
+     * 
+     * @param partition
+     *            partition number
      */
-    void clearWait();
+    void clearWait(int partition);
 
 
     /**
-     * Logs statistics and clears the data table.
+     * Logs statistics and removes the objects which are no longer active in ZMD.
      */
     void finishCycle();
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.integrity;
+
+import javax.ejb.Local;
+
+import pl.psnc.synat.wrdz.mdz.entity.integrity.DigitalObject;
+
+/**
+ * Decides which digital object should be verified next.
+ * <p>
+ * Every object should be verified at least once in the configured number of days. Objects at a higher risk - found
+ * corrupted before, held by error-prone data storages, recently modified or large - are verified more often, and the
+ * objects which became due for their verification earliest go first.
+ */
+@Local
+public interface IntegrityScheduler {
+
+    /**
+     * Returns the object of the partition whose verification is the most urgent.
+     * 
+     * @param partition
+     *            partition number
+     * @return object to be verified, or <code>null</code> if no object of the partition needs verification now
+     */
+    DigitalObject findNextDue(int partition);
+
+
+    /**
+     * Records the result of the object's verification, both for the object and for the data storages holding its
+     * copies.
+     * 
+     * @param object
+     *            verified object
+     * @param result
+     *            result of the verification
+     */
+    void recordVerification(DigitalObject object, IntegrityVerificationResult result);
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.mdz.integrity;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Result of the data integrity verification of a single digital object.
+ */
+public class IntegrityVerificationResult {
+
+    /** Whether the object is corrupted. */
+    private final boolean corrupted;
+
+    /** Size in bytes of the verified files, <code>null</code> if not known. */
+    private final Long size;
+
+    /** Date when the current version of the object was created, <code>null</code> if not known. */
+    private final Date modifiedOn;
+
+    /** Number of copies verified by each data storage, by the description of the data storage. */
+    private final Map<String, Integer> checkedCopies;
+
+    /** Number of corrupted copies found by each data storage, by the description of the data storage. */
+    private final Map<String, Integer> corruptedCopies;
+
+
+    /**
+     * Constructor.
+     * 
+     * @param corrupted
+     *            whether the object is corrupted
+     * @param size
+     *            size in bytes of the verified files, <code>null</code> if not known
+     * @param modifiedOn
+     *            date when the current version of the object was created, <code>null</code> if not known
+     * @param checkedCopies
+     *            number of copies verified by each data storage, <code>null</code> if not known
+     * @param corruptedCopies
+     *            number of corrupted copies found by each data storage, <code>null</code> if not known
+     */
+    public IntegrityVerificationResult(boolean corrupted, Long size, Date modifiedOn,
+            Map<String, Integer> checkedCopies, Map<String, Integer> corruptedCopies) {
+        this.corrupted = corrupted;
+        this.size = size;
+        this.modifiedOn = modifiedOn;
+        this.checkedCopies = checkedCopies != null ? checkedCopies : Collections.<String, Integer> emptyMap();
+        this.corruptedCopies = corruptedCopies != null ? corruptedCopies : Collections.<String, Integer> emptyMap();
+    }
+
+
+    public boolean isCorrupted() {
+        return corrupted;
+    }
+
+
+    public Long getSize() {
+        return size;
+    }
+
+
+    public Date getModifiedOn() {
+        return modifiedOn;
+    }
+
+
+    public Map<String, Integer> getCheckedCopies() {
+        return checkedCopies;
+    }
+
+
+    public Map<String, Integer> getCorruptedCopies() {
+        return corruptedCopies;
+    }
+}
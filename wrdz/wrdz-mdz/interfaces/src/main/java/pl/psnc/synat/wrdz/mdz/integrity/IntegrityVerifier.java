@@ -37,4 +37,16 @@ public interface IntegrityVerifier {
      *         otherwise
      */
     boolean isCorrupted(String objectIdentifier, File objectFile);
+
+
+    /**
+     * Checks the stored copies of the given object's files against the hash values stored in the ZMD database. The
+     * copies are hashed where they are stored, by each data storage holding them, so the object is not downloaded.
+     * 
+     * @param objectIdentifier
+     *            identifier of the digital object
+     * @return result of the verification - the object is corrupted if a copy of one of the files is missing or
+     *         unreadable or its hash values do not match; <code>null</code> if the object is no longer active in ZMD
+     */
+    IntegrityVerificationResult verifyInStorage(String objectIdentifier);
 }
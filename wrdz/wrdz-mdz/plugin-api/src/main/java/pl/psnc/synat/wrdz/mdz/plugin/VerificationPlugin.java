@@ -17,6 +17,9 @@ package pl.psnc.synat.wrdz.mdz.plugin;
 
 /**
  * An interface for plugins that perform verification of stored digital objects.
+ * <p>
+ * A plugin configured with a concurrency level greater than one verifies several objects at the same time, so its
+ * implementation must be thread-safe.
  */
 public interface VerificationPlugin {
 
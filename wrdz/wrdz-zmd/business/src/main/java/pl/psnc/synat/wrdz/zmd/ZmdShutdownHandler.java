@@ -0,0 +1,42 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+import pl.psnc.synat.wrdz.common.metadata.XmlParsers;
+import pl.psnc.synat.wrdz.common.metadata.tech.TechMetadataExtractorFactory;
+
+/**
+ * Performs operations that need to be performed when the module is stopped (undeployed).
+ */
+@Singleton
+@Startup
+public class ZmdShutdownHandler {
+
+    /**
+     * Releases the resources held by the module.
+     */
+    @PreDestroy
+    protected void destroy() {
+        TechMetadataExtractorFactory.getInstance().shutdown();
+        JaxbProcessors.clear();
+        XmlParsers.clear();
+    }
+}
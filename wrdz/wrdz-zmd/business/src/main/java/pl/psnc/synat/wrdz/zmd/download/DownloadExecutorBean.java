@@ -0,0 +1,78 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.download;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import pl.psnc.synat.wrdz.common.utility.DaemonThreadFactory;
+import pl.psnc.synat.wrdz.zmd.config.ZmdConfiguration;
+
+/**
+ * Bean providing the pool of download threads used by all {@link DownloadScheduler}s. The threads are stopped together
+ * with the application.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DownloadExecutorBean {
+
+    /**
+     * Module configuration.
+     */
+    @Inject
+    private ZmdConfiguration zmdConfiguration;
+
+    /**
+     * Pool of download threads.
+     */
+    private ExecutorService executor;
+
+
+    /**
+     * Creates the pool with the configured number of threads.
+     */
+    @PostConstruct
+    protected void init() {
+        executor = Executors.newFixedThreadPool(Math.max(1, zmdConfiguration.getDownloadThreads()),
+            new DaemonThreadFactory("zmd-download"));
+    }
+
+
+    /**
+     * Stops the download threads.
+     */
+    @PreDestroy
+    protected void destroy() {
+        executor.shutdownNow();
+    }
+
+
+    /**
+     * Returns the pool of download threads.
+     * 
+     * @return pool of download threads
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.download;
+
+import java.net.URI;
+
+import pl.psnc.synat.wrdz.zmd.download.adapters.DownloadAdapter;
+import pl.psnc.synat.wrdz.zmd.exception.DownloadAdapterException;
+
+/**
+ * Download of one resource scheduled by the {@link DownloadScheduler}. It binds the download task with the adapter
+ * prepared for its protocol and connection information.
+ */
+public class DownloadJob {
+
+    /**
+     * Task whose cache path, hashes and size are set once the resource is downloaded.
+     */
+    private final DownloadTask task;
+
+    /**
+     * Adapter used to download the resource.
+     */
+    private final DownloadAdapter adapter;
+
+    /**
+     * Object-relative path of the resource in the cache.
+     */
+    private final String relativePath;
+
+
+    /**
+     * Creates a new job.
+     * 
+     * @param task
+     *            download task
+     * @param adapter
+     *            adapter for the protocol of the resource
+     * @param relativePath
+     *            object-relative path of the resource in the cache
+     */
+    public DownloadJob(DownloadTask task, DownloadAdapter adapter, String relativePath) {
+        this.task = task;
+        this.adapter = adapter;
+        this.relativePath = relativePath;
+    }
+
+
+    public DownloadTask getTask() {
+        return task;
+    }
+
+
+    /**
+     * Returns the key of the remote host the resource is downloaded from, used to limit connections per host.
+     * 
+     * @return host and port of the resource
+     */
+    public String getHost() {
+        URI uri = task.getUri();
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+
+
+    /**
+     * Downloads the resource and stores the results in the task.
+     * 
+     * @param resume
+     *            whether to continue the download from the part of the file already present in the cache
+     * @throws DownloadAdapterException
+     *             if the resource could not be downloaded
+     */
+    public void run(boolean resume)
+            throws DownloadAdapterException {
+        String cachePath;
+        if (resume) {
+            cachePath = adapter.resumeDownload(task.getUri(), relativePath);
+        } else {
+            cachePath = adapter.downloadFile(task.getUri(), relativePath);
+        }
+        task.setCachePath(cachePath);
+        task.setHashes(adapter.getHashes());
+        task.setSize(adapter.getSize());
+    }
+
+
+    @Override
+    public String toString() {
+        StringBuffer sb = new StringBuffer("DownloadJob ");
+        sb.append("[task = ").append(task);
+        sb.append(", relativePath = ").append(relativePath);
+        sb.append("]");
+        return sb.toString();
+    }
+
+}
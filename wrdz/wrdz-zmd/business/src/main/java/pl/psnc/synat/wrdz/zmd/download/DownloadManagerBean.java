@@ -18,6 +18,7 @@ package pl.psnc.synat.wrdz.zmd.download;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -55,6 +56,12 @@ public class DownloadManagerBean implements DownloadManager {
     @EJB
     private ConnectionHelper connectionHelper;
 
+    /**
+     * Provider of the pool of download threads.
+     */
+    @EJB
+    private DownloadExecutorBean downloadExecutor;
+
     /**
      * ZMD module configuration.
      */
@@ -87,23 +94,35 @@ public class DownloadManagerBean implements DownloadManager {
         if (cacheDir == null || cacheDir.trim().isEmpty()) {
             throw new IllegalArgumentException("Cannot perform operation for unspecified cache subdir parameter!");
         }
-        int itemIndex = 0;
+        List<DownloadJob> jobs = new ArrayList<DownloadJob>();
         try {
-            for (itemIndex = 0; itemIndex < files.size(); itemIndex++) {
-                DownloadTask downloadTask = files.get(itemIndex);
-                downloadTask
-                        .setCachePath(downloadFromUri(downloadTask.getUri(), cacheDir + downloadTask.getInnerPath()));
+            for (DownloadTask downloadTask : files) {
+                String relativePath = cacheDir + downloadTask.getInnerPath();
+                checkArguments(downloadTask.getUri(), relativePath);
+                if (isLocallyCached(downloadTask.getUri())) {
+                    downloadTask.setCachePath(getLocalPath(downloadTask.getUri()));
+                } else {
+                    jobs.add(new DownloadJob(downloadTask, createAdapter(downloadTask.getUri()), relativePath));
+                }
             }
+            new DownloadScheduler(downloadExecutor.getExecutor(), zmdConfiguration.getDownloadThreads(),
+                    zmdConfiguration.getDownloadConnectionsPerHost(), zmdConfiguration.getDownloadRetries())
+                    .execute(jobs);
         } catch (Exception e) {
             try {
                 for (DownloadTask downloadTask : files) {
                     downloadTask.setCachePath(null);
+                    downloadTask.setHashes(null);
+                    downloadTask.setSize(null);
                 }
                 FileUtils.deleteDirectory(new File(cacheHome + "/" + cacheDir));
             } catch (IOException ioe) {
                 logger.debug("Exception raised why cleaning tempo directory: ", ioe);
             }
-            throw new DownloadException("Exception downloading resource " + files.get(itemIndex).toString(), e);
+            if (e instanceof DownloadException) {
+                throw (DownloadException) e;
+            }
+            throw new DownloadException("Exception downloading resources to " + cacheDir, e);
         }
         return files;
     }
@@ -112,6 +131,30 @@ public class DownloadManagerBean implements DownloadManager {
     @Override
     public String downloadFromUri(URI uri, String relativePath)
             throws DownloadException, IllegalArgumentException {
+        checkArguments(uri, relativePath);
+        if (isLocallyCached(uri)) {
+            return getLocalPath(uri);
+        }
+        try {
+            return createAdapter(uri).downloadFile(uri, relativePath);
+        } catch (DownloadAdapterException e) {
+            throw new DownloadException("An error occured while downloading " + uri, e);
+        }
+    }
+
+
+    /**
+     * Checks the arguments of a download.
+     * 
+     * @param uri
+     *            URL compliant URI of the resource to download.
+     * @param relativePath
+     *            object-relative path of the resource
+     * @throws IllegalArgumentException
+     *             if the URI or the path is invalid
+     */
+    private void checkArguments(URI uri, String relativePath)
+            throws IllegalArgumentException {
         if (uri == null) {
             throw new IllegalArgumentException("Cannot download content - given URI is null");
         } else if (!uri.isAbsolute()) {
@@ -120,25 +163,34 @@ public class DownloadManagerBean implements DownloadManager {
         if (relativePath == null || relativePath.trim().isEmpty()) {
             throw new IllegalArgumentException("Cannot download content - given path is empty or null");
         }
-        String cachedResourcePath = null;
-        if (isLocallyCached(uri)) {
-            return (new File(uri.getSchemeSpecificPart())).getAbsolutePath(); // must be getSchemeSpecificPart() because of mounted network drives 
-        } else {
-            try {
-                ConnectionInformation connectionInfo = connectionHelper.getConnectionInformation(uri);
-                DownloadAdapter downloadAdapter = getAdapterForProtocolName(uri.getScheme().toUpperCase(),
-                    connectionInfo);
-                cachedResourcePath = downloadAdapter.downloadFile(uri, relativePath);
-            } catch (AmbiguousResultException e) {
-                throw new DownloadException("Could not determine connection information to use", e);
-            } catch (OperationNotSupportedException e) {
-                throw new DownloadException("Cannot download using specified protocol " + uri.getScheme()
-                        + ", no compatible adapters present in the system", e);
-            } catch (DownloadAdapterException e) {
-                throw new DownloadException("An error occured while creating the download adapter", e);
-            }
+    }
+
+
+    /**
+     * Creates the download adapter for the resource, configured with its connection information and the hash types to
+     * calculate while downloading.
+     * 
+     * @param uri
+     *            URL compliant URI of the resource to download.
+     * @return download adapter
+     * @throws DownloadException
+     *             if the adapter could not be created
+     */
+    private DownloadAdapter createAdapter(URI uri)
+            throws DownloadException {
+        try {
+            ConnectionInformation connectionInfo = connectionHelper.getConnectionInformation(uri);
+            DownloadAdapter downloadAdapter = getAdapterForProtocolName(uri.getScheme().toUpperCase(), connectionInfo);
+            downloadAdapter.setHashTypes(zmdConfiguration.getHashTypes());
+            return downloadAdapter;
+        } catch (AmbiguousResultException e) {
+            throw new DownloadException("Could not determine connection information to use", e);
+        } catch (OperationNotSupportedException e) {
+            throw new DownloadException("Cannot download using specified protocol " + uri.getScheme()
+                    + ", no compatible adapters present in the system", e);
+        } catch (DownloadAdapterException e) {
+            throw new DownloadException("An error occured while creating the download adapter", e);
         }
-        return cachedResourcePath;
     }
 
 
@@ -171,6 +223,19 @@ public class DownloadManagerBean implements DownloadManager {
     }
 
 
+    /**
+     * Returns the absolute path of the locally cached resource.
+     * 
+     * @param uri
+     *            resource's URI
+     * @return absolute path of the resource
+     */
+    private String getLocalPath(URI uri) {
+        // must be getSchemeSpecificPart() because of mounted network drives
+        return (new File(uri.getSchemeSpecificPart())).getAbsolutePath();
+    }
+
+
     /**
      * Checks weather the resource is already locally cached/stored on the server that runs the app.
      * 
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.download;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.wrdz.common.performance.Profiler;
+import pl.psnc.synat.wrdz.zmd.exception.DownloadException;
+
+/**
+ * Downloads resources in parallel. The number of concurrent connections to one remote host is limited for all the
+ * schedulers together, so a single slow server does not take all the workers and is not flooded with requests. Failed
+ * downloads are retried by resuming them, the ones which succeeded are not downloaded again.
+ */
+public class DownloadScheduler {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(DownloadScheduler.class);
+
+    /**
+     * Connection permits of remote hosts, shared by all schedulers.
+     */
+    private static final ConcurrentMap<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Pool of threads downloading resources.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Number of downloads running in parallel.
+     */
+    private final int threads;
+
+    /**
+     * Maximal number of concurrent connections to one host.
+     */
+    private final int connectionsPerHost;
+
+    /**
+     * Number of times failed downloads are resumed.
+     */
+    private final int retries;
+
+
+    /**
+     * Creates a new scheduler.
+     * 
+     * @param executor
+     *            pool of threads downloading resources
+     * @param threads
+     *            number of downloads running in parallel
+     * @param connectionsPerHost
+     *            maximal number of concurrent connections to one host
+     * @param retries
+     *            number of times failed downloads are resumed
+     */
+    public DownloadScheduler(ExecutorService executor, int threads, int connectionsPerHost, int retries) {
+        this.executor = executor;
+        this.threads = threads;
+        this.connectionsPerHost = Math.max(1, connectionsPerHost);
+        this.retries = Math.max(0, retries);
+    }
+
+
+    /**
+     * Runs all the jobs. Jobs which failed are resumed until they succeed or the number of retries is exhausted.
+     * 
+     * @param jobs
+     *            download jobs
+     * @throws DownloadException
+     *             if any of the resources could not be downloaded
+     */
+    public void execute(List<DownloadJob> jobs)
+            throws DownloadException {
+        List<DownloadJob> pending = jobs;
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            Map<DownloadJob, Exception> failures = runAll(pending, attempt > 0);
+            if (failures.isEmpty()) {
+                return;
+            }
+            if (attempt >= retries) {
+                Map.Entry<DownloadJob, Exception> failure = failures.entrySet().iterator().next();
+                throw new DownloadException("Exception downloading resource " + failure.getKey().getTask(),
+                        failure.getValue());
+            }
+            logger.warn(failures.size() + " of " + pending.size() + " downloads failed, resuming them (retry "
+                    + (attempt + 1) + " of " + retries + ")");
+            pending = new ArrayList<DownloadJob>(failures.keySet());
+        }
+    }
+
+
+    /**
+     * Runs the jobs, in parallel if there is more than one, and collects the errors.
+     * 
+     * @param jobs
+     *            download jobs
+     * @param resume
+     *            whether to resume the downloads
+     * @return errors keyed by the failed jobs - empty if all the jobs succeeded
+     */
+    private Map<DownloadJob, Exception> runAll(List<DownloadJob> jobs, final boolean resume) {
+        Map<DownloadJob, Exception> failures = new LinkedHashMap<DownloadJob, Exception>();
+        if (jobs.size() < 2 || threads < 2) {
+            for (DownloadJob job : jobs) {
+                try {
+                    run(job, resume);
+                } catch (Exception e) {
+                    logger.warn("downloading " + job + " failed", e);
+                    failures.put(job, e);
+                }
+            }
+            return failures;
+        }
+        Profiler.start("parallel download");
+        Map<DownloadJob, Future<Void>> futures = new LinkedHashMap<DownloadJob, Future<Void>>();
+        for (final DownloadJob job : jobs) {
+            futures.put(job, executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call()
+                        throws Exception {
+                    run(job, resume);
+                    return null;
+                }
+            }));
+        }
+        boolean interrupted = false;
+        try {
+            for (Map.Entry<DownloadJob, Future<Void>> future : futures.entrySet()) {
+                while (true) {
+                    try {
+                        future.getValue().get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        logger.warn("downloading " + future.getKey() + " failed", e.getCause());
+                        failures.put(future.getKey(), e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            Profiler.stop("parallel download");
+        }
+        return failures;
+    }
+
+
+    /**
+     * Runs the job holding a connection permit of its host.
+     * 
+     * @param job
+     *            download job
+     * @param resume
+     *            whether to resume the download
+     * @throws Exception
+     *             if the download failed
+     */
+    private void run(DownloadJob job, boolean resume)
+            throws Exception {
+        Semaphore permits = getPermits(job.getHost());
+        permits.acquire();
+        try {
+            job.run(resume);
+        } finally {
+            permits.release();
+        }
+    }
+
+
+    /**
+     * Returns the connection permits of the host, creating them on first use.
+     * 
+     * @param host
+     *            key of the host
+     * @return connection permits
+     */
+    private Semaphore getPermits(String host) {
+        Semaphore permits = HOST_PERMITS.get(host);
+        if (permits == null) {
+            Semaphore created = new Semaphore(connectionsPerHost, true);
+            permits = HOST_PERMITS.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+}
@@ -66,8 +66,9 @@ public class DownloaderBean implements Downloader {
         List<OutputFile> results = new ArrayList<OutputFile>();
         List<DownloadTask> downloads = new ArrayList<DownloadTask>();
         for (InputFile inputFile : inputFiles) {
-            results.add(downloadInputFile(cacheDir, downloads, inputFile));
+            results.add(prepareInputFile(downloads, inputFile));
         }
+        download(downloads, cacheDir);
         return results;
     }
 
@@ -83,8 +84,9 @@ public class DownloaderBean implements Downloader {
         List<OutputFileUpdate> results = new ArrayList<OutputFileUpdate>();
         List<DownloadTask> downloads = new ArrayList<DownloadTask>();
         for (InputFileUpdate inputFile : inputFiles) {
-            results.add(downloadInputFileUpdate(cacheDir, downloads, inputFile));
+            results.add(prepareInputFileUpdate(downloads, inputFile));
         }
+        download(downloads, cacheDir);
         return results;
     }
 
@@ -97,98 +99,108 @@ public class DownloaderBean implements Downloader {
         } else if (resources.isEmpty()) {
             throw new IllegalArgumentException("Cannot perform operation for empty list!");
         }
+        return downloadManager.downloadFiles(prepareMetadata(contentPath, resources), cacheDir);
+    }
+
+
+    /**
+     * Downloads all the prepared files into the download cache at once, so they can be fetched in parallel.
+     * 
+     * @param downloads
+     *            download tasks of all the files
+     * @param cacheDir
+     *            path to the cache directory.
+     * @throws DownloadException
+     *             should any download problems occur.
+     */
+    private void download(List<DownloadTask> downloads, String cacheDir)
+            throws DownloadException {
+        if (downloads.isEmpty()) {
+            return;
+        }
+        logger.debug("Started downloading " + downloads.size() + " files into cache.");
+        downloadManager.downloadFiles(downloads, cacheDir);
+        logger.debug("Finished downloading " + downloads.size() + " files into cache.");
+    }
+
+
+    /**
+     * Prepares download tasks of the provided metadata of a content file.
+     * 
+     * @param contentPath
+     *            path of the content file the metadata describe.
+     * @param resources
+     *            metadata resources keyed by their names.
+     * @return download tasks of the metadata.
+     */
+    private List<DownloadTask> prepareMetadata(String contentPath, Map<String, URI> resources) {
         List<DownloadTask> downloads = new ArrayList<DownloadTask>();
         for (Entry<String, URI> entry : resources.entrySet()) {
             downloads.add(new DownloadTask(entry.getValue(), ObjectStructure.getPathForProvidedMetadata(contentPath,
                 entry.getKey()), entry.getKey()));
         }
-        return downloadManager.downloadFiles(downloads, cacheDir);
+        return downloads;
     }
 
 
     /**
-     * Downloads input file with it's metadata into download cache.
+     * Prepares download of the input file with it's metadata. The tasks are filled once they are downloaded.
      * 
-     * @param cacheDir
-     *            path to the cache directory.
      * @param downloads
-     *            list of download tasks to perform by downloader.
+     *            list of download tasks to perform by downloader, the tasks of the file are added to it.
      * @param inputFile
      *            information about resources to be downloaded.
      * @return object describing locations of downloaded files in the cache.
-     * @throws DownloadException
-     *             should any download problems occur.
      */
-    private OutputFile downloadInputFile(String cacheDir, List<DownloadTask> downloads, InputFile inputFile)
-            throws DownloadException {
-        OutputFile result = null;
-        logger.debug("Started downloading content file " + inputFile.getSource() + " into cache.");
+    private OutputFile prepareInputFile(List<DownloadTask> downloads, InputFile inputFile) {
         String innerPath = ObjectStructure.getPathForContent(inputFile.getDestination());
-        downloads.add(new DownloadTask(inputFile.getSource(), innerPath, ObjectStructure
-                .getFilenameForContent(inputFile.getDestination())));
-        DownloadTask file = downloadManager.downloadFiles(downloads, cacheDir).get(0);
-        logger.debug("Content file " + inputFile.getSource() + " cached at " + file.getCachePath());
+        DownloadTask file = new DownloadTask(inputFile.getSource(), innerPath,
+                ObjectStructure.getFilenameForContent(inputFile.getDestination()));
+        downloads.add(file);
         Map<String, URI> metadata = inputFile.getMetadataFilesToAdd();
         if (metadata == null || metadata.isEmpty()) {
             logger.debug("No provided metadata for content file " + inputFile.getSource());
-            result = new OutputFile(file, inputFile.getSequence(), null);
-        } else {
-            logger.debug("Started downloading provided metadata for content file " + inputFile.getSource());
-            result = new OutputFile(file, inputFile.getSequence(), downloadMetadataToCache(inputFile.getDestination(),
-                metadata, cacheDir));
-            logger.debug("Finished downloading provided metadata for content file " + inputFile.getSource());
+            return new OutputFile(file, inputFile.getSequence(), null);
         }
-        downloads.clear();
-        return result;
+        List<DownloadTask> metadataFiles = prepareMetadata(inputFile.getDestination(), metadata);
+        downloads.addAll(metadataFiles);
+        return new OutputFile(file, inputFile.getSequence(), metadataFiles);
     }
 
 
     /**
-     * Downloads input file update with it's metadata and other modifications into download cache.
+     * Prepares download of the input file update with it's metadata and other modifications. The tasks are filled once
+     * they are downloaded.
      * 
-     * @param cacheDir
-     *            path to the cache directory.
      * @param downloads
-     *            list of download tasks to perform by downloader.
+     *            list of download tasks to perform by downloader, the tasks of the file are added to it.
      * @param inputFile
      *            information about resources to be downloaded.
      * @return object describing locations of downloaded files in the cache.
-     * @throws DownloadException
-     *             should any download problems occur.
      */
-    private OutputFileUpdate downloadInputFileUpdate(String cacheDir, List<DownloadTask> downloads,
-            InputFileUpdate inputFile)
-            throws DownloadException {
-        DownloadTask file = null;
+    private OutputFileUpdate prepareInputFileUpdate(List<DownloadTask> downloads, InputFileUpdate inputFile) {
         List<DownloadTask> addedMetadata = null;
         List<DownloadTask> modifiedMetadata = null;
-        logger.debug("Started downloading content file update" + inputFile.getSource() + " into cache.");
         String innerPath = ObjectStructure.getPathForContent(inputFile.getDestination());
         String filename = ObjectStructure.getFilenameForContent(inputFile.getDestination());
+        DownloadTask file = new DownloadTask(inputFile.getSource(), innerPath, filename);
         if (inputFile.getSource() != null) {
-            downloads.add(new DownloadTask(inputFile.getSource(), innerPath, filename));
-            file = downloadManager.downloadFiles(downloads, cacheDir).get(0);
-            logger.debug("Updated content file " + inputFile.getSource() + " cached at " + file.getCachePath());
-        } else {
-            file = new DownloadTask(null, innerPath, filename);
+            downloads.add(file);
         }
         Map<String, URI> metadataToAdd = inputFile.getMetadataFilesToAdd();
         if (metadataToAdd == null || metadataToAdd.isEmpty()) {
             logger.debug("No added provided metadata for content file " + inputFile.getSource());
         } else {
-            logger.debug("Started downloading added provided metadata for content file " + inputFile.getSource());
-            addedMetadata = downloadMetadataToCache(inputFile.getDestination(), metadataToAdd, cacheDir);
-            logger.debug("Finished downloading added provided metadata for content file " + inputFile.getSource());
+            addedMetadata = prepareMetadata(inputFile.getDestination(), metadataToAdd);
+            downloads.addAll(addedMetadata);
         }
         Map<String, URI> metadataToModify = inputFile.getMetadataFilesToModify();
         if (metadataToModify == null || metadataToModify.isEmpty()) {
             logger.debug("No updated provided metadata for content file " + inputFile.getSource());
         } else {
-            logger.debug("Started downloading updated provided metadata for content file " + inputFile.getSource());
-            modifiedMetadata = downloadMetadataToCache(inputFile.getDestination(), metadataToModify, cacheDir);
-            logger.debug("Finished downloading updated provided metadata for content file " + inputFile.getSource());
+            modifiedMetadata = prepareMetadata(inputFile.getDestination(), metadataToModify);
+            downloads.addAll(modifiedMetadata);
         }
-        downloads.clear();
         return new OutputFileUpdate(file, inputFile.getSequence(), addedMetadata, modifiedMetadata,
                 inputFile.getMetadataFilesToRemove());
     }
@@ -15,9 +15,22 @@
  */
 package pl.psnc.synat.wrdz.zmd.download.adapters;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import pl.psnc.synat.wrdz.zmd.download.ConnectionInformation;
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 import pl.psnc.synat.wrdz.zmd.exception.DownloadAdapterException;
 
 /**
@@ -25,6 +38,11 @@ import pl.psnc.synat.wrdz.zmd.exception.DownloadAdapterException;
  */
 public abstract class AbstractDownloadAdapter {
 
+    /**
+     * Size of the buffer of the stream writing to the cache.
+     */
+    protected static final int BUFFER_SIZE = 64 * 1024;
+
     /**
      * Connection parameters including repository address and authentication data.
      */
@@ -35,6 +53,21 @@ public abstract class AbstractDownloadAdapter {
      */
     protected final String cacheHome;
 
+    /**
+     * Hash types calculated while downloading.
+     */
+    private List<HashType> hashTypes = Collections.emptyList();
+
+    /**
+     * Stream to which the most recently downloaded file was written.
+     */
+    private DigestingOutputStream cacheStream;
+
+    /**
+     * Hashes of the most recently downloaded file.
+     */
+    private Map<HashType, String> hashes;
+
 
     /**
      * Creates new abstract download adapter initializing it with the values of the parameters passed.
@@ -50,6 +83,116 @@ public abstract class AbstractDownloadAdapter {
     }
 
 
+    public void setHashTypes(List<HashType> hashTypes) {
+        this.hashTypes = hashTypes;
+    }
+
+
+    /**
+     * Returns hashes of the most recently downloaded file, calculated while it was written to the cache.
+     * 
+     * @return hashes keyed by their types or null if nothing was downloaded
+     */
+    public Map<HashType, String> getHashes() {
+        if (hashes == null && cacheStream != null) {
+            hashes = cacheStream.getHashes();
+        }
+        return hashes;
+    }
+
+
+    /**
+     * Returns the number of bytes of the most recently downloaded file.
+     * 
+     * @return size of the file or null if nothing was downloaded
+     */
+    public Long getSize() {
+        if (cacheStream != null) {
+            return cacheStream.getSize();
+        }
+        return null;
+    }
+
+
+    /**
+     * Opens a stream writing the file to the cache. Hashes and size of the data written through it are available by
+     * {@link #getHashes()} and {@link #getSize()} once the stream is closed.
+     * 
+     * @param cachedFilePath
+     *            absolute path to the file in the cache.
+     * @return output stream of the file
+     * @throws DownloadAdapterException
+     *             if the file could not be created or the hashing algorithm is not available
+     */
+    protected OutputStream openCacheStream(String cachedFilePath)
+            throws DownloadAdapterException {
+        return openCacheStream(cachedFilePath, 0);
+    }
+
+
+    /**
+     * Opens a stream writing the file to the cache, keeping the given number of bytes already present in the file. The
+     * kept part is read once to include it in the hashes, the rest of the file is discarded.
+     * 
+     * @param cachedFilePath
+     *            absolute path to the file in the cache.
+     * @param offset
+     *            number of bytes of the file to keep, 0 to overwrite the file
+     * @return output stream appending to the file
+     * @throws DownloadAdapterException
+     *             if the file could not be written or the hashing algorithm is not available
+     */
+    protected OutputStream openCacheStream(String cachedFilePath, long offset)
+            throws DownloadAdapterException {
+        hashes = null;
+        cacheStream = null;
+        try {
+            if (offset > 0) {
+                RandomAccessFile file = new RandomAccessFile(cachedFilePath, "rw");
+                try {
+                    file.setLength(offset);
+                } finally {
+                    file.close();
+                }
+            }
+            DigestingOutputStream stream = new DigestingOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    cachedFilePath, offset > 0), BUFFER_SIZE), hashTypes);
+            if (offset > 0) {
+                InputStream kept = new FileInputStream(cachedFilePath);
+                try {
+                    stream.preload(kept);
+                } finally {
+                    kept.close();
+                }
+            }
+            cacheStream = stream;
+        } catch (FileNotFoundException e) {
+            throw new DownloadAdapterException("Unable to create new file in cache.", e);
+        } catch (IOException e) {
+            throw new DownloadAdapterException("Unable to resume writing of the file in cache.", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new DownloadAdapterException("Unable to locate appropriate hashing algorithm classes.", e);
+        }
+        return cacheStream;
+    }
+
+
+    /**
+     * Returns the number of bytes of the file already present in the cache, left by an interrupted download.
+     * 
+     * @param cachedFilePath
+     *            absolute path to the file in the cache.
+     * @return length of the partial file or 0 if it does not exist
+     */
+    protected long getPartialLength(String cachedFilePath) {
+        File file = new File(cachedFilePath);
+        if (file.isFile()) {
+            return file.length();
+        }
+        return 0;
+    }
+
+
     /**
      * Provides absolute path to the resource in cache.
      * 
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.download.adapters;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
+
+/**
+ * Output stream which calculates hashes and counts bytes of the data written through it, so a downloaded file does not
+ * have to be read again to get its hashes.
+ */
+public class DigestingOutputStream extends FilterOutputStream {
+
+    /**
+     * Hash types being calculated.
+     */
+    private final List<HashType> hashTypes;
+
+    /**
+     * Digests for the subsequent hash types.
+     */
+    private final MessageDigest[] digests;
+
+    /**
+     * Number of bytes written.
+     */
+    private long size;
+
+
+    /**
+     * Creates a stream calculating the given hash types.
+     * 
+     * @param out
+     *            underlying output stream
+     * @param hashTypes
+     *            hash types to calculate
+     * @throws NoSuchAlgorithmException
+     *             if no suitable algorithm was found for some hash type
+     */
+    public DigestingOutputStream(OutputStream out, List<HashType> hashTypes)
+            throws NoSuchAlgorithmException {
+        super(out);
+        this.hashTypes = hashTypes;
+        this.digests = new MessageDigest[hashTypes.size()];
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = MessageDigest.getInstance(hashTypes.get(i).getAlgorithmName());
+        }
+    }
+
+
+    @Override
+    public void write(int b)
+            throws IOException {
+        out.write(b);
+        for (MessageDigest digest : digests) {
+            digest.update((byte) b);
+        }
+        size++;
+    }
+
+
+    @Override
+    public void write(byte[] b, int off, int len)
+            throws IOException {
+        out.write(b, off, len);
+        for (MessageDigest digest : digests) {
+            digest.update(b, off, len);
+        }
+        size += len;
+    }
+
+
+    /**
+     * Updates the hashes and the size with data which is already present at the destination, e.g. the part of a file
+     * downloaded before an interrupted transfer. The data is not written to the underlying stream.
+     * 
+     * @param in
+     *            stream of the data present at the destination
+     * @throws IOException
+     *             if the data could not be read
+     */
+    public void preload(InputStream in)
+            throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            for (MessageDigest digest : digests) {
+                digest.update(buffer, 0, n);
+            }
+            size += n;
+        }
+    }
+
+
+    /**
+     * Returns the hashes of all the data written so far in a hexadecimal format. Should be called once, after all the
+     * data was written.
+     * 
+     * @return hashes keyed by their types
+     */
+    public Map<HashType, String> getHashes() {
+        Map<HashType, String> result = new EnumMap<HashType, String>(HashType.class);
+        for (int i = 0; i < digests.length; i++) {
+            result.put(hashTypes.get(i), hashTypes.get(i).toHexFormat(digests[i].digest()));
+        }
+        return result;
+    }
+
+
+    public long getSize() {
+        return size;
+    }
+
+}
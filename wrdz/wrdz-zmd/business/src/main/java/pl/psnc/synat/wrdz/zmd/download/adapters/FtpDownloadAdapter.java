@@ -15,8 +15,6 @@
  */
 package pl.psnc.synat.wrdz.zmd.download.adapters;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
@@ -24,6 +22,8 @@ import java.net.URI;
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
 import pl.psnc.synat.wrdz.zmd.download.ConnectionInformation;
@@ -34,6 +34,16 @@ import pl.psnc.synat.wrdz.zmd.exception.DownloadAdapterException;
  */
 public class FtpDownloadAdapter extends AbstractDownloadAdapter implements DownloadAdapter {
 
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(FtpDownloadAdapter.class);
+
+    /**
+     * Size and modification time of the remote file seen by the last download, used to check that a resumed download
+     * continues the same version of the file.
+     */
+    private String validator;
+
+
     /**
      * Constructs new FTP adapter using provided information.
      * 
@@ -50,12 +60,59 @@ public class FtpDownloadAdapter extends AbstractDownloadAdapter implements Downl
     @Override
     public String downloadFile(URI uri, String relativePath)
             throws DownloadAdapterException {
+        return download(uri, relativePath, false);
+    }
+
+
+    @Override
+    public String resumeDownload(URI uri, String relativePath)
+            throws DownloadAdapterException {
+        return download(uri, relativePath, true);
+    }
+
+
+    /**
+     * Downloads the resource into the cache. When resuming, the transfer is restarted (REST) at the end of the part of
+     * the file already present in the cache, on condition that the size and the modification time of the remote file
+     * are the same as in the previous attempt. Otherwise, or if the server cannot tell them, the whole file is
+     * downloaded again.
+     * 
+     * @param uri
+     *            URL compliant URI of the resource to download.
+     * @param relativePath
+     *            object-relative path of the resource
+     * @param resume
+     *            whether to keep the part of the file already present in the cache
+     * @return the absolute path to the cached file.
+     * @throws DownloadAdapterException
+     *             if any problems with download adapter occur
+     */
+    private String download(URI uri, String relativePath, boolean resume)
+            throws DownloadAdapterException {
         String cachedFilePath = getResourceCachePath(relativePath);
         checkDestinationExistence(cachedFilePath);
+        long offset = resume ? getPartialLength(cachedFilePath) : 0;
         FTPClient ftpClient = new FTPClient();
-        connectToFtp(ftpClient);
-        loginToFtp(ftpClient);
-        downloadFromFtp(ftpClient, cachedFilePath, uri.getPath());
+        try {
+            connectToFtp(ftpClient);
+            loginToFtp(ftpClient);
+            String state = getRemoteState(ftpClient, uri.getPath());
+            if (offset > 0 && (state == null || !state.equals(validator))) {
+                logger.info("Remote file " + uri + " may have changed since the previous attempt, downloading it "
+                        + "again.");
+                offset = 0;
+            }
+            validator = state;
+            if (offset > 0 && downloadFromFtp(ftpClient, cachedFilePath, uri.getPath(), offset)) {
+                return cachedFilePath;
+            }
+            if (!downloadFromFtp(ftpClient, cachedFilePath, uri.getPath(), 0)) {
+                throw new DownloadAdapterException("Unable to download file, ftp server returned response code: "
+                        + ftpClient.getReplyCode());
+            }
+        } finally {
+            disconnect(ftpClient);
+        }
         return cachedFilePath;
     }
 
@@ -96,6 +153,7 @@ public class FtpDownloadAdapter extends AbstractDownloadAdapter implements Downl
             if (ftpClient.login(connectionInfo.getUsername(), connectionInfo.getPassword())) {
                 ftpClient.enterLocalPassiveMode();
                 ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+                ftpClient.setBufferSize(BUFFER_SIZE);
             } else {
                 throw new DownloadAdapterException("Unable to login to the server, authentication failed.");
             }
@@ -114,20 +172,19 @@ public class FtpDownloadAdapter extends AbstractDownloadAdapter implements Downl
      *            path to the download destination in cache.
      * @param remotePath
      *            path to the resource on the server.
+     * @param offset
+     *            number of bytes already present in the cache, the transfer is restarted after them
+     * @return whether the server transferred the file
      * @throws DownloadAdapterException
      *             should any problems occur.
      */
-    private void downloadFromFtp(FTPClient ftpClient, String cachedFilePath, String remotePath)
+    private boolean downloadFromFtp(FTPClient ftpClient, String cachedFilePath, String remotePath, long offset)
             throws DownloadAdapterException {
         OutputStream output = null;
         try {
-            output = new FileOutputStream(cachedFilePath);
-            if (!ftpClient.retrieveFile(remotePath, output)) {
-                throw new DownloadAdapterException("Unable to download file, ftp server returned response code: "
-                        + ftpClient.getReplyCode());
-            }
-        } catch (FileNotFoundException e) {
-            throw new WrdzRuntimeException("Unable to create new file in cache.", e);
+            output = openCacheStream(cachedFilePath, offset);
+            ftpClient.setRestartOffset(offset);
+            return ftpClient.retrieveFile(remotePath, output);
         } catch (IOException e) {
             throw new DownloadAdapterException("Exception while downloading the file - Unable to download ", e);
         } finally {
@@ -140,4 +197,53 @@ public class FtpDownloadAdapter extends AbstractDownloadAdapter implements Downl
             }
         }
     }
+
+
+    /**
+     * Returns the size (SIZE) and the modification time (MDTM) of the remote file.
+     * 
+     * @param ftpClient
+     *            client instance to operate on.
+     * @param remotePath
+     *            path to the resource on the server.
+     * @return size and modification time, or null if the server does not report them
+     */
+    private String getRemoteState(FTPClient ftpClient, String remotePath) {
+        try {
+            if (ftpClient.sendCommand("SIZE", remotePath) != FTPReply.FILE_STATUS) {
+                return null;
+            }
+            String size = ftpClient.getReplyString().trim();
+            String modificationTime = ftpClient.getModificationTime(remotePath);
+            if (modificationTime == null) {
+                return null;
+            }
+            return size + "/" + modificationTime.trim();
+        } catch (IOException e) {
+            logger.debug("state of the remote file " + remotePath + " is unknown", e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Logs out and disconnects from the FTP server, ignoring any errors.
+     * 
+     * @param ftpClient
+     *            client instance to operate on.
+     */
+    private void disconnect(FTPClient ftpClient) {
+        if (ftpClient.isConnected()) {
+            try {
+                ftpClient.logout();
+            } catch (IOException e) {
+                logger.debug("logging out from the FTP server failed", e);
+            }
+            try {
+                ftpClient.disconnect();
+            } catch (IOException e) {
+                logger.debug("disconnecting from the FTP server failed", e);
+            }
+        }
+    }
 }
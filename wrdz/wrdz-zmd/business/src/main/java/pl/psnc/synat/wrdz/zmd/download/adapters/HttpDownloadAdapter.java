@@ -15,12 +15,13 @@
  */
 package pl.psnc.synat.wrdz.zmd.download.adapters;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
@@ -47,6 +48,12 @@ public class HttpDownloadAdapter extends AbstractDownloadAdapter implements Down
      */
     private final UsernamePasswordCredentials usernamePasswordCredentials;
 
+    /**
+     * Entity tag or last modification date of the resource returned by the last full download, used to check that a
+     * resumed download continues the same version of the resource.
+     */
+    private String validator;
+
 
     /**
      * Constructs new HTTP adapter using provided information.
@@ -72,24 +79,73 @@ public class HttpDownloadAdapter extends AbstractDownloadAdapter implements Down
     @Override
     public String downloadFile(URI uri, String relativePath)
             throws DownloadAdapterException {
+        return download(uri, relativePath, false);
+    }
+
+
+    @Override
+    public String resumeDownload(URI uri, String relativePath)
+            throws DownloadAdapterException {
+        return download(uri, relativePath, true);
+    }
+
+
+    /**
+     * Downloads the resource into the cache. When resuming, only the missing part of the file is requested with the
+     * <code>Range</code> header, on condition (<code>If-Range</code>) that the resource has not changed since the first
+     * attempt. If the server ignores the headers, the resource has changed or the returned part does not start where
+     * the partial file ends, the whole file is downloaded again. Resources without a validator are never resumed.
+     * 
+     * @param uri
+     *            URL compliant URI of the resource to download.
+     * @param relativePath
+     *            object-relative path of the resource
+     * @param resume
+     *            whether to keep the part of the file already present in the cache
+     * @return the absolute path to the cached file.
+     * @throws DownloadAdapterException
+     *             if any problems with download adapter occur
+     */
+    private String download(URI uri, String relativePath, boolean resume)
+            throws DownloadAdapterException {
         String cachedFilePath = getResourceCachePath(relativePath);
         checkDestinationExistence(cachedFilePath);
+        long offset = resume && validator != null ? getPartialLength(cachedFilePath) : 0;
         DefaultHttpClient httpclient = new DefaultHttpClient();
-        ReadableByteChannel rbc = null;
-        FileOutputStream output = null;
+        InputStream input = null;
+        OutputStream output = null;
         try {
             if (usernamePasswordCredentials != null) {
                 httpclient.getCredentialsProvider().setCredentials(authScope, usernamePasswordCredentials);
             }
-            HttpResponse response = httpclient.execute(new HttpGet(uri));
+            HttpResponse response = execute(httpclient, uri, offset);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == 206 && offset > 0 && getRangeStart(response) != offset) {
+                // the part cannot be appended to the partial file
+                EntityUtils.consume(response.getEntity());
+                offset = 0;
+                response = execute(httpclient, uri, offset);
+                statusCode = response.getStatusLine().getStatusCode();
+            }
+            if (statusCode == 200) {
+                validator = getValidator(response);
+            }
             HttpEntity entity = response.getEntity();
-            if (entity != null && response.getStatusLine().getStatusCode() == 200) {
-                rbc = Channels.newChannel(entity.getContent());
-                output = new FileOutputStream(cachedFilePath);
-                output.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
+            if (entity != null && (statusCode == 200 || (statusCode == 206 && offset > 0))) {
+                input = entity.getContent();
+                output = openCacheStream(cachedFilePath, statusCode == 206 ? offset : 0);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n;
+                while ((n = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, n);
+                }
                 EntityUtils.consume(entity);
             } else {
                 EntityUtils.consume(entity);
+                if (statusCode == 416) {
+                    // the partial file does not match the resource any more - start from scratch next time
+                    new File(cachedFilePath).delete();
+                }
                 throw new DownloadAdapterException("Http error code or empty content was returned instead of resource.");
             }
 
@@ -98,8 +154,8 @@ public class HttpDownloadAdapter extends AbstractDownloadAdapter implements Down
         } finally {
             httpclient.getConnectionManager().shutdown();
             try {
-                if (rbc != null) {
-                    rbc.close();
+                if (input != null) {
+                    input.close();
                 }
                 if (output != null) {
                     output.close();
@@ -110,4 +166,70 @@ public class HttpDownloadAdapter extends AbstractDownloadAdapter implements Down
         }
         return cachedFilePath;
     }
+
+
+    /**
+     * Requests the resource, or its part starting at the given offset if it has not changed since the last full
+     * download.
+     * 
+     * @param httpclient
+     *            HTTP client
+     * @param uri
+     *            URI of the resource
+     * @param offset
+     *            first requested byte, 0 for the whole resource
+     * @return response
+     * @throws IOException
+     *             if the request failed
+     */
+    private HttpResponse execute(DefaultHttpClient httpclient, URI uri, long offset)
+            throws IOException {
+        HttpGet request = new HttpGet(uri);
+        if (offset > 0) {
+            request.setHeader("Range", "bytes=" + offset + "-");
+            request.setHeader("If-Range", validator);
+        }
+        return httpclient.execute(request);
+    }
+
+
+    /**
+     * Returns the strong entity tag of the returned resource or, if there is none, its last modification date.
+     * 
+     * @param response
+     *            response containing the whole resource
+     * @return validator or <code>null</code> if the response has none
+     */
+    private static String getValidator(HttpResponse response) {
+        Header etag = response.getFirstHeader("ETag");
+        if (etag != null && !etag.getValue().startsWith("W/")) {
+            return etag.getValue();
+        }
+        Header lastModified = response.getFirstHeader("Last-Modified");
+        return lastModified != null ? lastModified.getValue() : null;
+    }
+
+
+    /**
+     * Returns the position of the first byte of the returned part of the resource.
+     * 
+     * @param response
+     *            partial content response
+     * @return position of the first byte or -1 if the <code>Content-Range</code> header is missing or malformed
+     */
+    private static long getRangeStart(HttpResponse response) {
+        Header contentRange = response.getFirstHeader("Content-Range");
+        if (contentRange == null) {
+            return -1;
+        }
+        String value = contentRange.getValue().trim();
+        if (!value.startsWith("bytes ") || value.indexOf('-') == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.substring("bytes ".length(), value.indexOf('-')).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 }
@@ -44,4 +44,11 @@ public class HttpsDownloadAdapter extends AbstractDownloadAdapter implements Dow
         throw new DownloadAdapterException("The download adapter for the HTTPS protocol is not yet implemented.");
     }
 
+
+    @Override
+    public String resumeDownload(URI uri, String relativePath)
+            throws DownloadAdapterException {
+        throw new DownloadAdapterException("The download adapter for the HTTPS protocol is not yet implemented.");
+    }
+
 }
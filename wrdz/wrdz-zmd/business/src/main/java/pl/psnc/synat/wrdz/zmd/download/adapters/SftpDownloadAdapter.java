@@ -15,6 +15,8 @@
  */
 package pl.psnc.synat.wrdz.zmd.download.adapters;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 
 import pl.psnc.synat.wrdz.zmd.download.CertificateInformation;
@@ -26,6 +28,7 @@ import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
 /**
@@ -38,6 +41,12 @@ public class SftpDownloadAdapter extends AbstractDownloadAdapter implements Down
      */
     private final SftpConnectionInformation sftpConnectionInfo;
 
+    /**
+     * Size and modification time of the remote file seen by the last download, used to check that a resumed download
+     * continues the same version of the file.
+     */
+    private String validator;
+
     /**
      * Java Secure Channel instance.
      */
@@ -65,21 +74,50 @@ public class SftpDownloadAdapter extends AbstractDownloadAdapter implements Down
     @Override
     public String downloadFile(URI uri, String relativePath)
             throws DownloadAdapterException {
+        return download(uri, relativePath, false);
+    }
+
+
+    @Override
+    public String resumeDownload(URI uri, String relativePath)
+            throws DownloadAdapterException {
+        return download(uri, relativePath, true);
+    }
+
+
+    /**
+     * Downloads the resource into the cache. When resuming, the transfer starts at the end of the part of the file
+     * already present in the cache, on condition that the size and the modification time of the remote file are the
+     * same as in the previous attempt. Otherwise the whole file is downloaded again.
+     * 
+     * @param uri
+     *            URI of the resource to download.
+     * @param relativePath
+     *            object-relative path of the resource
+     * @param resume
+     *            whether to keep the part of the file already present in the cache
+     * @return the absolute path to the cached file.
+     * @throws DownloadAdapterException
+     *             if any problems with download adapter occur
+     */
+    private String download(URI uri, String relativePath, boolean resume)
+            throws DownloadAdapterException {
         String cachedFilePath = getResourceCachePath(relativePath);
         checkDestinationExistence(cachedFilePath);
+        long offset = resume ? getPartialLength(cachedFilePath) : 0;
         Session session = createConnectedSession();
         ChannelSftp channel = null;
         try {
             channel = (ChannelSftp) session.openChannel("sftp");
             channel.connect();
-            channel.get(uri.getPath(), cachedFilePath);
+            download(channel, uri.getPath(), cachedFilePath, offset);
         } catch (JSchException e) {
             throw new DownloadAdapterException("Exception while opening the JSch SFTP channel", e);
         } catch (SftpException e) {
             String altPath = null;
             try {
                 altPath = channel.getHome() + uri.getPath();
-                channel.get(altPath, cachedFilePath);
+                download(channel, altPath, cachedFilePath, offset);
             } catch (SftpException e1) {
                 throw new DownloadAdapterException("Exception while trying to download resource " + uri.getPath()
                         + " or " + altPath, e);
@@ -94,6 +132,46 @@ public class SftpDownloadAdapter extends AbstractDownloadAdapter implements Down
     }
 
 
+    /**
+     * Downloads the remote file to the cache through the cache stream. The part already present in the cache is kept
+     * only if the remote file has not changed since the previous attempt.
+     * 
+     * @param channel
+     *            connected SFTP channel
+     * @param remotePath
+     *            path of the file on the server
+     * @param cachedFilePath
+     *            absolute path to the file in the cache
+     * @param offset
+     *            number of bytes already present in the cache, the transfer starts after them
+     * @throws SftpException
+     *             if the remote file could not be read
+     * @throws DownloadAdapterException
+     *             if the file in the cache could not be written
+     */
+    private void download(ChannelSftp channel, String remotePath, String cachedFilePath, long offset)
+            throws SftpException, DownloadAdapterException {
+        SftpATTRS attrs = channel.stat(remotePath);
+        String state = attrs.getSize() + "/" + attrs.getMTime();
+        long kept = state.equals(validator) && offset <= attrs.getSize() ? offset : 0;
+        validator = state;
+        OutputStream output = openCacheStream(cachedFilePath, kept);
+        try {
+            if (kept > 0) {
+                channel.get(remotePath, output, null, ChannelSftp.RESUME, kept);
+            } else {
+                channel.get(remotePath, output);
+            }
+        } finally {
+            try {
+                output.close();
+            } catch (IOException e) {
+                throw new DownloadAdapterException("Exception caught while closing output stream.", e);
+            }
+        }
+    }
+
+
     /**
      * Creates new identity in JSch.
      * 
@@ -15,28 +15,29 @@
  */
 package pl.psnc.synat.wrdz.zmd.oai.pmh;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
-import javax.annotation.PostConstruct;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.openarchives.oai.pmh.GetRecordType;
 import org.openarchives.oai.pmh.HeaderType;
 import org.openarchives.oai.pmh.ListIdentifiersType;
-import org.openarchives.oai.pmh.ListRecordsType;
 import org.openarchives.oai.pmh.MetadataType;
 import org.openarchives.oai.pmh.RecordType;
 import org.openarchives.oai.pmh.ResumptionTokenType;
@@ -46,10 +47,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
 
 import pl.psnc.synat.wrdz.common.dao.QueryFilter;
 import pl.psnc.synat.wrdz.common.dao.QueryModifier;
 import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
+import pl.psnc.synat.wrdz.common.metadata.XmlParsers;
 import pl.psnc.synat.wrdz.common.metadata.xmlns.NamespaceType;
 import pl.psnc.synat.wrdz.zmd.config.ZmdConfiguration;
 import pl.psnc.synat.wrdz.zmd.dao.oai.ResumptionTokenDao;
@@ -80,6 +83,11 @@ public class OaiPmhManagerBean implements OaiPmhManager {
     /** Logger. */
     private static final Logger logger = LoggerFactory.getLogger(OaiPmhManagerBean.class);
 
+    /**
+     * Number of operations loaded at once while the records of a page are written.
+     */
+    private static final int RECORDS_BATCH_SIZE = 20;
+
     /**
      * Digital object DAO.
      */
@@ -110,27 +118,6 @@ public class OaiPmhManagerBean implements OaiPmhManager {
     @Inject
     private ZmdConfiguration configuration;
 
-    /**
-     * XML document builder factory.
-     */
-    private DocumentBuilderFactory documentBuilderFactory;
-
-
-    /**
-     * Initializes bean state constructing document builder factory.
-     */
-    @PostConstruct
-    public void init() {
-        documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setIgnoringElementContentWhitespace(false);
-        documentBuilderFactory.setValidating(false);
-        documentBuilderFactory.setExpandEntityReferences(false);
-        documentBuilderFactory.setIgnoringComments(false);
-        documentBuilderFactory.setNamespaceAware(false);
-        documentBuilderFactory.setXIncludeAware(false);
-        documentBuilderFactory.setCoalescing(false);
-    }
-
 
     @Override
     public Date getCurrentTime() {
@@ -183,68 +170,151 @@ public class OaiPmhManagerBean implements OaiPmhManager {
             throws IllegalOaiPmhTokenException {
         ResumptionToken token = findToken(resumptionToken, VerbType.LIST_IDENTIFIERS.name());
         resumptionTokenDao.delete(token);
-        return listIdentifiers(token.getFrom(), token.getUntil(), token.getPrefix(), token.getSet(), token.getOffset());
+        return listIdentifiers(new HarvestCursor(token));
     }
 
 
     @Override
-    public ListIdentifiersType listIdentifiers(Date from, Date until, NamespaceType prefix, ObjectType set, int offset) {
-        ListIdentifiersType result = null;
-        int pageSize = configuration.getOaiIdentifiersPageSize();
-        long changedObjects = operationDao.countChangedObjects(from, until, NamespaceType.METS, null);
-        if (changedObjects > 0L) {
-            ResumptionToken token = null;
-            operationDao.lockTable(true);
-            if (changedObjects - offset - pageSize > 0) {
-                int newOffset = offset + pageSize;
-                token = createResumptionToken(from, until, prefix, set, newOffset, VerbType.LIST_IDENTIFIERS.name());
-            }
-            List<Operation> changes = operationDao.getChanges(from, until, prefix, set, offset, pageSize);
-            result = new ListIdentifiersType();
-            List<HeaderType> headers = result.getHeader();
-            for (Operation operation : changes) {
-                headers.add(createHeader(operation));
-            }
-            if (offset > 0 && token == null || token != null) {
-                result.setResumptionToken(createToken(offset, changedObjects, token));
-            }
-        }
-        return result;
+    public ListIdentifiersType listIdentifiers(Date from, Date until, NamespaceType prefix, ObjectType set) {
+        return listIdentifiers(openHarvest(from, until, prefix, set));
     }
 
 
     @Override
-    public ListRecordsType listRecords(String resumptionToken)
+    public OaiPmhRecordPage listRecords(String resumptionToken)
             throws IllegalOaiPmhTokenException {
         ResumptionToken token = findToken(resumptionToken, VerbType.LIST_RECORDS.name());
         resumptionTokenDao.delete(token);
-        return listRecords(token.getFrom(), token.getUntil(), token.getPrefix(), token.getSet(), token.getOffset());
+        return listRecords(new HarvestCursor(token));
     }
 
 
     @Override
-    public ListRecordsType listRecords(Date from, Date until, NamespaceType prefix, ObjectType set, int offset) {
-        ListRecordsType result = null;
-        int pageSize = configuration.getOaiRecordsPageSize();
-        long changedObjects = operationDao.countChangedObjects(from, until, NamespaceType.METS, null);
-        if (changedObjects > 0L) {
-            ResumptionToken token = null;
-            operationDao.lockTable(true);
-            if (changedObjects - offset - pageSize > 0) {
-                int newOffset = offset + pageSize;
-                token = createResumptionToken(from, until, prefix, set, newOffset, VerbType.LIST_RECORDS.name());
-            }
-            List<Operation> changes = operationDao.getChanges(from, until, prefix, set, offset, pageSize);
-            result = new ListRecordsType();
-            List<RecordType> records = result.getRecord();
-            for (Operation operation : changes) {
-                records.add(createRecord(operation));
+    public OaiPmhRecordPage listRecords(Date from, Date until, NamespaceType prefix, ObjectType set) {
+        return listRecords(openHarvest(from, until, prefix, set));
+    }
+
+
+    /**
+     * Fetches the page of the ListIdentifiers operation following the cursor.
+     * 
+     * @param cursor
+     *            position of the harvest
+     * @return results of the operation or null if nothing matches the query
+     */
+    private ListIdentifiersType listIdentifiers(HarvestCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        int pageSize = configuration.getOaiIdentifiersPageSize();
+        List<Operation> changes = fetchPage(cursor, pageSize);
+        ListIdentifiersType result = new ListIdentifiersType();
+        List<HeaderType> headers = result.getHeader();
+        for (Operation operation : changes) {
+            headers.add(createHeader(operation));
+        }
+        ResumptionTokenType token = createToken(cursor, changes, pageSize, VerbType.LIST_IDENTIFIERS.name());
+        if (token != null) {
+            result.setResumptionToken(token);
+        }
+        return result;
+    }
+
+
+    @Override
+    public void writeRecords(OaiPmhRecordPage page, OaiPmhRecordHandler handler)
+            throws IOException {
+        List<Long> ids = page.getOperationIds();
+        for (int i = 0; i < ids.size(); i += RECORDS_BATCH_SIZE) {
+            List<Long> batch = ids.subList(i, Math.min(i + RECORDS_BATCH_SIZE, ids.size()));
+            OperationFilterFactory filterFactory = operationDao.createQueryModifier().getQueryFilterFactory();
+            Map<Long, Operation> operations = new HashMap<Long, Operation>();
+            for (Operation operation : operationDao.findBy(filterFactory.byIds(batch), false)) {
+                operations.put(operation.getId(), operation);
             }
-            if (offset > 0 && token == null || token != null) {
-                result.setResumptionToken(createToken(offset, changedObjects, token));
+            for (Long id : batch) {
+                Operation operation = operations.get(id);
+                if (operation != null) {
+                    handler.handleRecord(operation);
+                    operationDao.detach(operation);
+                } else {
+                    logger.warn("Operation " + id + " of the harvested page no longer exists.");
+                }
             }
         }
-        return result;
+    }
+
+
+    /**
+     * Fetches the page of the ListRecords operation following the cursor. Only the operations (without their contents)
+     * are read here.
+     * 
+     * @param cursor
+     *            position of the harvest
+     * @return page of the operation or null if nothing matches the query
+     */
+    private OaiPmhRecordPage listRecords(HarvestCursor cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        int pageSize = configuration.getOaiRecordsPageSize();
+        List<Operation> changes = fetchPage(cursor, pageSize);
+        List<Long> ids = new ArrayList<Long>(changes.size());
+        for (Operation operation : changes) {
+            ids.add(operation.getId());
+        }
+        ResumptionTokenType token = createToken(cursor, changes, pageSize, VerbType.LIST_RECORDS.name());
+        return new OaiPmhRecordPage(ids, token);
+    }
+
+
+    /**
+     * Starts a new harvest. The latest operation marks the snapshot of the harvest - operations registered later do not
+     * appear on any of its pages, so neither the pages nor the complete list size shift while the harvester walks the
+     * list. No table lock is needed.
+     * 
+     * @param from
+     *            beginning of the period to be harvested.
+     * @param until
+     *            end of the period to be harvested.
+     * @param prefix
+     *            name of the namespace to be harvested.
+     * @param set
+     *            name of the set to be harvested or null
+     * @return cursor positioned at the beginning of the list or null if nothing matches the query
+     */
+    private HarvestCursor openHarvest(Date from, Date until, NamespaceType prefix, ObjectType set) {
+        Long maxId = operationDao.getLastOperationId();
+        if (maxId == null) {
+            return null;
+        }
+        long listSize = operationDao.countChangedObjects(from, until, prefix, set, maxId);
+        if (listSize == 0L) {
+            return null;
+        }
+        HarvestCursor cursor = new HarvestCursor();
+        cursor.from = from;
+        cursor.until = until;
+        cursor.prefix = prefix;
+        cursor.set = set;
+        cursor.maxId = maxId;
+        cursor.listSize = listSize;
+        return cursor;
+    }
+
+
+    /**
+     * Fetches the operations following the cursor.
+     * 
+     * @param cursor
+     *            position of the harvest
+     * @param pageSize
+     *            size of the page
+     * @return operations of the page
+     */
+    private List<Operation> fetchPage(HarvestCursor cursor, int pageSize) {
+        return operationDao.getChanges(cursor.from, cursor.until, cursor.prefix, cursor.set, cursor.lastDate,
+            cursor.lastId, cursor.maxId, pageSize);
     }
 
 
@@ -280,20 +350,31 @@ public class OaiPmhManagerBean implements OaiPmhManager {
 
 
     /**
-     * Creates new OAI-PMH token entry from the existing data.
+     * Creates new OAI-PMH token entry for the fetched page. If the list is not complete, the position after the last
+     * operation of the page is saved as the context of the new resumption token.
      * 
-     * @param offset
-     *            offset of the request position of first record returned in unlimited query.
-     * @param changedObjects
-     *            calculated number of changed objects.
-     * @param token
-     *            resumption token and its context.
-     * @return new OAI-PMH resumption token entry.
+     * @param cursor
+     *            position of the harvest before the page
+     * @param changes
+     *            operations of the page
+     * @param pageSize
+     *            size of the page
+     * @param requestType
+     *            request type.
+     * @return new OAI-PMH resumption token entry or null if the complete list fits in one page.
      */
-    private ResumptionTokenType createToken(int offset, Long changedObjects, ResumptionToken token) {
+    private ResumptionTokenType createToken(HarvestCursor cursor, List<Operation> changes, int pageSize,
+            String requestType) {
+        ResumptionToken token = null;
+        if (changes.size() == pageSize && cursor.offset + pageSize < cursor.listSize) {
+            Operation last = changes.get(changes.size() - 1);
+            token = createResumptionToken(cursor, cursor.offset + pageSize, last, requestType);
+        } else if (cursor.offset == 0) {
+            return null;
+        }
         ResumptionTokenType result = new ResumptionTokenType();
-        result.setCompleteListSize(BigInteger.valueOf(changedObjects));
-        result.setCursor(BigInteger.valueOf(offset));
+        result.setCompleteListSize(BigInteger.valueOf(cursor.listSize));
+        result.setCursor(BigInteger.valueOf(cursor.offset));
         if (token != null) {
             result.setExpirationDate(token.getExpirationDate());
             result.setValue(token.getId());
@@ -334,7 +415,7 @@ public class OaiPmhManagerBean implements OaiPmhManager {
         MetadataType metadata = new MetadataType();
         DocumentBuilder documentBuilder = null;
         try {
-            documentBuilder = documentBuilderFactory.newDocumentBuilder();
+            documentBuilder = XmlParsers.getVerbatimDocumentBuilder();
         } catch (ParserConfigurationException e) {
             logger.error("Problem with creation of document builder." + e.toString());
             throw new WrdzRuntimeException(e);
@@ -344,7 +425,7 @@ public class OaiPmhManagerBean implements OaiPmhManager {
         Element element = null;
 
         try {
-            document = documentBuilder.parse(new ByteArrayInputStream(operation.getContents().getBytes("UTF-8")));
+            document = documentBuilder.parse(new InputSource(new StringReader(operation.getContents())));
         } catch (Exception e) {
             throw new WrdzRuntimeException("Improper XML entry in the database, failed to parse it.", e);
         }
@@ -358,31 +439,31 @@ public class OaiPmhManagerBean implements OaiPmhManager {
     /**
      * Creates and saves to database new resumption token entity.
      * 
-     * @param from
-     *            beginning of period by which harvesting is done.
-     * @param until
-     *            end of period by which harvesting is done.
-     * @param prefix
-     *            metadata prefix name.
-     * @param set
-     *            set by which results are filtered.
+     * @param cursor
+     *            position of the harvest.
      * @param offset
-     *            request's offset.
+     *            number of records delivered before the next page.
+     * @param last
+     *            last operation delivered.
      * @param requestType
      *            request type.
      * @return created resumption token.
      */
-    private ResumptionToken createResumptionToken(Date from, Date until, NamespaceType prefix, ObjectType set,
-            int offset, String requestType) {
+    private ResumptionToken createResumptionToken(HarvestCursor cursor, int offset, Operation last,
+            String requestType) {
         int validFor = configuration.getOaiTokenLongetivity();
         ResumptionToken result = new ResumptionToken();
         result.setId(UUID.randomUUID().toString());
-        result.setFrom(from);
+        result.setFrom(cursor.from);
         result.setOffset(offset);
-        result.setPrefix(prefix);
-        result.setUntil(until);
+        result.setPrefix(cursor.prefix);
+        result.setUntil(cursor.until);
         result.setType(requestType);
-        result.setSet(set);
+        result.setSet(cursor.set);
+        result.setLastDate(last.getDate());
+        result.setLastId(last.getId());
+        result.setMaxId(cursor.maxId);
+        result.setListSize(cursor.listSize);
         Calendar cal = new GregorianCalendar();
         cal.setTime(operationDao.getDatabaseDate());
         cal.add(Calendar.DAY_OF_MONTH, validFor);
@@ -422,4 +503,65 @@ public class OaiPmhManagerBean implements OaiPmhManager {
             operationSorterBuilder.byDate(false).buildSorter());
     }
 
+
+
+    /**
+     * Position of a harvest - the query, its snapshot and the last delivered operation.
+     */
+    private static class HarvestCursor {
+
+        /** Beginning of the period to be harvested. */
+        private Date from;
+
+        /** End of the period to be harvested. */
+        private Date until;
+
+        /** Name of the namespace to be harvested. */
+        private NamespaceType prefix;
+
+        /** Name of the set to be harvested or null. */
+        private ObjectType set;
+
+        /** Identifier of the latest operation taken into account. */
+        private Long maxId;
+
+        /** Number of records in the complete list. */
+        private long listSize;
+
+        /** Number of records delivered so far. */
+        private int offset;
+
+        /** Date of the last delivered operation or null at the beginning of the list. */
+        private Date lastDate;
+
+        /** Identifier of the last delivered operation or null at the beginning of the list. */
+        private Long lastId;
+
+
+        /**
+         * Creates a cursor positioned at the beginning of the list.
+         */
+        public HarvestCursor() {
+        }
+
+
+        /**
+         * Creates a cursor from the context of the resumption token.
+         * 
+         * @param token
+         *            resumption token
+         */
+        public HarvestCursor(ResumptionToken token) {
+            this.from = token.getFrom();
+            this.until = token.getUntil();
+            this.prefix = token.getPrefix();
+            this.set = token.getSet();
+            this.maxId = token.getMaxId();
+            this.listSize = token.getListSize();
+            this.offset = token.getOffset();
+            this.lastDate = token.getLastDate();
+            this.lastId = token.getLastId();
+        }
+    }
+
 }
@@ -64,6 +64,17 @@ public class IdentifierBrowserBean implements IdentifierBrowser {
     }
 
 
+    @Override
+    public String findNextActiveIdentifier(String previousIdentifier, int partition, int partitionCount) {
+        Identifier identifier = identifierDao.findNextActiveIdentifier(previousIdentifier, partition, partitionCount);
+        if (identifier != null) {
+            return identifier.getIdentifier();
+        } else {
+            return null;
+        }
+    }
+
+
     @Override
     public List<String> getIdentifiersForMigration(String puid, String username, Collection<Long> objectIds) {
         Long ownerId = null;
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
@@ -115,6 +116,12 @@ public class ObjectBrowserBean implements ObjectBrowser {
     }
 
 
+    @Override
+    public Map<String, DigitalObject> getDigitalObjects(Collection<String> identifiers) {
+        return digitalObjectDao.getDigitalObjects(identifiers);
+    }
+
+
     @Override
     public String getEntityContent(Long identifier)
             throws ObjectNotFoundException {
@@ -25,7 +25,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -71,8 +70,6 @@ import pl.psnc.synat.wrdz.zmd.input.object.ObjectFetchingRequest;
 import pl.psnc.synat.wrdz.zmd.input.object.ObjectModificationRequest;
 import pl.psnc.synat.wrdz.zmd.input.object.ObjectVersionDeletionRequest;
 import pl.psnc.synat.wrdz.zmd.object.content.ContentFetcher;
-import pl.psnc.synat.wrdz.zmd.object.helpers.archivers.ArchiveBuilder;
-import pl.psnc.synat.wrdz.zmd.object.helpers.archivers.ZipArchiveBuilder;
 import pl.psnc.synat.wrdz.zmd.object.metadata.construction.InlineMetsMetadataConstructionStrategy;
 import pl.psnc.synat.wrdz.zmd.object.metadata.construction.MetsMetadataConstructionStrategy;
 import pl.psnc.synat.wrdz.zmd.object.metadata.construction.OperationsDateComparator;
@@ -406,18 +403,12 @@ public class ObjectManagerBean implements ObjectManager {
         ContentVersion contentVersion = objectFinder.getObjectsVersion(request.getIdentifier(), request.getVersion());
         try {
 
-            Profiler.start("fetching object content");
-            String rootFolder = contentFetcher.fetchEntireObject(contentVersion, request.getProvided(),
+            Profiler.start("streaming object content into zip archive");
+            File archive = contentFetcher.archiveEntireObject(contentVersion, request.getProvided(),
                 request.getExtracted());
-            File root = new File(rootFolder);
-            Profiler.stop("fetching object content");
-
-            Profiler.start("preparing zip archive");
-            ArchiveBuilder archiveBuilder = new ZipArchiveBuilder(Arrays.asList(root.listFiles()), new File(
-                    root.getParent() + File.separator + root.getName() + ".zip"));
-            ResultFile result = new ResultFile(archiveBuilder.buildArchive(), createFileName(request.getIdentifier(),
+            ResultFile result = new ResultFile(archive, createFileName(request.getIdentifier(),
                 contentVersion.getVersion()));
-            Profiler.stop("preparing zip archive");
+            Profiler.stop("streaming object content into zip archive");
 
             Profiler.dump();
 
@@ -440,18 +431,12 @@ public class ObjectManagerBean implements ObjectManager {
         ContentVersion contentVersion = objectFinder.getObjectsVersion(request.getIdentifier(), request.getVersion());
         dataFiles = objectFinder.getDataFiles(contentVersion, request.getFiles());
         try {
-            Profiler.start("fetching object content");
-            String rootFolder = contentFetcher.fetchContentFiles(contentVersion, dataFiles, request.isProvided(),
+            Profiler.start("streaming object content into zip archive");
+            File archive = contentFetcher.archiveContentFiles(contentVersion, dataFiles, request.isProvided(),
                 request.isExtracted());
-            File root = new File(rootFolder);
-            Profiler.stop("fetching object content");
-
-            Profiler.start("preparing zip archive");
-            ArchiveBuilder archiveBuilder = new ZipArchiveBuilder(Arrays.asList(root.listFiles()), new File(
-                    root.getParent() + File.separator + root.getName() + ".zip"));
-            ResultFile result = new ResultFile(archiveBuilder.buildArchive(), createFileName(request.getIdentifier(),
+            ResultFile result = new ResultFile(archive, createFileName(request.getIdentifier(),
                 contentVersion.getVersion()));
-            Profiler.stop("preparing zip archive");
+            Profiler.stop("streaming object content into zip archive");
 
             Profiler.dump();
 
@@ -500,17 +485,12 @@ public class ObjectManagerBean implements ObjectManager {
             List<DataFile> dataFiles = new ArrayList<DataFile>();
             dataFiles.add(mainFile);
             try {
-                Profiler.start("fetching object content");
-                File root = new File(contentFetcher.fetchContentFiles(contentVersion, dataFiles, request.isProvided(),
-                    request.isExtracted()));
-                Profiler.stop("fetching object content");
-
-                Profiler.start("preparing zip archive");
-                ArchiveBuilder archiveBuilder = new ZipArchiveBuilder(Arrays.asList(root.listFiles()), new File(
-                        root.getParent() + File.separator + root.getName() + ".zip"));
-                ResultFile result = new ResultFile(archiveBuilder.buildArchive(), createFileName(
-                    request.getIdentifier(), contentVersion.getVersion()));
-                Profiler.stop("preparing zip archive");
+                Profiler.start("streaming object content into zip archive");
+                File archive = contentFetcher.archiveContentFiles(contentVersion, dataFiles, request.isProvided(),
+                    request.isExtracted());
+                ResultFile result = new ResultFile(archive, createFileName(request.getIdentifier(),
+                    contentVersion.getVersion()));
+                Profiler.stop("streaming object content into zip archive");
 
                 Profiler.dump();
 
@@ -538,16 +518,10 @@ public class ObjectManagerBean implements ObjectManager {
                 || (provided && !contentVersion.getProvidedMetadata().isEmpty())) {
             try {
 
-                Profiler.start("fetching object metadata");
-                File root = new File(contentFetcher.fetchMetadataFiles(contentVersion, provided));
-                Profiler.stop("fetching object metadata");
-
-                Profiler.start("preparing zip archive");
-                ArchiveBuilder archiveBuilder = new ZipArchiveBuilder(Arrays.asList(root.listFiles()), new File(
-                        root.getParent() + File.separator + root.getName() + ".zip"));
-                ResultFile result = new ResultFile(archiveBuilder.buildArchive(), createFileName(identifier,
-                    contentVersion.getVersion()));
-                Profiler.stop("preparing zip archive");
+                Profiler.start("streaming object metadata into zip archive");
+                File archive = contentFetcher.archiveMetadataFiles(contentVersion, provided);
+                ResultFile result = new ResultFile(archive, createFileName(identifier, contentVersion.getVersion()));
+                Profiler.stop("streaming object metadata into zip archive");
 
                 Profiler.dump();
 
@@ -592,6 +566,21 @@ public class ObjectManagerBean implements ObjectManager {
     }
 
 
+    @Override
+    public InputStream openMetsForObject(ContentVersion contentVersion)
+            throws FetchingException, FileNotFoundException {
+        if (contentVersion.getExtractedMetadata() == null && contentVersion.getProvidedMetadata().isEmpty()) {
+            throw new FileNotFoundException("Digital object " + contentVersion.getObject().getId()
+                    + " version number " + contentVersion.getVersion() + " has no metadata files.");
+        }
+        try {
+            return contentFetcher.getMetadataFile(contentVersion);
+        } catch (DataStorageException e) {
+            throw new FetchingException("Could not read METS file from the data store.", e);
+        }
+    }
+
+
     @Override
     public MetadataSectionsCollection getMetsMetadataSection(String identifier, String mid)
             throws FetchingException, ObjectNotFoundException, FileNotFoundException {
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.object;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.dsa.FileDigest;
+import pl.psnc.synat.dsa.exception.DataStorageResourceException;
+import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
+import pl.psnc.synat.wrdz.zmd.dao.object.DigitalObjectDao;
+import pl.psnc.synat.wrdz.zmd.dao.object.DigitalObjectFilterFactory;
+import pl.psnc.synat.wrdz.zmd.dto.object.CorruptedReplicaDto;
+import pl.psnc.synat.wrdz.zmd.dto.object.ReplicaIntegrityReportDto;
+import pl.psnc.synat.wrdz.zmd.entity.object.DigitalObject;
+import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
+import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFileVersion;
+import pl.psnc.synat.wrdz.zmd.entity.object.hash.FileHash;
+import pl.psnc.synat.wrdz.zmd.entity.object.metadata.MetadataFile;
+import pl.psnc.synat.wrdz.zmd.storage.DataStorageAccess;
+
+/**
+ * Default implementation of {@link ReplicaIntegrityChecker}. It verifies the same files as the ones described by
+ * {@link FileHashBrowser}.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.REQUIRED)
+public class ReplicaIntegrityCheckerBean implements ReplicaIntegrityChecker {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaIntegrityCheckerBean.class);
+
+    /** Digital object DAO. */
+    @EJB
+    private DigitalObjectDao objectDao;
+
+    /** Provides an access to objects in data storage. */
+    @EJB
+    private DataStorageAccess dataStorageAccessBean;
+
+
+    @Override
+    public ReplicaIntegrityReportDto checkReplicas(String identifier)
+            throws ObjectNotFoundException {
+        DigitalObjectFilterFactory queryFilterFactory = objectDao.createQueryModifier().getQueryFilterFactory();
+
+        @SuppressWarnings("unchecked")
+        DigitalObject object = objectDao.findFirstResultBy(queryFilterFactory.and(
+            queryFilterFactory.byIdentifier(identifier), queryFilterFactory.byCurrentVersionState(true)));
+
+        if (object == null) {
+            throw new ObjectNotFoundException("Object with identifier " + identifier + " does not exist");
+        }
+
+        // files by their paths in the repository
+        Map<String, String> objectPaths = new LinkedHashMap<String, String>();
+        Map<String, List<? extends FileHash>> hashes = new LinkedHashMap<String, List<? extends FileHash>>();
+        long size = 0;
+
+        for (DataFileVersion fileVersion : object.getCurrentVersion().getFiles()) {
+            DataFile file = fileVersion.getDataFile();
+
+            // data file
+            objectPaths.put(file.getRepositoryFilepath(), file.getObjectFilepath());
+            hashes.put(file.getRepositoryFilepath(), file.getHashes());
+            size += file.getSize();
+
+            // extracted metadata files
+            for (MetadataFile metadata : file.getExtractedMetadata()) {
+                objectPaths.put(metadata.getRepositoryFilepath(), metadata.getObjectFilepath());
+                hashes.put(metadata.getRepositoryFilepath(), metadata.getHashes());
+                size += metadata.getSize();
+            }
+
+            // provided metadata files
+            for (MetadataFile metadata : fileVersion.getProvidedMetadata()) {
+                objectPaths.put(metadata.getRepositoryFilepath(), metadata.getObjectFilepath());
+                hashes.put(metadata.getRepositoryFilepath(), metadata.getHashes());
+                size += metadata.getSize();
+            }
+        }
+
+        Set<String> algorithms = new HashSet<String>();
+        for (List<? extends FileHash> fileHashes : hashes.values()) {
+            for (FileHash hash : fileHashes) {
+                algorithms.add(hash.getHashType().getAlgorithmName());
+            }
+        }
+
+        Map<String, List<FileDigest>> digests;
+        try {
+            digests = dataStorageAccessBean.digestFiles(object.getCurrentVersion(), objectPaths.keySet(), algorithms);
+        } catch (DataStorageResourceException e) {
+            throw new WrdzRuntimeException("Could not access the data storage", e);
+        }
+
+        ReplicaIntegrityReportDto report = new ReplicaIntegrityReportDto();
+        report.setSize(size);
+        report.setModifiedOn(object.getCurrentVersion().getCreatedOn());
+        for (Map.Entry<String, String> file : objectPaths.entrySet()) {
+            List<FileDigest> copies = digests.get(file.getKey());
+            if (copies.isEmpty()) {
+                copies = new ArrayList<FileDigest>();
+                copies.add(new FileDigest(null, FileDigest.State.MISSING, null));
+            }
+            for (FileDigest copy : copies) {
+                boolean corrupted = false;
+                for (FileHash hash : hashes.get(file.getKey())) {
+                    String calculated = null;
+                    if (copy.getState() == FileDigest.State.PRESENT) {
+                        calculated = hash.getHashType().toHexFormat(
+                            copy.getDigest(hash.getHashType().getAlgorithmName()));
+                    }
+                    if (!hash.getHashValue().equals(calculated)) {
+                        logger.warn("Copy of the file " + file.getValue() + " of the object " + identifier + " in "
+                                + copy.getReplica() + " is " + copy.getState() + ", its " + hash.getHashType()
+                                + " hash is " + calculated + " instead of " + hash.getHashValue());
+                        report.getCorruptedReplicas().add(
+                            new CorruptedReplicaDto(file.getValue(), copy.getReplica(), hash.getHashType(),
+                                hash.getHashValue(), calculated));
+                        corrupted = true;
+                    }
+                }
+                if (copy.getReplica() != null) {
+                    increment(report.getCheckedCopies(), copy.getReplica());
+                    if (corrupted) {
+                        increment(report.getCorruptedCopies(), copy.getReplica());
+                    }
+                }
+            }
+        }
+
+        return report;
+    }
+
+
+    /**
+     * Increments the counter of the data storage.
+     * 
+     * @param counters
+     *            counters by the descriptions of the data storages
+     * @param replica
+     *            description of the data storage
+     */
+    private void increment(Map<String, Integer> counters, String replica) {
+        Integer count = counters.get(replica);
+        counters.put(replica, count != null ? count + 1 : 1);
+    }
+}
@@ -82,7 +82,7 @@ public class ObjectRequestProcessorBean implements ObjectRequestProcessor {
 
         String objectId = objectManagerBean.createObject(request);
         AsyncRequestResult result = resultManager.prepareResult(requestId);
-        resultManager.saveResultString(result.getId(), objectId);
+        resultManager.saveResultString(result, objectId);
         result.setCode(AsyncRequestResultConsts.HTTP_CODE_OK);
         result.setContentType(AsyncRequestResultConsts.CONTENT_TYPE_TEXT_PLAIN
                 + AsyncRequestResultConsts.CONTENT_TYPE_CHARSET_UTF8);
@@ -98,7 +98,7 @@ public class ObjectRequestProcessorBean implements ObjectRequestProcessor {
 
         int version = objectManagerBean.modifyObject(request);
         AsyncRequestResult result = resultManager.prepareResult(requestId);
-        resultManager.saveResultString(result.getId(), Integer.toString(version));
+        resultManager.saveResultString(result, Integer.toString(version));
         result.setCode(AsyncRequestResultConsts.HTTP_CODE_OK);
         result.setContentType(AsyncRequestResultConsts.CONTENT_TYPE_TEXT_PLAIN
                 + AsyncRequestResultConsts.CONTENT_TYPE_CHARSET_UTF8);
@@ -114,7 +114,7 @@ public class ObjectRequestProcessorBean implements ObjectRequestProcessor {
 
         int version = objectManagerBean.deleteVersion(request);
         AsyncRequestResult result = resultManager.prepareResult(requestId);
-        resultManager.saveResultString(result.getId(), Integer.toString(version));
+        resultManager.saveResultString(result, Integer.toString(version));
         result.setCode(AsyncRequestResultConsts.HTTP_CODE_OK);
         result.setContentType(AsyncRequestResultConsts.CONTENT_TYPE_TEXT_PLAIN
                 + AsyncRequestResultConsts.CONTENT_TYPE_CHARSET_UTF8);
@@ -203,7 +203,7 @@ public class ObjectRequestProcessorBean implements ObjectRequestProcessor {
      */
     private void processFetchingResult(ResultFile resultFile, AsyncRequestResult result)
             throws IOException {
-        resultManager.saveResultFile(result.getId(), resultFile.getFile().getAbsolutePath());
+        resultManager.saveResultFile(result, resultFile.getFile().getAbsolutePath());
         result.setCode(AsyncRequestResultConsts.HTTP_CODE_OK);
         result.setContentType(AsyncRequestResultConsts.CONTENT_TYPE_APPLICATION_ZIP);
         result.setFilename(resultFile.getProposedName());
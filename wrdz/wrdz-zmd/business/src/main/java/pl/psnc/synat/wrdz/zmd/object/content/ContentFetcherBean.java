@@ -15,6 +15,8 @@
  */
 package pl.psnc.synat.wrdz.zmd.object.content;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 
@@ -33,6 +35,8 @@ import pl.psnc.synat.wrdz.zmd.config.ZmdConfiguration;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
 import pl.psnc.synat.wrdz.zmd.entity.object.metadata.MetadataFile;
+import pl.psnc.synat.wrdz.zmd.exception.ArchiverException;
+import pl.psnc.synat.wrdz.zmd.object.helpers.archivers.ZipArchiveStreamWriter;
 import pl.psnc.synat.wrdz.zmd.storage.DataStorageAccess;
 import pl.psnc.synat.wrdz.zmd.storage.DataStorageException;
 
@@ -110,6 +114,91 @@ public class ContentFetcherBean implements ContentFetcher {
     }
 
 
+    @Override
+    public File archiveEntireObject(ContentVersion version, boolean provided, boolean extracted)
+            throws DataStorageException, ArchiverException {
+        ZipArchiveStreamWriter writer = createArchiveWriter();
+        boolean finished = false;
+        try {
+            dataStorageAccessBean.exportObject(version, provided, extracted, writer);
+            File archive = writer.finish();
+            finished = true;
+            return archive;
+        } catch (DataStorageResourceException e) {
+            logger.error("Object download from the data store failed!", e);
+            throw new DataStorageException(e);
+        } catch (IOException e) {
+            throw new ArchiverException("Could not write the object into the archive.", e);
+        } finally {
+            if (!finished) {
+                writer.abort();
+            }
+        }
+    }
+
+
+    @Override
+    public File archiveContentFiles(ContentVersion version, List<DataFile> dataFiles, boolean provided,
+            boolean extracted)
+            throws DataStorageException, ArchiverException {
+        ZipArchiveStreamWriter writer = createArchiveWriter();
+        boolean finished = false;
+        try {
+            dataStorageAccessBean.exportDataFiles(version, dataFiles, provided, extracted, writer);
+            File archive = writer.finish();
+            finished = true;
+            return archive;
+        } catch (DataStorageResourceException e) {
+            logger.error("Object download from the data store failed!", e);
+            throw new DataStorageException(e);
+        } catch (IOException e) {
+            throw new ArchiverException("Could not write the files into the archive.", e);
+        } finally {
+            if (!finished) {
+                writer.abort();
+            }
+        }
+    }
+
+
+    @Override
+    public File archiveMetadataFiles(ContentVersion objectVersion, boolean provided)
+            throws DataStorageException, ArchiverException {
+        ZipArchiveStreamWriter writer = createArchiveWriter();
+        boolean finished = false;
+        try {
+            dataStorageAccessBean.exportMetadataFiles(objectVersion, provided, writer);
+            File archive = writer.finish();
+            finished = true;
+            return archive;
+        } catch (DataStorageResourceException e) {
+            logger.error("Object download from the data store failed!", e);
+            throw new DataStorageException(e);
+        } catch (IOException e) {
+            throw new ArchiverException("Could not write the metadata files into the archive.", e);
+        } finally {
+            if (!finished) {
+                writer.abort();
+            }
+        }
+    }
+
+
+    /**
+     * Creates a writer of a new zip archive in the cache.
+     * 
+     * @return archive writer
+     * @throws ArchiverException
+     *             if the archive cannot be created
+     */
+    private ZipArchiveStreamWriter createArchiveWriter()
+            throws ArchiverException {
+        File cacheHome = new File(zmdConfiguration.getCacheHome());
+        cacheHome.mkdirs();
+        return new ZipArchiveStreamWriter(new File(cacheHome, uuidGenerator.generateCacheFolderName() + ".zip"));
+    }
+
+
     @Override
     public InputStream getMetadataFile(ContentVersion objectVersion)
             throws DataStorageException {
@@ -15,8 +15,12 @@
  */
 package pl.psnc.synat.wrdz.zmd.object.content;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Date;
@@ -31,15 +35,22 @@ import javax.ejb.TransactionAttributeType;
 import javax.inject.Inject;
 
 import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.dsa.exception.DataStorageResourceException;
+import pl.psnc.synat.wrdz.common.dao.QueryFilter;
 import pl.psnc.synat.wrdz.common.dao.QueryModifier;
 import pl.psnc.synat.wrdz.common.metadata.Metadata;
 import pl.psnc.synat.wrdz.common.metadata.mets.MetsMetadata;
 import pl.psnc.synat.wrdz.common.metadata.mets.MetsMetadataProcessingException;
+import pl.psnc.synat.wrdz.common.metadata.mets.MetsMetadataType;
 import pl.psnc.synat.wrdz.zmd.config.ZmdConfiguration;
 import pl.psnc.synat.wrdz.zmd.dao.object.content.ContentVersionDao;
 import pl.psnc.synat.wrdz.zmd.dao.object.content.ContentVersionFilterFactory;
 import pl.psnc.synat.wrdz.zmd.dao.object.content.ContentVersionSorterBuilder;
+import pl.psnc.synat.wrdz.zmd.dao.object.content.DataFileVersionDao;
+import pl.psnc.synat.wrdz.zmd.dao.object.content.DataFileVersionFilterFactory;
 import pl.psnc.synat.wrdz.zmd.dao.object.metadata.ObjectProvidedMetadataDao;
 import pl.psnc.synat.wrdz.zmd.dao.object.metadata.ObjectProvidedMetadataFilterFactory;
 import pl.psnc.synat.wrdz.zmd.download.DownloadTask;
@@ -54,10 +65,14 @@ import pl.psnc.synat.wrdz.zmd.object.ObjectModificationException;
 import pl.psnc.synat.wrdz.zmd.object.ObjectStructure;
 import pl.psnc.synat.wrdz.zmd.object.helpers.ObjectUtils;
 import pl.psnc.synat.wrdz.zmd.object.metadata.ObjectMetadataCreator;
+import pl.psnc.synat.wrdz.zmd.object.metadata.construction.ContentVersionChanges;
 import pl.psnc.synat.wrdz.zmd.object.metadata.construction.LinkMetsMetadataConstructionStrategy;
+import pl.psnc.synat.wrdz.zmd.output.OutputFile;
+import pl.psnc.synat.wrdz.zmd.output.OutputFileUpdate;
 import pl.psnc.synat.wrdz.zmd.output.OutputTask;
 import pl.psnc.synat.wrdz.zmd.output.object.DataFilesBundle;
 import pl.psnc.synat.wrdz.zmd.output.object.MetadataFilesBundle;
+import pl.psnc.synat.wrdz.zmd.storage.DataStorageAccess;
 
 /**
  * Builds content version objects with their children.
@@ -71,6 +86,11 @@ public class ContentVersionBuilder {
      */
     private static final long serialVersionUID = -8421074346035467283L;
 
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(ContentVersionBuilder.class);
+
     /**
      * Content version DAO.
      */
@@ -89,6 +109,18 @@ public class ContentVersionBuilder {
     @EJB
     private DataFileBuilder dataFileBuilder;
 
+    /**
+     * Data file version DAO.
+     */
+    @EJB
+    private DataFileVersionDao dataFileVersionDao;
+
+    /**
+     * Provides an access to objects in data storage.
+     */
+    @EJB
+    private DataStorageAccess dataStorageAccessBean;
+
     /**
      * ZMD module configuration.
      */
@@ -174,6 +206,7 @@ public class ContentVersionBuilder {
         List<ObjectProvidedMetadata> modifiedMetadata = prepareModifiedMetadata(metadataFilesBundle
                 .getModifiedMetadata());
         Set<String> deletedMetadata = prepareDeletedMetadata(metadataFilesBundle.getDeletedMetadata());
+        ContentVersionChanges changes = null;
         if (dontInherit) {
             result.setProvidedMetadata(createProvidedMetadata(result, null, addedMetadata, modifiedMetadata,
                 deletedMetadata));
@@ -182,12 +215,15 @@ public class ContentVersionBuilder {
                     .getQueryFilterFactory();
             List<ObjectProvidedMetadata> previousObjectProvidedMetadata = objectProvidedMetadataDao.findBy(
                 queryFilterFactory.byIncludedInVersion(previous.getId()), false);
+            changes = getChanges(previous, result, dataFilesBundle, previousObjectProvidedMetadata, addedMetadata,
+                modifiedMetadata, deletedMetadata);
             result.getProvidedMetadata().addAll(
                 createProvidedMetadata(result, previousObjectProvidedMetadata, addedMetadata, modifiedMetadata,
                     deletedMetadata));
         }
         if (zmdConfiguration.constructMetsMetadata()) {
-            result.setExtractedMetadata(createVersionMetadata(result, cachePath, metsProvidedUri, inputFilesSet));
+            result.setExtractedMetadata(createVersionMetadata(result, previous, changes, cachePath, metsProvidedUri,
+                inputFilesSet));
             String pathPrefix = ObjectUtils.createObjectAndVersionPath(result.getObject().getId(), result.getVersion());
             result.getExtractedMetadata().setRepositoryFilepath(
                 pathPrefix + result.getExtractedMetadata().getObjectFilepath());
@@ -266,6 +302,77 @@ public class ContentVersionBuilder {
     }
 
 
+    /**
+     * Gathers changes of the new version with respect to the previous one. It must be called before the inherited
+     * metadata are filtered.
+     * 
+     * @param previous
+     *            previous version
+     * @param version
+     *            new version with its data files already constructed
+     * @param dataFilesBundle
+     *            bundle of data files concerning the new version
+     * @param inherited
+     *            provided metadata of the previous version
+     * @param addedMetadata
+     *            list of version's added provided metadata
+     * @param modifiedMetadata
+     *            list of version's modified provided metadata
+     * @param deletedMetadata
+     *            set of version's deleted provided metadata
+     * @return changes of the version
+     */
+    private ContentVersionChanges getChanges(ContentVersion previous, ContentVersion version,
+            DataFilesBundle dataFilesBundle, List<ObjectProvidedMetadata> inherited,
+            List<ObjectProvidedMetadata> addedMetadata, List<ObjectProvidedMetadata> modifiedMetadata,
+            Set<String> deletedMetadata) {
+        Set<String> changedFilenames = new HashSet<String>();
+        if (dataFilesBundle.getAddedData() != null) {
+            for (OutputFile file : dataFilesBundle.getAddedData()) {
+                changedFilenames.add(file.getFile().getFilename());
+            }
+        }
+        if (dataFilesBundle.getModifiedData() != null) {
+            for (OutputFileUpdate file : dataFilesBundle.getModifiedData()) {
+                changedFilenames.add(file.getFile().getFilename());
+            }
+        }
+        List<DataFileVersion> changedFiles = new ArrayList<DataFileVersion>();
+        Set<String> removedFiles = new HashSet<String>();
+        for (DataFileVersion file : version.getFiles()) {
+            if (changedFilenames.contains(file.getDataFile().getFilename())) {
+                changedFiles.add(file);
+                removedFiles.add(file.getDataFile().getObjectFilepath());
+            }
+        }
+        Set<String> deletedData = dataFilesBundle.getDeletedData();
+        if (deletedData != null && !deletedData.isEmpty()) {
+            DataFileVersionFilterFactory queryFilterFactory = dataFileVersionDao.createQueryModifier()
+                    .getQueryFilterFactory();
+            QueryFilter<DataFileVersion> filter = queryFilterFactory.and(
+                queryFilterFactory.byContentVersionNo(previous.getObject().getId(), previous.getVersion(), false),
+                queryFilterFactory.byFilenames(deletedData));
+            for (DataFileVersion file : dataFileVersionDao.findBy(filter, false)) {
+                removedFiles.add(file.getDataFile().getObjectFilepath());
+            }
+        }
+
+        List<ObjectProvidedMetadata> changedMetadata = new ArrayList<ObjectProvidedMetadata>(addedMetadata);
+        changedMetadata.addAll(modifiedMetadata);
+        Set<String> removedMetadataFilenames = new HashSet<String>(deletedMetadata);
+        for (ObjectProvidedMetadata metadata : modifiedMetadata) {
+            removedMetadataFilenames.add(metadata.getFilename());
+        }
+        Set<String> removedMetadata = new HashSet<String>();
+        for (ObjectProvidedMetadata metadata : inherited) {
+            if (removedMetadataFilenames.contains(metadata.getFilename())) {
+                removedMetadata.add(metadata.getObjectFilepath());
+            }
+        }
+        return new ContentVersionChanges(changedFiles, removedFiles, changedMetadata, removedMetadata);
+    }
+
+
     /**
      * Creates version provided metadata structures.
      * 
@@ -309,6 +416,10 @@ public class ContentVersionBuilder {
      * 
      * @param version
      *            version, for which to create extracted metadata structures.
+     * @param previous
+     *            previous version or <code>null</code> if there is none
+     * @param changes
+     *            changes of the version or <code>null</code> if the metadata must be constructed from scratch
      * @param cachePath
      *            path to the root of cache for created object.
      * @param metsProvidedUri
@@ -319,9 +430,19 @@ public class ContentVersionBuilder {
      * @throws ObjectModificationException
      *             should any error while modifying object arise.
      */
-    private ObjectExtractedMetadata createVersionMetadata(ContentVersion version, String cachePath,
-            URI metsProvidedUri, Set<InputFile> inputFilesSet)
+    private ObjectExtractedMetadata createVersionMetadata(ContentVersion version, ContentVersion previous,
+            ContentVersionChanges changes, String cachePath, URI metsProvidedUri, Set<InputFile> inputFilesSet)
             throws ObjectModificationException {
+        if (metsProvidedUri == null || inputFilesSet == null) {
+            OutputTask writtenMetadata = null;
+            if (changes != null && previous.getExtractedMetadata() != null) {
+                writtenMetadata = updateMetsMetadataToFile(version, previous, changes, cachePath);
+            }
+            if (writtenMetadata == null) {
+                writtenMetadata = writeMetsMetadataToFile(version, cachePath);
+            }
+            return objectMetadataHelper.createExtractedMetadata(writtenMetadata);
+        }
         MetsMetadata metadata = null;
         try {
             metadata = new LinkMetsMetadataConstructionStrategy().constructMetsMetadata(version, metsProvidedUri,
@@ -335,6 +456,105 @@ public class ContentVersionBuilder {
     }
 
 
+    /**
+     * Writes METS metadata of the version straight into a file in cache, without building them in memory.
+     * 
+     * @param version
+     *            version
+     * @param cachePath
+     *            cache path
+     * @return handle to a written file
+     * @throws ObjectModificationException
+     *             when construction or saving of metadata failed
+     */
+    private OutputTask writeMetsMetadataToFile(ContentVersion version, String cachePath)
+            throws ObjectModificationException {
+        String metadataFilename = new MetsMetadataType().getName() + ".xml";
+        OutputTask extractedFile = new OutputTask(ObjectStructure.getPathForExtractedMetadata(null, metadataFilename),
+                metadataFilename);
+        cachePath = cachePath + new Date().getTime() + metadataFilename;
+        extractedFile.setCachePath(cachePath);
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(cachePath));
+            try {
+                new LinkMetsMetadataConstructionStrategy().writeMetsMetadata(version, output);
+            } finally {
+                output.close();
+            }
+        } catch (MetsMetadataProcessingException e) {
+            throw new ObjectModificationException("Construction of version metadata failed!", e);
+        } catch (IOException e) {
+            throw new ObjectModificationException("Saving the object metadata into file " + cachePath + " failed", e);
+        }
+        return extractedFile;
+    }
+
+
+    /**
+     * Writes METS metadata of the version into a file in cache as METS metadata of the previous version updated with
+     * the changes of the version, so the cost depends on the number of changes rather than on the size of the object.
+     * 
+     * @param version
+     *            version
+     * @param previous
+     *            previous version
+     * @param changes
+     *            changes of the version
+     * @param cachePath
+     *            cache path
+     * @return handle to a written file or <code>null</code> if the metadata must be constructed from scratch
+     * @throws ObjectModificationException
+     *             when construction or saving of metadata failed
+     */
+    private OutputTask updateMetsMetadataToFile(ContentVersion version, ContentVersion previous,
+            ContentVersionChanges changes, String cachePath)
+            throws ObjectModificationException {
+        String metadataFilename = new MetsMetadataType().getName() + ".xml";
+        File previousMets = new File(cachePath + new Date().getTime() + "previous-" + metadataFilename);
+        try {
+            InputStream input = dataStorageAccessBean.getMetadataFile(previous);
+            try {
+                FileUtils.copyInputStreamToFile(input, previousMets);
+            } finally {
+                input.close();
+            }
+        } catch (DataStorageResourceException e) {
+            logger.warn("METS metadata of the previous version are not available, they will be constructed again.", e);
+            return null;
+        } catch (IOException e) {
+            logger.warn("METS metadata of the previous version are not available, they will be constructed again.", e);
+            FileUtils.deleteQuietly(previousMets);
+            return null;
+        }
+
+        OutputTask extractedFile = new OutputTask(ObjectStructure.getPathForExtractedMetadata(null, metadataFilename),
+                metadataFilename);
+        cachePath = cachePath + new Date().getTime() + metadataFilename;
+        extractedFile.setCachePath(cachePath);
+        boolean written;
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(cachePath));
+            try {
+                written = new LinkMetsMetadataConstructionStrategy().writeMetsMetadata(version, changes,
+                    previousMets, output);
+            } finally {
+                output.close();
+            }
+        } catch (MetsMetadataProcessingException e) {
+            throw new ObjectModificationException("Construction of version metadata failed!", e);
+        } catch (IOException e) {
+            throw new ObjectModificationException("Saving the object metadata into file " + cachePath + " failed", e);
+        } finally {
+            FileUtils.deleteQuietly(previousMets);
+        }
+        if (!written) {
+            FileUtils.deleteQuietly(new File(cachePath));
+            return null;
+        }
+        return extractedFile;
+    }
+
+
     /**
      * Save into cache a file with metadata of an object.
      * 
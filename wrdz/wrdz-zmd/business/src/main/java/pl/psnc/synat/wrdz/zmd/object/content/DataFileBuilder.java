@@ -18,9 +18,12 @@ package pl.psnc.synat.wrdz.zmd.object.content;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.PostConstruct;
@@ -54,10 +57,10 @@ import pl.psnc.synat.wrdz.zmd.entity.object.DigitalObject;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFileVersion;
-import pl.psnc.synat.wrdz.zmd.entity.object.hash.DataFileHash;
 import pl.psnc.synat.wrdz.zmd.entity.object.metadata.FileExtractedMetadata;
 import pl.psnc.synat.wrdz.zmd.entity.object.metadata.FileProvidedMetadata;
 import pl.psnc.synat.wrdz.zmd.entity.object.validation.DataFileValidation;
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 import pl.psnc.synat.wrdz.zmd.entity.types.ValidationStatus;
 import pl.psnc.synat.wrdz.zmd.object.ObjectModificationException;
 import pl.psnc.synat.wrdz.zmd.object.ObjectStructure;
@@ -407,7 +410,7 @@ public class DataFileBuilder {
             OutputFileUpdate modifications, ContentVersion contentVersion, String cachePath)
             throws TechMetadataExtractionException, AdmMetadataProcessingException, ObjectModificationException {
 
-        DataFile dataFile = createFile(modifications, cachePath, contentVersion.getCreatedOn());
+        DataFile dataFile = createFile(modifications, cachePath, contentVersion.getCreatedOn(), null, null);
         dataFile.setRepositoryFilepath(prefix + dataFile.getObjectFilepath());
         dataFile.setFilename(oldVersion.getDataFile().getFilename());
         dataFile.setObjectFilepath(oldVersion.getDataFile().getObjectFilepath());
@@ -527,31 +530,40 @@ public class DataFileBuilder {
      *            cache path
      * @param versionDate
      *            date date of the version
+     * @param hashValues
+     *            hashes of the file calculated in advance or null if they should be calculated now
+     * @param extracted
+     *            technical metadata of the file extracted in advance or null if they should be extracted now
      * @return unpersisted entity object containing info about the object's file.
      * @throws TechMetadataExtractionException
      *             when extraction of technical metadata failed
      * @throws AdmMetadataProcessingException
      *             when construction of administrative metadata failed
      */
-    private DataFile createFile(OutputFile source, String cachePath, Date versionDate)
+    private DataFile createFile(OutputFile source, String cachePath, Date versionDate,
+            Map<HashType, String> hashValues, ExtractedMetadata extracted)
             throws TechMetadataExtractionException, AdmMetadataProcessingException {
         DataFile file = new DataFile();
         file.setFilename(source.getFile().getFilename());
         file.setObjectFilepath(source.getFile().getInnerPath());
         file.setCachePath(source.getFile().getCachePath());
-        List<DataFileHash> hashes = new ArrayList<DataFileHash>();
-        hashes.add(hashGenerator.getDataFileHash(source.getFile(), file));
-        file.setHashes(hashes);
+        if (hashValues != null) {
+            file.setHashes(hashGenerator.getDataFileHashes(file, hashValues));
+        } else {
+            file.setHashes(hashGenerator.getDataFileHashes(source.getFile(), file));
+        }
         file.setSize((new File(source.getFile().getCachePath()).length()));
-        ExtractedMetadata extractedMetadata = null;
+        ExtractedMetadata extractedMetadata = extracted;
         if (zmdConfig.extractTechnicalMetadata()) {
-            TechMetadataExtractor extractor = TechMetadataExtractorFactory.getInstance().getTechMetadataExtractor();
-            logger.debug("extracting metadata from " + source.getFile().getCachePath());
-            Profiler.start("technical metadata extraction");
-            try {
-                extractedMetadata = extractor.extract(source.getFile().getCachePath());
-            } finally {
-                Profiler.stop("technical metadata extraction");
+            if (extractedMetadata == null) {
+                TechMetadataExtractor extractor = getTechMetadataExtractor();
+                logger.debug("extracting metadata from " + source.getFile().getCachePath());
+                Profiler.start("technical metadata extraction");
+                try {
+                    extractedMetadata = extractor.extract(source.getFile().getCachePath());
+                } finally {
+                    Profiler.stop("technical metadata extraction");
+                }
             }
             file.setValidation(createDataFileValidation(extractedMetadata));
             List<OutputTask> techMetadataFiles = new ArrayList<OutputTask>();
@@ -565,12 +577,71 @@ public class DataFileBuilder {
         file.setFormat(fileFormatDictionaryBean.getFileFormat(extractedMetadata));
         AdmMetadata administrativeMetadata = administrativeMetadataScheme.getStrategy()
                 .constructAdministrativeMetadata(file, extractedMetadata, versionDate,
-                    zmdConfig.getMaxValidationMessages());
+                    zmdConfig.getMaxValidationMessages(), zmdConfig.getDefaultHashType());
         source.setAdmMetadataFile(saveMetadataToFile(source, administrativeMetadata, cachePath));
         return file;
     }
 
 
+    /**
+     * Extracts technical metadata of all the files at once, so they are spread over all the FITS workers. If the
+     * results cache is configured, files are identified there by their content hashes.
+     * 
+     * @param files
+     *            cached files
+     * @param hashValues
+     *            hashes of the files keyed by their cache paths
+     * @return extracted metadata keyed by the cache paths of the files, empty if extraction is turned off
+     * @throws ObjectModificationException
+     *             when extraction of technical metadata failed
+     */
+    private Map<String, ExtractedMetadata> extractMetadata(List<OutputTask> files,
+            Map<String, Map<HashType, String>> hashValues)
+            throws ObjectModificationException {
+        if (!zmdConfig.extractTechnicalMetadata() || files.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        HashType keyType = zmdConfig.getHashTypes().get(0);
+        List<String> paths = new ArrayList<String>();
+        Map<String, String> contentKeys = new HashMap<String, String>();
+        for (OutputTask file : files) {
+            paths.add(file.getCachePath());
+            Map<HashType, String> hashes = hashValues.get(file.getCachePath());
+            if (hashes != null && hashes.get(keyType) != null) {
+                contentKeys.put(file.getCachePath(), keyType.name() + "-" + hashes.get(keyType));
+            }
+        }
+        Profiler.start("technical metadata extraction");
+        try {
+            TechMetadataExtractor extractor = getTechMetadataExtractor();
+            logger.debug("extracting metadata from " + paths.size() + " files");
+            return extractor.extract(paths, contentKeys, zmdConfig.getTechnicalMetadataExtractionTimeout() * 1000L);
+        } catch (TechMetadataExtractionException e) {
+            throw new ObjectModificationException("Extraction of metadata failed", e);
+        } finally {
+            Profiler.stop("technical metadata extraction");
+        }
+    }
+
+
+    /**
+     * Gets the technical metadata extractor, caching its results if the cache is configured.
+     * 
+     * @return technical metadata extractor
+     * @throws TechMetadataExtractionException
+     *             when metadata extractor could not be created
+     */
+    private TechMetadataExtractor getTechMetadataExtractor()
+            throws TechMetadataExtractionException {
+        String cacheHome = zmdConfig.getTechnicalMetadataCacheHome();
+        if (cacheHome == null) {
+            return TechMetadataExtractorFactory.getInstance().getTechMetadataExtractor();
+        }
+        return TechMetadataExtractorFactory.getInstance().getTechMetadataExtractor(new File(cacheHome),
+            zmdConfig.getTechnicalMetadataCacheSize());
+    }
+
+
     /**
      * Save into cache a file with the extracted technical metadata.
      * 
@@ -644,10 +715,19 @@ public class DataFileBuilder {
 
             String prefix = ObjectUtils.createObjectAndVersionPath(objectId, contentVersion.getVersion());
 
+            List<OutputTask> cachedFiles = new ArrayList<OutputTask>();
+            for (OutputFile outputFile : files) {
+                cachedFiles.add(outputFile.getFile());
+            }
+            Map<String, Map<HashType, String>> hashValues = hashGenerator.hashFiles(cachedFiles);
+            Map<String, ExtractedMetadata> extracted = extractMetadata(cachedFiles, hashValues);
+
             for (OutputFile outputFile : files) {
                 DataFile file = null;
                 try {
-                    file = createFile(outputFile, cachePath, contentVersion.getCreatedOn());
+                    file = createFile(outputFile, cachePath, contentVersion.getCreatedOn(),
+                        hashValues.get(outputFile.getFile().getCachePath()),
+                        extracted.get(outputFile.getFile().getCachePath()));
                 } catch (TechMetadataExtractionException e) {
                     throw new ObjectModificationException("Extraction of metadata failed for the file "
                             + outputFile.getFile().getInnerPath(), e);
@@ -18,10 +18,23 @@ package pl.psnc.synat.wrdz.zmd.object.hash;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.PostConstruct;
+import javax.ejb.EJB;
 import javax.inject.Inject;
 
 import org.apache.commons.io.IOUtils;
@@ -31,6 +44,7 @@ import org.slf4j.LoggerFactory;
 import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
 import pl.psnc.synat.wrdz.common.performance.Profiler;
 import pl.psnc.synat.wrdz.zmd.config.ZmdConfiguration;
+import pl.psnc.synat.wrdz.zmd.download.DownloadTask;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
 import pl.psnc.synat.wrdz.zmd.entity.object.hash.DataFileHash;
 import pl.psnc.synat.wrdz.zmd.entity.object.hash.MetadataFileHash;
@@ -39,7 +53,9 @@ import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 import pl.psnc.synat.wrdz.zmd.output.OutputTask;
 
 /**
- * Generates hashes for object's content files.
+ * Generates hashes for object's content files. Each file is read only once, all the configured hash types are
+ * calculated in the same pass. Files of one object can be hashed in parallel. Hashes calculated while a file was
+ * downloaded are used instead of reading the file again.
  */
 public class HashGenerator implements Serializable {
 
@@ -51,6 +67,17 @@ public class HashGenerator implements Serializable {
      */
     private static final long serialVersionUID = -4861796216021116652L;
 
+    /**
+     * Size of the buffer used while reading files.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Owner of the pool of threads hashing files in parallel, shared by all generators.
+     */
+    @EJB
+    private HashingExecutorBean hashingExecutor;
+
     /**
      * Module configuration.
      */
@@ -58,9 +85,9 @@ public class HashGenerator implements Serializable {
     private ZmdConfiguration zmdConfiguration;
 
     /**
-     * Default hash type read from the configuration.
+     * Hash types calculated for each file, the default one is the first.
      */
-    private HashType defaultHashType;
+    private List<HashType> hashTypes;
 
 
     /**
@@ -68,92 +95,215 @@ public class HashGenerator implements Serializable {
      */
     @PostConstruct
     public void initialize() {
-        defaultHashType = zmdConfiguration.getDefaultHashType();
+        hashTypes = zmdConfiguration.getHashTypes();
     }
 
 
     /**
-     * Produces new {@link DataFileHash} object containing the hash information about the given file.
+     * Produces new {@link DataFileHash} objects containing the hash information about the given file, one for each
+     * configured hash type.
      * 
      * @param source
      *            cached data file handle.
      * @param file
-     *            data file entity to associate with this hash.
-     * @return constructed and already one-side associated hash entity.
+     *            data file entity to associate with these hashes.
+     * @return constructed and already one-side associated hash entities.
      */
-    public DataFileHash getDataFileHash(OutputTask source, DataFile file) {
-        logger.debug("generating hash for data file " + source);
-        DataFileHash hash = new DataFileHash();
-        hash.setDataFile(file);
-        hash.setHashType(defaultHashType);
-        try {
-            hash.setHashValue(getHashForFile(source.getCachePath()));
-        } catch (NoSuchAlgorithmException e) {
-            throw new WrdzRuntimeException("Unable to locate appropriate hashing algorithm classes.", e);
-        } catch (IOException e) {
-            throw new WrdzRuntimeException("Unable to reach cached file or read it properly.", e);
+    public List<DataFileHash> getDataFileHashes(OutputTask source, DataFile file) {
+        logger.debug("generating hashes for data file " + source);
+        Map<HashType, String> values = getKnownHashes(source);
+        if (values == null) {
+            values = getHashesForFile(source.getCachePath());
+        }
+        return getDataFileHashes(file, values);
+    }
+
+
+    /**
+     * Produces new {@link DataFileHash} objects out of hash values calculated earlier.
+     * 
+     * @param file
+     *            data file entity to associate with these hashes.
+     * @param values
+     *            hash values of the file
+     * @return constructed and already one-side associated hash entities.
+     * @see #hashFiles(Collection)
+     */
+    public List<DataFileHash> getDataFileHashes(DataFile file, Map<HashType, String> values) {
+        List<DataFileHash> hashes = new ArrayList<DataFileHash>();
+        for (HashType hashType : hashTypes) {
+            DataFileHash hash = new DataFileHash();
+            hash.setDataFile(file);
+            hash.setHashType(hashType);
+            hash.setHashValue(values.get(hashType));
+            hashes.add(hash);
         }
-        return hash;
+        return hashes;
     }
 
 
     /**
-     * Produces new {@link MetadataFileHash} object containing the hash information about the given file.
+     * Produces new {@link MetadataFileHash} objects containing the hash information about the given file, one for each
+     * configured hash type.
      * 
      * @param source
      *            cached metadata file handle.
      * @param file
-     *            metadata file entity to associate with this hash.
-     * @return constructed and already one-side associated hash entity.
+     *            metadata file entity to associate with these hashes.
+     * @return constructed and already one-side associated hash entities.
      */
-    public MetadataFileHash getMetadataFileHash(OutputTask source, MetadataFile file) {
-        logger.debug("generating hash for metadata file " + source);
-        MetadataFileHash hash = new MetadataFileHash();
-        hash.setMetadataFile(file);
-        hash.setHashType(defaultHashType);
+    public List<MetadataFileHash> getMetadataFileHashes(OutputTask source, MetadataFile file) {
+        logger.debug("generating hashes for metadata file " + source);
+        Map<HashType, String> values = getKnownHashes(source);
+        if (values == null) {
+            values = getHashesForFile(source.getCachePath());
+        }
+        List<MetadataFileHash> hashes = new ArrayList<MetadataFileHash>();
+        for (HashType hashType : hashTypes) {
+            MetadataFileHash hash = new MetadataFileHash();
+            hash.setMetadataFile(file);
+            hash.setHashType(hashType);
+            hash.setHashValue(values.get(hashType));
+            hashes.add(hash);
+        }
+        return hashes;
+    }
+
+
+    /**
+     * Calculates hashes of many files in parallel. The number of files hashed at the same time is limited by the
+     * configured number of hashing threads. Files which were hashed while they were downloaded are not read again.
+     * 
+     * @param files
+     *            cached files.
+     * @return hash values of each file, keyed by its cache path.
+     */
+    public Map<String, Map<HashType, String>> hashFiles(Collection<? extends OutputTask> files) {
+        Map<String, Map<HashType, String>> result = new HashMap<String, Map<HashType, String>>();
+        List<String> paths = new ArrayList<String>();
+        for (OutputTask file : files) {
+            Map<HashType, String> known = getKnownHashes(file);
+            if (known != null) {
+                result.put(file.getCachePath(), known);
+            } else {
+                paths.add(file.getCachePath());
+            }
+        }
+        if (paths.size() < 2 || zmdConfiguration.getHashingThreads() < 2) {
+            for (String path : paths) {
+                result.put(path, getHashesForFile(path));
+            }
+            return result;
+        }
+        Profiler.start("parallel hash generation");
+        Map<String, Future<Map<HashType, String>>> futures = new LinkedHashMap<String, Future<Map<HashType, String>>>();
+        for (final String path : paths) {
+            futures.put(path, hashingExecutor.getExecutor().submit(new Callable<Map<HashType, String>>() {
+
+                @Override
+                public Map<HashType, String> call() {
+                    return getHashesForFile(path);
+                }
+            }));
+        }
         try {
-            hash.setHashValue(getHashForFile(source.getCachePath()));
+            for (Map.Entry<String, Future<Map<HashType, String>>> future : futures.entrySet()) {
+                result.put(future.getKey(), future.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WrdzRuntimeException("Interrupted while generating hashes.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new WrdzRuntimeException("Unable to generate hashes.", e);
+        } finally {
+            for (Future<Map<HashType, String>> future : futures.values()) {
+                future.cancel(true);
+            }
+            Profiler.stop("parallel hash generation");
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns hashes of the file calculated while it was downloaded if they include all the configured hash types.
+     * 
+     * @param source
+     *            cached file handle.
+     * @return known hashes or null if the file has to be read to get them.
+     */
+    private Map<HashType, String> getKnownHashes(OutputTask source) {
+        if (source instanceof DownloadTask) {
+            Map<HashType, String> hashes = ((DownloadTask) source).getHashes();
+            if (hashes != null && hashes.keySet().containsAll(hashTypes)) {
+                logger.debug("using hashes calculated while downloading " + source);
+                return hashes;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Extracts all the configured hashes of the file and returns them in a hexadecimal format.
+     * 
+     * @param path
+     *            path to the cached file.
+     * @return generated hashes.
+     */
+    private Map<HashType, String> getHashesForFile(String path) {
+        try {
+            return calculateHashes(path);
         } catch (NoSuchAlgorithmException e) {
             throw new WrdzRuntimeException("Unable to locate appropriate hashing algorithm classes.", e);
         } catch (IOException e) {
             throw new WrdzRuntimeException("Unable to reach cached file or read it properly.", e);
         }
-        return hash;
     }
 
 
     /**
-     * Extracts the hash of the file and returns it in a hexadecimal format.
+     * Reads the file once and feeds every read block to the digests of all the configured hash types.
      * 
      * @param path
      *            path to the cached file.
-     * @return returns generated hash.
+     * @return generated hashes.
      * @throws NoSuchAlgorithmException
      *             if no suitable algorithm was found (i.e. configuration states use of unhandled hash type)
      * @throws IOException
      *             if problems with reading file from the given path occur.
      */
-    private String getHashForFile(String path)
+    private Map<HashType, String> calculateHashes(String path)
             throws NoSuchAlgorithmException, IOException {
 
         Profiler.start("hash generation");
         try {
-            MessageDigest md = MessageDigest.getInstance(defaultHashType.getAlgorithmName());
-            FileInputStream fis = null;
+            MessageDigest[] digests = new MessageDigest[hashTypes.size()];
+            for (int i = 0; i < digests.length; i++) {
+                digests[i] = MessageDigest.getInstance(hashTypes.get(i).getAlgorithmName());
+            }
+            FileInputStream fis = new FileInputStream(path);
             try {
-                fis = new FileInputStream(path);
-                byte[] dataBytes = new byte[1024];
-                int nread = 0;
-                while ((nread = fis.read(dataBytes)) != -1) {
-                    md.update(dataBytes, 0, nread);
+                FileChannel channel = fis.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(channel.size(), 1)));
+                while (channel.read(buffer) != -1) {
+                    for (MessageDigest digest : digests) {
+                        digest.update(buffer.array(), 0, buffer.position());
+                    }
+                    buffer.clear();
                 }
-            } catch (Exception e) {
-                logger.error("exception thrown while generating hash", e);
             } finally {
                 IOUtils.closeQuietly(fis);
             }
 
-            return defaultHashType.toHexFormat(md.digest());
+            Map<HashType, String> result = new EnumMap<HashType, String>(HashType.class);
+            for (int i = 0; i < digests.length; i++) {
+                result.put(hashTypes.get(i), hashTypes.get(i).toHexFormat(digests[i].digest()));
+            }
+            return result;
         } finally {
             Profiler.stop("hash generation");
         }
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.object.helpers.archivers;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import pl.psnc.synat.wrdz.zmd.exception.ArchiverException;
+import pl.psnc.synat.wrdz.zmd.storage.DataStorageSink;
+
+/**
+ * Writes the files streamed from the data storage directly into a zip archive, in one pass. Files of formats which are
+ * already compressed are not compressed again (they are deflated with no compression, since the sizes and checksums
+ * required by stored entries are not known before the file is streamed).
+ */
+public class ZipArchiveStreamWriter implements DataStorageSink {
+
+    /**
+     * Buffer length.
+     */
+    private static final int BUFFER_LENGTH = 64 * 1024;
+
+    /**
+     * Extensions of formats which are already compressed.
+     */
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList("zip", "gz", "tgz",
+        "bz2", "xz", "7z", "rar", "jar", "war", "jpg", "jpeg", "jp2", "png", "gif", "webp", "mp3", "mp4", "m4a", "m4v",
+        "aac", "ogg", "oga", "ogv", "flac", "avi", "mov", "mkv", "webm", "docx", "xlsx", "pptx", "odt", "ods", "odp",
+        "epub", "pdf"));
+
+    /**
+     * Destination file.
+     */
+    private final File destination;
+
+    /**
+     * Archive being written.
+     */
+    private final ZipOutputStream zip;
+
+    /**
+     * Buffer for data copying.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Names of the entries already written.
+     */
+    private final Set<String> entries;
+
+
+    /**
+     * Creates new instance of this class and opens the destination file.
+     * 
+     * @param destination
+     *            destination file.
+     * @throws ArchiverException
+     *             if the destination cannot be written.
+     */
+    public ZipArchiveStreamWriter(File destination)
+            throws ArchiverException {
+        this.destination = destination;
+        try {
+            this.zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(destination), BUFFER_LENGTH));
+        } catch (FileNotFoundException e) {
+            throw new ArchiverException("Cannot write to the specified destination.", e);
+        }
+        this.buffer = new byte[BUFFER_LENGTH];
+        this.entries = new HashSet<String>();
+    }
+
+
+    @Override
+    public void write(String objectPath, InputStream content)
+            throws IOException {
+        String name = objectPath.startsWith("/") ? objectPath.substring(1) : objectPath;
+        if (!entries.add(name)) {
+            return;
+        }
+        if (COMPRESSED_EXTENSIONS.contains(FilenameUtils.getExtension(name).toLowerCase(Locale.ENGLISH))) {
+            zip.setLevel(Deflater.NO_COMPRESSION);
+        } else {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+        zip.putNextEntry(new ZipEntry(name));
+        int count;
+        while ((count = content.read(buffer)) != -1) {
+            zip.write(buffer, 0, count);
+        }
+        zip.closeEntry();
+    }
+
+
+    /**
+     * Finishes the archive and closes the destination file.
+     * 
+     * @return destination file.
+     * @throws ArchiverException
+     *             if the archive could not be finished.
+     */
+    public File finish()
+            throws ArchiverException {
+        try {
+            zip.close();
+        } catch (IOException e) {
+            throw new ArchiverException("Cannot finish the archive.", e);
+        }
+        return destination;
+    }
+
+
+    /**
+     * Closes the destination file and removes the incomplete archive. Used when writing the archive failed.
+     */
+    public void abort() {
+        IOUtils.closeQuietly(zip);
+        destination.delete();
+    }
+
+}
@@ -16,8 +16,6 @@
 package pl.psnc.synat.wrdz.zmd.object.metadata;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
 
 import javax.ejb.EJB;
 import javax.inject.Inject;
@@ -31,7 +29,6 @@ import pl.psnc.synat.wrdz.common.metadata.xmlns.NamespaceRecognizer;
 import pl.psnc.synat.wrdz.common.metadata.xmlns.NamespaceRecognizerFactory;
 import pl.psnc.synat.wrdz.common.metadata.xmlns.XmlNamespaces;
 import pl.psnc.synat.wrdz.zmd.config.ZmdConfiguration;
-import pl.psnc.synat.wrdz.zmd.entity.object.hash.MetadataFileHash;
 import pl.psnc.synat.wrdz.zmd.entity.object.metadata.MetadataFile;
 import pl.psnc.synat.wrdz.zmd.object.hash.HashGenerator;
 import pl.psnc.synat.wrdz.zmd.object.helpers.MetadataNamespaceDictionaryBean;
@@ -85,9 +82,7 @@ abstract class MetadataCreator {
                     AdministrativeMetadataScheme.NONE.name())) {
             getAndUpdateMetadataNamespaces(metadataFile, source);
         }
-        List<MetadataFileHash> hashes = new ArrayList<MetadataFileHash>();
-        hashes.add(hashGenerator.getMetadataFileHash(source, metadataFile));
-        metadataFile.setHashes(hashes);
+        metadataFile.setHashes(hashGenerator.getMetadataFileHashes(source, metadataFile));
         metadataFile.setSize((new File(source.getCachePath()).length()));
     }
 
@@ -21,6 +21,7 @@ import pl.psnc.synat.wrdz.common.metadata.adm.AdmMetadata;
 import pl.psnc.synat.wrdz.common.metadata.adm.AdmMetadataProcessingException;
 import pl.psnc.synat.wrdz.common.metadata.tech.ExtractedMetadata;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 
 /**
  * Interface for administrative metadata construction strategy.
@@ -38,12 +39,14 @@ public interface AdministrativeMetadataConstructionStrategy {
      *            date of creation
      * @param maxValidationMessages
      *            max number of validation messages that can be save in metadata
+     * @param hashType
+     *            type of the file hash that should be put in metadata
      * @return administrative metadata
      * @throws AdmMetadataProcessingException
      *             when some problem with the construction of metadata occurs
      */
     AdmMetadata constructAdministrativeMetadata(DataFile file, ExtractedMetadata extractedMetadata, Date creationDate,
-            int maxValidationMessages)
+            int maxValidationMessages, HashType hashType)
             throws AdmMetadataProcessingException;
 
 }
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.object.metadata.construction;
+
+import java.util.List;
+import java.util.Set;
+
+import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFileVersion;
+import pl.psnc.synat.wrdz.zmd.entity.object.metadata.ObjectProvidedMetadata;
+
+/**
+ * Changes of a content version of a digital object with respect to the previous version, on the basis of which METS
+ * metadata of the previous version are updated.
+ */
+public final class ContentVersionChanges {
+
+    /**
+     * Data files of the version which are new or modified.
+     */
+    private final List<DataFileVersion> changedFiles;
+
+    /**
+     * Object relative paths of the data files of the previous version which are deleted or modified.
+     */
+    private final Set<String> removedFiles;
+
+    /**
+     * Object provided metadata of the version which are new or modified.
+     */
+    private final List<ObjectProvidedMetadata> changedMetadata;
+
+    /**
+     * Object relative paths of the object provided metadata of the previous version which are deleted or modified.
+     */
+    private final Set<String> removedMetadata;
+
+
+    /**
+     * Constructs changes of a version.
+     * 
+     * @param changedFiles
+     *            new and modified data files
+     * @param removedFiles
+     *            paths of deleted and modified data files of the previous version
+     * @param changedMetadata
+     *            new and modified object provided metadata
+     * @param removedMetadata
+     *            paths of deleted and modified object provided metadata of the previous version
+     */
+    public ContentVersionChanges(List<DataFileVersion> changedFiles, Set<String> removedFiles,
+            List<ObjectProvidedMetadata> changedMetadata, Set<String> removedMetadata) {
+        this.changedFiles = changedFiles;
+        this.removedFiles = removedFiles;
+        this.changedMetadata = changedMetadata;
+        this.removedMetadata = removedMetadata;
+    }
+
+
+    public List<DataFileVersion> getChangedFiles() {
+        return changedFiles;
+    }
+
+
+    public Set<String> getRemovedFiles() {
+        return removedFiles;
+    }
+
+
+    public List<ObjectProvidedMetadata> getChangedMetadata() {
+        return changedMetadata;
+    }
+
+
+    public Set<String> getRemovedMetadata() {
+        return removedMetadata;
+    }
+
+}
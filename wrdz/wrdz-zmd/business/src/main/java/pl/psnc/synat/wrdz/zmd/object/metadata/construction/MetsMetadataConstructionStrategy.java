@@ -17,11 +17,12 @@ package pl.psnc.synat.wrdz.zmd.object.metadata.construction;
 
 import gov.loc.mets.AmdSecType;
 import gov.loc.mets.FileType;
-import gov.loc.mets.FileType.FLocat;
-import gov.loc.mets.MdSecType.MdRef;
 
+import java.io.File;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -150,6 +151,151 @@ public abstract class MetsMetadataConstructionStrategy {
     }
 
 
+    /**
+     * Writes content version metadata for the digital object in the METS schema straight to the output stream. Unlike
+     * {@link #constructMetsMetadata(ContentVersion)} it does not build the whole METS tree in memory - the sections are
+     * written (and released) one by one, data file by data file. The origin and the derivatives of the object are
+     * described before the modification events, otherwise the result follows the same schema.
+     * 
+     * @param contentVersion
+     *            content version of the digital object
+     * @param output
+     *            output stream for METS metadata (it is not closed)
+     * @throws MetsMetadataProcessingException
+     *             when some problem with the construction of metadata occurs
+     */
+    @SuppressWarnings("rawtypes")
+    public void writeMetsMetadata(ContentVersion contentVersion, OutputStream output)
+            throws MetsMetadataProcessingException {
+        logger.debug("Streamed Mets construction for: " + contentVersion);
+
+        DigitalObject digitalObject = contentVersion.getObject();
+        List<ContentVersion> previousVersions = new ArrayList<ContentVersion>(digitalObject.getVersions());
+        ObjectExtractedMetadata previousMetsMetadata = null;
+        if (contentVersion.getVersion().equals(1)) {
+            previousVersions = new ArrayList<ContentVersion>();
+        } else {
+            previousVersions.remove(contentVersion);
+            Collections.sort(previousVersions, new ContentVersionComparator());
+            previousMetsMetadata = previousVersions.get(previousVersions.size() - 1).getExtractedMetadata();
+        }
+        logger.debug("Previous Mets metadata: " + previousMetsMetadata);
+
+        MetsMetadataBuilder metsBuilder = MetsMetadataBuilderFactory.getInstance().getMetsMetadataBuilder();
+
+        Identifier defaultIdentifier = digitalObject.getDefaultIdentifier();
+        metsBuilder.setObjectIdentifier(defaultIdentifier.getIdentifier(), defaultIdentifier.getType().name());
+        metsBuilder.setObjectType(digitalObject.getType().name());
+        if (previousVersions.size() != 0) {
+            metsBuilder.setCreationDate(previousVersions.get(0).getCreatedOn());
+            metsBuilder.setModificationDate(contentVersion.getCreatedOn());
+        } else {
+            metsBuilder.setCreationDate(contentVersion.getCreatedOn());
+        }
+        metsBuilder.setVersionNumber(contentVersion.getVersion());
+        for (Identifier identifier : digitalObject.getIdentifiers()) {
+            if (!identifier.equals(defaultIdentifier)) {
+                metsBuilder.addAlternativeObjectIdentifier(identifier.getType().name(), identifier.getIdentifier());
+            }
+        }
+        for (ObjectProvidedMetadata providedMetadata : contentVersion.getProvidedMetadata()) {
+            buildMetadataForObject(metsBuilder, providedMetadata, previousMetsMetadata);
+        }
+        // relationships are a part of the PREMIS object description, which is written first
+        buildObjectOrigin(metsBuilder, getObjectOrigin(digitalObject));
+        List<Migration> derivatives = getObjectDerivatives(digitalObject);
+        Collections.sort(derivatives, new MigrationComparator());
+        for (Migration derivative : derivatives) {
+            buildDerivative(metsBuilder, derivative);
+        }
+
+        metsBuilder.startStreaming(output);
+        for (ContentVersion version : previousVersions) {
+            metsBuilder.setObjectModificationEvent(version.getCreatedOn(), version.getVersion(),
+                getVersionUpdatedFiles(version));
+        }
+        metsBuilder.setObjectModificationEvent(contentVersion.getCreatedOn(), contentVersion.getVersion(),
+            getVersionUpdatedFiles(contentVersion));
+        for (DataFileVersion file : contentVersion.getFiles()) {
+            for (FileProvidedMetadata fileProvidedMetadata : file.getProvidedMetadata()) {
+                buildMetadataForFile(metsBuilder, file.getDataFile(), fileProvidedMetadata, previousMetsMetadata);
+            }
+            for (FileExtractedMetadata fileExtractedMetadata : file.getDataFile().getExtractedMetadata()) {
+                buildMetadataForFile(metsBuilder, file.getDataFile(), fileExtractedMetadata, previousMetsMetadata);
+            }
+            metsBuilder.writeFileSections();
+        }
+        for (DataFileVersion file : contentVersion.getFiles()) {
+            metsBuilder.writeDataFile(file.getDataFile().getObjectFilepath(), file.getSequence());
+        }
+        metsBuilder.finishStreaming();
+    }
+
+
+    /**
+     * Writes content version metadata for the digital object in the METS schema as METS metadata of the previous
+     * version updated with the changes of this version. Only the changed files and metadata are processed, the rest of
+     * the previous metadata is copied as it is. If the object has been migrated since the previous version (so its
+     * relationships changed), nothing is written and the metadata have to be constructed from scratch.
+     * 
+     * @param contentVersion
+     *            content version of the digital object
+     * @param changes
+     *            changes of the version with respect to the previous one
+     * @param previousMets
+     *            file with METS metadata of the previous version
+     * @param output
+     *            output stream for METS metadata (it is not closed)
+     * @return whether the metadata have been written
+     * @throws MetsMetadataProcessingException
+     *             when some problem with the construction of metadata occurs
+     */
+    @SuppressWarnings("rawtypes")
+    public boolean writeMetsMetadata(ContentVersion contentVersion, ContentVersionChanges changes, File previousMets,
+            OutputStream output)
+            throws MetsMetadataProcessingException {
+        logger.debug("Incremental Mets construction for: " + contentVersion);
+
+        DigitalObject digitalObject = contentVersion.getObject();
+        ObjectExtractedMetadata previousMetsMetadata = null;
+        for (ContentVersion version : digitalObject.getVersions()) {
+            if (version.getVersion().equals(contentVersion.getVersion() - 1)) {
+                previousMetsMetadata = version.getExtractedMetadata();
+            }
+        }
+
+        MetsMetadataBuilder metsBuilder = MetsMetadataBuilderFactory.getInstance().getMetsMetadataBuilder();
+        metsBuilder.loadPreviousVersion(previousMets, changes.getRemovedFiles(), changes.getRemovedMetadata());
+        List<Migration> derivatives = getObjectDerivatives(digitalObject);
+        int relationships = derivatives.size() + (getObjectOrigin(digitalObject) != null ? 1 : 0);
+        if (metsBuilder.getPreviousRelationshipCount() != relationships) {
+            logger.debug("Relationships of the object changed, incremental construction is not possible.");
+            return false;
+        }
+
+        metsBuilder.setModificationDate(contentVersion.getCreatedOn());
+        metsBuilder.setVersionNumber(contentVersion.getVersion());
+        for (ObjectProvidedMetadata providedMetadata : changes.getChangedMetadata()) {
+            buildMetadataForObject(metsBuilder, providedMetadata, previousMetsMetadata);
+        }
+        metsBuilder.setObjectModificationEvent(contentVersion.getCreatedOn(), contentVersion.getVersion(),
+            getVersionUpdatedFiles(contentVersion, changes.getChangedFiles(), changes.getChangedMetadata()));
+        for (DataFileVersion file : changes.getChangedFiles()) {
+            for (FileProvidedMetadata fileProvidedMetadata : file.getProvidedMetadata()) {
+                buildMetadataForFile(metsBuilder, file.getDataFile(), fileProvidedMetadata, previousMetsMetadata);
+            }
+            for (FileExtractedMetadata fileExtractedMetadata : file.getDataFile().getExtractedMetadata()) {
+                buildMetadataForFile(metsBuilder, file.getDataFile(), fileExtractedMetadata, previousMetsMetadata);
+            }
+        }
+        for (DataFileVersion file : changes.getChangedFiles()) {
+            metsBuilder.addDataFile(file.getDataFile().getObjectFilepath(), file.getSequence());
+        }
+        metsBuilder.writeNextVersion(output);
+        return true;
+    }
+
+
     /**
      * Constructs content version metadata for the digital object in the METS schema.
      * 
@@ -226,13 +372,11 @@ public abstract class MetsMetadataConstructionStrategy {
 
             String dataFileName = file.getDataFile().getFilename();
             String dataFileUri = dataFileMap.get(dataFileName);
-            FLocat dataFileLoc = metsBuilder.findFileSectionByURL(dataFileUri);
-            if (dataFileLoc == null) {
+            FileType lastFileTypeSec = metsBuilder.relocateDataFile(dataFileUri, file.getDataFile()
+                    .getObjectFilepath(), MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
+            if (lastFileTypeSec == null) {
                 continue;
             }
-            dataFileLoc.setHref(file.getDataFile().getObjectFilepath());
-            dataFileLoc.setLOCTYPE(MetsConsts.METS_METADATA_LOCATION_TYPE_RELATIVE);
-            FileType lastFileTypeSec = metsBuilder.getLastFileTypeSection();
             try {
                 metsBuilder.addMapping(file.getDataFile().getObjectFilepath(), ((AmdSecType) lastFileTypeSec.getADMID()
                         .get(0)).getID());
@@ -247,12 +391,8 @@ public abstract class MetsMetadataConstructionStrategy {
                 String metaDataFileName = dataFileName + fileProvidedMetadata.getFilename();
                 String metadataFileUri = metadataFilesMap.get(metaDataFileName);
 
-                MdRef mdRefSec = metsBuilder.findFileAdmSectionByURL(metadataFileUri);
-                if (mdRefSec == null) {
-                    continue;
-                }
-                mdRefSec.setHref(fileProvidedMetadata.getObjectFilepath());
-                mdRefSec.setLOCTYPE(MetsConsts.METS_DATA_LOCATION_TYPE_RELATIVE);
+                metsBuilder.relocateFileMetadata(metadataFileUri, fileProvidedMetadata.getObjectFilepath(),
+                    MetsConsts.METS_DATA_LOCATION_TYPE_RELATIVE);
             }
 
             for (FileExtractedMetadata fileExtractedMetadata : file.getDataFile().getExtractedMetadata()) {
@@ -471,8 +611,25 @@ public abstract class MetsMetadataConstructionStrategy {
      * @return list of all files updated within version (object relative path of version)
      */
     private List<String> getVersionUpdatedFiles(ContentVersion contentVersion) {
+        return getVersionUpdatedFiles(contentVersion, contentVersion.getFiles(), contentVersion.getProvidedMetadata());
+    }
+
+
+    /**
+     * Gets new and modified files of version among the given ones.
+     * 
+     * @param contentVersion
+     *            version
+     * @param files
+     *            data files of the version to check
+     * @param providedMetadata
+     *            object provided metadata of the version to check
+     * @return list of files updated within version (object relative path of version)
+     */
+    private List<String> getVersionUpdatedFiles(ContentVersion contentVersion, Collection<DataFileVersion> files,
+            Collection<ObjectProvidedMetadata> providedMetadata) {
         List<String> result = new ArrayList<String>();
-        for (DataFileVersion file : contentVersion.getFiles()) {
+        for (DataFileVersion file : files) {
             if (contentVersion.equals(getEarliestVersion(file.getDataFile()))) {
                 result.add(file.getDataFile().getObjectFilepath());
                 for (FileExtractedMetadata fileExtractedMetadata : file.getDataFile().getExtractedMetadata()) {
@@ -486,7 +643,7 @@ public abstract class MetsMetadataConstructionStrategy {
                 }
             }
         }
-        for (ObjectProvidedMetadata objectProvidedMetadata : contentVersion.getProvidedMetadata()) {
+        for (ObjectProvidedMetadata objectProvidedMetadata : providedMetadata) {
             if (contentVersion.equals(getEarliestVersion(objectProvidedMetadata, contentVersion))) {
                 result.add(objectProvidedMetadata.getObjectFilepath());
             }
@@ -21,6 +21,7 @@ import pl.psnc.synat.wrdz.common.metadata.adm.AdmMetadata;
 import pl.psnc.synat.wrdz.common.metadata.adm.AdmMetadataProcessingException;
 import pl.psnc.synat.wrdz.common.metadata.tech.ExtractedMetadata;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 
 /**
  * Strategy which constructs no administrative metadata.
@@ -29,7 +30,7 @@ public class NullMetadataConstructionStrategy implements AdministrativeMetadataC
 
     @Override
     public AdmMetadata constructAdministrativeMetadata(DataFile file, ExtractedMetadata extractedMetadata,
-            Date creationDate, int maxValidationMessages)
+            Date creationDate, int maxValidationMessages, HashType hashType)
             throws AdmMetadataProcessingException {
         return null;
     }
@@ -23,6 +23,8 @@ import pl.psnc.synat.wrdz.common.metadata.adm.PremisMetadataBuilder;
 import pl.psnc.synat.wrdz.common.metadata.adm.PremisMetadataBuilderFactory;
 import pl.psnc.synat.wrdz.common.metadata.tech.ExtractedMetadata;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
+import pl.psnc.synat.wrdz.zmd.entity.object.hash.DataFileHash;
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 
 /**
  * Strategy which constructs administrative metadata in the PREMIS schema.
@@ -37,13 +39,13 @@ public class PremisMetadataConstructionStrategy implements AdministrativeMetadat
 
     @Override
     public AdmMetadata constructAdministrativeMetadata(DataFile file, ExtractedMetadata extractedMetadata,
-            Date creationDate, int maxValidationMessages)
+            Date creationDate, int maxValidationMessages, HashType hashType)
             throws AdmMetadataProcessingException {
         PremisMetadataBuilder premisBuilder = PremisMetadataBuilderFactory.getInstance().getPremisMetadataBuilder();
         premisBuilder.setFileRelativePath(file.getFilename());
-        if (!file.getHashes().isEmpty()) {
-            premisBuilder.setFileHash(file.getHashes().get(0).getHashType().name(), file.getHashes().get(0)
-                    .getHashValue());
+        DataFileHash hash = getHash(file, hashType);
+        if (hash != null) {
+            premisBuilder.setFileHash(hash.getHashType().name(), hash.getHashValue());
         }
         premisBuilder.setFileSize(file.getSize());
         premisBuilder.setFileCreationEvent(creationDate);
@@ -73,4 +75,28 @@ public class PremisMetadataConstructionStrategy implements AdministrativeMetadat
         return premisBuilder.build();
     }
 
+
+    /**
+     * Finds the hash of the given type among the file hashes. Since the hashes are not ordered, any other hash is
+     * returned only if the file has no hash of the given type.
+     * 
+     * @param file
+     *            file
+     * @param hashType
+     *            preferred hash type
+     * @return the file hash or <code>null</code> if the file has no hashes
+     */
+    private DataFileHash getHash(DataFile file, HashType hashType) {
+        DataFileHash result = null;
+        for (DataFileHash hash : file.getHashes()) {
+            if (hash.getHashType() == hashType) {
+                return hash;
+            }
+            if (result == null) {
+                result = hash;
+            }
+        }
+        return result;
+    }
+
 }
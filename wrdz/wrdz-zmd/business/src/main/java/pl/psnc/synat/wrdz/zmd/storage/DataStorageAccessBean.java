@@ -15,17 +15,26 @@
  */
 package pl.psnc.synat.wrdz.zmd.storage;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 
+import org.apache.commons.io.IOUtils;
+
 import pl.psnc.synat.dsa.DataStorageConnection;
 import pl.psnc.synat.dsa.DataStorageConnectionFactory;
 import pl.psnc.synat.dsa.DataStorageConnectionSpec;
+import pl.psnc.synat.dsa.FileDigest;
 import pl.psnc.synat.dsa.exception.DataStorageResourceException;
+import pl.psnc.synat.dsa.exception.NoSuchFileException;
 import pl.psnc.synat.wrdz.zmd.entity.object.DigitalObject;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
@@ -169,6 +178,45 @@ public class DataStorageAccessBean implements DataStorageAccess {
     }
 
 
+    /**
+     * Streams a data file and its metadata files from data storage into the sink.
+     * 
+     * @param dataFile
+     *            data file
+     * @param provided
+     *            whether provided metadata should be streamed
+     * @param extracted
+     *            whether extracted metadata should be streamed
+     * @param version
+     *            version of the data file and its metadata files
+     * @param root
+     *            root folder for the object
+     * @param sink
+     *            consumer of the streamed files
+     * @throws IOException
+     *             if the sink failed to consume a file
+     */
+    private void exportDataFile(DataFile dataFile, boolean provided, boolean extracted, ContentVersion version,
+            String root, DataStorageSink sink)
+            throws IOException {
+        exportFile(root, dataFile.getRepositoryFilepath(), dataFile.getObjectFilepath(), sink);
+        if (provided) {
+            for (DataFileVersion fileVersion : dataFile.getIncludedIn()) {
+                if (fileVersion.getContentVersion().equals(version)) {
+                    for (FileProvidedMetadata metadataFile : fileVersion.getProvidedMetadata()) {
+                        exportFile(root, metadataFile.getRepositoryFilepath(), metadataFile.getObjectFilepath(), sink);
+                    }
+                }
+            }
+        }
+        if (extracted) {
+            for (FileExtractedMetadata metadataFile : dataFile.getExtractedMetadata()) {
+                exportFile(root, metadataFile.getRepositoryFilepath(), metadataFile.getObjectFilepath(), sink);
+            }
+        }
+    }
+
+
     /**
      * Stores a global metadata file in data storage.
      * 
@@ -251,6 +299,31 @@ public class DataStorageAccessBean implements DataStorageAccess {
     }
 
 
+    /**
+     * Streams a file from data storage into the sink.
+     * 
+     * @param root
+     *            root folder for the object
+     * @param sourcePath
+     *            path in the repository in a context of the object
+     * @param objectPath
+     *            path of the file in a context of the object
+     * @param sink
+     *            consumer of the streamed files
+     * @throws IOException
+     *             if the sink failed to consume the file
+     */
+    private void exportFile(String root, String sourcePath, String objectPath, DataStorageSink sink)
+            throws IOException {
+        InputStream content = getFile(root, sourcePath);
+        try {
+            sink.write(objectPath, content);
+        } finally {
+            IOUtils.closeQuietly(content);
+        }
+    }
+
+
     /**
      * Get an input stream to a file from data storage.
      * 
@@ -344,6 +417,34 @@ public class DataStorageAccessBean implements DataStorageAccess {
     }
 
 
+    @Override
+    public Map<String, List<FileDigest>> digestFiles(ContentVersion version, Collection<String> repositoryPaths,
+            Collection<String> algorithms)
+            throws DataStorageResourceException {
+        UserDto owner = userBrowser.getUser(version.getObject().getOwnerId());
+        OrganizationDto organization = userBrowser.getOrganization(owner.getUsername());
+        initConnection(organization.getName());
+        String root = getRootForUser(owner.getHomeDir(), organization.getRootPath());
+        try {
+            Map<String, List<FileDigest>> digests = new HashMap<String, List<FileDigest>>();
+            for (String repositoryPath : repositoryPaths) {
+                String path = root + "/" + repositoryPath;
+                if (path.startsWith("/")) {
+                    path = path.substring(1);
+                }
+                try {
+                    digests.put(repositoryPath, connection.digestFile(path, algorithms));
+                } catch (NoSuchFileException e) {
+                    digests.put(repositoryPath, Collections.<FileDigest> emptyList());
+                }
+            }
+            return digests;
+        } finally {
+            closeConnection();
+        }
+    }
+
+
     @Override
     public InputStream getMetadataFile(ContentVersion objectVersion)
             throws DataStorageResourceException {
@@ -405,6 +506,73 @@ public class DataStorageAccessBean implements DataStorageAccess {
     }
 
 
+    @Override
+    public void exportObject(ContentVersion version, boolean provided, boolean extracted, DataStorageSink sink)
+            throws DataStorageResourceException, IOException {
+        UserDto owner = userBrowser.getUser(version.getObject().getOwnerId());
+        OrganizationDto organization = userBrowser.getOrganization(owner.getUsername());
+        initConnection(organization.getName());
+        String root = getRootForUser(owner.getHomeDir(), organization.getRootPath());
+        try {
+            for (DataFileVersion file : version.getFiles()) {
+                exportDataFile(file.getDataFile(), provided, extracted, version, root, sink);
+            }
+            if (provided) {
+                for (MetadataFile metadataFile : version.getProvidedMetadata()) {
+                    exportFile(root, metadataFile.getRepositoryFilepath(), metadataFile.getObjectFilepath(), sink);
+                }
+            }
+            if (extracted && version.getExtractedMetadata() != null) {
+                MetadataFile metadataFile = version.getExtractedMetadata();
+                exportFile(root, metadataFile.getRepositoryFilepath(), metadataFile.getObjectFilepath(), sink);
+            }
+        } finally {
+            closeConnection();
+        }
+    }
+
+
+    @Override
+    public void exportDataFiles(ContentVersion version, List<DataFile> dataFiles, boolean provided, boolean extracted,
+            DataStorageSink sink)
+            throws DataStorageResourceException, IOException {
+        UserDto owner = userBrowser.getUser(version.getObject().getOwnerId());
+        OrganizationDto organization = userBrowser.getOrganization(owner.getUsername());
+        initConnection(organization.getName());
+        String root = getRootForUser(owner.getHomeDir(), organization.getRootPath());
+        try {
+            for (DataFile dataFile : dataFiles) {
+                exportDataFile(dataFile, provided, extracted, version, root, sink);
+            }
+        } finally {
+            closeConnection();
+        }
+    }
+
+
+    @Override
+    public void exportMetadataFiles(ContentVersion objectVersion, boolean provided, DataStorageSink sink)
+            throws DataStorageResourceException, IOException {
+        UserDto owner = userBrowser.getUser(objectVersion.getObject().getOwnerId());
+        OrganizationDto organization = userBrowser.getOrganization(owner.getUsername());
+        initConnection(organization.getName());
+        String root = getRootForUser(owner.getHomeDir(), organization.getRootPath());
+        try {
+            if (objectVersion.getExtractedMetadata() != null) {
+                MetadataFile metadataFile = objectVersion.getExtractedMetadata();
+                exportFile(root, metadataFile.getRepositoryFilepath(), metadataFile.getObjectFilepath(), sink);
+            }
+            if (provided) {
+                for (MetadataFile metadataFile : objectVersion.getProvidedMetadata()) {
+                    exportFile(root, metadataFile.getRepositoryFilepath(), metadataFile.getObjectFilepath(), sink);
+                }
+            }
+        } finally {
+            closeConnection();
+        }
+    }
+
+
     @Override
     public void deleteVersion(ContentVersion version)
             throws DataStorageResourceException {
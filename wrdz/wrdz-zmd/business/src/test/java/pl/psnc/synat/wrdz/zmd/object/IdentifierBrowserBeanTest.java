@@ -43,4 +43,12 @@ public class IdentifierBrowserBeanTest extends ZmdBaseTest {
         Assert.assertNull(tested);
     }
 
+
+    @Test
+    public void shouldGetNullAfterNotExistingIdentifierInPartition()
+            throws Exception {
+        String tested = identifierBrowser.findNextActiveIdentifier("oai:darceo.psnc.pl:0", 1, 4);
+        Assert.assertNull(tested);
+    }
+
 }
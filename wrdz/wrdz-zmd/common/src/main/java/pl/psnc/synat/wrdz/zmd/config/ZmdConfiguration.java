@@ -19,6 +19,7 @@ import java.io.File;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -112,6 +113,36 @@ public class ZmdConfiguration {
     }
 
 
+    /**
+     * Returns the number of threads which download resources of one object in parallel.
+     * 
+     * @return number of download threads
+     */
+    public int getDownloadThreads() {
+        return config.getInt("download.threads", 4);
+    }
+
+
+    /**
+     * Returns the maximal number of concurrent connections to one remote host, shared by all the downloads.
+     * 
+     * @return maximal number of connections per host
+     */
+    public int getDownloadConnectionsPerHost() {
+        return config.getInt("download.connections-per-host", 2);
+    }
+
+
+    /**
+     * Returns the number of times failed downloads are resumed before the whole operation fails.
+     * 
+     * @return number of download retries
+     */
+    public int getDownloadRetries() {
+        return config.getInt("download.retries", 2);
+    }
+
+
     /**
      * Returns the default type for object identifiers.
      * 
@@ -142,6 +173,37 @@ public class ZmdConfiguration {
     }
 
 
+    /**
+     * Returns all hash types calculated for files. The default hash type is always the first one, the additional types
+     * follow in the configured order.
+     * 
+     * @return hash types calculated for files
+     */
+    @SuppressWarnings("unchecked")
+    public List<HashType> getHashTypes() {
+        List<HashType> result = new ArrayList<HashType>();
+        result.add(getDefaultHashType());
+        List<String> additional = config.getList("metadata.administrative.additional-hashing-algorithm");
+        for (String name : additional) {
+            HashType type = HashType.valueOf(name.trim().toUpperCase());
+            if (!result.contains(type)) {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of threads which calculate hashes of files of one object in parallel.
+     * 
+     * @return number of hashing threads
+     */
+    public int getHashingThreads() {
+        return config.getInt("metadata.administrative.hashing-threads", 1);
+    }
+
+
     /**
      * Returns info whether construct METS metadata.
      * 
@@ -182,6 +244,40 @@ public class ZmdConfiguration {
     }
 
 
+    /**
+     * Returns the maximal time (in seconds) of extraction of technical metadata of one file.
+     * 
+     * @return extraction timeout in seconds
+     */
+    public int getTechnicalMetadataExtractionTimeout() {
+        return config.getInt("metadata.technical.extraction-timeout", 600);
+    }
+
+
+    /**
+     * Returns the path to the directory of the cache of extracted technical metadata.
+     * 
+     * @return path to the cache directory or null if the extracted metadata are not cached
+     */
+    public String getTechnicalMetadataCacheHome() {
+        String cacheHome = config.getString("metadata.technical.result-cache.home", null);
+        if (cacheHome == null || cacheHome.trim().isEmpty()) {
+            return null;
+        }
+        return (new File(StringEncoder.decodePath(cacheHome))).getAbsolutePath();
+    }
+
+
+    /**
+     * Returns the maximal size (in bytes) of the cache of extracted technical metadata.
+     * 
+     * @return maximal size of the cache in bytes
+     */
+    public long getTechnicalMetadataCacheSize() {
+        return config.getLong("metadata.technical.result-cache.max-size", 1024) * 1024 * 1024;
+    }
+
+
     /**
      * Gets the name of OAI-PMH repository name.
      * 
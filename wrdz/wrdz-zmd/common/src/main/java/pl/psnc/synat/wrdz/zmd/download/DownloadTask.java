@@ -16,7 +16,9 @@
 package pl.psnc.synat.wrdz.zmd.download;
 
 import java.net.URI;
+import java.util.Map;
 
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 import pl.psnc.synat.wrdz.zmd.output.OutputTask;
 
 /**
@@ -34,6 +36,16 @@ public class DownloadTask extends OutputTask {
      */
     private final URI uri;
 
+    /**
+     * Hashes of the downloaded file calculated while it was written to the cache, null if they are not known.
+     */
+    private Map<HashType, String> hashes;
+
+    /**
+     * Number of bytes of the downloaded file, null if it is not known.
+     */
+    private Long size;
+
 
     /**
      * Construct new instance of this class using given parameters.
@@ -56,6 +68,26 @@ public class DownloadTask extends OutputTask {
     }
 
 
+    public Map<HashType, String> getHashes() {
+        return hashes;
+    }
+
+
+    public void setHashes(Map<HashType, String> hashes) {
+        this.hashes = hashes;
+    }
+
+
+    public Long getSize() {
+        return size;
+    }
+
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+
     @Override
     public int hashCode() {
         final int prime = 31;
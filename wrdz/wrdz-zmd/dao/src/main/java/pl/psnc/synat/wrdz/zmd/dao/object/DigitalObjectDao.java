@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zmd.dao.object;
 
+import java.util.Collection;
 import java.util.Map;
 
 import javax.ejb.Local;
@@ -53,6 +54,17 @@ public interface DigitalObjectDao extends
     DigitalObject getDigitalObject(String identifier);
 
 
+    /**
+     * Fetches the objects with specified identifiers in a single query. Identifiers of objects which do not exist (or
+     * have no current version) are absent from the result.
+     * 
+     * @param identifiers
+     *            public identifiers of the objects.
+     * @return digital objects keyed by the identifier they were found by.
+     */
+    Map<String, DigitalObject> getDigitalObjects(Collection<String> identifiers);
+
+
     /**
      * Returns the total number of objects grouped by their owner id.
      * 
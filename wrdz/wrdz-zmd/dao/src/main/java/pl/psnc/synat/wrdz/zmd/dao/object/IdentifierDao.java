@@ -45,6 +45,26 @@ public interface IdentifierDao extends
     Identifier findNextActiveIdentifier(String previousIdentifierValue);
 
 
+    /**
+     * Returns the active identifier of the given partition immediately following the identifier with the given value
+     * when entities are sorted according to their id property. Identifiers are divided into partitions by the
+     * remainder of their id divided by the number of partitions, so the partitions are disjoint and of similar size.
+     * 
+     * When called with <code>null</code> identifier value, this method returns the first active identifier of the
+     * partition.
+     * 
+     * @param previousIdentifierValue
+     *            identifier value preceding the desired one; can be <code>null</code>
+     * @param partition
+     *            number of the partition, from 0 to <code>partitionCount - 1</code>
+     * @param partitionCount
+     *            number of partitions
+     * @return first active identifier of the partition with value following the given one, or <code>null</code> if no
+     *         such identifiers exist
+     */
+    Identifier findNextActiveIdentifier(String previousIdentifierValue, int partition, int partitionCount);
+
+
     /**
      * Returns the identifier values of digital objects that:
      * <ul>
@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zmd.dao.object.impl;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -118,4 +119,24 @@ public class DigitalObjectDaoBean extends
         return findFirstResultBy(queryFilterFactory.and(queryFilterFactory.byIdentifier(identifier),
             queryFilterFactory.byCurrentVersionState(true)));
     }
+
+
+    @Override
+    public Map<String, DigitalObject> getDigitalObjects(Collection<String> identifiers) {
+        Map<String, DigitalObject> results = new HashMap<String, DigitalObject>();
+        if (identifiers.isEmpty()) {
+            return results;
+        }
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<DigitalObject> root = query.from(clazz);
+        Join<DigitalObject, Identifier> joinIdentifier = root.join(DigitalObject_.identifiers);
+        query.where(criteriaBuilder.and(joinIdentifier.get(Identifier_.identifier).in(identifiers),
+            criteriaBuilder.isNotNull(root.get(DigitalObject_.currentVersion))));
+        query.multiselect(joinIdentifier.get(Identifier_.identifier), root);
+
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()) {
+            results.put((String) tuple.get(0), (DigitalObject) tuple.get(1));
+        }
+        return results;
+    }
 }
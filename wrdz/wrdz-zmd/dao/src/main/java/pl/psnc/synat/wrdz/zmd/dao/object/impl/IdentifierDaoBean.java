@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zmd.dao.object.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -88,21 +89,36 @@ public class IdentifierDaoBean extends
 
     @Override
     public Identifier findNextActiveIdentifier(String previousIdentifierValue) {
+        return findNextActiveIdentifier(previousIdentifierValue, 0, 1);
+    }
+
+
+    @Override
+    public Identifier findNextActiveIdentifier(String previousIdentifierValue, int partition, int partitionCount) {
 
         CriteriaQuery<Identifier> query = criteriaBuilder.createQuery(Identifier.class);
         Root<Identifier> root = query.from(Identifier.class);
         query.select(root);
-        query.where(criteriaBuilder.notEqual(root.get(Identifier_.isActive), false));
         query.orderBy(criteriaBuilder.asc(root.get(Identifier_.id)));
 
+        List<Predicate> predicates = new ArrayList<Predicate>();
+        predicates.add(criteriaBuilder.notEqual(root.get(Identifier_.isActive), false));
+
+        if (partitionCount > 1) {
+            predicates.add(criteriaBuilder.equal(
+                criteriaBuilder.mod(root.get(Identifier_.id).as(Integer.class), partitionCount), partition));
+        }
+
         if (previousIdentifierValue != null) {
             Subquery<Long> subquery = query.subquery(Long.class);
             Root<Identifier> subqueryRoot = subquery.from(Identifier.class);
             subquery.select(subqueryRoot.get(Identifier_.id));
             subquery.where(criteriaBuilder.equal(subqueryRoot.get(Identifier_.identifier), previousIdentifierValue));
-            query.where(criteriaBuilder.greaterThan(root.get(Identifier_.id), criteriaBuilder.any(subquery)));
+            predicates.add(criteriaBuilder.greaterThan(root.get(Identifier_.id), criteriaBuilder.any(subquery)));
         }
 
+        query.where(predicates.toArray(new Predicate[predicates.size()]));
+
         List<Identifier> identifiers = entityManager.createQuery(query).setMaxResults(1).getResultList();
         if (identifiers != null && !identifiers.isEmpty()) {
             return identifiers.get(0);
@@ -65,6 +65,15 @@ public interface OperationDao extends
     Operation getOperationForObject(Long objectId);
 
 
+    /**
+     * Gets the identifier of the latest operation. It marks the state of the table at the beginning of a harvest -
+     * operations registered later are not taken into account when the consecutive pages are fetched.
+     * 
+     * @return identifier of the latest operation or null if there are no operations
+     */
+    Long getLastOperationId();
+
+
     /**
      * Counts the number of entities updated within given period possessing given parameters.
      * 
@@ -76,13 +85,17 @@ public interface OperationDao extends
      *            namespace type of the metadata by which to filter entities.
      * @param set
      *            object type by which to filter entities.
+     * @param maxId
+     *            identifier of the latest operation taken into account.
      * @return number of entities matching the query.
      */
-    Long countChangedObjects(Date from, Date until, NamespaceType prefix, ObjectType set);
+    Long countChangedObjects(Date from, Date until, NamespaceType prefix, ObjectType set, Long maxId);
 
 
     /**
-     * Gets specified page of the entities updated within given period possessing given parameters.
+     * Gets the page of the entities updated within given period possessing given parameters which follows the given
+     * cursor. Only the latest matching operation of each object is returned. Operations are ordered by the date and
+     * identifier, so the page is read from an index without counting the preceding ones.
      * 
      * @param from
      *            beginning of time period by which to filter entities.
@@ -92,12 +105,17 @@ public interface OperationDao extends
      *            namespace type of the metadata by which to filter entities.
      * @param set
      *            object type by which to filter entities.
-     * @param offset
-     *            page offset (first element's position).
+     * @param afterDate
+     *            date of the last operation of the previous page or null for the first page.
+     * @param afterId
+     *            identifier of the last operation of the previous page or null for the first page.
+     * @param maxId
+     *            identifier of the latest operation taken into account.
      * @param pageSize
      *            size of the results' page.
      * @return results matching the query.
      */
-    List<Operation> getChanges(Date from, Date until, NamespaceType prefix, ObjectType set, int offset, int pageSize);
+    List<Operation> getChanges(Date from, Date until, NamespaceType prefix, ObjectType set, Date afterDate,
+            Long afterId, Long maxId, int pageSize);
 
 }
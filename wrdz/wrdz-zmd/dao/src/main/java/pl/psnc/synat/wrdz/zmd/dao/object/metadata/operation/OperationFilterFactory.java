@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zmd.dao.object.metadata.operation;
 
+import java.util.Collection;
 import java.util.Date;
 
 import pl.psnc.synat.wrdz.common.dao.GenericQueryFilterFactory;
@@ -28,6 +29,16 @@ import pl.psnc.synat.wrdz.zmd.entity.types.OperationType;
  */
 public interface OperationFilterFactory extends GenericQueryFilterFactory<Operation> {
 
+    /**
+     * Filters the entities by their primary keys.
+     * 
+     * @param ids
+     *            primary key values.
+     * @return current representations of filters set.
+     */
+    QueryFilter<Operation> byIds(Collection<Long> ids);
+
+
     /**
      * Filters the entities by the operation type.
      * 
@@ -109,45 +109,93 @@ public class OperationDaoBean extends
 
 
     @Override
-    public Long countChangedObjects(Date from, Date until, NamespaceType prefix, ObjectType set) {
+    public Long getLastOperationId() {
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Operation> root = query.from(clazz);
+        query = query.select(criteriaBuilder.max(root.get(Operation_.id)));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+
+    @Override
+    public Long countChangedObjects(Date from, Date until, NamespaceType prefix, ObjectType set, Long maxId) {
         CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
         Root<Operation> root = query.from(clazz);
         Join<Operation, DigitalObject> operationToObject = root.join(Operation_.object);
-        query = query.distinct(true).select(criteriaBuilder.countDistinct(operationToObject.get(DigitalObject_.id)));
-        Predicate predicate = criteriaBuilder.greaterThanOrEqualTo(root.get(Operation_.date), from);
-        predicate = criteriaBuilder.and(predicate, criteriaBuilder.lessThanOrEqualTo(root.get(Operation_.date), until));
-        predicate = criteriaBuilder.and(predicate, criteriaBuilder.equal(root.get(Operation_.metadataType), prefix));
-        if (set != null) {
-            predicate = criteriaBuilder.and(predicate,
-                criteriaBuilder.equal(operationToObject.get(DigitalObject_.type), set));
-        }
-        query = query.where(predicate);
+        query = query.select(criteriaBuilder.countDistinct(operationToObject.get(DigitalObject_.id)));
+        query = query.where(createWindowPredicate(root, operationToObject, from, until, prefix, set, maxId));
         return entityManager.createQuery(query).getSingleResult();
     }
 
 
     @Override
-    public List<Operation> getChanges(Date from, Date until, NamespaceType prefix, ObjectType set, int offset,
-            int pageSize) {
+    public List<Operation> getChanges(Date from, Date until, NamespaceType prefix, ObjectType set, Date afterDate,
+            Long afterId, Long maxId, int pageSize) {
         CriteriaQuery<Operation> query = criteriaBuilder.createQuery(Operation.class);
         Root<Operation> root = query.from(clazz);
+        Join<Operation, DigitalObject> operationToObject = root.join(Operation_.object);
+        Predicate predicate = createWindowPredicate(root, operationToObject, from, until, prefix, set, maxId);
+        if (afterDate != null && afterId != null) {
+            predicate = criteriaBuilder.and(predicate, criteriaBuilder.or(
+                criteriaBuilder.greaterThan(root.get(Operation_.date), afterDate),
+                criteriaBuilder.and(criteriaBuilder.equal(root.get(Operation_.date), afterDate),
+                    criteriaBuilder.greaterThan(root.get(Operation_.id), afterId))));
+        }
+
+        // only the latest operation of the object in the window is returned
         Subquery<Long> subquery = query.subquery(Long.class);
         Root<Operation> subqueryRoot = subquery.from(clazz);
-        subquery = subquery.select(criteriaBuilder.max(subqueryRoot.get(Operation_.id)));
-        Predicate subqueryPredicate = criteriaBuilder.greaterThanOrEqualTo(subqueryRoot.get(Operation_.date), from);
-        subqueryPredicate = criteriaBuilder.and(subqueryPredicate,
-            criteriaBuilder.lessThanOrEqualTo(subqueryRoot.get(Operation_.date), until));
+        subquery = subquery.select(subqueryRoot.get(Operation_.id));
+        Predicate subqueryPredicate = criteriaBuilder.equal(subqueryRoot.get(Operation_.object),
+            root.get(Operation_.object));
         subqueryPredicate = criteriaBuilder.and(subqueryPredicate,
             criteriaBuilder.equal(subqueryRoot.get(Operation_.metadataType), prefix));
+        subqueryPredicate = criteriaBuilder.and(subqueryPredicate,
+            criteriaBuilder.greaterThan(subqueryRoot.get(Operation_.id), root.get(Operation_.id)));
+        subqueryPredicate = criteriaBuilder.and(subqueryPredicate,
+            criteriaBuilder.lessThanOrEqualTo(subqueryRoot.get(Operation_.id), maxId));
+        subqueryPredicate = criteriaBuilder.and(subqueryPredicate,
+            criteriaBuilder.greaterThanOrEqualTo(subqueryRoot.get(Operation_.date), from));
+        subqueryPredicate = criteriaBuilder.and(subqueryPredicate,
+            criteriaBuilder.lessThanOrEqualTo(subqueryRoot.get(Operation_.date), until));
+        subquery = subquery.where(subqueryPredicate);
+        predicate = criteriaBuilder.and(predicate, criteriaBuilder.not(criteriaBuilder.exists(subquery)));
+
+        query = query.where(predicate);
+        query.orderBy(criteriaBuilder.asc(root.get(Operation_.date)), criteriaBuilder.asc(root.get(Operation_.id)));
+        return entityManager.createQuery(query).setMaxResults(pageSize).getResultList();
+    }
+
+
+    /**
+     * Creates the predicate selecting the operations of a harvest.
+     * 
+     * @param root
+     *            root of the query
+     * @param operationToObject
+     *            join of the operation with its object
+     * @param from
+     *            beginning of time period by which to filter entities.
+     * @param until
+     *            end of time period by which to filter entities.
+     * @param prefix
+     *            namespace type of the metadata by which to filter entities.
+     * @param set
+     *            object type by which to filter entities.
+     * @param maxId
+     *            identifier of the latest operation taken into account.
+     * @return predicate
+     */
+    private Predicate createWindowPredicate(Root<Operation> root, Join<Operation, DigitalObject> operationToObject,
+            Date from, Date until, NamespaceType prefix, ObjectType set, Long maxId) {
+        Predicate predicate = criteriaBuilder.greaterThanOrEqualTo(root.get(Operation_.date), from);
+        predicate = criteriaBuilder.and(predicate, criteriaBuilder.lessThanOrEqualTo(root.get(Operation_.date), until));
+        predicate = criteriaBuilder.and(predicate, criteriaBuilder.equal(root.get(Operation_.metadataType), prefix));
+        predicate = criteriaBuilder.and(predicate, criteriaBuilder.lessThanOrEqualTo(root.get(Operation_.id), maxId));
         if (set != null) {
-            Join<Operation, DigitalObject> operationToObject = subqueryRoot.join(Operation_.object);
-            subqueryPredicate = criteriaBuilder.and(subqueryPredicate,
+            predicate = criteriaBuilder.and(predicate,
                 criteriaBuilder.equal(operationToObject.get(DigitalObject_.type), set));
         }
-        subquery = subquery.where(subqueryPredicate);
-        subquery = subquery.groupBy(subqueryRoot.get(Operation_.object).get(DigitalObject_.id));
-        query = query.where(root.get(Operation_.id).in(subquery));
-        query.orderBy(criteriaBuilder.asc(root.get(Operation_.id)));
-        return entityManager.createQuery(query).setFirstResult(offset).setMaxResults(pageSize).getResultList();
+        return predicate;
     }
 }
@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zmd.dao.object.metadata.operation.impl;
 
+import java.util.Collection;
 import java.util.Date;
 
 import javax.persistence.criteria.CriteriaBuilder;
@@ -64,6 +65,13 @@ public class OperationFilterFactoryImpl extends GenericQueryFilterFactoryImpl<Op
     }
 
 
+    @Override
+    public QueryFilter<Operation> byIds(Collection<Long> ids) {
+        Predicate predicate = root.get(Operation_.id).in(ids);
+        return constructQueryFilter(predicate);
+    }
+
+
     @Override
     public QueryFilter<Operation> byType(OperationType type) {
         Predicate predicate = criteriaBuilder.equal(root.get(Operation_.operation), type);
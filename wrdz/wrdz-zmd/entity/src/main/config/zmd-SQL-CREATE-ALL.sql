@@ -320,6 +320,8 @@ CREATE TABLE darceo.zmd_metadata_operations
 ) TABLESPACE metadata_store;
 
 CREATE INDEX zmd_metadata_operations_op_object_idx ON darceo.zmd_metadata_operations (op_object);
+CREATE INDEX zmd_metadata_operations_op_md_type_op_date_op_id_idx ON darceo.zmd_metadata_operations (op_md_type, op_date, op_id);
+CREATE INDEX zmd_metadata_operations_op_object_op_md_type_op_id_idx ON darceo.zmd_metadata_operations (op_object, op_md_type, op_id);
 
 CREATE TABLE darceo.zmd_metadata_operations_metadata_files
 (
@@ -397,6 +399,10 @@ CREATE TABLE darceo.zmd_resumption_tokens
 	rt_type VARCHAR(21) NOT NULL,
 	rt_expires timestamp NOT NULL,
 	rt_offset integer NOT NULL,
+	rt_last_date timestamp NOT NULL,
+	rt_last_id bigint NOT NULL,
+	rt_max_id bigint NOT NULL,
+	rt_list_size bigint NOT NULL,
 	CONSTRAINT zmd_resumption_tokens_pkey PRIMARY KEY (rt_id)
 );
 	
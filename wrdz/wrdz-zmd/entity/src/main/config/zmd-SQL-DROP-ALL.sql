@@ -43,6 +43,8 @@ ALTER TABLE darceo.zmd_metadata_operations_metadata_files DROP CONSTRAINT zmd_me
 DROP TABLE darceo.zmd_metadata_operations_metadata_files;
 
 --DROP INDEX zmd_metadata_operations_op_object_idx;
+--DROP INDEX zmd_metadata_operations_op_md_type_op_date_op_id_idx;
+--DROP INDEX zmd_metadata_operations_op_object_op_md_type_op_id_idx;
 
 ALTER TABLE darceo.zmd_metadata_operations DROP CONSTRAINT fk_zmd_metadata_operations_op_object;
 ALTER TABLE darceo.zmd_metadata_operations DROP CONSTRAINT zmd_metadata_operations_pkey;
@@ -96,6 +96,31 @@ public class ResumptionToken implements Serializable {
     @Column(name = "RT_OFFSET", nullable = false)
     private int offset;
 
+    /**
+     * Date of the last operation returned on the previous page (first part of the paging cursor).
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "RT_LAST_DATE", nullable = false)
+    private Date lastDate;
+
+    /**
+     * Identifier of the last operation returned on the previous page (second part of the paging cursor).
+     */
+    @Column(name = "RT_LAST_ID", nullable = false)
+    private long lastId;
+
+    /**
+     * Identifier of the latest operation at the beginning of the harvest - later operations are not harvested.
+     */
+    @Column(name = "RT_MAX_ID", nullable = false)
+    private long maxId;
+
+    /**
+     * Number of records in the complete list, computed at the beginning of the harvest.
+     */
+    @Column(name = "RT_LIST_SIZE", nullable = false)
+    private long listSize;
+
 
     public String getId() {
         return id;
@@ -177,6 +202,46 @@ public class ResumptionToken implements Serializable {
     }
 
 
+    public Date getLastDate() {
+        return lastDate;
+    }
+
+
+    public void setLastDate(Date lastDate) {
+        this.lastDate = lastDate;
+    }
+
+
+    public long getLastId() {
+        return lastId;
+    }
+
+
+    public void setLastId(long lastId) {
+        this.lastId = lastId;
+    }
+
+
+    public long getMaxId() {
+        return maxId;
+    }
+
+
+    public void setMaxId(long maxId) {
+        this.maxId = maxId;
+    }
+
+
+    public long getListSize() {
+        return listSize;
+    }
+
+
+    public void setListSize(long listSize) {
+        this.listSize = listSize;
+    }
+
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -185,6 +250,10 @@ public class ResumptionToken implements Serializable {
         result = prime * result + ((from == null) ? 0 : from.hashCode());
         result = prime * result + ((id == null) ? 0 : id.hashCode());
         result = prime * result + (int) (offset ^ (offset >>> 32));
+        result = prime * result + ((lastDate == null) ? 0 : lastDate.hashCode());
+        result = prime * result + (int) (lastId ^ (lastId >>> 32));
+        result = prime * result + (int) (maxId ^ (maxId >>> 32));
+        result = prime * result + (int) (listSize ^ (listSize >>> 32));
         result = prime * result + ((prefix == null) ? 0 : prefix.hashCode());
         result = prime * result + ((set == null) ? 0 : set.hashCode());
         result = prime * result + ((type == null) ? 0 : type.hashCode());
@@ -229,6 +298,16 @@ public class ResumptionToken implements Serializable {
         if (offset != other.offset) {
             return false;
         }
+        if (lastDate == null) {
+            if (other.lastDate != null) {
+                return false;
+            }
+        } else if (!lastDate.equals(other.lastDate)) {
+            return false;
+        }
+        if (lastId != other.lastId || maxId != other.maxId || listSize != other.listSize) {
+            return false;
+        }
         if (prefix != other.prefix) {
             return false;
         }
@@ -256,7 +335,8 @@ public class ResumptionToken implements Serializable {
     @Override
     public String toString() {
         return "ResumptionToken [id=" + id + ", from=" + from + ", until=" + until + ", prefix=" + prefix + ", set="
-                + set + ", type=" + type + ", expirationDate=" + expirationDate + ", offset=" + offset + "]";
+                + set + ", type=" + type + ", expirationDate=" + expirationDate + ", offset=" + offset + ", lastDate="
+                + lastDate + ", lastId=" + lastId + ", maxId=" + maxId + ", listSize=" + listSize + "]";
     }
 
 }
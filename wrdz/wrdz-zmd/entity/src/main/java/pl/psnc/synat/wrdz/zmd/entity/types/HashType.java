@@ -21,6 +21,28 @@ import java.math.BigInteger;
  * Represents available hash functions to retrieve and produce file hash.
  */
 public enum HashType {
+    /**
+     * MD5 hash algorithm.
+     */
+    MD5("MD5") {
+
+        @Override
+        public String toHexFormat(byte[] hash) {
+            return String.format("%032x", new BigInteger(1, hash));
+        }
+
+    },
+    /**
+     * SHA-1 hash algorithm.
+     */
+    SHA1("SHA-1") {
+
+        @Override
+        public String toHexFormat(byte[] hash) {
+            return String.format("%040x", new BigInteger(1, hash));
+        }
+
+    },
     /**
      * SHA-2 SHA-256 hash algorithm.
      */
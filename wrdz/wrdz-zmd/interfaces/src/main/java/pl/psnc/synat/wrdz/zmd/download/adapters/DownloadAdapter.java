@@ -16,7 +16,10 @@
 package pl.psnc.synat.wrdz.zmd.download.adapters;
 
 import java.net.URI;
+import java.util.List;
+import java.util.Map;
 
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
 import pl.psnc.synat.wrdz.zmd.exception.DownloadAdapterException;
 
 /**
@@ -39,4 +42,45 @@ public interface DownloadAdapter {
     String downloadFile(URI uri, String relativePath)
             throws DownloadAdapterException;
 
+
+    /**
+     * Continues an interrupted download of the resource, keeping the part of the file already present in the cache. If
+     * the server cannot continue the transfer, the resource is downloaded from the beginning.
+     * 
+     * @param uri
+     *            URL compliant URI of the resource to download.
+     * @param relativePath
+     *            object-relative path of the resource
+     * @return the absolute path to the cached file.
+     * @throws DownloadAdapterException
+     *             if any problems with download adapter occur
+     */
+    String resumeDownload(URI uri, String relativePath)
+            throws DownloadAdapterException;
+
+
+    /**
+     * Sets the hash types which are calculated while downloaded files are written to the cache.
+     * 
+     * @param hashTypes
+     *            hash types to calculate
+     */
+    void setHashTypes(List<HashType> hashTypes);
+
+
+    /**
+     * Returns hashes of the most recently downloaded file, calculated while it was written to the cache.
+     * 
+     * @return hashes keyed by their types or null if nothing was downloaded
+     */
+    Map<HashType, String> getHashes();
+
+
+    /**
+     * Returns the number of bytes of the most recently downloaded file.
+     * 
+     * @return size of the file or null if nothing was downloaded
+     */
+    Long getSize();
+
 }
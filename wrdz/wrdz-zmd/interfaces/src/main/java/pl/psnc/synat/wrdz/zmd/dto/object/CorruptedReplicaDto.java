@@ -0,0 +1,126 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.dto.object;
+
+import java.io.Serializable;
+
+import pl.psnc.synat.wrdz.zmd.entity.types.HashType;
+
+/**
+ * Dto for transferring information about a copy of a data or metadata file whose hash does not match the stored one.
+ */
+public class CorruptedReplicaDto implements Serializable {
+
+    /** Serial version UID. */
+    private static final long serialVersionUID = 3180652271464916417L;
+
+    /** Object-relative path of the file. */
+    private String objectFilepath;
+
+    /** Description of the data storage holding the copy, <code>null</code> if it is not known. */
+    private String replica;
+
+    /** Type of hash / hashing algorithm. */
+    private HashType hashType;
+
+    /** Hash value stored in the database. */
+    private String expectedHashValue;
+
+    /** Hash value of the copy, <code>null</code> if the copy is missing or could not be read. */
+    private String calculatedHashValue;
+
+
+    /**
+     * Default constructor.
+     */
+    public CorruptedReplicaDto() {
+        // default constructor
+    }
+
+
+    /**
+     * Convenience constructor.
+     * 
+     * @param objectFilepath
+     *            object-relative path of the file
+     * @param replica
+     *            description of the data storage holding the copy
+     * @param hashType
+     *            type of hash / hashing algorithm
+     * @param expectedHashValue
+     *            hash value stored in the database
+     * @param calculatedHashValue
+     *            hash value of the copy
+     */
+    public CorruptedReplicaDto(String objectFilepath, String replica, HashType hashType, String expectedHashValue,
+            String calculatedHashValue) {
+        this.objectFilepath = objectFilepath;
+        this.replica = replica;
+        this.hashType = hashType;
+        this.expectedHashValue = expectedHashValue;
+        this.calculatedHashValue = calculatedHashValue;
+    }
+
+
+    public String getObjectFilepath() {
+        return objectFilepath;
+    }
+
+
+    public void setObjectFilepath(String objectFilepath) {
+        this.objectFilepath = objectFilepath;
+    }
+
+
+    public String getReplica() {
+        return replica;
+    }
+
+
+    public void setReplica(String replica) {
+        this.replica = replica;
+    }
+
+
+    public HashType getHashType() {
+        return hashType;
+    }
+
+
+    public void setHashType(HashType hashType) {
+        this.hashType = hashType;
+    }
+
+
+    public String getExpectedHashValue() {
+        return expectedHashValue;
+    }
+
+
+    public void setExpectedHashValue(String expectedHashValue) {
+        this.expectedHashValue = expectedHashValue;
+    }
+
+
+    public String getCalculatedHashValue() {
+        return calculatedHashValue;
+    }
+
+
+    public void setCalculatedHashValue(String calculatedHashValue) {
+        this.calculatedHashValue = calculatedHashValue;
+    }
+}
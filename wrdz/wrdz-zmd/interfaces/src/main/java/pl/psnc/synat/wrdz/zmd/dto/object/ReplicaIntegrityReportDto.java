@@ -0,0 +1,108 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.dto.object;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dto for transferring the result of verifying the stored copies of a digital object's files.
+ */
+public class ReplicaIntegrityReportDto implements Serializable {
+
+    /** Serial version UID. */
+    private static final long serialVersionUID = -1542367418725960834L;
+
+    /** Copies whose hashes do not match the stored ones. */
+    private List<CorruptedReplicaDto> corruptedReplicas = new ArrayList<CorruptedReplicaDto>();
+
+    /** Number of copies verified by each data storage, by the description of the data storage. */
+    private Map<String, Integer> checkedCopies = new HashMap<String, Integer>();
+
+    /** Number of corrupted copies found by each data storage, by the description of the data storage. */
+    private Map<String, Integer> corruptedCopies = new HashMap<String, Integer>();
+
+    /** Size in bytes of the verified files (of one copy of each file). */
+    private long size;
+
+    /** Date when the current version of the object was created. */
+    private Date modifiedOn;
+
+
+    public List<CorruptedReplicaDto> getCorruptedReplicas() {
+        return corruptedReplicas;
+    }
+
+
+    public void setCorruptedReplicas(List<CorruptedReplicaDto> corruptedReplicas) {
+        this.corruptedReplicas = corruptedReplicas;
+    }
+
+
+    public Map<String, Integer> getCheckedCopies() {
+        return checkedCopies;
+    }
+
+
+    public void setCheckedCopies(Map<String, Integer> checkedCopies) {
+        this.checkedCopies = checkedCopies;
+    }
+
+
+    public Map<String, Integer> getCorruptedCopies() {
+        return corruptedCopies;
+    }
+
+
+    public void setCorruptedCopies(Map<String, Integer> corruptedCopies) {
+        this.corruptedCopies = corruptedCopies;
+    }
+
+
+    public long getSize() {
+        return size;
+    }
+
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+
+    public Date getModifiedOn() {
+        return modifiedOn;
+    }
+
+
+    public void setModifiedOn(Date modifiedOn) {
+        this.modifiedOn = modifiedOn;
+    }
+
+
+    /**
+     * Checks whether any copy is corrupted.
+     * 
+     * @return <code>true</code> if a copy of one of the files is missing or unreadable or its hash values do not
+     *         match; <code>false</code> otherwise
+     */
+    public boolean isCorrupted() {
+        return !corruptedReplicas.isEmpty();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zmd.oai.pmh;
 
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 
@@ -22,7 +23,6 @@ import javax.ejb.Local;
 
 import org.openarchives.oai.pmh.GetRecordType;
 import org.openarchives.oai.pmh.ListIdentifiersType;
-import org.openarchives.oai.pmh.ListRecordsType;
 
 import pl.psnc.synat.wrdz.common.metadata.xmlns.NamespaceType;
 import pl.psnc.synat.wrdz.zmd.entity.object.metadata.MetadataNamespace;
@@ -76,7 +76,8 @@ public interface OaiPmhManager {
 
 
     /**
-     * Performs operations to fetch and parse ListIdentifiers operation requested data.
+     * Performs operations to fetch and parse ListIdentifiers operation requested data. Returns the first page of the
+     * list - the following ones are fetched with the resumption token.
      * 
      * @param from
      *            beginning of the period to be harvested.
@@ -86,11 +87,9 @@ public interface OaiPmhManager {
      *            name of the namespace to be harvested.
      * @param set
      *            name of the set to be harvested. If {@code null} then all sets are harvested.
-     * @param offset
-     *            page offset value.
      * @return results of the OAI-PMH ListIdentifiers operation.
      */
-    ListIdentifiersType listIdentifiers(Date from, Date until, NamespaceType prefix, ObjectType set, int offset);
+    ListIdentifiersType listIdentifiers(Date from, Date until, NamespaceType prefix, ObjectType set);
 
 
     /**
@@ -107,7 +106,8 @@ public interface OaiPmhManager {
 
 
     /**
-     * Performs operations to fetch and parse ListRecords operation requested data.
+     * Performs operations to fetch ListRecords operation requested data. Only the page is determined here - the records
+     * are read by {@link #writeRecords(OaiPmhRecordPage, OaiPmhRecordHandler)}.
      * 
      * @param resumptionToken
      *            resumption token marking next page of query results.
@@ -115,12 +115,14 @@ public interface OaiPmhManager {
      * @throws IllegalOaiPmhTokenException
      *             when specified token for ListRecords OAI-PMH operation was not found in the database.
      */
-    ListRecordsType listRecords(String resumptionToken)
+    OaiPmhRecordPage listRecords(String resumptionToken)
             throws IllegalOaiPmhTokenException;
 
 
     /**
-     * Performs operations to fetch and parse ListRecords operation requested data.
+     * Performs operations to fetch ListRecords operation requested data. Returns the first page of the list - the
+     * following ones are fetched with the resumption token. The records are read by
+     * {@link #writeRecords(OaiPmhRecordPage, OaiPmhRecordHandler)}.
      * 
      * @param from
      *            beginning of the period to be harvested.
@@ -130,10 +132,23 @@ public interface OaiPmhManager {
      *            name of the namespace to be harvested.
      * @param set
      *            name of the set to be harvested. If {@code null} then all sets are harvested.
-     * @param offset
-     *            page offset value.
-     * @return results of the OAI-PMH ListRecords operation.
+     * @return first page of the OAI-PMH ListRecords operation or <code>null</code> if no records match the query.
+     */
+    OaiPmhRecordPage listRecords(Date from, Date until, NamespaceType prefix, ObjectType set);
+
+
+    /**
+     * Reads the records of the page and passes them to the handler one by one. The operations are loaded in small
+     * batches and released as soon as they are handled, so the size of the page does not affect the memory used.
+     * 
+     * @param page
+     *            page of the ListRecords operation.
+     * @param handler
+     *            handler receiving the records.
+     * @throws IOException
+     *             when the handler failed to write a record.
      */
-    ListRecordsType listRecords(Date from, Date until, NamespaceType prefix, ObjectType set, int offset);
+    void writeRecords(OaiPmhRecordPage page, OaiPmhRecordHandler handler)
+            throws IOException;
 
 }
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.oai.pmh;
+
+import java.io.IOException;
+
+import pl.psnc.synat.wrdz.zmd.entity.object.metadata.operation.Operation;
+
+/**
+ * Receives the records of a ListRecords page one by one, while they are read from the database.
+ */
+public interface OaiPmhRecordHandler {
+
+    /**
+     * Handles the record of the operation. The operation is attached to the persistence context only for the time of
+     * the call, so its object and contents can be read here but must not be kept.
+     * 
+     * @param operation
+     *            metadata operation which is the source of the record.
+     * @throws IOException
+     *             when the record could not be written.
+     */
+    void handleRecord(Operation operation)
+            throws IOException;
+
+}
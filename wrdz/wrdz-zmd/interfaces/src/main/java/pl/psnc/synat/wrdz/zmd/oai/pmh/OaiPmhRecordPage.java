@@ -0,0 +1,62 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.oai.pmh;
+
+import java.util.List;
+
+import org.openarchives.oai.pmh.ResumptionTokenType;
+
+/**
+ * Page of the ListRecords operation - the operations which are the sources of its records and the resumption token
+ * which follows them. The records themselves are read by {@link OaiPmhManager#writeRecords}.
+ */
+public class OaiPmhRecordPage {
+
+    /**
+     * Primary keys of the operations of the page, in the order of the records.
+     */
+    private final List<Long> operationIds;
+
+    /**
+     * Resumption token of the page or <code>null</code> if the complete list fits in one page.
+     */
+    private final ResumptionTokenType resumptionToken;
+
+
+    /**
+     * Constructs a new page.
+     * 
+     * @param operationIds
+     *            primary keys of the operations of the page.
+     * @param resumptionToken
+     *            resumption token of the page or <code>null</code>.
+     */
+    public OaiPmhRecordPage(List<Long> operationIds, ResumptionTokenType resumptionToken) {
+        this.operationIds = operationIds;
+        this.resumptionToken = resumptionToken;
+    }
+
+
+    public List<Long> getOperationIds() {
+        return operationIds;
+    }
+
+
+    public ResumptionTokenType getResumptionToken() {
+        return resumptionToken;
+    }
+
+}
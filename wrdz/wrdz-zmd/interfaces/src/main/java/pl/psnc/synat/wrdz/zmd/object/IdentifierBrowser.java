@@ -38,6 +38,24 @@ public interface IdentifierBrowser {
     String findNextActiveIdentifier(String previousIdentifier);
 
 
+    /**
+     * Returns the active identifier of the given partition immediately following the given identifier. Identifiers
+     * are divided into disjoint partitions of similar size, so each partition can be browsed independently.
+     * 
+     * When called with <code>null</code> identifier, this method returns the first active identifier of the partition.
+     * 
+     * @param previousIdentifier
+     *            identifier preceding the desired one; can be <code>null</code>
+     * @param partition
+     *            number of the partition, from 0 to <code>partitionCount - 1</code>
+     * @param partitionCount
+     *            number of partitions
+     * @return first active identifier of the partition following the given one, or <code>null</code> if no such
+     *         identifiers exist
+     */
+    String findNextActiveIdentifier(String previousIdentifier, int partition, int partitionCount);
+
+
     /**
      * Returns the identifier values of digital objects that:
      * <ul>
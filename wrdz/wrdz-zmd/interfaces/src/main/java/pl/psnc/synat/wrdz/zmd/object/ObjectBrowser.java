@@ -17,6 +17,7 @@ package pl.psnc.synat.wrdz.zmd.object;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.Local;
 
@@ -44,6 +45,16 @@ public interface ObjectBrowser {
             throws ObjectNotFoundException;
 
 
+    /**
+     * Fetches the objects with specified identifiers at once.
+     * 
+     * @param identifiers
+     *            public identifiers of the objects.
+     * @return digital objects keyed by their identifiers; identifiers of objects that were not found are absent.
+     */
+    Map<String, DigitalObject> getDigitalObjects(Collection<String> identifiers);
+
+
     /**
      * Fetches the content (METS) of the entity with specified identifier.
      * 
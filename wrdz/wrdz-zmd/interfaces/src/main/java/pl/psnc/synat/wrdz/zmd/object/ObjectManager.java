@@ -21,6 +21,7 @@ import java.util.Map;
 import javax.ejb.Local;
 
 import pl.psnc.synat.wrdz.zmd.entity.MetadataSectionsCollection;
+import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
 import pl.psnc.synat.wrdz.zmd.input.object.FileFetchingRequest;
 import pl.psnc.synat.wrdz.zmd.input.object.ObjectCreationRequest;
 import pl.psnc.synat.wrdz.zmd.input.object.ObjectDeletionRequest;
@@ -239,6 +240,22 @@ public interface ObjectManager {
             throws FetchingException, ObjectNotFoundException, FileNotFoundException;
 
 
+    /**
+     * Opens a stream of METS metadata of the already resolved object's version. The stream is not read, so the caller
+     * can copy it wherever it is needed; it is responsible for closing it.
+     * 
+     * @param contentVersion
+     *            object's version.
+     * @return stream of the METS file.
+     * @throws FetchingException
+     *             if the METS file could not be fetched.
+     * @throws FileNotFoundException
+     *             if object's version contained no extracted nor provided metadata file.
+     */
+    InputStream openMetsForObject(ContentVersion contentVersion)
+            throws FetchingException, FileNotFoundException;
+
+
     /**
      * Get METS metadata section for the object's from the repository.
      * 
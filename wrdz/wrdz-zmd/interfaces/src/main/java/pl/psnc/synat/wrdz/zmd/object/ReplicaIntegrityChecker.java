@@ -0,0 +1,42 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.object;
+
+import javax.ejb.Remote;
+
+import pl.psnc.synat.wrdz.zmd.dto.object.ReplicaIntegrityReportDto;
+
+/**
+ * Verifies the stored copies of digital objects' files against the hashes kept in the database. The copies are hashed
+ * by the data storages holding them, so the objects are neither fetched nor packaged.
+ */
+@Remote
+public interface ReplicaIntegrityChecker {
+
+    /**
+     * Hashes every copy of the data and metadata files belonging to the digital object with the given identifier and
+     * reports the copies which are missing, unreadable or whose hashes do not match the stored ones, together with the
+     * number of copies verified by each data storage.
+     * 
+     * @param digitalObjectIdentifier
+     *            identifier of the digital object to be verified
+     * @return result of the verification
+     * @throws ObjectNotFoundException
+     *             if no object with the given identifier was found
+     */
+    ReplicaIntegrityReportDto checkReplicas(String digitalObjectIdentifier)
+            throws ObjectNotFoundException;
+}
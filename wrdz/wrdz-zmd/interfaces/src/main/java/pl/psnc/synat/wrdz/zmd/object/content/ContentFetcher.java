@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zmd.object.content;
 
+import java.io.File;
 import java.io.InputStream;
 import java.util.List;
 
@@ -23,6 +24,7 @@ import javax.ejb.Local;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.DataFile;
 import pl.psnc.synat.wrdz.zmd.entity.object.metadata.MetadataFile;
+import pl.psnc.synat.wrdz.zmd.exception.ArchiverException;
 import pl.psnc.synat.wrdz.zmd.storage.DataStorageException;
 
 /**
@@ -82,6 +84,63 @@ public interface ContentFetcher {
             throws DataStorageException;
 
 
+    /**
+     * Streams the object's content from the repository directly into a zip archive in the cache.
+     * 
+     * @param version
+     *            content version to be fetched from the repository.
+     * @param provided
+     *            if <code>true</code>, enables extraction of provided metadata, otherwise it is skipped.
+     * @param extracted
+     *            if <code>true</code>, enables extraction of extracted metadata, otherwise it is skipped.
+     * @return the archive.
+     * @throws DataStorageException
+     *             should any problems with data storage arise.
+     * @throws ArchiverException
+     *             should any problems with writing the archive arise.
+     */
+    File archiveEntireObject(ContentVersion version, boolean provided, boolean extracted)
+            throws DataStorageException, ArchiverException;
+
+
+    /**
+     * Streams the objects's content subset from the repository directly into a zip archive in the cache.
+     * 
+     * @param version
+     *            content version to be fetched from the repository.
+     * @param dataFiles
+     *            list of data files to download.
+     * @param provided
+     *            if <code>true</code>, enables extraction of provided metadata, otherwise it is skipped.
+     * @param extracted
+     *            if <code>true</code>, enables extraction of extracted metadata, otherwise it is skipped.
+     * @return the archive.
+     * @throws DataStorageException
+     *             should any problems with data storage arise.
+     * @throws ArchiverException
+     *             should any problems with writing the archive arise.
+     */
+    File archiveContentFiles(ContentVersion version, List<DataFile> dataFiles, boolean provided, boolean extracted)
+            throws DataStorageException, ArchiverException;
+
+
+    /**
+     * Streams the objects's metadata from the repository directly into a zip archive in the cache.
+     * 
+     * @param objectVersion
+     *            object's version from which to download metadata.
+     * @param provided
+     *            if <code>true</code>, enables extraction of provided metadata, otherwise it is skipped.
+     * @return the archive.
+     * @throws DataStorageException
+     *             should any problems with data storage arise.
+     * @throws ArchiverException
+     *             should any problems with writing the archive arise.
+     */
+    File archiveMetadataFiles(ContentVersion objectVersion, boolean provided)
+            throws DataStorageException, ArchiverException;
+
+
     /**
      * Get the objects's metadata into the input stream.
      * 
@@ -15,11 +15,15 @@
  */
 package pl.psnc.synat.wrdz.zmd.storage;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.Local;
 
+import pl.psnc.synat.dsa.FileDigest;
 import pl.psnc.synat.dsa.exception.DataStorageResourceException;
 import pl.psnc.synat.wrdz.zmd.entity.object.DigitalObject;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
@@ -111,6 +115,88 @@ public interface DataStorageAccess {
             throws DataStorageResourceException;
 
 
+    /**
+     * Streams the object from the repository into the sink, file by file, without storing it in the cache.
+     * 
+     * @param version
+     *            object's content
+     * @param provided
+     *            whether provided metadata should be retrieved
+     * @param extracted
+     *            whether extracted metadata should be retrieved
+     * @param sink
+     *            consumer of the streamed files
+     * @throws DataStorageResourceException
+     *             if any data storage related problems occur.
+     * @throws IOException
+     *             if the sink failed to consume a file
+     */
+    void exportObject(ContentVersion version, boolean provided, boolean extracted, DataStorageSink sink)
+            throws DataStorageResourceException, IOException;
+
+
+    /**
+     * Streams the specified data files of the object from the repository into the sink, file by file, without storing
+     * them in the cache.
+     * 
+     * @param version
+     *            object's content
+     * @param dataFiles
+     *            data files to be streamed
+     * @param provided
+     *            whether provided metadata should be retrieved
+     * @param extracted
+     *            whether extracted metadata should be retrieved
+     * @param sink
+     *            consumer of the streamed files
+     * @throws DataStorageResourceException
+     *             if any data storage related problems occur.
+     * @throws IOException
+     *             if the sink failed to consume a file
+     */
+    void exportDataFiles(ContentVersion version, List<DataFile> dataFiles, boolean provided, boolean extracted,
+            DataStorageSink sink)
+            throws DataStorageResourceException, IOException;
+
+
+    /**
+     * Streams metadata files of the object from the repository into the sink, file by file, without storing them in
+     * the cache.
+     * 
+     * @param objectVersion
+     *            object's content
+     * @param provided
+     *            whether provided metadata should be retrieved
+     * @param sink
+     *            consumer of the streamed files
+     * @throws DataStorageResourceException
+     *             if any data storage related problems occur.
+     * @throws IOException
+     *             if the sink failed to consume a file
+     */
+    void exportMetadataFiles(ContentVersion objectVersion, boolean provided, DataStorageSink sink)
+            throws DataStorageResourceException, IOException;
+
+
+    /**
+     * Calculates digests of every copy of the given files of the object. The copies are read by the data storages
+     * holding them, so the files are neither fetched to the cache nor packaged.
+     * 
+     * @param version
+     *            version of the object
+     * @param repositoryPaths
+     *            paths of the files in the repository (in a context of the object)
+     * @param algorithms
+     *            names of the digest algorithms
+     * @return digests of the copies by the repository paths of the files, an empty list for a file with no copies
+     * @throws DataStorageResourceException
+     *             if any data storage related problems occur.
+     */
+    Map<String, List<FileDigest>> digestFiles(ContentVersion version, Collection<String> repositoryPaths,
+            Collection<String> algorithms)
+            throws DataStorageResourceException;
+
+
     /**
      * Get metadata file (METS) of the object from the repository.
      * 
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives files of an object read from the data storage, one after another, as they are streamed.
+ */
+public interface DataStorageSink {
+
+    /**
+     * Consumes the content of a single file. The stream is closed by the caller.
+     * 
+     * @param objectPath
+     *            path of the file in a context of the object
+     * @param content
+     *            content of the file
+     * @throws IOException
+     *             if the content could not be consumed
+     */
+    void write(String objectPath, InputStream content)
+            throws IOException;
+
+}
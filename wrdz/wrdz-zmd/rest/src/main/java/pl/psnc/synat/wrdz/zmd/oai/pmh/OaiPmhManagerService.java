@@ -30,6 +30,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
 import org.openarchives.oai.pmh.DeletedRecordType;
@@ -38,7 +39,6 @@ import org.openarchives.oai.pmh.GranularityType;
 import org.openarchives.oai.pmh.IdentifyType;
 import org.openarchives.oai.pmh.ListIdentifiersType;
 import org.openarchives.oai.pmh.ListMetadataFormatsType;
-import org.openarchives.oai.pmh.ListRecordsType;
 import org.openarchives.oai.pmh.ListSetsType;
 import org.openarchives.oai.pmh.MetadataFormatType;
 import org.openarchives.oai.pmh.OAIPMHerrorcodeType;
@@ -110,35 +110,35 @@ public class OaiPmhManagerService {
     @GET
     @Path("/")
     @Produces(MediaType.APPLICATION_XML)
-    public OaiPmh oaiOperation(@Context UriInfo uriInfo) {
+    public Response oaiOperation(@Context UriInfo uriInfo) {
         OaiParametersParser query = null;
         try {
             query = new OaiParametersParser(uriInfo.getQueryParameters(), uriInfo.getAbsolutePath().toString());
         } catch (AmbiguousResultException e) {
-            return responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
-                OAIPMHerrorcodeType.BAD_ARGUMENT);
+            return buildResponse(responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
+                OAIPMHerrorcodeType.BAD_ARGUMENT));
         } catch (IllegalOaiPmhArgumentException e) {
-            return responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
-                OAIPMHerrorcodeType.BAD_ARGUMENT);
+            return buildResponse(responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
+                OAIPMHerrorcodeType.BAD_ARGUMENT));
         } catch (IllegalOaiPmhVerbException e) {
-            return responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
-                OAIPMHerrorcodeType.BAD_VERB);
+            return buildResponse(responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
+                OAIPMHerrorcodeType.BAD_VERB));
         } catch (UnsupportedMetadataFormatException e) {
-            return responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
-                OAIPMHerrorcodeType.CANNOT_DISSEMINATE_FORMAT);
+            return buildResponse(responseCreator.createError(uriInfo.getAbsolutePath().toString(), e.getMessage(),
+                OAIPMHerrorcodeType.CANNOT_DISSEMINATE_FORMAT));
         }
         VerbType verb = query.getVerb();
         switch (verb) {
             case GET_RECORD:
-                return getRecord(query);
+                return buildResponse(getRecord(query));
             case IDENTIFY:
-                return identify(query);
+                return buildResponse(identify(query));
             case LIST_SETS:
-                return listSets(query);
+                return buildResponse(listSets(query));
             case LIST_METADATA_FORMATS:
-                return listMetadataFormats(query);
+                return buildResponse(listMetadataFormats(query));
             case LIST_IDENTIFIERS:
-                return listIdentifiers(query);
+                return buildResponse(listIdentifiers(query));
             case LIST_RECORDS:
                 return listRecords(query);
             default:
@@ -147,6 +147,18 @@ public class OaiPmhManagerService {
     }
 
 
+    /**
+     * Builds the HTTP response marshalling the OAI-PMH response.
+     * 
+     * @param result
+     *            OAI-PMH response.
+     * @return HTTP response.
+     */
+    private Response buildResponse(OaiPmh result) {
+        return Response.ok(result, MediaType.APPLICATION_XML_TYPE).build();
+    }
+
+
     /**
      * OAI-PMH GetRecord query. For more details on the query see the description <a
      * href="http://www.openarchives.org/OAI/openarchivesprotocol.html#GetRecord">here</a>.
@@ -261,41 +273,48 @@ public class OaiPmhManagerService {
 
     /**
      * OAI-PMH ListRecords query. For more details on the query see the description <a
-     * href="http://www.openarchives.org/OAI/openarchivesprotocol.html#ListRecords">here</a>.
+     * href="http://www.openarchives.org/OAI/openarchivesprotocol.html#ListRecords">here</a>. The records are written
+     * with {@link OaiPmhRecordsWriter} while they are read from the database.
      * 
      * @param query
      *            query parameters.
-     * @return OAI-PMH response.
+     * @return HTTP response with OAI-PMH response.
      */
-    private OaiPmh listRecords(OaiParametersParser query) {
+    private Response listRecords(OaiParametersParser query) {
         OaiPmh result = validateQuery(query, ListRecords.class);
-        if (result == null) {
-            ListRecordsType listRecords = null;
-            if (query.getResumptionToken() != null) {
-                try {
-                    listRecords = oaiPmhManager.listRecords(query.getResumptionToken());
-                } catch (IllegalOaiPmhTokenException e) {
-                    return responseCreator.createError(query.getUri(), "Bad resumption token.",
-                        OAIPMHerrorcodeType.BAD_RESUMPTION_TOKEN);
-                }
-            } else {
-                NamespaceType metadataPrefix = query.getMetadataPrefix();
-                if (metadataPrefix != NamespaceType.OAI_DC && metadataPrefix != NamespaceType.METS) {
-                    return responseCreator.createError(query.getUri(),
-                        "Repository does not provide access to specified " + metadataPrefix + " metadata.",
-                        OAIPMHerrorcodeType.CANNOT_DISSEMINATE_FORMAT);
-                }
-                listRecords = oaiPmhManager.listRecords(query.getFrom(), query.getUntil(), query.getMetadataPrefix(),
-                    query.getSet(), 0);
+        if (result != null) {
+            return buildResponse(result);
+        }
+        OaiPmhRecordPage listRecords = null;
+        if (query.getResumptionToken() != null) {
+            try {
+                listRecords = oaiPmhManager.listRecords(query.getResumptionToken());
+            } catch (IllegalOaiPmhTokenException e) {
+                return buildResponse(responseCreator.createError(query.getUri(), "Bad resumption token.",
+                    OAIPMHerrorcodeType.BAD_RESUMPTION_TOKEN));
             }
-            if (listRecords == null) {
-                return responseCreator.createError(query.getUri(), "Bad resumption token.",
-                    OAIPMHerrorcodeType.NO_RECORDS_MATCH);
+        } else {
+            NamespaceType metadataPrefix = query.getMetadataPrefix();
+            if (metadataPrefix != NamespaceType.OAI_DC && metadataPrefix != NamespaceType.METS) {
+                return buildResponse(responseCreator.createError(query.getUri(),
+                    "Repository does not provide access to specified " + metadataPrefix + " metadata.",
+                    OAIPMHerrorcodeType.CANNOT_DISSEMINATE_FORMAT));
             }
-            result = responseCreator.createEmptyResponse(query);
-            result.setListRecords(listRecords);
+            if (!checkAndFillMissingDateBoundaries(query)) {
+                return buildResponse(responseCreator.createError(query.getUri(),
+                    "Illegal date boundary specified, lowe bound before earliest date or/and upper bound from the future. "
+                            + metadataPrefix + " metadata.", OAIPMHerrorcodeType.BAD_ARGUMENT));
+            }
+            listRecords = oaiPmhManager.listRecords(query.getFrom(), query.getUntil(), query.getMetadataPrefix(),
+                query.getSet());
         }
-        return result;
+        if (listRecords == null) {
+            return buildResponse(responseCreator.createError(query.getUri(), "Bad resumption token.",
+                OAIPMHerrorcodeType.NO_RECORDS_MATCH));
+        }
+        OaiPmhRecordsWriter writer = new OaiPmhRecordsWriter(oaiPmhManager,
+                responseCreator.createEmptyResponse(query), listRecords);
+        return Response.ok(writer, MediaType.APPLICATION_XML_TYPE).build();
     }
 
 
@@ -327,7 +346,7 @@ public class OaiPmhManagerService {
                 }
                 if (checkAndFillMissingDateBoundaries(query)) {
                     listIdentifiers = oaiPmhManager.listIdentifiers(query.getFrom(), query.getUntil(),
-                        query.getMetadataPrefix(), query.getSet(), 0);
+                        query.getMetadataPrefix(), query.getSet());
                 } else {
                     return responseCreator.createError(query.getUri(),
                         "Illegal date boundary specified, lowe bound before earliest date or/and upper bound from the future. "
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.oai.pmh;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.Date;
+
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.io.IOUtils;
+import org.openarchives.oai.pmh.OaiPmh;
+import org.openarchives.oai.pmh.RequestType;
+import org.openarchives.oai.pmh.ResumptionTokenType;
+
+import pl.psnc.synat.wrdz.common.jaxb.UTCDateTimeConverter;
+import pl.psnc.synat.wrdz.common.metadata.EmbeddableXmlReader;
+import pl.psnc.synat.wrdz.zmd.entity.object.metadata.operation.Operation;
+import pl.psnc.synat.wrdz.zmd.entity.types.OperationType;
+
+/**
+ * Writes the OAI-PMH ListRecords response with StAX while the records are read from the database. The stored metadata
+ * documents are copied verbatim into the <code>metadata</code> elements - they are neither parsed nor kept in memory
+ * as a whole page.
+ */
+public class OaiPmhRecordsWriter implements StreamingOutput, OaiPmhRecordHandler {
+
+    /** OAI-PMH namespace. */
+    private static final String OAI_NS = "http://www.openarchives.org/OAI/2.0/";
+
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Factory of the StAX writers. */
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    /**
+     * OAI-PMH manager reading the records.
+     */
+    private final OaiPmhManager oaiPmhManager;
+
+    /**
+     * Empty response providing the response date and the request.
+     */
+    private final OaiPmh envelope;
+
+    /**
+     * Page of records to write.
+     */
+    private final OaiPmhRecordPage page;
+
+    /**
+     * Character stream of the response.
+     */
+    private Writer writer;
+
+    /**
+     * StAX writer of the response.
+     */
+    private XMLStreamWriter xml;
+
+
+    /**
+     * Constructs a new writer.
+     * 
+     * @param oaiPmhManager
+     *            OAI-PMH manager reading the records.
+     * @param envelope
+     *            empty response providing the response date and the request.
+     * @param page
+     *            page of records to write.
+     */
+    public OaiPmhRecordsWriter(OaiPmhManager oaiPmhManager, OaiPmh envelope, OaiPmhRecordPage page) {
+        this.oaiPmhManager = oaiPmhManager;
+        this.envelope = envelope;
+        this.page = page;
+    }
+
+
+    @Override
+    public void write(OutputStream output)
+            throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"), BUFFER_SIZE);
+        try {
+            xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.setDefaultNamespace(OAI_NS);
+            xml.writeStartElement(OAI_NS, "OAI-PMH");
+            xml.writeDefaultNamespace(OAI_NS);
+            writeElement("responseDate", UTCDateTimeConverter.printDateTime(envelope.getResponseDate()));
+            writeRequest(envelope.getRequest());
+            xml.writeStartElement(OAI_NS, "ListRecords");
+            oaiPmhManager.writeRecords(page, this);
+            writeResumptionToken(page.getResumptionToken());
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+    }
+
+
+    @Override
+    public void handleRecord(Operation operation)
+            throws IOException {
+        try {
+            xml.writeStartElement(OAI_NS, "record");
+            xml.writeStartElement(OAI_NS, "header");
+            if (operation.getOperation() == OperationType.DELETION) {
+                xml.writeAttribute("status", "deleted");
+            }
+            writeElement("identifier", operation.getObject().getDefaultIdentifier().getIdentifier());
+            writeElement("datestamp", UTCDateTimeConverter.printDateTime(operation.getDate()));
+            writeElement("setSpec", operation.getObject().getType().name());
+            xml.writeEndElement();
+            String contents = operation.getContents();
+            if (contents != null) {
+                xml.writeStartElement(OAI_NS, "metadata");
+                // closes the start tag, so the document can be written directly to the underlying stream
+                xml.writeCharacters("");
+                xml.flush();
+                IOUtils.copy(new EmbeddableXmlReader(new StringReader(contents)), writer);
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+
+    /**
+     * Writes the request element.
+     * 
+     * @param request
+     *            request
+     * @throws XMLStreamException
+     *             when writing fails
+     */
+    private void writeRequest(RequestType request)
+            throws XMLStreamException {
+        xml.writeStartElement(OAI_NS, "request");
+        if (request.getVerb() != null) {
+            xml.writeAttribute("verb", request.getVerb().value());
+        }
+        writeAttribute("identifier", request.getIdentifier());
+        writeAttribute("metadataPrefix", request.getMetadataPrefix());
+        writeAttribute("from", request.getFrom());
+        writeAttribute("until", request.getUntil());
+        writeAttribute("set", request.getSet());
+        writeAttribute("resumptionToken", request.getResumptionToken());
+        xml.writeCharacters(request.getValue());
+        xml.writeEndElement();
+    }
+
+
+    /**
+     * Writes the resumption token element, if the page has one.
+     * 
+     * @param token
+     *            resumption token or <code>null</code>
+     * @throws XMLStreamException
+     *             when writing fails
+     */
+    private void writeResumptionToken(ResumptionTokenType token)
+            throws XMLStreamException {
+        if (token == null) {
+            return;
+        }
+        xml.writeStartElement(OAI_NS, "resumptionToken");
+        writeAttribute("expirationDate", token.getExpirationDate());
+        writeAttribute("completeListSize", token.getCompleteListSize());
+        writeAttribute("cursor", token.getCursor());
+        if (token.getValue() != null) {
+            xml.writeCharacters(token.getValue());
+        }
+        xml.writeEndElement();
+    }
+
+
+    /**
+     * Writes the element with the text content.
+     * 
+     * @param name
+     *            local name of the element
+     * @param value
+     *            content of the element
+     * @throws XMLStreamException
+     *             when writing fails
+     */
+    private void writeElement(String name, String value)
+            throws XMLStreamException {
+        xml.writeStartElement(OAI_NS, name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+
+
+    /**
+     * Writes the attribute, unless its value is <code>null</code>.
+     * 
+     * @param name
+     *            name of the attribute
+     * @param value
+     *            value of the attribute, dates are written in the OAI-PMH format
+     * @throws XMLStreamException
+     *             when writing fails
+     */
+    private void writeAttribute(String name, Object value)
+            throws XMLStreamException {
+        if (value instanceof Date) {
+            xml.writeAttribute(name, UTCDateTimeConverter.printDateTime((Date) value));
+        } else if (value instanceof BigInteger || value instanceof String) {
+            xml.writeAttribute(name, value.toString());
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmd.scape;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.wrdz.common.metadata.EmbeddableXmlReader;
+import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
+import pl.psnc.synat.wrdz.zmd.entity.object.metadata.operation.Operation;
+import pl.psnc.synat.wrdz.zmd.object.ObjectManager;
+
+/**
+ * Writes the SCAPE entity list - the METS documents of the listed entities wrapped in the <code>entity-list</code>
+ * element. The documents are copied verbatim, without being parsed and marshalled again, one after another: each one
+ * is opened only when it is written and closed before the next one is opened, so a listing holds at most one stream of
+ * the data storage and no document is kept in memory.
+ */
+public class EntityListOutput implements StreamingOutput {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(EntityListOutput.class);
+
+    /** SCAPE model namespace. */
+    private static final String SCAPE_NS = "http://scape-project.eu/model";
+
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Object manager opening the METS files in the data storage.
+     */
+    private final ObjectManager objectManager;
+
+    /**
+     * Versions of the listed entities.
+     */
+    private final List<ContentVersion> versions;
+
+    /**
+     * Whether the METS of the corresponding entity is read from the data storage (with references to the files) or
+     * from the last operation of the version.
+     */
+    private final List<Boolean> references;
+
+
+    /**
+     * Constructs a new output.
+     * 
+     * @param objectManager
+     *            object manager opening the METS files in the data storage
+     */
+    public EntityListOutput(ObjectManager objectManager) {
+        this.objectManager = objectManager;
+        this.versions = new ArrayList<ContentVersion>();
+        this.references = new ArrayList<Boolean>();
+    }
+
+
+    /**
+     * Adds the entity at the end of the list.
+     * 
+     * @param version
+     *            requested version of the entity
+     * @param useReferences
+     *            whether the METS is read from the data storage or from the last operation of the version
+     */
+    public void addEntity(ContentVersion version, boolean useReferences) {
+        versions.add(version);
+        references.add(useReferences);
+    }
+
+
+    @Override
+    public void write(OutputStream output)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"), BUFFER_SIZE);
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><scape:entity-list xmlns:scape=\"" + SCAPE_NS + "\">");
+        for (int i = 0; i < versions.size(); i++) {
+            Reader reader = open(versions.get(i), references.get(i));
+            try {
+                IOUtils.copy(reader, writer);
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+        }
+        writer.write("</scape:entity-list>");
+        writer.flush();
+    }
+
+
+    /**
+     * Opens the METS document of the version.
+     * 
+     * @param version
+     *            version of the entity
+     * @param useReferences
+     *            whether the METS is read from the data storage or from the last operation of the version
+     * @return reader of the document positioned at its root element
+     * @throws IOException
+     *             if the METS document could not be accessed
+     */
+    private Reader open(ContentVersion version, boolean useReferences)
+            throws IOException {
+        if (!useReferences) {
+            List<Operation> operations = version.getExtractedMetadata().getMetadataContent();
+            return new EmbeddableXmlReader(new StringReader(operations.get(operations.size() - 1).getContents()));
+        }
+        InputStream stream;
+        try {
+            stream = objectManager.openMetsForObject(version);
+        } catch (Exception e) {
+            logger.error("METS of the version " + version.getId() + " could not be read.", e);
+            throw new IOException(e);
+        }
+        EmbeddableXmlReader reader = new EmbeddableXmlReader(new InputStreamReader(stream, "UTF-8"));
+        try {
+            reader.skipProlog();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(reader);
+            throw e;
+        }
+        return reader;
+    }
+
+}
@@ -15,15 +15,15 @@
  */
 package pl.psnc.synat.wrdz.zmd.scape;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.ManagedBean;
@@ -51,9 +51,6 @@ import pl.psnc.synat.wrdz.common.async.AsyncRequestProcessor;
 import pl.psnc.synat.wrdz.common.async.AsyncRequestService;
 import pl.psnc.synat.wrdz.common.async.AsyncRequestServiceConsts;
 import pl.psnc.synat.wrdz.common.config.Configuration;
-import pl.psnc.synat.wrdz.common.metadata.mets.MetsMetadataProcessingException;
-import pl.psnc.synat.wrdz.common.metadata.mets.MetsMetadataReader;
-import pl.psnc.synat.wrdz.common.metadata.mets.MetsMetadataReaderFactory;
 import pl.psnc.synat.wrdz.common.rest.exception.AccessDeniedException;
 import pl.psnc.synat.wrdz.common.rest.exception.BadRequestException;
 import pl.psnc.synat.wrdz.common.rest.exception.InternalServerErrorException;
@@ -63,14 +60,12 @@ import pl.psnc.synat.wrdz.common.rest.exception.UnsupportedMediaType;
 import pl.psnc.synat.wrdz.common.user.UserContext;
 import pl.psnc.synat.wrdz.common.utility.StringEncoder;
 import pl.psnc.synat.wrdz.zmd.config.ZmdConfiguration;
-import pl.psnc.synat.wrdz.zmd.entity.IntellectualEntityCollection;
 import pl.psnc.synat.wrdz.zmd.entity.LifeCycleStatesCollection;
 import pl.psnc.synat.wrdz.zmd.entity.object.DigitalObject;
 import pl.psnc.synat.wrdz.zmd.entity.object.content.ContentVersion;
 import pl.psnc.synat.wrdz.zmd.entity.object.metadata.operation.Operation;
 import pl.psnc.synat.wrdz.zmd.input.IncompleteDataException;
 import pl.psnc.synat.wrdz.zmd.input.InvalidDataException;
-import pl.psnc.synat.wrdz.zmd.input.object.FileFetchingRequest;
 import pl.psnc.synat.wrdz.zmd.input.object.ObjectCreationRequest;
 import pl.psnc.synat.wrdz.zmd.input.object.ObjectModificationRequest;
 import pl.psnc.synat.wrdz.zmd.object.FetchingException;
@@ -301,66 +296,70 @@ public class EntityManagerService extends AsyncRequestService {
     /**
      * Gets the set of entities specified in list. Return METS representations of the entity.
      * 
+     * Objects and permissions of all the listed entities are checked at once, before anything is written. The METS
+     * documents are then streamed in the order of the list, without being parsed.
+     * 
      * @param uriInfo
      *            provides information about requested URI
-     * @return digital object specified files if it is in the (asynchronous request processing) cache or an address with
-     *         the fetching status
+     * @param message
+     *            list of entities, one per line
+     * @return METS representations of the listed entities wrapped in the <code>entity-list</code> element
      */
     @GET
     @Path("entity-list")
     @Consumes(MediaType.TEXT_PLAIN)
     @Produces(MediaType.APPLICATION_XML)
-    public IntellectualEntityCollection getEntityList(@Context UriInfo uriInfo, String message) {
-        List<String> list = new LinkedList<String>();
-        list.addAll(Arrays.asList(message.split("\\r?\\n")));
-
-        IntellectualEntityCollection resultCollection = new IntellectualEntityCollection();
-        Iterator<String> it = list.iterator();
-        while (it.hasNext()) {
-            String line = (String) it.next();
+    public Response getEntityList(@Context UriInfo uriInfo, String message) {
+        List<String[]> lines = new ArrayList<String[]>();
+        Set<String> identifiers = new HashSet<String>();
+        for (String line : message.split("\\r?\\n")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
             String[] parsedLine = parseEntityListLine(line);
-            String eid = parsedLine[1];
-            Integer vid = Integer.parseInt(parsedLine[2]);
-            boolean useReferences = Boolean.parseBoolean(parsedLine[3]);
+            if (parsedLine[1] == null) {
+                throw new BadRequestException("Missing entity identifier in line: " + line);
+            }
+            lines.add(parsedLine);
+            identifiers.add(parsedLine[1]);
+        }
 
-            checkPermission(eid, ObjectPermissionType.READ);
+        Map<String, DigitalObject> objects = objectBrowser.getDigitalObjects(identifiers);
+        Set<Long> objectIds = new HashSet<Long>();
+        for (String identifier : identifiers) {
+            DigitalObject object = objects.get(identifier);
+            if (object == null) {
+                // does not exist at all or deleted
+                throw new NotFoundException();
+            }
+            objectIds.add(object.getId());
+        }
+        Set<Long> permitted = permissionManager.filterWithPermission(userContext.getCallerPrincipalName(), objectIds,
+            ObjectPermissionType.READ);
+        if (!permitted.containsAll(objectIds)) {
+            // no permission
+            throw new AccessDeniedException();
+        }
 
-            String resultMets = null;
+        EntityListOutput output = new EntityListOutput(objectManager);
+        for (String[] parsedLine : lines) {
+            String eid = parsedLine[1];
+            boolean useReferences = "yes".equalsIgnoreCase(parsedLine[3]) || Boolean.parseBoolean(parsedLine[3]);
+            ContentVersion currentVersion = objects.get(eid).getCurrentVersion();
             try {
-                if (vid == -1) {
-                    vid = (int) (objectBrowser.getDigitalObject(eid).getCurrentVersion().getId());
-                }
-                if (useReferences) {
-                    //read mets file from storage and return content
-                    resultMets = objectManager.getMetsForObject(eid, vid);
+                Integer vid = Integer.valueOf(parsedLine[2]);
+                if (vid == -1 || vid.equals(currentVersion.getVersion())) {
+                    output.addEntity(currentVersion, useReferences);
                 } else {
-                    //get last operation for selected version
-                    ContentVersion objectVersion = objectBrowser.getObjectsVersion(eid, vid);
-                    List<Operation> listOp = objectVersion.getExtractedMetadata().getMetadataContent();
-                    Operation lastOperation = listOp.get(listOp.size() - 1);
-                    resultMets = lastOperation.getContents();
+                    output.addEntity(objectBrowser.getObjectsVersion(eid, vid), useReferences);
                 }
-
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid version number: " + parsedLine[2]);
             } catch (ObjectNotFoundException e) {
                 throw new NotFoundException(e.getMessage());
-            } catch (Exception e) {
-                logger.error("Internal Server Error", e);
-                throw new InternalServerErrorException(e.getMessage());
-            }
-
-            MetsMetadataReader metsReader = MetsMetadataReaderFactory.getInstance().getMetsMetadataReader();
-            try {
-                metsReader.parse(new ByteArrayInputStream(resultMets.getBytes("UTF-8")));
-            } catch (MetsMetadataProcessingException e) {
-                logger.error("[METS parsing error!]", e.toString());
-                throw new InternalServerErrorException("[METS parsing error!] " + e.getMessage());
-            } catch (UnsupportedEncodingException e1) {
-                logger.error("[METS parsing error!] " + e1.toString());
-                throw new InternalServerErrorException("[METS parsing error!] " + e1.getMessage());
             }
-            resultCollection.getMets().add(metsReader.getMets());
         }
-        return resultCollection;
+        return Response.ok(output).type(MediaType.APPLICATION_XML).build();
     }
 
 
@@ -650,7 +649,7 @@ public class EntityManagerService extends AsyncRequestService {
     public Response getEntityFiles(@Context UriInfo uriInfo, @PathParam("eid") String eid, @PathParam("fid") String fid) {
         ResultFile res = getEntityFile(eid, fid, null);
 
-        return Response.status(Response.Status.ACCEPTED).type("application/octet-stream").entity(res).build();
+        return buildFileResponse(res.getFile(), MediaType.APPLICATION_OCTET_STREAM, res.getProposedName(), null);
     }
 
 
@@ -675,7 +674,8 @@ public class EntityManagerService extends AsyncRequestService {
             @PathParam("fid") String fid, @PathParam("vid") Integer vid) {
         ResultFile res = getEntityFile(eid, fid, vid);
 
-        return Response.status(Response.Status.ACCEPTED).type("application/octet-stream").entity(res).build();
+        return buildFileResponse(res.getFile(), MediaType.APPLICATION_OCTET_STREAM, res.getProposedName(), eid + "-"
+                + fid + "-" + vid + "-" + res.getFile().length());
     }
 
 
@@ -776,9 +776,8 @@ public class EntityManagerService extends AsyncRequestService {
         String[] res = { "", null, "-1", "yes" };
 
         //read parameters
-        int ind = 0;
-        while (ind < tmp.length) {
-            res[ind++] = tmp[ind];
+        for (int ind = 0; ind < tmp.length && ind < res.length; ind++) {
+            res[ind] = tmp[ind];
         }
         return res;
     }
@@ -941,19 +940,12 @@ public class EntityManagerService extends AsyncRequestService {
             throw new InternalServerErrorException(e.getMessage());
         }
 
+        if (!filesIdLocMap.containsKey(fid)) {
+            logger.error("Not found file with such ID: " + fid);
+            throw new NotFoundException("Not found file with such ID: " + fid);
+        }
         try {
-            List<String> files = new LinkedList<String>();
-            if (filesIdLocMap.containsKey(fid)) {
-                files.add(filesIdLocMap.get(fid));
-            } else {
-                logger.error("Not found file with such ID: " + fid);
-                throw new NotFoundException("Not found file with such ID: " + fid);
-            }
-            FileFetchingRequest request = new FileFetchingRequest(eid, files);
-            request.setVersion(vid);
-            request.setExtracted(false);
-            request.setProvided(false);
-            res = objectManager.getContentFiles(request);
+            res = objectManager.getContentFile(eid, vid, filesIdLocMap.get(fid));
         } catch (ObjectNotFoundException e) {
             throw new NotFoundException(e.getMessage());
         } catch (Exception e) {
@@ -18,6 +18,7 @@ package pl.psnc.synat.wrdz.zmkd;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.ejb.EJB;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
@@ -26,6 +27,8 @@ import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+import pl.psnc.synat.wrdz.common.metadata.XmlParsers;
 import pl.psnc.synat.wrdz.zmkd.config.ZmkdConfiguration;
 import pl.psnc.synat.wrdz.zmkd.dao.plan.MigrationPlanDao;
 import pl.psnc.synat.wrdz.zmkd.dao.plan.MigrationPlanFilterFactory;
@@ -34,7 +37,7 @@ import pl.psnc.synat.wrdz.zmkd.entity.plan.MigrationPlanStatus;
 import pl.psnc.synat.wrdz.zmkd.plan.MigrationPlanProcessorsManager;
 
 /**
- * Performs operations that need to be performed when the module is started (deployed).
+ * Performs operations that need to be performed when the module is started (deployed) or stopped (undeployed).
  */
 @Singleton
 @Startup
@@ -67,6 +70,16 @@ public class ZmkdInitializer {
     }
 
 
+    /**
+     * Drops the XML processors cached by the container threads.
+     */
+    @PreDestroy
+    protected void destroy() {
+        JaxbProcessors.clear();
+        XmlParsers.clear();
+    }
+
+
     /**
      * Resumes all migration plans that are in the RUNNING state.
      */
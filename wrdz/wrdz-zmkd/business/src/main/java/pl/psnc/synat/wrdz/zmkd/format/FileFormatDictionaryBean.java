@@ -41,14 +41,14 @@ public class FileFormatDictionaryBean {
     @EJB
     private FileFormatDao fileFormatDao;
 
-    /** Provides access to the UDFR registry. */
+    /** Provides access to the local snapshot of the UDFR registry. */
     @EJB
-    private UdfrSparqlEndpointAccessBean udfrSparqlEndpointAccessBean;
+    private FormatRegistryAccessBean formatRegistryAccessBean;
 
 
     /**
      * Returns the UDFR file format identifier corresponding to the given PUID. The local dictionary is automatically
-     * updated via a SPARQL query to UDFR if such identifier is not present.
+     * updated from the local snapshot of UDFR if such identifier is not present.
      * 
      * @param puid
      *            PRONOM identifier
@@ -66,7 +66,7 @@ public class FileFormatDictionaryBean {
 
     /**
      * Returns the file format entry that corresponds to the given PUID. The local dictionary is automatically updated
-     * via a SPARQL query to UDFR if such identifier is not present.
+     * from the local snapshot of UDFR if such identifier is not present.
      * 
      * @param puid
      *            PRONOM identifier
@@ -86,9 +86,9 @@ public class FileFormatDictionaryBean {
             return fileFormat;
         }
         logger.debug("UDFR IRI fro PUID " + puid + " does not exist in the local dictionary");
-        String udfrIri = udfrSparqlEndpointAccessBean.getUdfrIriForPuid(puid);
+        String udfrIri = formatRegistryAccessBean.getUdfrIriForPuid(puid);
         logger.debug("UDFR IRI fro PUID " + puid + " exists in the UDFR registry: " + udfrIri);
-        FileFormatExt fileFormatExt = udfrSparqlEndpointAccessBean.getMimetypeForUdfrIri(udfrIri);
+        FileFormatExt fileFormatExt = formatRegistryAccessBean.getMimetypeForUdfrIri(udfrIri);
         fileFormat = new FileFormat(puid, udfrIri, fileFormatExt.getExtension(), fileFormatExt.getMimetype());
         fileFormatDao.persist(fileFormat);
         return fileFormat;
@@ -97,7 +97,7 @@ public class FileFormatDictionaryBean {
 
     /**
      * Returns the file format entry that corresponds to the given PUID. The local dictionary is automatically updated
-     * via a SPARQL query to UDFR if such identifier is not present.
+     * from the local snapshot of UDFR if such identifier is not present.
      * 
      * @param udfrIri
      *            UDFR IRI
@@ -114,8 +114,8 @@ public class FileFormatDictionaryBean {
         if (fileFormat != null) {
             return fileFormat;
         }
-        String puid = udfrSparqlEndpointAccessBean.getPuidForUdfrIri(udfrIri);
-        FileFormatExt fileFormatExt = udfrSparqlEndpointAccessBean.getMimetypeForUdfrIri(udfrIri);
+        String puid = formatRegistryAccessBean.getPuidForUdfrIri(udfrIri);
+        FileFormatExt fileFormatExt = formatRegistryAccessBean.getMimetypeForUdfrIri(udfrIri);
         fileFormat = new FileFormat(puid, udfrIri, fileFormatExt.getExtension(), fileFormatExt.getMimetype());
         fileFormatDao.persist(fileFormat);
         return fileFormat;
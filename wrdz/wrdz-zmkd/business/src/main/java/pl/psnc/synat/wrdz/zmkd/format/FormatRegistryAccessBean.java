@@ -0,0 +1,191 @@
+/**
+ * Copyright 2015 Poznań Supercomputing and Networking Center
+ *
+ * Licensed under the GNU General Public License, Version 3.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.gnu.org/licenses/gpl-3.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package pl.psnc.synat.wrdz.zmkd.format;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import pl.psnc.synat.wrdz.common.format.FormatRecord;
+import pl.psnc.synat.wrdz.common.format.FormatRegistry;
+import pl.psnc.synat.wrdz.common.format.FormatRegistryStore;
+import pl.psnc.synat.wrdz.zmkd.config.ZmkdConfiguration;
+
+/**
+ * Provides an access to the local snapshot of the UDFR registry.
+ * 
+ * The snapshot is loaded from the local snapshot file (or imported from the configured dump file) at startup and
+ * periodically downloaded from UDFR according to the configured schedule. Formats are looked up in memory, so the
+ * container does not serialize the calls of this bean.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class FormatRegistryAccessBean {
+
+    /** Logger. */
+    private static final Logger logger = LoggerFactory.getLogger(FormatRegistryAccessBean.class);
+
+    /** Injected timer service. */
+    @Resource
+    private TimerService timerService;
+
+    /** Module configuration. */
+    @Inject
+    private ZmkdConfiguration configuration;
+
+    /** Local snapshot of the format registry. */
+    private FormatRegistryStore store;
+
+
+    /**
+     * Loads the local snapshot of the format registry and creates the timer refreshing it.
+     */
+    @PostConstruct
+    protected void init() {
+        String dump = configuration.getFormatRegistryDump();
+        store = new FormatRegistryStore(configuration.getFormatRegistryEndpoint(), new File(
+                configuration.getFormatRegistrySnapshot()), dump != null ? new File(dump) : null);
+        try {
+            if (!store.load()) {
+                logger.info("There is no local snapshot of the format registry yet");
+            }
+        } catch (IOException e) {
+            logger.error("Could not load the local snapshot of the format registry", e);
+        }
+        timerService.createCalendarTimer(configuration.getFormatRegistryRefreshSchedule(), new TimerConfig(null,
+                false));
+    }
+
+
+    /**
+     * Downloads a new snapshot of the format registry. The current snapshot is kept if UDFR cannot be contacted.
+     */
+    @Timeout
+    protected void refresh() {
+        try {
+            store.refresh();
+        } catch (IOException e) {
+            logger.error("Could not refresh the format registry, the current snapshot is kept", e);
+        }
+    }
+
+
+    /**
+     * Retrieves the UDFR format IRI for the given PUID.
+     * 
+     * @param puid
+     *            format PUID
+     * @return UDFR format IRI
+     * @throws UnrecognizedPuidException
+     *             when format PUID does not exist in UDFR
+     * @throws UdfrServiceException
+     *             when the snapshot of UDFR is not available
+     */
+    public String getUdfrIriForPuid(String puid)
+            throws UnrecognizedPuidException, UdfrServiceException {
+        FormatRecord record = getRegistry().findByPuid(puid);
+        if (record != null) {
+            return record.getIri();
+        } else {
+            throw new UnrecognizedPuidException("The is no UDFR IRI for the given PUID in UDFR", puid);
+        }
+    }
+
+
+    /**
+     * Retrieves the format PUID for the given UDFR IRI.
+     * 
+     * @param iri
+     *            UDFR format IRI
+     * @return format PUID
+     * @throws UnrecognizedIriException
+     *             when the given UDFR format IRI does not exist in UDFR
+     * @throws UdfrServiceException
+     *             when the snapshot of UDFR is not available
+     */
+    public String getPuidForUdfrIri(String iri)
+            throws UnrecognizedIriException, UdfrServiceException {
+        FormatRecord record = getRegistry().findByIri(iri);
+        if (record != null && record.getPuid() != null) {
+            return record.getPuid();
+        } else {
+            throw new UnrecognizedIriException("There is no such format IRI in the UDFR", iri);
+        }
+    }
+
+
+    /**
+     * Retrieves the format mimetype and default extension for the given UDFR IRI.
+     * 
+     * @param iri
+     *            UDFR format IRI
+     * @return mimetype and default extension
+     * @throws UdfrServiceException
+     *             when the snapshot of UDFR is not available
+     */
+    public FileFormatExt getMimetypeForUdfrIri(String iri)
+            throws UdfrServiceException {
+        FormatRecord record = getRegistry().findByIri(iri);
+        FileFormatExt fileFormatExt = new FileFormatExt();
+        if (record != null) {
+            fileFormatExt.setMimetype(record.getMimetype());
+            fileFormatExt.setExtension(record.getExtension());
+        }
+        return fileFormatExt;
+    }
+
+
+    /**
+     * Returns the current snapshot of the format registry, downloading it first if there is none yet.
+     * 
+     * @return format registry
+     * @throws UdfrServiceException
+     *             when there is no snapshot and it cannot be downloaded
+     */
+    private FormatRegistry getRegistry()
+            throws UdfrServiceException {
+        FormatRegistry registry = store.getRegistry();
+        if (registry == null) {
+            synchronized (store) {
+                registry = store.getRegistry();
+                if (registry == null) {
+                    try {
+                        store.refresh();
+                    } catch (IOException e) {
+                        logger.error("Could not download the format registry from UDFR", e);
+                        throw new UdfrServiceException("Could not download the format registry from UDFR", e);
+                    }
+                    registry = store.getRegistry();
+                }
+            }
+        }
+        return registry;
+    }
+}
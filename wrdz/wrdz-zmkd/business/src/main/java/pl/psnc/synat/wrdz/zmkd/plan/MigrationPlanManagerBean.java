@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
@@ -33,6 +34,7 @@ import pl.psnc.darceo.migration.DigitalObjectsCondition;
 import pl.psnc.darceo.migration.Service;
 import pl.psnc.synat.wrdz.common.dao.QueryFilter;
 import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
 import pl.psnc.synat.wrdz.common.user.UserContext;
 import pl.psnc.synat.wrdz.ru.composition.ServiceComposer;
 import pl.psnc.synat.wrdz.ru.composition.TransformationChain;
@@ -69,6 +71,13 @@ import pl.psnc.synat.wrdz.zu.user.UserBrowser;
 @TransactionAttribute(TransactionAttributeType.REQUIRED)
 public class MigrationPlanManagerBean implements MigrationPlanManager {
 
+    /** Properties of the marshaller writing the XML representation of the migration plans. */
+    private static final Map<String, Object> MARSHALLER_PROPERTIES = Collections.singletonMap(
+            Marshaller.JAXB_FORMATTED_OUTPUT, (Object) Boolean.TRUE);
+
+    /** JAXB context of the migration plans, shared by all the bean instances. */
+    private static JaxbProcessors jaxbProcessors;
+
     /** Identifier browser. */
     @EJB(name = "IdentifierBrowser")
     private IdentifierBrowser identfierBrowser;
@@ -109,19 +118,22 @@ public class MigrationPlanManagerBean implements MigrationPlanManager {
     @EJB
     private UserContext userContext;
 
-    /** JAXB context. */
-    private JAXBContext jaxbContext;
-
 
     /**
-     * Default constructor.
+     * Returns the JAXB context of the migration plans. It is created the first time it is needed.
+     * 
+     * @return JAXB processors of the migration plans
      */
-    public MigrationPlanManagerBean() {
-        try {
-            jaxbContext = JAXBContext.newInstance(pl.psnc.darceo.migration.MigrationPlan.class);
-        } catch (JAXBException e) {
-            throw new WrdzRuntimeException(e.getMessage(), e);
+    private static synchronized JaxbProcessors getJaxbProcessors() {
+        if (jaxbProcessors == null) {
+            try {
+                jaxbProcessors = new JaxbProcessors(
+                        JAXBContext.newInstance(pl.psnc.darceo.migration.MigrationPlan.class));
+            } catch (JAXBException e) {
+                throw new WrdzRuntimeException(e.getMessage(), e);
+            }
         }
+        return jaxbProcessors;
     }
 
 
@@ -252,8 +264,7 @@ public class MigrationPlanManagerBean implements MigrationPlanManager {
      */
     private String getXml(pl.psnc.darceo.migration.MigrationPlan plan) {
         try {
-            Marshaller marshaller = jaxbContext.createMarshaller();
-            marshaller.setProperty("jaxb.formatted.output", true);
+            Marshaller marshaller = getJaxbProcessors().getMarshaller(MARSHALLER_PROPERTIES);
 
             StringWriter writer = new StringWriter();
             marshaller.marshal(plan, writer);
@@ -19,6 +19,7 @@ import java.io.File;
 import java.util.NoSuchElementException;
 
 import javax.annotation.PostConstruct;
+import javax.ejb.ScheduleExpression;
 import javax.enterprise.inject.Default;
 import javax.inject.Singleton;
 
@@ -28,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.wrdz.common.exception.WrdzConfigurationError;
+import pl.psnc.synat.wrdz.common.format.FormatRegistryStore;
 import pl.psnc.synat.wrdz.common.utility.StringEncoder;
 
 /**
@@ -43,6 +45,9 @@ public class ZmkdConfiguration {
     /** Configuration file. */
     private static final String CONFIG_FILE = "zmkd-wrdz-config.xml";
 
+    /** Name of the local snapshot file of the format registry in the cache home directory. */
+    private static final String FORMAT_REGISTRY_SNAPSHOT_FILE = "format-registry.xml";
+
     /** Configuration object. */
     private org.apache.commons.configuration.Configuration config;
 
@@ -153,4 +158,58 @@ public class ZmkdConfiguration {
         return config.getBoolean("migration-plan.resume", true);
     }
 
+
+    /**
+     * Returns the URI of the sparql endpoint of the format registry.
+     * 
+     * @return URI of the endpoint
+     */
+    public String getFormatRegistryEndpoint() {
+        return config.getString("format-registry.endpoint", FormatRegistryStore.UDFR_ENDPOINT);
+    }
+
+
+    /**
+     * Returns the path to the local snapshot of the format registry, by default in the cache home directory.
+     * 
+     * @return path to the snapshot file
+     */
+    public String getFormatRegistrySnapshot() {
+        String snapshot = config.getString("format-registry.snapshot", "");
+        if (snapshot.trim().isEmpty()) {
+            return zmkdCachePath + "/" + FORMAT_REGISTRY_SNAPSHOT_FILE;
+        }
+        return StringEncoder.decodePath(snapshot.trim());
+    }
+
+
+    /**
+     * Returns the path to the dump of the format registry which should be imported if it is newer than the local
+     * snapshot.
+     * 
+     * @return path to the dump file, or <code>null</code> if there is no dump to be imported
+     */
+    public String getFormatRegistryDump() {
+        String dump = config.getString("format-registry.dump", "");
+        if (dump.trim().isEmpty()) {
+            return null;
+        }
+        return StringEncoder.decodePath(dump.trim());
+    }
+
+
+    /**
+     * Returns the schedule of downloading a new snapshot of the format registry. Only the hour, minute and day of week
+     * values are configurable, by default the snapshot is downloaded every day at midnight.
+     * 
+     * @return schedule
+     */
+    public ScheduleExpression getFormatRegistryRefreshSchedule() {
+        ScheduleExpression expression = new ScheduleExpression();
+        expression.hour(config.getString("format-registry.refresh-schedule.hour", "0"));
+        expression.minute(config.getString("format-registry.refresh-schedule.minute", "0"));
+        expression.dayOfWeek(config.getString("format-registry.refresh-schedule.day-of-week", "*"));
+        return expression;
+    }
+
 }
@@ -17,35 +17,31 @@ package pl.psnc.synat.wrdz.zmkd.wadl;
 
 import java.io.InputStream;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 
 import net.java.dev.wadl._2009._02.Application;
 
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
+
 /**
  * JAXB parser of WADL XML files.
  */
 public class WadlParser {
 
     /**
-     * Unmarshaller of the WADL XML data.
+     * JAXB context with cached unmarshallers of the WADL XML data.
      */
-    private final Unmarshaller unmarshaller;
+    private final JaxbProcessors jaxbProcessors;
 
 
     /**
      * Default constructor.
      * 
-     * @param jaxbContext
-     *            JAXB context object
+     * @param jaxbProcessors
+     *            JAXB context object with cached unmarshallers
      */
-    WadlParser(JAXBContext jaxbContext) {
-        try {
-            this.unmarshaller = jaxbContext.createUnmarshaller();
-        } catch (JAXBException ex) {
-            throw new RuntimeException("Unable to create JAXB unmarshaler!");
-        }
+    WadlParser(JaxbProcessors jaxbProcessors) {
+        this.jaxbProcessors = jaxbProcessors;
     }
 
 
@@ -60,7 +56,7 @@ public class WadlParser {
      */
     public Application unmarshalWadl(InputStream is)
             throws JAXBException {
-        Application root = (Application) unmarshaller.unmarshal(is);
+        Application root = (Application) jaxbProcessors.getUnmarshaller().unmarshal(is);
         return root;
     }
 
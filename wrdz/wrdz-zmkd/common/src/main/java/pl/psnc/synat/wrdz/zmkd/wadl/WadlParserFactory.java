@@ -15,13 +15,13 @@
  */
 package pl.psnc.synat.wrdz.zmkd.wadl;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import pl.psnc.synat.wrdz.common.exception.WrdzRuntimeException;
+import pl.psnc.synat.wrdz.common.metadata.JaxbProcessors;
 
 /**
  * Factory class of WADL parsers.
@@ -37,9 +37,9 @@ public final class WadlParserFactory {
     private static WadlParserFactory instance = new WadlParserFactory();
 
     /**
-     * JAXB context for the WADL classes.
+     * JAXB context for the WADL classes with cached unmarshallers.
      */
-    private JAXBContext jaxbContext;
+    private JaxbProcessors jaxbProcessors;
 
 
     /**
@@ -47,7 +47,7 @@ public final class WadlParserFactory {
      */
     private WadlParserFactory() {
         try {
-            jaxbContext = JAXBContext.newInstance("net.java.dev.wadl._2009._02");
+            jaxbProcessors = JaxbProcessors.getInstance("net.java.dev.wadl._2009._02");
         } catch (JAXBException e) {
             logger.error("JAXB context for WADL creation failed.", e);
             throw new WrdzRuntimeException(e);
@@ -71,7 +71,7 @@ public final class WadlParserFactory {
      * @return new WADL parser
      */
     public WadlParser getWadlParser() {
-        return new WadlParser(jaxbContext);
+        return new WadlParser(jaxbProcessors);
     }
 
 }
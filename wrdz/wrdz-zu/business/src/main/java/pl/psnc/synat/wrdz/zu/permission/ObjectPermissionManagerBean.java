@@ -16,9 +16,11 @@
 package pl.psnc.synat.wrdz.zu.permission;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -84,6 +86,31 @@ public class ObjectPermissionManagerBean implements ObjectPermissionManager {
     }
 
 
+    @Override
+    public Set<Long> filterWithPermission(String username, Collection<Long> resourceIds,
+            ObjectPermissionType permission) {
+        if (username == null || permission == null) {
+            throw new WrdzRuntimeException(
+                    "Authorization check cannot be performed for null user or permissionType parameter.");
+        }
+        User user = getUser(username);
+        if (user == null || resourceIds.isEmpty()) {
+            return new HashSet<Long>();
+        } else if (user.isAdmin()) {
+            return new HashSet<Long>(resourceIds);
+        }
+        List<GroupAuthentication> groups = user.getUserData().getGroups();
+        List<Long> groupIds = new ArrayList<Long>();
+        for (GroupAuthentication group : groups) {
+            groupIds.add(group.getId());
+        }
+        if (groupIds.isEmpty()) {
+            return new HashSet<Long>();
+        }
+        return new HashSet<Long>(objectPermissionDao.findObjectsWithPermission(groupIds, permission, resourceIds));
+    }
+
+
     @SuppressWarnings("unchecked")
     @Override
     public boolean hasPermission(String username, Long resourceId, ObjectPermissionType permissionType) {
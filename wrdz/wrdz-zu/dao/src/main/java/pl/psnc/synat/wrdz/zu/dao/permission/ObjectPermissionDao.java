@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zu.dao.permission;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.ejb.Local;
@@ -44,4 +45,20 @@ public interface ObjectPermissionDao extends
      */
     List<Long> findObjectsWithPermission(List<Long> groups, ObjectPermissionType permissionType);
 
+
+    /**
+     * Finds those of the given objects that have specified permission granted to either of the groups passed in the
+     * parameter.
+     * 
+     * @param groups
+     *            list of user groups identifiers.
+     * @param permissionType
+     *            type of permission to be granted on given group.
+     * @param objects
+     *            ids (primary keys) of objects to check.
+     * @return list of ids (primary keys) of objects.
+     */
+    List<Long> findObjectsWithPermission(List<Long> groups, ObjectPermissionType permissionType,
+            Collection<Long> objects);
+
 }
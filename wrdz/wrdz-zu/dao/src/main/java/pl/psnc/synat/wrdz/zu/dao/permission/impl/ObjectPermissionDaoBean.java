@@ -15,6 +15,7 @@
  */
 package pl.psnc.synat.wrdz.zu.dao.permission.impl;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.ejb.Stateless;
@@ -77,4 +78,18 @@ public class ObjectPermissionDaoBean extends
         return entityManager.createQuery(criteriaQuery).getResultList();
     }
 
+
+    @Override
+    public List<Long> findObjectsWithPermission(List<Long> groups, ObjectPermissionType permissionType,
+            Collection<Long> objects) {
+        CriteriaQuery<Long> criteriaQuery = criteriaBuilder.createQuery(Long.class);
+        Root<ObjectPermission> root = criteriaQuery.from(ObjectPermission.class);
+        Predicate byGroups = root.get(ObjectPermission_.group).get(GroupAuthentication_.id).in(groups);
+        Predicate byType = criteriaBuilder.equal(root.get(ObjectPermission_.permission), permissionType);
+        Predicate byObjects = root.get(ObjectPermission_.resourceId).in(objects);
+        criteriaQuery.where(criteriaBuilder.and(byGroups, byType, byObjects));
+        criteriaQuery.select(root.get(ObjectPermission_.resourceId)).distinct(true);
+        return entityManager.createQuery(criteriaQuery).getResultList();
+    }
+
 }
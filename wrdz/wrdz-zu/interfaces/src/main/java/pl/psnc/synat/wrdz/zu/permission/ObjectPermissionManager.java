@@ -15,6 +15,9 @@
  */
 package pl.psnc.synat.wrdz.zu.permission;
 
+import java.util.Collection;
+import java.util.Set;
+
 import javax.ejb.Remote;
 
 import pl.psnc.synat.wrdz.zu.types.ObjectPermissionType;
@@ -25,4 +28,18 @@ import pl.psnc.synat.wrdz.zu.types.ObjectPermissionType;
 @Remote
 public interface ObjectPermissionManager extends PermissionManager<ObjectPermissionType> {
 
+    /**
+     * Retrieves those of the given resources that the user with the given name has the given permission to. Checks all
+     * of them at once, instead of calling {@link #hasPermission(String, Long, ObjectPermissionType)} for each one.
+     * 
+     * @param username
+     *            name of the user
+     * @param resourceIds
+     *            identifiers of the resources to check
+     * @param permission
+     *            desired permission
+     * @return identifiers of the resources the user has the permission to
+     */
+    Set<Long> filterWithPermission(String username, Collection<Long> resourceIds, ObjectPermissionType permission);
+
 }